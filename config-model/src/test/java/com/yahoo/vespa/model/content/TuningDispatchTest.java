@@ -45,6 +45,14 @@ public class TuningDispatchTest {
         assertNull(dispatch.getMinActiveDocsCoverage());
     }
 
+    @Test
+    public void requireThatLatencyAwareDispatchWork() {
+        TuningDispatch dispatch = new TuningDispatch.Builder()
+                .setDispatchPolicy("latency-aware")
+                .build();
+        assertTrue(TuningDispatch.DispatchPolicy.LATENCY_AWARE == dispatch.getDispatchPolicy());
+    }
+
     @Test
     public void requireThatDefaultsAreNull() {
         TuningDispatch dispatch = new TuningDispatch.Builder().build();
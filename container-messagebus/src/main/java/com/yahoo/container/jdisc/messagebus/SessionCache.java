@@ -17,6 +17,7 @@ import com.yahoo.messagebus.ConfigAgent;
 import com.yahoo.messagebus.DestinationSessionParams;
 import com.yahoo.messagebus.DynamicThrottlePolicy;
 import com.yahoo.messagebus.IntermediateSessionParams;
+import com.yahoo.messagebus.LatencyThrottlePolicy;
 import com.yahoo.messagebus.MessageBusParams;
 import com.yahoo.messagebus.Protocol;
 import com.yahoo.messagebus.SourceSessionParams;
@@ -31,6 +32,7 @@ import com.yahoo.messagebus.shared.SharedSourceSession;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.logging.Logger;
 
 /**
@@ -376,6 +378,49 @@ public final class SessionCache extends AbstractComponent {
 
     }
 
+    static class LatencyThrottlePolicySignature extends ThrottlePolicySignature {
+
+        private final double maxWindowSize;
+        private final double minWindowSize;
+        private final double windowSizeBackoff;
+        private final double latencyTolerance;
+        private final double smoothing;
+        private final long minLatencyPeriod;
+
+        LatencyThrottlePolicySignature(final LatencyThrottlePolicy policy) {
+            maxWindowSize = policy.getMaxWindowSize();
+            minWindowSize = policy.getMinWindowSize();
+            windowSizeBackoff = policy.getWindowSizeBackOff();
+            latencyTolerance = policy.getLatencyTolerance();
+            smoothing = policy.getSmoothing();
+            minLatencyPeriod = policy.getMinLatencyPeriod();
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(super.hashCode(), maxWindowSize, minWindowSize, windowSizeBackoff,
+                                latencyTolerance, smoothing, minLatencyPeriod);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (getClass() != obj.getClass()) {
+                return false;
+            }
+            LatencyThrottlePolicySignature other = (LatencyThrottlePolicySignature) obj;
+            return Double.compare(maxWindowSize, other.maxWindowSize) == 0
+                   && Double.compare(minWindowSize, other.minWindowSize) == 0
+                   && Double.compare(windowSizeBackoff, other.windowSizeBackoff) == 0
+                   && Double.compare(latencyTolerance, other.latencyTolerance) == 0
+                   && Double.compare(smoothing, other.smoothing) == 0
+                   && minLatencyPeriod == other.minLatencyPeriod;
+        }
+
+    }
+
     static class UnknownThrottlePolicySignature extends ThrottlePolicySignature {
 
         private final ThrottlePolicy policy;
@@ -410,6 +455,8 @@ public final class SessionCache extends AbstractComponent {
             Class<?> policyClass = policy.getClass();
             if (policyClass == DynamicThrottlePolicy.class) {
                 return new DynamicThrottlePolicySignature((DynamicThrottlePolicy) policy);
+            } else if (policyClass == LatencyThrottlePolicy.class) {
+                return new LatencyThrottlePolicySignature((LatencyThrottlePolicy) policy);
             } else if (policyClass == StaticThrottlePolicy.class) {
                 return new StaticThrottlePolicySignature((StaticThrottlePolicy) policy);
             } else {
@@ -2,10 +2,12 @@
 package com.yahoo.container.jdisc.messagebus;
 
 import com.yahoo.container.jdisc.messagebus.SessionCache.DynamicThrottlePolicySignature;
+import com.yahoo.container.jdisc.messagebus.SessionCache.LatencyThrottlePolicySignature;
 import com.yahoo.container.jdisc.messagebus.SessionCache.SourceSessionKey;
 import com.yahoo.container.jdisc.messagebus.SessionCache.StaticThrottlePolicySignature;
 import com.yahoo.container.jdisc.messagebus.SessionCache.UnknownThrottlePolicySignature;
 import com.yahoo.messagebus.DynamicThrottlePolicy;
+import com.yahoo.messagebus.LatencyThrottlePolicy;
 import com.yahoo.messagebus.SourceSessionParams;
 import com.yahoo.messagebus.StaticThrottlePolicy;
 import org.junit.Test;
@@ -89,6 +91,31 @@ public class MbusSessionKeyTestCase {
                 sigBase.equals(new DynamicThrottlePolicySignature(other)));
     }
 
+    @Test
+    public final void latencyThrottlePolicySignature() {
+        final LatencyThrottlePolicy base = new LatencyThrottlePolicy();
+        final LatencyThrottlePolicy other = new LatencyThrottlePolicy();
+        base.setLatencyTolerance(2);
+        base.setSmoothing(.3);
+        base.setMinLatencyPeriod(1000);
+        other.setLatencyTolerance(2 + 1);
+        other.setSmoothing(.3 + .1);
+        other.setMinLatencyPeriod(1000 + 1);
+        final LatencyThrottlePolicySignature sigBase = new LatencyThrottlePolicySignature(base);
+        final LatencyThrottlePolicySignature sigOther = new LatencyThrottlePolicySignature(other);
+        assertFalse("The policies are different, but signatures are equal.",
+                sigBase.equals(sigOther));
+        assertTrue("Sigs created from same policy evaluated as different.",
+                sigBase.equals(new LatencyThrottlePolicySignature(base)));
+        other.setLatencyTolerance(2);
+        other.setSmoothing(.3);
+        other.setMinLatencyPeriod(1000);
+        assertTrue(
+                "Sigs created from different policies with same settings evaluated as different.",
+                sigBase.equals(new LatencyThrottlePolicySignature(other)));
+        assertEquals(sigBase.hashCode(), new LatencyThrottlePolicySignature(other).hashCode());
+    }
+
     @Test
     public final void unknownThrottlePolicySignature() {
         final UnknownThrottlePolicySignature baseSig = new UnknownThrottlePolicySignature(
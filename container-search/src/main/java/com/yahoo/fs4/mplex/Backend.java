@@ -15,6 +15,7 @@ import java.net.InetSocketAddress;
 import java.nio.channels.SocketChannel;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -28,9 +29,44 @@ public class Backend implements ConnectionFactory {
         public final int activeConnections;
         public final int passiveConnections;
 
+        /** The number of channels currently open for queries or summary requests */
+        public final int activeChannels;
+
+        /** The number of packet buffers which are waiting to be written to a socket */
+        public final int queuedWrites;
+
+        /** The number of times a pooled connection has been reused */
+        public final long reusedConnections;
+
+        /** The number of connections which have been created */
+        public final long createdConnections;
+
+        /** The number of packets not sent because max in-flight channels was reached */
+        public final long rejectedPackets;
+
+        public final long encodedPackets;
+        public final long encodeNanos;
+        public final long decodedPackets;
+        public final long decodeNanos;
+
         public BackendStatistics(int activeConnections, int passiveConnections) {
+            this(activeConnections, passiveConnections, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+        }
+
+        public BackendStatistics(int activeConnections, int passiveConnections, int activeChannels, int queuedWrites,
+                                 long reusedConnections, long createdConnections, long rejectedPackets,
+                                 long encodedPackets, long encodeNanos, long decodedPackets, long decodeNanos) {
             this.activeConnections = activeConnections;
             this.passiveConnections = passiveConnections;
+            this.activeChannels = activeChannels;
+            this.queuedWrites = queuedWrites;
+            this.reusedConnections = reusedConnections;
+            this.createdConnections = createdConnections;
+            this.rejectedPackets = rejectedPackets;
+            this.encodedPackets = encodedPackets;
+            this.encodeNanos = encodeNanos;
+            this.decodedPackets = decodedPackets;
+            this.decodeNanos = decodeNanos;
         }
 
         @Override
@@ -41,6 +77,28 @@ public class Backend implements ConnectionFactory {
         public int totalConnections() {
             return activeConnections + passiveConnections;
         }
+
+        /** Returns the fraction of connection requests which were served by reusing a pooled connection */
+        public double connectionReuseRate() {
+            long requests = reusedConnections + createdConnections;
+            return requests == 0 ? 0 : (double)reusedConnections / requests;
+        }
+
+        /**
+         * Returns the statistics of the interval since the given earlier statistics:
+         * Counters are differences, while gauges are the current values.
+         */
+        public BackendStatistics since(BackendStatistics earlier) {
+            return new BackendStatistics(activeConnections, passiveConnections, activeChannels, queuedWrites,
+                                         reusedConnections - earlier.reusedConnections,
+                                         createdConnections - earlier.createdConnections,
+                                         rejectedPackets - earlier.rejectedPackets,
+                                         encodedPackets - earlier.encodedPackets,
+                                         encodeNanos - earlier.encodeNanos,
+                                         decodedPackets - earlier.decodedPackets,
+                                         decodeNanos - earlier.decodeNanos);
+        }
+
     }
 
     private static final Logger log = Logger.getLogger(Backend.class.getName());
@@ -50,6 +108,8 @@ public class Backend implements ConnectionFactory {
     private final String host;
     private final int port;
     private final Map<Integer, FS4Channel> activeChannels = new HashMap<>();
+    /** The ids of the channels admitted to have requests in flight, guarded by activeChannels */
+    private final Set<Integer> admittedChannels = new HashSet<>();
     private int channelId = 0;
     private boolean shutdownInitiated = false;
 
@@ -62,6 +122,18 @@ public class Backend implements ConnectionFactory {
     private final PacketDumper packetDumper;
     private final AtomicInteger connectionCount = new AtomicInteger(0);
 
+    /** The max number of channels which may have requests in flight, or 0 if there is no limit */
+    private final int maxInflightChannels;
+
+    private final AtomicInteger queuedWrites = new AtomicInteger(0);
+    private final LongAdder reusedConnections = new LongAdder();
+    private final LongAdder createdConnections = new LongAdder();
+    private final LongAdder rejectedPackets = new LongAdder();
+    private final LongAdder encodedPackets = new LongAdder();
+    private final LongAdder encodeNanos = new LongAdder();
+    private final LongAdder decodedPackets = new LongAdder();
+    private final LongAdder decodeNanos = new LongAdder();
+
     /**
      * For unit testing.  do not use
      */
@@ -73,6 +145,7 @@ public class Backend implements ConnectionFactory {
         packetDumper = null;
         address = null;
         connectionPool = new ConnectionPool();
+        maxInflightChannels = 0;
     }
 
     public Backend(String host,
@@ -80,6 +153,23 @@ public class Backend implements ConnectionFactory {
                    String serverDiscriminator,
                    ListenerPool listenerPool,
                    ConnectionPool connectionPool) {
+        this(host, port, serverDiscriminator, listenerPool, connectionPool, 0);
+    }
+
+    /**
+     * Creates a backend
+     *
+     * @param maxInflightChannels the max number of channels which may have requests in flight at any time.
+     *                            The first packet sent on further channels is rejected, such that overload
+     *                            is reported as an error right away instead of as a timeout. Channels already
+     *                            admitted are never rejected. 0 means no limit.
+     */
+    public Backend(String host,
+                   int port,
+                   String serverDiscriminator,
+                   ListenerPool listenerPool,
+                   ConnectionPool connectionPool,
+                   int maxInflightChannels) {
         String fileNamePattern = "qrs." + serverDiscriminator + '.' + host + ":" + port + ".%s" + ".dump";
         packetDumper = new PacketDumper(new File(Defaults.getDefaults().underVespaHome("logs/vespa/qrs/")),
                                         fileNamePattern);
@@ -89,6 +179,7 @@ public class Backend implements ConnectionFactory {
         this.port = port;
         address = new InetSocketAddress(host, port);
         this.connectionPool = connectionPool;
+        this.maxInflightChannels = maxInflightChannels;
     }
 
     private void logWarning(String attemptDescription, Exception e) {
@@ -113,6 +204,9 @@ public class Backend implements ConnectionFactory {
             // if pool was empty create one:
             connection = createConnection();
         }
+        else {
+            reusedConnections.increment();
+        }
         return connection;
     }
 
@@ -149,6 +243,7 @@ public class Backend implements ConnectionFactory {
 
         log.fine("Created new connection to " + host + ":" + port);
         connectionPool.createdConnection();
+        createdConnections.increment();
         return connection;
     }
 
@@ -275,6 +370,7 @@ public class Backend implements ConnectionFactory {
      */
     protected FS4Channel removeChannel(Integer id) {
         synchronized (activeChannels) {
+            admittedChannels.remove(id);
             return activeChannels.remove(id);
         }
     }
@@ -304,6 +400,11 @@ public class Backend implements ConnectionFactory {
             log.fine("Tried to send packet after shutdown initiated.  Ignored.");
             return false;
         }
+        if ( ! admit(channelId)) {
+            log.fine(() -> "Rejecting packet to " + this + ": More than " + maxInflightChannels + " channels in flight");
+            rejectedPackets.increment();
+            return false;
+        }
 
         FS4Connection connection = null;
         try {
@@ -322,6 +423,39 @@ public class Backend implements ConnectionFactory {
         return true;
     }
 
+    /**
+     * Returns whether packets may be sent on the given channel. A channel is admitted on its first send if fewer
+     * than the max number of channels are in flight, and stays admitted until it is closed, such that only new
+     * channels are rejected on overload, never later packets of queries already in flight.
+     */
+    private boolean admit(Integer channelId) {
+        if (maxInflightChannels <= 0) return true;
+        if (channelId == 0) return true; // never reject pings
+        synchronized (activeChannels) {
+            if (admittedChannels.contains(channelId)) return true;
+            if (admittedChannels.size() >= maxInflightChannels) return false;
+            admittedChannels.add(channelId);
+            return true;
+        }
+    }
+
+    /** Called by connections with the time spent encoding a packet */
+    void packetEncoded(long nanos) {
+        encodedPackets.increment();
+        encodeNanos.add(nanos);
+    }
+
+    /** Called by connections with the time spent decoding a packet */
+    void packetDecoded(long nanos) {
+        decodedPackets.increment();
+        decodeNanos.add(nanos);
+    }
+
+    /** Called by connections when the number of packet buffers waiting to be written changes */
+    void writeQueueChanged(int delta) {
+        queuedWrites.addAndGet(delta);
+    }
+
     /**
      * When a connection receives a packet, it uses this method to
      * dispatch the packet to the right FS4Channel.  If the corresponding
@@ -411,8 +545,16 @@ public class Backend implements ConnectionFactory {
     }
 
     public BackendStatistics getStatistics() {
+        int channels;
+        synchronized (activeChannels) {
+            channels = activeChannels.size();
+        }
         synchronized (connectionPool) { //ensure consistent values
-            return new BackendStatistics(connectionPool.activeConnections(), connectionPool.passiveConnections());
+            return new BackendStatistics(connectionPool.activeConnections(), connectionPool.passiveConnections(),
+                                         channels, queuedWrites.get(),
+                                         reusedConnections.sum(), createdConnections.sum(), rejectedPackets.sum(),
+                                         encodedPackets.sum(), encodeNanos.sum(),
+                                         decodedPackets.sum(), decodeNanos.sum());
         }
     }
 
@@ -57,6 +57,7 @@ public class ConnectionPool {
     }
 
     private FS4Connection registerAsActiveIfNonZero(FS4Connection connection) {
+        if (connection == null) return null;
         activeConnections.incrementAndGet();
         passiveConnections.decrementAndGet();
         return connection;
@@ -70,7 +70,9 @@ public class FS4Connection implements Connection
      * Packet sending interface.
      */
     public void sendPacket (BasicPacket packet, Integer channelId) throws IOException {
+        long encodeStart = System.nanoTime();
         ByteBuffer buffer = packet.grantEncodingBuffer(channelId.intValue(), maxInitialSize);
+        backend.packetEncoded(System.nanoTime() - encodeStart);
         ByteBuffer viewForPacketListener = buffer.slice();
         synchronized (this) {
             if (!(valid && channel.isOpen())) {
@@ -83,6 +85,7 @@ public class FS4Connection implements Connection
             if (buffer.capacity() > maxInitialSize) {
                 maxInitialSize = buffer.limit();
             }
+            backend.writeQueueChanged(1);
             if (writeBuffer == null) {
                 writeBuffer = buffer;
             } else {
@@ -133,6 +136,7 @@ public class FS4Connection implements Connection
                 // go around.  if indeed we go around
                 if (!writeBuffer.hasRemaining()) {
                     writeBuffer = null;
+                    backend.writeQueueChanged(-1);
                 }
             } while (bytesWritten > 0);
             if (!isFinished) {
@@ -238,7 +242,10 @@ public class FS4Connection implements Connection
                 else {
                     receiver = backend.getChannel(Integer.valueOf(queryId));
                 }
+                long decodeStart = System.nanoTime();
                 packet = PacketDecoder.extractPacket(readBuffer);
+                if (packet != null)
+                    backend.packetDecoded(System.nanoTime() - decodeStart);
 
                 if (packet != null)
                     packetListener.packetReceived(receiver, packet.packet, packet.consumedBytes);
@@ -275,9 +282,18 @@ public class FS4Connection implements Connection
     public void close () throws IOException {
         valid = false;
         channel.close();
+        discardQueuedWrites();
         log.log(Level.FINER, "invalidated id="+idNumber + " address=" + backend.getAddress());
     }
 
+    private synchronized void discardQueuedWrites() {
+        int discarded = writeBufferList.size() + (writeBuffer != null ? 1 : 0);
+        writeBufferList.clear();
+        writeBuffer = null;
+        if (discarded > 0)
+            backend.writeQueueChanged(-discarded);
+    }
+
     /**
      * Upon asynchronous connect completion this method is called by
      * the Listener.
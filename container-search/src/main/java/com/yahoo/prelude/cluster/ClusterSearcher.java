@@ -13,6 +13,7 @@ import com.yahoo.container.handler.VipStatus;
 import com.yahoo.fs4.mplex.Backend;
 import com.yahoo.net.HostName;
 import com.yahoo.search.dispatch.Dispatcher;
+import com.yahoo.search.dispatch.HedgedSearchInvoker;
 import com.yahoo.prelude.fastsearch.FS4ResourcePool;
 import com.yahoo.prelude.IndexFacts;
 import com.yahoo.prelude.Ping;
@@ -50,6 +51,7 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.LongSupplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -127,7 +129,11 @@ public class ClusterSearcher extends Searcher {
         maxQueryCacheTimeout = ParameterParser.asMilliSeconds(clusterConfig.maxQueryCacheTimeout(),
                                                               DEFAULT_MAX_QUERY_CACHE_TIMEOUT);
 
-        CacheParams cacheParams = new CacheParams(createCache(clusterConfig, clusterModelName));
+        CacheControl cacheControl = createCache(clusterConfig, clusterModelName);
+        registerCacheStatistics(cacheControl, manager);
+        registerHedgeStatistics(dispatcher.hedgeStatistics(), manager);
+        registerCompressionStatistics(dispatcher, manager);
+        CacheParams cacheParams = new CacheParams(cacheControl);
         SummaryParameters docSumParams = new SummaryParameters(qrsConfig
                 .com().yahoo().prelude().fastsearch().FastSearcher().docsum()
                 .defaultclass());
@@ -252,6 +258,33 @@ public class ClusterSearcher extends Searcher {
         return new CacheControl(config.cacheSize(), config.cacheTimeout());
     }
 
+    /** Logs the lookup, eviction and size counts of the given cache each time statistics are logged */
+    private void registerCacheStatistics(CacheControl cache, Statistics manager) {
+        registerStatisticsValue(".cache_hits", cache::hitCount, manager);
+        registerStatisticsValue(".cache_misses", cache::missCount, manager);
+        registerStatisticsValue(".cache_evictions", cache::evictionCount, manager);
+        registerStatisticsValue(".cache_bytes", cache::cachedBytes, manager);
+    }
+
+    /** Logs the counts of fired, won and wasted hedged queries each time statistics are logged */
+    private void registerHedgeStatistics(HedgedSearchInvoker.Statistics hedges, Statistics manager) {
+        registerStatisticsValue(".hedges_fired", hedges::fired, manager);
+        registerStatisticsValue(".hedges_won", hedges::won, manager);
+        registerStatisticsValue(".hedges_wasted", hedges::wasted, manager);
+    }
+
+    /** Logs the counts of summary requests sent compressed and uncompressed each time statistics are logged */
+    private void registerCompressionStatistics(Dispatcher dispatcher, Statistics manager) {
+        registerStatisticsValue(".fill_requests_compressed", dispatcher::compressedFillRequests, manager);
+        registerStatisticsValue(".fill_requests_uncompressed", dispatcher::uncompressedFillRequests, manager);
+    }
+
+    private void registerStatisticsValue(String suffix, LongSupplier count, Statistics manager) {
+        new Value(clusterModelName + suffix, manager,
+                  new Value.Parameters().setNameExtension(false).setLogRaw(true)
+                                        .setCallback((handle, firstTime) -> ((Value)handle).put(count.getAsLong())));
+    }
+
     ClusterMonitor getMonitor() {
         return monitor;
     }
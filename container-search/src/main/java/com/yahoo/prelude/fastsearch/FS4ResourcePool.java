@@ -6,10 +6,13 @@ import com.yahoo.component.AbstractComponent;
 import com.yahoo.concurrent.ThreadFactoryFactory;
 import com.yahoo.container.QrConfig;
 import com.yahoo.container.search.Fs4Config;
+import com.yahoo.jdisc.Metric;
 import com.yahoo.fs4.mplex.Backend;
+import com.yahoo.fs4.mplex.Backend.BackendStatistics;
 import com.yahoo.fs4.mplex.ConnectionPool;
 import com.yahoo.fs4.mplex.ListenerPool;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Timer;
@@ -30,26 +33,57 @@ public class FS4ResourcePool extends AbstractComponent {
 
     private static final Logger logger = Logger.getLogger(FS4ResourcePool.class.getName());
     private static final AtomicInteger instanceCounter = new AtomicInteger(0);
+
+    private static final String INFLIGHT_CHANNELS_METRIC = "fs4.inflight_channels";
+    private static final String WRITE_QUEUE_DEPTH_METRIC = "fs4.write_queue_depth";
+    private static final String CONNECTION_REUSE_RATE_METRIC = "fs4.connection_reuse_rate";
+    private static final String REJECTED_PACKETS_METRIC = "fs4.rejected_packets";
+    private static final String PACKET_ENCODE_LATENCY_METRIC = "fs4.packet_encode_latency";
+    private static final String PACKET_DECODE_LATENCY_METRIC = "fs4.packet_decode_latency";
+    private static final long METRIC_REPORT_INTERVAL_SECONDS = 10;
+
     private final String serverId;
     private final int instanceId;
+    private final int maxInflightChannels;
     private final ListenerPool listeners;
     private final Timer timer = new Timer();  // This is a timer for cleaning the closed connections
     private final Map<String, Backend> connectionPoolMap = new HashMap<>();
     private final ExecutorService executor;
     private final ScheduledExecutorService scheduledExecutor;
 
-    @Inject
     public FS4ResourcePool(Fs4Config fs4Config, QrConfig config) {
-        this(config.discriminator(), fs4Config.numlistenerthreads());
+        this(fs4Config, config, null);
+    }
+
+    @Inject
+    public FS4ResourcePool(Fs4Config fs4Config, QrConfig config, Metric metric) {
+        this(config.discriminator(), fs4Config.numlistenerthreads(), fs4Config.maxinflightchannels(), metric);
     }
-    
+
     public FS4ResourcePool(String serverId, int listenerThreads) {
+        this(serverId, listenerThreads, 0, null);
+    }
+
+    /**
+     * Creates a resource pool
+     *
+     * @param maxInflightChannels the max number of channels with requests in flight to each backend, or 0 for no limit
+     * @param metric the metric receiver to report backend statistics to, or null to not report metrics
+     */
+    public FS4ResourcePool(String serverId, int listenerThreads, int maxInflightChannels, Metric metric) {
         this.serverId = serverId;
+        this.maxInflightChannels = maxInflightChannels;
         instanceId = instanceCounter.getAndIncrement();
         String name = "FS4-" + instanceId;
         listeners = new ListenerPool(name, listenerThreads);
         executor = Executors.newCachedThreadPool(ThreadFactoryFactory.getDaemonThreadFactory(name));
         scheduledExecutor = Executors.newScheduledThreadPool(1, ThreadFactoryFactory.getDaemonThreadFactory(name + ".scheduled"));
+        if (metric != null) {
+            MetricReporter reporter = new MetricReporter(metric);
+            scheduledExecutor.scheduleAtFixedRate(reporter,
+                                                  METRIC_REPORT_INTERVAL_SECONDS, METRIC_REPORT_INTERVAL_SECONDS,
+                                                  TimeUnit.SECONDS);
+        }
     }
 
     /** Returns an unique identifier of the server this runs in */
@@ -62,7 +96,7 @@ public class FS4ResourcePool extends AbstractComponent {
         synchronized (connectionPoolMap) {
             Backend pool = connectionPoolMap.get(key);
             if (pool == null) {
-                pool = new Backend(host, port, serverId, listeners, new ConnectionPool(timer));
+                pool = new Backend(host, port, serverId, listeners, new ConnectionPool(timer), maxInflightChannels);
                 connectionPoolMap.put(key, pool);
             }
             return pool;
@@ -89,4 +123,48 @@ public class FS4ResourcePool extends AbstractComponent {
         }
     }
 
+    /** Reports the statistics of each backend in the last interval as metrics */
+    private class MetricReporter implements Runnable {
+
+        private final Metric metric;
+        private final Map<String, Metric.Context> contexts = new HashMap<>();
+        private final Map<String, BackendStatistics> lastStatistics = new HashMap<>();
+
+        MetricReporter(Metric metric) {
+            this.metric = metric;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Map<String, Backend> backends;
+                synchronized (connectionPoolMap) {
+                    backends = new HashMap<>(connectionPoolMap);
+                }
+                for (Map.Entry<String, Backend> backend : backends.entrySet())
+                    report(backend.getKey(), backend.getValue().getStatistics());
+            }
+            catch (Exception e) {
+                logger.log(Level.WARNING, "Failed reporting fs4 backend metrics", e);
+            }
+        }
+
+        private void report(String backend, BackendStatistics current) {
+            BackendStatistics interval = current.since(lastStatistics.getOrDefault(backend, new BackendStatistics(0, 0)));
+            lastStatistics.put(backend, current);
+            Metric.Context context = contexts.computeIfAbsent(backend,
+                                                              key -> metric.createContext(Collections.singletonMap("backend", key)));
+
+            metric.set(INFLIGHT_CHANNELS_METRIC, interval.activeChannels, context);
+            metric.set(WRITE_QUEUE_DEPTH_METRIC, interval.queuedWrites, context);
+            metric.set(CONNECTION_REUSE_RATE_METRIC, interval.connectionReuseRate(), context);
+            metric.add(REJECTED_PACKETS_METRIC, interval.rejectedPackets, context);
+            if (interval.encodedPackets > 0)
+                metric.set(PACKET_ENCODE_LATENCY_METRIC, interval.encodeNanos / 1000.0 / interval.encodedPackets, context);
+            if (interval.decodedPackets > 0)
+                metric.set(PACKET_DECODE_LATENCY_METRIC, interval.decodeNanos / 1000.0 / interval.decodedPackets, context);
+        }
+
+    }
+
 }
@@ -504,8 +504,14 @@ public class FastHit extends Hit {
             this.index = index;
         }
 
+        /** Returns the value of the given field converted to its Java type, or null if this does not contain it */
         Object getField(String name) {
-            return type.convert(name, data.field(name));
+            // Check the definition first to avoid a lookup in the summary data for fields which are not in it
+            DocsumField fieldType = type.getField(name);
+            if (fieldType == null) return null;
+            Inspector value = data.field(name);
+            if ( ! value.valid()) return null;
+            return fieldType.convert(value);
         }
 
         void forEachField(BiConsumer<String, Object> consumer) {
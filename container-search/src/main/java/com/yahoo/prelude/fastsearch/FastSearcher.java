@@ -27,6 +27,8 @@ import com.yahoo.search.searchchain.Execution;
 import edu.umd.cs.findbugs.annotations.NonNull;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.logging.Level;
 
@@ -192,6 +194,48 @@ public class FastSearcher extends VespaBackEndSearcher {
         }
     }
 
+    /**
+     * Fills results containing hits of different queries by sending the requests for all of them
+     * before waiting for any responses, such that the fills are done concurrently.
+     */
+    @Override
+    protected void doPartialFills(List<Result> parts, String summaryClass) {
+        if (parts.size() == 1) {
+            doPartialFill(parts.get(0), summaryClass);
+            return;
+        }
+
+        List<Result> started = new ArrayList<>(parts.size());
+        List<FillInvoker> invokers = new ArrayList<>(parts.size());
+        try {
+            for (Result part : parts) {
+                if (part.isFilled(summaryClass)) continue;
+
+                Query query = part.getQuery();
+                traceQuery(getName(), "fill", query, query.getOffset(), query.getHits(), 1, quotedSummaryClass(summaryClass));
+                FillInvoker invoker = getFillInvoker(part);
+                invokers.add(invoker);
+                started.add(part);
+                invoker.startFill(part, summaryClass);
+            }
+            for (int i = 0; i < invokers.size(); i++)
+                invokers.get(i).awaitFill(started.get(i), summaryClass);
+        }
+        finally {
+            invokers.forEach(this::close);
+        }
+    }
+
+    /** Closes an invoker without throwing, such that a failure to close one does not prevent closing the others */
+    private void close(FillInvoker invoker) {
+        try {
+            invoker.close();
+        }
+        catch (RuntimeException e) {
+            getLogger().log(Level.WARNING, "Failed closing " + invoker, e);
+        }
+    }
+
     /** When we only search a single node, doing all grouping in one pass is more efficient */
     private void forceSinglePassGrouping(Query query) {
         for (GroupingRequest groupingRequest : query.getSelect().getGrouping())
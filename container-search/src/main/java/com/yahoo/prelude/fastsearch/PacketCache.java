@@ -34,6 +34,9 @@ public class PacketCache extends LinkedHashMap<CacheKey, PacketWrapper> {
     /** The max age for a valid cache entry, 0 mean infinite */
     private final long maxAge;
 
+    /** The number of entries removed from this cache to make room for new ones */
+    private long evictions = 0;
+
     private static final Logger log = Logger.getLogger(PacketCache.class.getName());
 
     public void clear() {
@@ -83,6 +86,7 @@ public class PacketCache extends LinkedHashMap<CacheKey, PacketWrapper> {
     {
         if (totalSize > capacity) {
             totalSize -= eldest.getValue().getPacketsSize();
+            evictions++;
             return true;
         }
         return false;
@@ -94,6 +98,7 @@ public class PacketCache extends LinkedHashMap<CacheKey, PacketWrapper> {
         for (Iterator<PacketWrapper> i = values().iterator(); i.hasNext();) {
             PacketWrapper eldestEntry = i.next();
             totalSize -= eldestEntry.getPacketsSize();
+            evictions++;
 
             i.remove();
             if (totalSize < capacity) {
@@ -184,4 +189,9 @@ public class PacketCache extends LinkedHashMap<CacheKey, PacketWrapper> {
         return totalSize;
     }
 
+    /** Returns the number of entries which have been evicted from this cache because it was full */
+    public long evictionCount() {
+        return evictions;
+    }
+
 }
@@ -0,0 +1,153 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.prelude.fastsearch;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A packet cache which spreads its entries over a number of independently locked {@link PacketCache} segments,
+ * such that concurrent lookups and inserts of different keys rarely contend on the same lock.
+ * The byte capacity is divided evenly between the segments, and each segment does its own LRU
+ * eviction and expiry within its share.
+ *
+ * @author bratseth
+ */
+public class SegmentedPacketCache {
+
+    public static final int defaultSegmentCount = 16;
+
+    private final PacketCache[] segments;
+
+    /** Mask selecting a segment from a key hash, the segment count is always a power of two */
+    private final int segmentMask;
+
+    /** The total number of bytes of packets this may hold */
+    private final int byteCapacity;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates a segmented cache with the default number of segments
+     *
+     * @param capacityMegaBytes the total cache size, measured in megabytes
+     * @param maxAge seconds a cache entry is valid, 0 or less are illegal arguments
+     */
+    public SegmentedPacketCache(int capacityMegaBytes, double maxAge) {
+        this(capacityMegaBytes, 0, maxAge, defaultSegmentCount);
+    }
+
+    /**
+     * Creates a segmented cache with a total size given by capacityMegaBytes*2^20+capacityBytes
+     *
+     * @param capacityMegaBytes the total cache size, measured in megabytes
+     * @param capacityBytes additional number of bytes to add to the cache size
+     * @param maxAge seconds a cache entry is valid, 0 or less are illegal arguments
+     * @param segmentCount the requested number of segments, rounded up to the nearest power of two
+     *        and reduced if necessary to give each segment at least one megabyte
+     */
+    public SegmentedPacketCache(int capacityMegaBytes, int capacityBytes, double maxAge, int segmentCount) {
+        if (segmentCount < 1)
+            throw new IllegalArgumentException("A packet cache must have at least one segment, not " + segmentCount);
+        if (capacityMegaBytes > (Integer.MAX_VALUE >> 20))
+            this.byteCapacity = Integer.MAX_VALUE;
+        else
+            this.byteCapacity = (capacityMegaBytes << 20) + capacityBytes;
+        if (this.byteCapacity <= 0)
+            throw new IllegalArgumentException("Total cache size set to 0 or less bytes. If no caching is desired, avoid creating this object instead.");
+
+        int segments = Integer.highestOneBit(segmentCount);
+        if (segments < segmentCount) segments <<= 1;
+        while (segments > 1 && byteCapacity / segments < (1 << 20))
+            segments >>= 1;
+
+        this.segments = new PacketCache[segments];
+        this.segmentMask = segments - 1;
+        for (int i = 0; i < segments; i++) {
+            this.segments[i] = new PacketCache(0, byteCapacity / segments, maxAge);
+            // Keep the size limit of a single item relative to the total capacity rather than the segment's share
+            this.segments[i].setMaxCacheItemPercentage(Math.min(100, segments));
+        }
+    }
+
+    private PacketCache segmentOf(CacheKey key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & segmentMask];
+    }
+
+    /** Returns the cached entry for this key, or null if there is no unexpired entry for it */
+    public PacketWrapper get(CacheKey key, long now) {
+        PacketWrapper result = peek(key, now);
+        if (result == null)
+            misses.increment();
+        else
+            hits.increment();
+        return result;
+    }
+
+    /** Returns the cached entry for this key as {@link #get}, but without counting this as a hit or miss */
+    public PacketWrapper peek(CacheKey key, long now) {
+        PacketCache segment = segmentOf(key);
+        synchronized (segment) {
+            return segment.get(key, now);
+        }
+    }
+
+    /**
+     * Adds a packet wrapper to this cache, unless it is too large compared to the total size
+     *
+     * @param timestamp the timestamp of the first packet of the wrapper, in milliseconds
+     * @return the entry previously stored for this key, or null if none
+     */
+    public PacketWrapper put(CacheKey key, PacketWrapper value, long timestamp) {
+        PacketCache segment = segmentOf(key);
+        synchronized (segment) {
+            return segment.put(key, value, timestamp);
+        }
+    }
+
+    public void clear() {
+        for (PacketCache segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /** Returns the total capacity of this in megabytes */
+    public int getCapacity() { return byteCapacity >> 20; }
+
+    /** Returns the total capacity of this in bytes */
+    public int getByteCapacity() { return byteCapacity; }
+
+    /** Returns the number of segments of this */
+    public int segmentCount() { return segments.length; }
+
+    /** Returns the number of bytes of packets currently stored in this cache */
+    public long totalPacketSize() {
+        long size = 0;
+        for (PacketCache segment : segments) {
+            synchronized (segment) {
+                size += segment.totalPacketSize();
+            }
+        }
+        return size;
+    }
+
+    /** Returns the number of lookups which returned a cached entry */
+    public long hitCount() { return hits.sum(); }
+
+    /** Returns the number of lookups which did not find an unexpired entry */
+    public long missCount() { return misses.sum(); }
+
+    /** Returns the number of entries which have been evicted to make room for others */
+    public long evictionCount() {
+        long evictions = 0;
+        for (PacketCache segment : segments) {
+            synchronized (segment) {
+                evictions += segment.evictionCount();
+            }
+        }
+        return evictions;
+    }
+
+}
@@ -100,6 +100,18 @@ public abstract class VespaBackEndSearcher extends PingableSearcher {
 
     protected abstract void doPartialFill(Result result, String summaryClass);
 
+    /**
+     * Performs the partial docsum fills of a number of temporary results, each containing the unfilled hits
+     * of one query. This fills each in turn. Subclasses may override this to have the fills run concurrently.
+     *
+     * @param parts the results to fill
+     * @param summaryClass the summary class we want to fill with
+     */
+    protected void doPartialFills(List<Result> parts, String summaryClass) {
+        for (Result part : parts)
+            doPartialFill(part, summaryClass);
+    }
+
     /**
      * Returns whether we need to send the query when fetching summaries.
      * This is necessary if the query requests summary features or dynamic snippeting
@@ -311,10 +323,9 @@ public abstract class VespaBackEndSearcher extends PingableSearcher {
 
         List<Result> parts= partitionHits(result, summaryClass);
         if (parts.size() > 0) { // anything to fill at all?
-            for (Result r : parts) {
-                doPartialFill(r, summaryClass);
+            doPartialFills(parts, summaryClass);
+            for (Result r : parts)
                 mergeErrorsInto(result, r);
-            }
             result.hits().setSorted(false);
             result.analyzeHits();
         }
@@ -0,0 +1,307 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.cache;
+
+import com.yahoo.search.Result;
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.result.HitGroup;
+import com.yahoo.tensor.Tensor;
+
+import java.time.Clock;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An LRU cache of complete results, bounded by the estimated memory used by the cached results.
+ * Entries expire after a max age which may be shorter for some document types,
+ * and may be invalidated per document type at any time.
+ *
+ * The entries are spread over a number of independently locked segments, each
+ * holding an even share of the total capacity.
+ *
+ * This is multithread safe.
+ *
+ * @author bratseth
+ */
+public class ResultCache {
+
+    private final Segment[] segments;
+    private final int segmentMask;
+
+    private final long byteCapacity;
+
+    /** The max size of a single cached result */
+    private final long maxEntrySize;
+
+    private final long defaultMaxAge;
+
+    /** Max ages in milliseconds for document types which have a shorter max age than the default */
+    private final Map<String, Long> documentTypeMaxAges;
+
+    /** The last time each document type was invalidated */
+    private final Map<String, Long> invalidations = new ConcurrentHashMap<>();
+
+    /** The last time all document types were invalidated */
+    private volatile long lastInvalidation = Long.MIN_VALUE;
+
+    private final Clock clock;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a result cache
+     *
+     * @param byteCapacity the max total estimated size of the cached results
+     * @param maxResultPercentage the max size of a single result in percent of the byteCapacity
+     * @param maxAge the max age of a cached result, in milliseconds
+     * @param documentTypeMaxAges max ages in milliseconds for document types which should have a shorter max age
+     * @param segmentCount the requested number of segments, rounded up to the nearest power of two
+     *        and reduced if necessary to give each segment at least one megabyte
+     * @param clock the clock used to determine the age of entries
+     */
+    public ResultCache(long byteCapacity, int maxResultPercentage, long maxAge,
+                       Map<String, Long> documentTypeMaxAges, int segmentCount, Clock clock) {
+        if (byteCapacity <= 0)
+            throw new IllegalArgumentException("Result cache capacity must be positive, not " + byteCapacity);
+        if (segmentCount < 1)
+            throw new IllegalArgumentException("A result cache must have at least one segment, not " + segmentCount);
+
+        int segments = Integer.highestOneBit(segmentCount);
+        if (segments < segmentCount) segments <<= 1;
+        while (segments > 1 && byteCapacity / segments < (1 << 20))
+            segments >>= 1;
+
+        this.byteCapacity = byteCapacity;
+        this.maxEntrySize = byteCapacity * maxResultPercentage / 100;
+        this.defaultMaxAge = maxAge;
+        this.documentTypeMaxAges = Collections.unmodifiableMap(new HashMap<>(documentTypeMaxAges));
+        this.clock = clock;
+        this.segments = new Segment[segments];
+        this.segmentMask = segments - 1;
+        for (int i = 0; i < segments; i++)
+            this.segments[i] = new Segment(byteCapacity / segments);
+    }
+
+    private Segment segmentOf(ResultCacheKey key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & segmentMask];
+    }
+
+    /**
+     * Returns a copy of the result cached for this key, or null if there is no valid entry.
+     * The returned result references the query of the cached result, which must be replaced by the caller.
+     */
+    public Result get(ResultCacheKey key) {
+        long now = clock.millis();
+        Segment segment = segmentOf(key);
+        Entry entry;
+        synchronized (segment) {
+            entry = segment.get(key);
+            if (entry != null && ! isValid(entry, now)) {
+                segment.remove(key);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.result.clone();
+    }
+
+    /**
+     * Adds a result to this cache, unless it is larger than the max size of a single result.
+     * The result is copied, so the given instance may be modified further after this returns.
+     *
+     * @return true if the result was cached
+     */
+    public boolean put(ResultCacheKey key, Result result) {
+        Result copy = result.clone();
+        long size = key.byteSize() + estimateSize(copy.hits());
+        if (size > maxEntrySize) return false;
+
+        Entry entry = new Entry(copy, key.documentTypes(), size, clock.millis(), maxAgeOf(key));
+        Segment segment = segmentOf(key);
+        synchronized (segment) {
+            segment.put(key, entry);
+        }
+        return true;
+    }
+
+    /** Invalidates all results which searches the given document type */
+    public void invalidate(String documentType) {
+        invalidations.put(documentType, clock.millis());
+    }
+
+    /** Invalidates all cached results */
+    public void invalidateAll() {
+        lastInvalidation = clock.millis();
+    }
+
+    private boolean isValid(Entry entry, long now) {
+        if (now - entry.created > entry.maxAge) return false;
+        if (entry.created <= lastInvalidation) return false;
+
+        Iterable<String> documentTypes = entry.documentTypes.isEmpty() ? invalidations.keySet() : entry.documentTypes;
+        for (String documentType : documentTypes) {
+            Long invalidated = invalidations.get(documentType);
+            if (invalidated != null && entry.created <= invalidated) return false;
+        }
+        return true;
+    }
+
+    /** Returns the max age of a result for this key, which is the smallest of the max ages of the types it searches */
+    private long maxAgeOf(ResultCacheKey key) {
+        long maxAge = defaultMaxAge;
+        Iterable<String> documentTypes = key.documentTypes().isEmpty() ? documentTypeMaxAges.keySet() : key.documentTypes();
+        for (String documentType : documentTypes)
+            maxAge = Math.min(maxAge, documentTypeMaxAges.getOrDefault(documentType, defaultMaxAge));
+        return maxAge;
+    }
+
+    /** Returns a rough estimate of the heap memory used by the hits in this group, in bytes */
+    static long estimateSize(HitGroup group) {
+        long size = 128;
+        for (Hit hit : group) {
+            if (hit instanceof HitGroup) {
+                size += estimateSize((HitGroup)hit);
+                continue;
+            }
+            FieldSizeEstimator fieldSizes = new FieldSizeEstimator();
+            hit.forEachFieldAsRaw(fieldSizes);
+            size += 128 + fieldSizes.size;
+        }
+        return size;
+    }
+
+    private static long estimateSize(Object value) {
+        if (value == null) return 0;
+        if (value instanceof CharSequence) return 40 + 2 * ((CharSequence)value).length();
+        if (value instanceof byte[]) return 16 + ((byte[])value).length;
+        if (value instanceof Tensor) return 64 + 16 * ((Tensor)value).size();
+        return 32;
+    }
+
+    /** Sums the estimated sizes of fields, without decoding fields which are available as utf-8 */
+    private static final class FieldSizeEstimator implements Hit.RawUtf8Consumer {
+
+        long size = 0;
+
+        @Override
+        public void accept(String name, Object value) {
+            size += 32 + 2 * name.length() + estimateSize(value);
+        }
+
+        @Override
+        public void accept(String name, byte[] utf8Data, int offset, int length) {
+            size += 32 + 2 * name.length() + 40 + 2 * length;
+        }
+
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /** Returns the total capacity of this in bytes */
+    public long byteCapacity() { return byteCapacity; }
+
+    /** Returns the number of segments of this */
+    public int segmentCount() { return segments.length; }
+
+    /** Returns the estimated number of bytes currently used by the cached results */
+    public long byteSize() {
+        long size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.byteSize;
+            }
+        }
+        return size;
+    }
+
+    /** Returns the number of lookups which returned a cached result */
+    public long hitCount() { return hits.sum(); }
+
+    /** Returns the number of lookups which did not find a valid result */
+    public long missCount() { return misses.sum(); }
+
+    /** Returns the number of results which have been evicted to make room for others */
+    public long evictionCount() { return evictions.sum(); }
+
+    private static final class Entry {
+
+        final Result result;
+        final Set<String> documentTypes;
+        final long size;
+        final long created;
+        final long maxAge;
+
+        Entry(Result result, Set<String> documentTypes, long size, long created, long maxAge) {
+            this.result = result;
+            this.documentTypes = documentTypes;
+            this.size = size;
+            this.created = created;
+            this.maxAge = maxAge;
+        }
+
+    }
+
+    /** An access ordered map of entries, which must be synchronized on by the caller */
+    private final class Segment extends LinkedHashMap<ResultCacheKey, Entry> {
+
+        private final long capacity;
+        private long byteSize = 0;
+
+        Segment(long capacity) {
+            super(128, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        public Entry put(ResultCacheKey key, Entry entry) {
+            Entry previous = super.put(key, entry);
+            byteSize += entry.size;
+            if (previous != null)
+                byteSize -= previous.size;
+            removeOverflow();
+            return previous;
+        }
+
+        @Override
+        public Entry remove(Object key) {
+            Entry removed = super.remove(key);
+            if (removed != null)
+                byteSize -= removed.size;
+            return removed;
+        }
+
+        @Override
+        public void clear() {
+            super.clear();
+            byteSize = 0;
+        }
+
+        private void removeOverflow() {
+            for (Iterator<Entry> i = values().iterator(); byteSize > capacity && i.hasNext(); ) {
+                byteSize -= i.next().size;
+                i.remove();
+                evictions.increment();
+            }
+        }
+
+    }
+
+}
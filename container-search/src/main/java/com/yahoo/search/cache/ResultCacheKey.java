@@ -0,0 +1,134 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.cache;
+
+import com.google.common.collect.ImmutableSet;
+import com.yahoo.search.Query;
+import com.yahoo.search.query.Presentation;
+import com.yahoo.search.query.Ranking;
+import com.yahoo.search.query.profile.QueryProfileProperties;
+import com.yahoo.search.query.profile.compiled.CompiledQueryProfile;
+import com.yahoo.search.query.ranking.Diversity;
+import com.yahoo.search.query.ranking.MatchPhase;
+import com.yahoo.search.query.ranking.Matching;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The key of a result in the {@link ResultCache}. This is a canonical string form of the parts of a query
+ * which determines the result it produces: The normalized query tree, the sources and document types searched,
+ * the rank profile and other ranking settings including match phase limiting, the query profile, the result window
+ * and the presentation options which determines which summary data is filled.
+ *
+ * Since searchers may read any property of the query, the parameters of the request are also part of the key,
+ * except those which only determine how the result is rendered or how long to wait for it.
+ * Properties set by the query profile are covered by its id.
+ *
+ * @author bratseth
+ */
+public final class ResultCacheKey {
+
+    /** Request parameters which do not change the result */
+    private static final Set<String> ignoredRequestProperties = ImmutableSet.of("timeout", "format", "presentation.format");
+
+    private final String key;
+
+    /** The document types searched by this query. If empty, all document types are searched. */
+    private final Set<String> documentTypes;
+
+    public ResultCacheKey(Query query) {
+        StringBuilder b = new StringBuilder();
+        b.append("tree:").append(query.getModel().getQueryTree());
+        b.append("|sources:").append(sorted(query.getModel().getSources()));
+        b.append("|restrict:").append(sorted(query.getModel().getRestrict()));
+        b.append("|path:").append(query.getModel().getSearchPath());
+
+        Ranking ranking = query.getRanking();
+        b.append("|profile:").append(ranking.getProfile());
+        b.append("|sorting:").append(ranking.getSorting());
+        b.append("|location:").append(ranking.getLocation());
+        b.append("|freshness:").append(ranking.getFreshness());
+        b.append("|features:").append(ranking.getFeatures());
+        b.append("|properties:").append(ranking.getProperties());
+        b.append("|listFeatures:").append(ranking.getListFeatures());
+        appendMatchPhase(ranking.getMatchPhase(), b);
+        appendMatching(ranking.getMatching(), b);
+
+        b.append("|queryProfile:").append(queryProfileId(query));
+        b.append("|offset:").append(query.getOffset());
+        b.append("|hits:").append(query.getHits());
+
+        Presentation presentation = query.getPresentation();
+        b.append("|summary:").append(presentation.getSummary());
+        b.append("|summaryFields:").append(sorted(presentation.getSummaryFields()));
+        b.append("|bolding:").append(presentation.getBolding());
+        b.append("|request:").append(requestProperties(query));
+
+        this.key = b.toString();
+        this.documentTypes = sorted(query.getModel().getRestrict());
+    }
+
+    private static void appendMatchPhase(MatchPhase matchPhase, StringBuilder b) {
+        b.append("|matchPhase:").append(matchPhase.getAttribute());
+        b.append(",").append(matchPhase.getAscending());
+        b.append(",").append(matchPhase.getMaxHits());
+        b.append(",").append(matchPhase.getMaxFilterCoverage());
+        Diversity diversity = matchPhase.getDiversity();
+        b.append("|diversity:").append(diversity.getAttribute());
+        b.append(",").append(diversity.getMinGroups());
+        b.append(",").append(diversity.getCutoffFactor());
+        b.append(",").append(diversity.getCutoffStrategy());
+    }
+
+    private static void appendMatching(Matching matching, StringBuilder b) {
+        b.append("|matching:").append(matching.getTermwiseLimit());
+        b.append(",").append(matching.getNumThreadsPerSearch());
+        b.append(",").append(matching.getNumSearchPartitions());
+        b.append(",").append(matching.getMinHitsPerThread());
+    }
+
+    /** Returns the parameters of the request of this query which may change the result, sorted by name */
+    private static Map<String, String> requestProperties(Query query) {
+        if (query.getHttpRequest() == null) return Collections.emptyMap();
+        Map<String, String> properties = new TreeMap<>(query.getHttpRequest().propertyMap());
+        properties.keySet().removeAll(ignoredRequestProperties);
+        return properties;
+    }
+
+    private static String queryProfileId(Query query) {
+        QueryProfileProperties properties = query.properties().getInstance(QueryProfileProperties.class);
+        if (properties == null) return "";
+        CompiledQueryProfile profile = properties.getQueryProfile();
+        return profile == null ? "" : profile.getId().stringValue();
+    }
+
+    private static Set<String> sorted(Collection<String> strings) {
+        return strings == null ? Collections.emptySet() : new TreeSet<>(strings);
+    }
+
+    /** Returns the document types searched by the query of this key. If empty, all document types are searched. */
+    public Set<String> documentTypes() { return documentTypes; }
+
+    /** Returns an estimate of the memory used by this key, in bytes */
+    int byteSize() {
+        return 2 * key.length() + 64;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) return true;
+        if ( ! (o instanceof ResultCacheKey)) return false;
+        return ((ResultCacheKey)o).key.equals(this.key);
+    }
+
+    @Override
+    public int hashCode() { return key.hashCode(); }
+
+    @Override
+    public String toString() { return key; }
+
+}
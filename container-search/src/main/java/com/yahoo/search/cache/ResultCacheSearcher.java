@@ -0,0 +1,151 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.cache;
+
+import com.google.inject.Inject;
+import com.yahoo.metrics.simple.Counter;
+import com.yahoo.metrics.simple.Gauge;
+import com.yahoo.metrics.simple.MetricReceiver;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.Searcher;
+import com.yahoo.search.config.ResultCacheConfig;
+import com.yahoo.search.result.Coverage;
+import com.yahoo.search.searchchain.Execution;
+import com.yahoo.search.searchchain.PhaseNames;
+import com.yahoo.yolean.chain.After;
+import com.yahoo.yolean.chain.Before;
+import com.yahoo.yolean.chain.Provides;
+
+import java.time.Clock;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A searcher which serves complete, filled results from a cache in the container,
+ * such that repeated queries are not sent to content nodes at all.
+ * <p>
+ * Results are cached by a key made from the transformed query, see {@link ResultCacheKey}.
+ * A result is filled with the summary class requested by the query before it is cached.
+ * Queries which have noCache set, which request grouping, or which have tracing turned on are not cached,
+ * and neither are results having errors or reduced coverage.
+ * <p>
+ * Cached results expire after the max age set in config, or after a shorter window per document type.
+ * Invalidations of document types may also be done explicitly through {@link #cache()}.
+ * <p>
+ * Metrics: This emits the count metrics resultCacheHits, resultCacheMisses and resultCacheEvictions,
+ * and the gauge metric resultCacheBytes.
+ * <p>
+ * Ordering: This searcher Provides resultCache
+ *
+ * @author bratseth
+ */
+@After(PhaseNames.TRANSFORMED_QUERY)
+@Before(PhaseNames.BLENDED_RESULT)
+@Provides(ResultCacheSearcher.RESULT_CACHE)
+public class ResultCacheSearcher extends Searcher {
+
+    /** Constant containing the name this Provides - "resultCache", for ordering constraints */
+    public static final String RESULT_CACHE = "resultCache";
+
+    private static final String hitsMetricName = "resultCacheHits";
+    private static final String missesMetricName = "resultCacheMisses";
+    private static final String evictionsMetricName = "resultCacheEvictions";
+    private static final String bytesMetricName = "resultCacheBytes";
+
+    /** The cache, or empty if caching is disabled */
+    private final Optional<ResultCache> cache;
+
+    private final Counter hitsCounter;
+    private final Counter missesCounter;
+    private final Counter evictionsCounter;
+    private final Gauge bytesGauge;
+
+    /** The eviction count of the cache when evictions was last reported */
+    private final AtomicLong reportedEvictions = new AtomicLong(0);
+
+    @Inject
+    public ResultCacheSearcher(ResultCacheConfig config, MetricReceiver metric) {
+        this(config, metric, Clock.systemUTC());
+    }
+
+    /** For testing - allows injection of a clock to avoid depending on the system clock */
+    public ResultCacheSearcher(ResultCacheConfig config, MetricReceiver metric, Clock clock) {
+        this.cache = createCache(config, clock);
+        this.hitsCounter = metric.declareCounter(hitsMetricName);
+        this.missesCounter = metric.declareCounter(missesMetricName);
+        this.evictionsCounter = metric.declareCounter(evictionsMetricName);
+        this.bytesGauge = metric.declareGauge(bytesMetricName);
+    }
+
+    private static Optional<ResultCache> createCache(ResultCacheConfig config, Clock clock) {
+        if (config.maxSizeMegaBytes() <= 0 || config.maxAge() <= 0) return Optional.empty();
+
+        Map<String, Long> documentTypeMaxAges = new HashMap<>();
+        for (ResultCacheConfig.DocumentType documentType : config.documentType())
+            documentTypeMaxAges.put(documentType.name(), toMillis(documentType.maxAge()));
+        return Optional.of(new ResultCache((long)config.maxSizeMegaBytes() << 20,
+                                           config.maxResultPercentage(),
+                                           toMillis(config.maxAge()),
+                                           documentTypeMaxAges,
+                                           config.segments(),
+                                           clock));
+    }
+
+    private static long toMillis(double seconds) {
+        return (long)(seconds * 1000);
+    }
+
+    /** Returns the cache used by this, or empty if caching is disabled */
+    public Optional<ResultCache> cache() { return cache; }
+
+    @Override
+    public Result search(Query query, Execution execution) {
+        if ( ! cache.isPresent() || ! isCacheable(query)) return execution.search(query);
+
+        ResultCacheKey key = new ResultCacheKey(query);
+        // Checked after creating the key, as grouping in YQL is added when the query tree is parsed
+        if ( ! query.getSelect().getGrouping().isEmpty()) return execution.search(query);
+
+        Result cached = cache.get().get(key);
+        if (cached != null) {
+            hitsCounter.add();
+            cached.setQuery(query);
+            return cached;
+        }
+
+        missesCounter.add();
+        Result result = execution.search(query);
+        if (isCacheable(result)) {
+            execution.fill(result, query.getPresentation().getSummary());
+            if (isCacheable(result))
+                cache.get().put(key, result);
+        }
+        reportSize();
+        return result;
+    }
+
+    private boolean isCacheable(Query query) {
+        if (query.getNoCache()) return false;
+        if (query.getTraceLevel() > 0) return false;
+        return true;
+    }
+
+    private boolean isCacheable(Result result) {
+        if (result.hits().getError() != null) return false;
+        Coverage coverage = result.getCoverage(false);
+        if (coverage != null && coverage.isDegraded()) return false;
+        return true;
+    }
+
+    private void reportSize() {
+        ResultCache resultCache = cache.get();
+        bytesGauge.sample(resultCache.byteSize());
+        long evictions = resultCache.evictionCount();
+        long previouslyReported = reportedEvictions.getAndAccumulate(evictions, Math::max);
+        if (evictions > previouslyReported)
+            evictionsCounter.add(evictions - previouslyReported);
+    }
+
+}
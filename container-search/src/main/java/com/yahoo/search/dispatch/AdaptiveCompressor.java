@@ -0,0 +1,92 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.compress.CompressionType;
+import com.yahoo.compress.Compressor;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compresses request payloads only when that is likely to pay off. Payloads smaller than a minimum size are
+ * sent as-is. Larger payloads are compressed with fast LZ4, and each time compression fails to make
+ * a payload sufficiently smaller, compression is skipped for twice as many following payloads as the last time,
+ * such that no CPU is spent on compressing payloads which do not compress, while changes are still detected.
+ *
+ * This is multithread safe.
+ *
+ * @author bratseth
+ */
+class AdaptiveCompressor {
+
+    /** The max number of payloads to skip compressing after compression has been ineffective */
+    static final int MAX_SKIP = 1024;
+
+    private final Compressor compressor;
+    private final int minSize;
+
+    /** The number of payloads to skip compressing after the next ineffective compression */
+    private final AtomicInteger skipLength = new AtomicInteger(1);
+
+    /** The number of remaining payloads to skip compressing */
+    private final AtomicInteger skipRemaining = new AtomicInteger(0);
+
+    private final LongAdder compressedCount = new LongAdder();
+    private final LongAdder uncompressedCount = new LongAdder();
+
+    /**
+     * Creates an adaptive compressor
+     *
+     * @param compressor the compressor to use for compression
+     * @param minSize the min size in bytes of payloads which are attempted compressed
+     */
+    AdaptiveCompressor(Compressor compressor, int minSize) {
+        this.compressor = compressor;
+        this.minSize = minSize;
+    }
+
+    /**
+     * Compresses the given payload if it is likely to be worth it.
+     *
+     * @param requestedCompression the compression type requested by the query
+     * @param data the payload to compress
+     * @return the compression result, which has the type NONE if no compression was requested,
+     *         and INCOMPRESSIBLE if the payload is sent uncompressed for any other reason
+     */
+    Compressor.Compression compress(CompressionType requestedCompression, byte[] data) {
+        if (requestedCompression == CompressionType.NONE) {
+            uncompressedCount.increment();
+            return new Compressor.Compression(CompressionType.NONE, data.length, data);
+        }
+        if (data.length < minSize || skip()) {
+            uncompressedCount.increment();
+            return new Compressor.Compression(CompressionType.INCOMPRESSIBLE, data.length, data);
+        }
+
+        Compressor.Compression compression = compressor.compress(requestedCompression, data, Optional.empty());
+        if (compression.type().isCompressed()) {
+            compressedCount.increment();
+            skipLength.set(1);
+        }
+        else {
+            uncompressedCount.increment();
+            skipRemaining.set(skipLength.getAndUpdate(length -> Math.min(length * 2, MAX_SKIP)));
+        }
+        return compression;
+    }
+
+    private boolean skip() {
+        return skipRemaining.getAndUpdate(remaining -> Math.max(remaining - 1, 0)) > 0;
+    }
+
+    /** Returns the compressor used by this */
+    Compressor compressor() { return compressor; }
+
+    /** Returns the number of payloads which have been compressed */
+    long compressedCount() { return compressedCount.sum(); }
+
+    /** Returns the number of payloads which have been sent uncompressed */
+    long uncompressedCount() { return uncompressedCount.sum(); }
+
+}
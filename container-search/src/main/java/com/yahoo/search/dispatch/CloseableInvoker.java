@@ -15,6 +15,7 @@ public abstract class CloseableInvoker implements Closeable {
     protected abstract void release();
 
     private BiConsumer<Boolean, Long> teardown = null;
+    private Runnable cancellation = null;
     private boolean success = false;
     private long startTime = 0;
 
@@ -23,6 +24,15 @@ public abstract class CloseableInvoker implements Closeable {
         this.startTime = System.currentTimeMillis();
     }
 
+    /**
+     * Sets the hook to run instead of the teardown hook if this is closed by {@link #cancel}.
+     * The time this ran before it was cancelled is not passed on, as it is shorter than the time it would
+     * have taken to complete, and so says nothing about the latency of the target.
+     */
+    public void cancellation(Runnable cancellation) {
+        this.cancellation = cancellation;
+    }
+
     protected void setFinalStatus(boolean success) {
         this.success = success;
     }
@@ -35,4 +45,16 @@ public abstract class CloseableInvoker implements Closeable {
         }
         release();
     }
+
+    /**
+     * Closes this because its result is no longer needed, rather than because it is done.
+     * This runs the cancellation hook if one is set, and the teardown hook otherwise.
+     */
+    public final void cancel() {
+        if (teardown != null && cancellation != null) {
+            cancellation.run();
+            teardown = null;
+        }
+        close();
+    }
 }
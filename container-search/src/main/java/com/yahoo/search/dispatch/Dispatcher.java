@@ -22,6 +22,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.OptionalInt;
+import java.util.OptionalLong;
 import java.util.Set;
 
 /**
@@ -49,6 +50,8 @@ public class Dispatcher extends AbstractComponent {
     private final RpcResourcePool rpcResourcePool;
     private final boolean multilevelDispatch;
     private final boolean internalDispatchByDefault;
+    private final boolean hedgeRequests;
+    private final HedgedSearchInvoker.Statistics hedgeStatistics = new HedgedSearchInvoker.Statistics();
 
     public Dispatcher(String clusterId, DispatchConfig dispatchConfig, FS4ResourcePool fs4ResourcePool, int containerClusterSize, VipStatus vipStatus) {
         this(new SearchCluster(clusterId, dispatchConfig, fs4ResourcePool, containerClusterSize, vipStatus), dispatchConfig);
@@ -56,11 +59,12 @@ public class Dispatcher extends AbstractComponent {
 
     public Dispatcher(SearchCluster searchCluster, DispatchConfig dispatchConfig) {
         this.searchCluster = searchCluster;
-        this.loadBalancer = new LoadBalancer(searchCluster,
-                dispatchConfig.distributionPolicy() == DispatchConfig.DistributionPolicy.ROUNDROBIN);
+        this.loadBalancer = new LoadBalancer(searchCluster, dispatchConfig.distributionPolicy(),
+                                             dispatchConfig.tailLatencyQuantile());
         this.rpcResourcePool = new RpcResourcePool(dispatchConfig);
         this.multilevelDispatch = dispatchConfig.useMultilevelDispatch();
         this.internalDispatchByDefault = !dispatchConfig.useFdispatchByDefault();
+        this.hedgeRequests = dispatchConfig.hedgeRequests();
     }
 
     /** Returns the search cluster this dispatches to */
@@ -68,6 +72,21 @@ public class Dispatcher extends AbstractComponent {
         return searchCluster;
     }
 
+    /** Returns the counts of hedged requests made by this */
+    public HedgedSearchInvoker.Statistics hedgeStatistics() {
+        return hedgeStatistics;
+    }
+
+    /** Returns the number of summary requests sent compressed by this */
+    public long compressedFillRequests() {
+        return rpcResourcePool.requestCompressor().compressedCount();
+    }
+
+    /** Returns the number of summary requests sent uncompressed by this */
+    public long uncompressedFillRequests() {
+        return rpcResourcePool.requestCompressor().uncompressedCount();
+    }
+
     @Override
     public void deconstruct() {
         rpcResourcePool.release();
@@ -155,7 +174,8 @@ public class Dispatcher extends AbstractComponent {
                 query.trace(false, 2, "Dispatching internally to search group ", group.id());
                 query.getModel().setSearchPath("/" + group.id());
                 invoker.get().teardown((success, time) -> loadBalancer.releaseGroup(group, success, time));
-                return invoker;
+                invoker.get().cancellation(() -> loadBalancer.releaseCancelledGroup(group));
+                return hedged(invoker.get(), group, rejected, query, invokerFactory);
             } else {
                 loadBalancer.releaseGroup(group, false, 0);
                 if (rejected == null) {
@@ -167,4 +187,41 @@ public class Dispatcher extends AbstractComponent {
 
         return Optional.empty();
     }
+
+    /**
+     * Wraps the invoker of the given group in a hedged invoker if hedging is enabled and the group
+     * has a known tail latency. The hedge is sent to the next group chosen by the load balancer,
+     * excluding the primary group and any groups already rejected, and is only used if it has full coverage.
+     */
+    private Optional<SearchInvoker> hedged(SearchInvoker primary, Group primaryGroup, Set<Integer> rejected,
+                                           Query query, SearchInvokerSupplier invokerFactory) {
+        if ( ! hedgeRequests || searchCluster.orderedGroups().size() < 2) return Optional.of(primary);
+        OptionalLong hedgeDelay = loadBalancer.hedgeDelay(primaryGroup);
+        if ( ! hedgeDelay.isPresent()) return Optional.of(primary);
+
+        Set<Integer> excluded = new HashSet<>();
+        if (rejected != null)
+            excluded.addAll(rejected);
+        excluded.add(primaryGroup.id());
+        return Optional.of(new HedgedSearchInvoker(primary, hedgeDelay.getAsLong(),
+                                                   () -> hedgeInvoker(query, excluded, invokerFactory),
+                                                   hedgeStatistics));
+    }
+
+    private Optional<SearchInvoker> hedgeInvoker(Query query, Set<Integer> excluded, SearchInvokerSupplier invokerFactory) {
+        Optional<Group> groupInCluster = loadBalancer.takeGroup(excluded);
+        if ( ! groupInCluster.isPresent()) return Optional.empty();
+
+        Group group = groupInCluster.get();
+        Optional<SearchInvoker> invoker = invokerFactory.supply(query, OptionalInt.of(group.id()), group.nodes(), false);
+        if (invoker.isPresent()) {
+            query.trace(false, 2, "Hedging to search group ", group.id());
+            invoker.get().teardown((success, time) -> loadBalancer.releaseGroup(group, success, time));
+            invoker.get().cancellation(() -> loadBalancer.releaseCancelledGroup(group));
+        } else {
+            loadBalancer.releaseGroup(group, false, 0);
+        }
+        return invoker;
+    }
+
 }
@@ -16,6 +16,20 @@ public abstract class FillInvoker extends CloseableInvoker {
         getFillResults(result, summaryClass);
     }
 
+    /**
+     * Sends the requests for document summaries for the unfilled hits in the given {@link Result}
+     * without waiting for the responses, such that the requests of several invokers can be in flight at once.
+     * This must be followed by a call to {@link #awaitFill} with the same arguments.
+     */
+    public void startFill(Result result, String summaryClass) {
+        sendFillRequest(result, summaryClass);
+    }
+
+    /** Waits for and processes the responses to the requests sent by {@link #startFill} */
+    public void awaitFill(Result result, String summaryClass) {
+        getFillResults(result, summaryClass);
+    }
+
     protected abstract void getFillResults(Result result, String summaryClass);
 
     protected abstract void sendFillRequest(Result result, String summaryClass);
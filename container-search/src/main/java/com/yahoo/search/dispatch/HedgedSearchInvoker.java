@@ -0,0 +1,130 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.fs4.QueryPacket;
+import com.yahoo.prelude.fastsearch.CacheKey;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.searchchain.Execution;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * HedgedSearchInvoker sends a query to a primary invoker, and if that has not produced a complete response
+ * within a given delay, sends the same query to a hedge invoker (normally targeting another group)
+ * and returns the result of whichever completes first. The other invoker is cancelled.
+ *
+ * @author ollivir
+ */
+public class HedgedSearchInvoker extends SearchInvoker implements ResponseMonitor<SearchInvoker> {
+
+    private final SearchInvoker primary;
+    private final long hedgeDelay;
+    private final Supplier<Optional<SearchInvoker>> hedgeSupplier;
+    private final Statistics statistics;
+    private final LinkedBlockingQueue<SearchInvoker> completed = new LinkedBlockingQueue<>();
+
+    private SearchInvoker hedge = null;
+    private Query query;
+    private QueryPacket queryPacket;
+
+    /**
+     * Creates a hedged invoker
+     *
+     * @param primary the invoker to send the query to first
+     * @param hedgeDelay the time in milliseconds to wait for the primary before sending the query to a hedge as well
+     * @param hedgeSupplier supplies the hedge invoker when it is needed, or empty if no hedge is available
+     * @param statistics the statistics to update with the outcome of hedging
+     */
+    public HedgedSearchInvoker(SearchInvoker primary, long hedgeDelay,
+                               Supplier<Optional<SearchInvoker>> hedgeSupplier, Statistics statistics) {
+        super(Optional.empty());
+        this.primary = primary;
+        this.hedgeDelay = hedgeDelay;
+        this.hedgeSupplier = hedgeSupplier;
+        this.statistics = statistics;
+    }
+
+    @Override
+    protected void sendSearchRequest(Query query, QueryPacket queryPacket) throws IOException {
+        this.query = query;
+        this.queryPacket = queryPacket;
+        primary.setMonitor(this);
+        primary.sendSearchRequest(query, queryPacket);
+    }
+
+    @Override
+    protected Result getSearchResult(CacheKey cacheKey, Execution execution) throws IOException {
+        SearchInvoker first = awaitCompletion(Math.min(hedgeDelay, query.getTimeLeft()));
+        if (first == null && query.getTimeLeft() > 0) {
+            Optional<SearchInvoker> hedgeInvoker = hedgeSupplier.get();
+            if (hedgeInvoker.isPresent()) {
+                hedge = hedgeInvoker.get();
+                statistics.fired.increment();
+                query.trace(false, 2, "Hedging query after ", hedgeDelay, " ms");
+                hedge.setMonitor(this);
+                hedge.sendSearchRequest(query, queryPacket);
+            }
+            first = awaitCompletion(query.getTimeLeft());
+        }
+        if (first == null) // let the primary produce its timeout result
+            first = primary;
+
+        if (hedge != null) {
+            if (first == hedge)
+                statistics.won.increment();
+            else
+                statistics.wasted.increment();
+            (first == hedge ? primary : hedge).cancel();
+        }
+
+        Result result = first.getSearchResult(cacheKey, execution);
+        first.setFinalStatus(result.hits().getError() == null);
+        return result;
+    }
+
+    private SearchInvoker awaitCompletion(long timeout) {
+        if (timeout <= 0) return completed.poll();
+        try {
+            return completed.poll(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            throw new RuntimeException("Interrupted while waiting for search results", e);
+        }
+    }
+
+    @Override
+    public void responseAvailable(SearchInvoker from) {
+        completed.add(from);
+    }
+
+    @Override
+    protected void release() {
+        primary.close();
+        if (hedge != null)
+            hedge.close();
+    }
+
+    /** Counts of the outcomes of hedging. This is multithread safe. */
+    public static class Statistics {
+
+        private final LongAdder fired = new LongAdder();
+        private final LongAdder won = new LongAdder();
+        private final LongAdder wasted = new LongAdder();
+
+        /** Returns the number of hedge requests which have been sent */
+        public long fired() { return fired.sum(); }
+
+        /** Returns the number of hedge requests which completed before the primary request */
+        public long won() { return won.sum(); }
+
+        /** Returns the number of hedge requests which were cancelled because the primary request completed first */
+        public long wasted() { return wasted.sum(); }
+
+    }
+
+}
@@ -20,6 +20,7 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -31,6 +32,7 @@ import static com.yahoo.container.handler.Coverage.DEGRADED_BY_TIMEOUT;
  * InterleavedSearchInvoker uses multiple {@link SearchInvoker} objects to interface with content
  * nodes in parallel. Operationally it first sends requests to all contained invokers and then
  * collects the results. The user of this class is responsible for merging the results if needed.
+ * A monitor of this is notified when responses from all the contained invokers are available.
  *
  * @author ollivir
  */
@@ -41,6 +43,8 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
     private final VespaBackEndSearcher searcher;
     private final SearchCluster searchCluster;
     private final LinkedBlockingQueue<SearchInvoker> availableForProcessing;
+    private final int expectedResponses;
+    private final AtomicInteger receivedResponses = new AtomicInteger(0);
     private Query query;
 
     private boolean adaptiveTimeoutCalculated = false;
@@ -64,6 +68,7 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
         super(Optional.empty());
         this.invokers = Collections.newSetFromMap(new IdentityHashMap<>());
         this.invokers.addAll(invokers);
+        this.expectedResponses = this.invokers.size();
         this.searcher = searcher;
         this.searchCluster = searchCluster;
         this.availableForProcessing = newQueue();
@@ -259,11 +264,9 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
         if (availableForProcessing != null) {
             availableForProcessing.add(from);
         }
-    }
-
-    @Override
-    protected void setMonitor(ResponseMonitor<SearchInvoker> monitor) {
-        // never to be called
+        if (receivedResponses.incrementAndGet() == expectedResponses) {
+            responseAvailable(); // all responses are in: Notify any monitor of this
+        }
     }
 
     // For overriding in tests
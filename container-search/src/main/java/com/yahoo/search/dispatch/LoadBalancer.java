@@ -3,10 +3,12 @@ package com.yahoo.search.dispatch;
 
 import com.yahoo.search.dispatch.searchcluster.Group;
 import com.yahoo.search.dispatch.searchcluster.SearchCluster;
+import com.yahoo.vespa.config.search.DispatchConfig;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.Random;
 import java.util.Set;
 import java.util.logging.Logger;
@@ -27,16 +29,44 @@ public class LoadBalancer {
     private static final double INITIAL_QUERY_TIME = 0.001;
     private static final double MIN_QUERY_TIME = 0.001;
 
+    /** The default latency quantile tracked as the tail latency of each group */
+    private static final double DEFAULT_TAIL_QUANTILE = 0.99;
+    /** The number of successful queries a group must have served before its tail latency estimate is used for hedging */
+    private static final long MIN_QUERIES_FOR_HEDGING = 100;
+    /** The step size of the tail latency estimate, as a fraction of the current average latency */
+    private static final double TAIL_ESTIMATE_STEP = 0.1;
+    /** The number of queries over which the failure rate of a group decays */
+    private static final double FAILURE_DECAY_RATE = 100;
+
     private final List<GroupStatus> scoreboard;
     private final GroupScheduler scheduler;
 
     public LoadBalancer(SearchCluster searchCluster, boolean roundRobin) {
+        this(searchCluster, roundRobin ? DispatchConfig.DistributionPolicy.ROUNDROBIN : DispatchConfig.DistributionPolicy.ADAPTIVE);
+    }
+
+    public LoadBalancer(SearchCluster searchCluster, DispatchConfig.DistributionPolicy.Enum policy) {
+        this(searchCluster, policy, DEFAULT_TAIL_QUANTILE);
+    }
+
+    /**
+     * Creates a load balancer
+     *
+     * @param searchCluster the cluster to balance load over the groups of
+     * @param policy the policy used to select the next group
+     * @param tailQuantile the quantile of the search time tracked as the tail latency of each group
+     */
+    public LoadBalancer(SearchCluster searchCluster, DispatchConfig.DistributionPolicy.Enum policy, double tailQuantile) {
+        if (tailQuantile <= 0 || tailQuantile >= 1)
+            throw new IllegalArgumentException("The tail latency quantile must be between 0 and 1, not " + tailQuantile);
         this.scoreboard = new ArrayList<>(searchCluster.groups().size());
         for (Group group : searchCluster.orderedGroups()) {
-            scoreboard.add(new GroupStatus(group));
+            scoreboard.add(new GroupStatus(group, tailQuantile));
         }
-        if (roundRobin || scoreboard.size() == 1) {
+        if (policy == DispatchConfig.DistributionPolicy.ROUNDROBIN || scoreboard.size() == 1) {
             this.scheduler = new RoundRobinScheduler(scoreboard);
+        } else if (policy == DispatchConfig.DistributionPolicy.LATENCY_AWARE) {
+            this.scheduler = new LatencyAwareScheduler(new Random(), scoreboard);
         } else {
             this.scheduler = new AdaptiveScheduler(new Random(), scoreboard);
         }
@@ -86,14 +116,57 @@ public class LoadBalancer {
         }
     }
 
+    /**
+     * Release an allocation given by {@link #takeGroup} whose query was cancelled because it was no longer needed,
+     * e.g because a hedged query to another group completed first. This is neither counted as a failure nor
+     * as a search time sample, as the time it ran is always shorter than the time it would have taken.
+     *
+     * @param group previously allocated group
+     */
+    public void releaseCancelledGroup(Group group) {
+        synchronized (this) {
+            for (GroupStatus sched : scoreboard) {
+                if (sched.group.id() == group.id()) {
+                    sched.cancel();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the time in milliseconds after which a query to the given group should be hedged by sending it
+     * to another group as well, which is the tail latency of the group. This is empty if the group
+     * has not served enough queries for its tail latency to be known.
+     */
+    public OptionalLong hedgeDelay(Group group) {
+        synchronized (this) {
+            for (GroupStatus gs : scoreboard) {
+                if (gs.group.id() == group.id()) {
+                    if (gs.queries < MIN_QUERIES_FOR_HEDGING) return OptionalLong.empty();
+                    return OptionalLong.of((long)Math.ceil(gs.tailSearchTime() * 1000.0));
+                }
+            }
+            return OptionalLong.empty();
+        }
+    }
+
     static class GroupStatus {
         private final Group group;
+        private final double tailQuantile;
         private int allocations = 0;
         private long queries = 0;
         private double averageSearchTime = INITIAL_QUERY_TIME;
+        private double tailSearchTime = INITIAL_QUERY_TIME;
+        private double failureRate = 0;
 
         GroupStatus(Group group) {
+            this(group, DEFAULT_TAIL_QUANTILE);
+        }
+
+        GroupStatus(Group group, double tailQuantile) {
             this.group = group;
+            this.tailQuantile = tailQuantile;
         }
 
         void allocate() {
@@ -101,23 +174,63 @@ public class LoadBalancer {
         }
 
         void release(boolean success, double searchTime) {
+            deallocate();
+            if (success)
+                updateSearchTime(searchTime);
+            failureRate = ((success ? 0 : 1) + (FAILURE_DECAY_RATE - 1) * failureRate) / FAILURE_DECAY_RATE;
+        }
+
+        /** Releases a query which was cancelled, which is neither a failure nor a search time sample */
+        void cancel() {
+            deallocate();
+        }
+
+        private void deallocate() {
             allocations--;
             if (allocations < 0) {
                 log.warning("Double free of query target group detected");
                 allocations = 0;
             }
-            if (success) {
-                searchTime = Math.max(searchTime, MIN_QUERY_TIME);
-                double decayRate = Math.min(queries + MIN_LATENCY_DECAY_RATE, DEFAULT_LATENCY_DECAY_RATE);
-                averageSearchTime = (searchTime + (decayRate - 1) * averageSearchTime) / decayRate;
-                queries++;
-            }
+        }
+
+        private void updateSearchTime(double searchTime) {
+            searchTime = Math.max(searchTime, MIN_QUERY_TIME);
+            double decayRate = Math.min(queries + MIN_LATENCY_DECAY_RATE, DEFAULT_LATENCY_DECAY_RATE);
+            averageSearchTime = (searchTime + (decayRate - 1) * averageSearchTime) / decayRate;
+            updateTailSearchTime(searchTime);
+            queries++;
+        }
+
+        /**
+         * Moves the tail estimate towards the tail quantile of the observed search times,
+         * in steps proportional to the average search time, such that it settles where
+         * the given quantile of search times are below it.
+         */
+        private void updateTailSearchTime(double searchTime) {
+            double step = TAIL_ESTIMATE_STEP * averageSearchTime;
+            if (searchTime > tailSearchTime)
+                tailSearchTime += step * tailQuantile;
+            else
+                tailSearchTime -= step * (1 - tailQuantile);
+            tailSearchTime = Math.max(tailSearchTime, MIN_QUERY_TIME);
         }
 
         double averageSearchTime() {
             return averageSearchTime;
         }
 
+        double tailSearchTime() {
+            return tailSearchTime;
+        }
+
+        double failureRate() {
+            return failureRate;
+        }
+
+        int allocations() {
+            return allocations;
+        }
+
         double averageSearchTimeInverse() {
             return 1.0 / averageSearchTime;
         }
@@ -130,6 +243,11 @@ public class LoadBalancer {
             this.queries = queries;
             this.averageSearchTime = averageSearchTime;
         }
+
+        void setQueryStatistics(long queries, double averageSearchTime, double tailSearchTime) {
+            setQueryStatistics(queries, averageSearchTime);
+            this.tailSearchTime = tailSearchTime;
+        }
     }
 
     private interface GroupScheduler {
@@ -254,4 +372,87 @@ public class LoadBalancer {
             return selectGroup(needle, false, rejectedGroups);
         }
     }
+
+    /**
+     * Selects groups by the power of two choices: Two random candidate groups are picked, and the one with the
+     * lowest expected cost is used. The cost of a group is its average plus tail search time, scaled by the number
+     * of queries currently in flight to it, and by its recent failure rate.
+     *
+     * Groups whose tail search time is much higher than that of the best group are backed off from, such that
+     * they are only used for a small fraction of probe queries until their latency recovers. Probe queries are
+     * sent to a backed off group directly, without comparing its cost to other groups, such that it keeps
+     * getting the queries needed to bring its search time estimates up to date.
+     * Groups without sufficient coverage are only used if no group has sufficient coverage.
+     */
+    static class LatencyAwareScheduler implements GroupScheduler {
+
+        /** The weight of the tail search time relative to the average search time when estimating cost */
+        private static final double TAIL_WEIGHT = 0.5;
+        /** Groups with a tail search time larger than this factor times the best are backed off from */
+        private static final double BACKOFF_FACTOR = 3.0;
+        /** The fraction of queries which are sent to groups which are backed off from, as probes */
+        private static final double PROBE_FRACTION = 0.02;
+
+        private final Random random;
+        private final List<GroupStatus> scoreboard;
+        private final List<GroupStatus> candidates = new ArrayList<>();
+        private final List<GroupStatus> backedOff = new ArrayList<>();
+
+        public LatencyAwareScheduler(Random random, List<GroupStatus> scoreboard) {
+            this.random = random;
+            this.scoreboard = scoreboard;
+        }
+
+        @Override
+        public Optional<GroupStatus> takeNextGroup(Set<Integer> rejectedGroups) {
+            collectCandidates(true, rejectedGroups);
+            if (candidates.isEmpty()) // fallback - any coverage better than none
+                collectCandidates(false, rejectedGroups);
+            if (candidates.isEmpty()) return Optional.empty();
+
+            boolean probe = random.nextDouble() < PROBE_FRACTION;
+            removeBackedOff();
+            if (probe && ! backedOff.isEmpty())
+                return Optional.of(backedOff.get(random.nextInt(backedOff.size())));
+            if (candidates.size() == 1) return Optional.of(candidates.get(0));
+
+            int first = random.nextInt(candidates.size());
+            int second = random.nextInt(candidates.size() - 1);
+            if (second >= first)
+                second++;
+            GroupStatus a = candidates.get(first);
+            GroupStatus b = candidates.get(second);
+            return Optional.of(cost(a) <= cost(b) ? a : b);
+        }
+
+        private void collectCandidates(boolean requireCoverage, Set<Integer> rejected) {
+            candidates.clear();
+            for (GroupStatus gs : scoreboard) {
+                if (rejected != null && rejected.contains(gs.group.id())) continue;
+                if (requireCoverage && ! gs.group.hasSufficientCoverage()) continue;
+                candidates.add(gs);
+            }
+        }
+
+        /** Moves the candidates which are backed off from to the backedOff list */
+        private void removeBackedOff() {
+            backedOff.clear();
+            double bestTail = Double.MAX_VALUE;
+            for (GroupStatus gs : candidates)
+                bestTail = Math.min(bestTail, gs.tailSearchTime());
+            double limit = bestTail * BACKOFF_FACTOR;
+            for (GroupStatus gs : candidates) {
+                if (gs.tailSearchTime() > limit)
+                    backedOff.add(gs);
+            }
+            candidates.removeAll(backedOff);
+        }
+
+        static double cost(GroupStatus gs) {
+            double latency = gs.averageSearchTime() + TAIL_WEIGHT * gs.tailSearchTime();
+            return latency * (1 + gs.allocations()) / (1 - Math.min(gs.failureRate(), 0.9));
+        }
+
+    }
+
 }
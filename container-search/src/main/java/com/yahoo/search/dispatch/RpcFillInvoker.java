@@ -53,8 +53,7 @@ public class RpcFillInvoker extends FillInvoker {
     protected void sendFillRequest(Result result, String summaryClass) {
         ListMap<Integer, FastHit> hitsByNode = hitsByNode(result);
 
-        CompressionType compression = CompressionType
-                .valueOf(result.getQuery().properties().getString(RpcResourcePool.dispatchCompression, "LZ4").toUpperCase());
+        CompressionType compression = requestedCompression(result.getQuery());
 
         if (result.getQuery().getTraceLevel() >= 3)
             result.getQuery().trace("Sending " + hitsByNode.size() + " summary fetch RPC requests", 3);
@@ -65,6 +64,12 @@ public class RpcFillInvoker extends FillInvoker {
         }
     }
 
+    /** Returns the compression requested by the query: NONE if so requested, and LZ4 otherwise */
+    static CompressionType requestedCompression(Query query) {
+        String requested = query.properties().getString(RpcResourcePool.dispatchCompression, "LZ4");
+        return requested.equalsIgnoreCase(CompressionType.NONE.name()) ? CompressionType.NONE : CompressionType.LZ4;
+    }
+
     @Override
     protected void getFillResults(Result result, String summaryClass) {
         try {
@@ -112,7 +117,7 @@ public class RpcFillInvoker extends FillInvoker {
         byte[] serializedSlime = BinaryFormat
                 .encode(toSlime(rankProfile, summaryClass, query.getModel().getDocumentDb(), query.getSessionId(), hits));
         double timeoutSeconds = ((double) query.getTimeLeft() - 3.0) / 1000.0;
-        Compressor.Compression compressionResult = resourcePool.compressor().compress(compression, serializedSlime);
+        Compressor.Compression compressionResult = resourcePool.requestCompressor().compress(compression, serializedSlime);
         resourcePool.client().getDocsums(hits, node, compressionResult.type(), serializedSlime.length, compressionResult.data(),
                 responseReceiver, timeoutSeconds);
     }
@@ -2,6 +2,7 @@
 package com.yahoo.search.dispatch;
 
 import com.google.common.collect.ImmutableMap;
+import com.yahoo.compress.CompressionType;
 import com.yahoo.compress.Compressor;
 import com.yahoo.prelude.fastsearch.DocumentDatabase;
 import com.yahoo.prelude.fastsearch.VespaBackEndSearcher;
@@ -25,7 +26,12 @@ public class RpcResourcePool {
     /** Unless turned off this will fill summaries by dispatching directly to search nodes over RPC when possible */
     private final static CompoundName dispatchSummaries = new CompoundName("dispatch.summaries");
 
-    private final Compressor compressor = new Compressor();
+    /** Requests smaller than this are never compressed */
+    private static final int requestCompressionMinSize = 512;
+
+    /** Compresses requests using fast LZ4, and decompresses responses */
+    private final Compressor compressor = new Compressor(CompressionType.LZ4, 5, 0.95, 0);
+    private final AdaptiveCompressor requestCompressor = new AdaptiveCompressor(compressor, requestCompressionMinSize);
     private final Client client;
 
     /** Connections to the search nodes this talks to, indexed by node id ("partid") */
@@ -68,6 +74,11 @@ public class RpcResourcePool {
         return compressor;
     }
 
+    /** Returns the compressor deciding whether and how to compress requests */
+    AdaptiveCompressor requestCompressor() {
+        return requestCompressor;
+    }
+
     public Client client() {
         return client;
     }
@@ -11,8 +11,6 @@ import com.yahoo.data.JsonProducer;
 import com.yahoo.data.access.Inspectable;
 import com.yahoo.data.access.Inspector;
 import com.yahoo.data.access.Type;
-import com.yahoo.data.access.simple.JsonRender;
-import com.yahoo.data.access.simple.Value;
 import com.yahoo.document.datatypes.FieldValue;
 import com.yahoo.document.datatypes.StringFieldValue;
 import com.yahoo.document.datatypes.TensorFieldValue;
@@ -745,32 +743,91 @@ public class JsonRenderer extends AsynchronousSectionedRenderer<Result> {
             return true;
         }
 
-        private static Inspector wrapAsMap(Inspector data) {
-            if (data.type() != Type.ARRAY) return null;
-            if (data.entryCount() == 0) return null;
-            Value.ObjectValue map = new Value.ObjectValue();
+        /** Returns whether this is an array of key/value objects with string keys, which is rendered as a JSON object */
+        private static boolean isMap(Inspector data) {
+            if (data.type() != Type.ARRAY) return false;
+            if (data.entryCount() == 0) return false;
             for (int i = 0; i < data.entryCount(); i++) {
                 Inspector obj = data.entry(i);
-                if (obj.type() != Type.OBJECT) return null;
-                if (obj.fieldCount() != 2) return null;
-                Inspector key = obj.field("key");
-                Inspector value = obj.field("value");
-                if (key.type() != Type.STRING) return null;
-                if (! value.valid()) return null;
-                map.put(key.asString(), value);
+                if (obj.type() != Type.OBJECT) return false;
+                if (obj.fieldCount() != 2) return false;
+                if (obj.field("key").type() != Type.STRING) return false;
+                if ( ! obj.field("value").valid()) return false;
             }
-            return map;
+            return true;
         }
 
+        /**
+         * Renders structured data directly to the generator. String values are written from the utf-8 bytes
+         * held by the inspector, such that summary data received from content nodes is not copied.
+         */
         private void renderInspector(Inspector data) throws IOException {
-            StringBuilder intermediate = new StringBuilder();
-            Inspector asMap = wrapAsMap(data);
-            if (asMap != null) {
-                JsonRender.render(asMap, intermediate, true);
+            if (isMap(data)) {
+                generator.writeStartObject();
+                for (int i = 0; i < data.entryCount(); i++) {
+                    Inspector entry = data.entry(i);
+                    generator.writeFieldName(entry.field("key").asString());
+                    renderInspectorValue(entry.field("value"));
+                }
+                generator.writeEndObject();
             } else {
-                JsonRender.render(data, intermediate, true);
+                renderInspectorValue(data);
+            }
+        }
+
+        private void renderInspectorValue(Inspector data) throws IOException {
+            switch (data.type()) {
+                case EMPTY:
+                    generator.writeNull();
+                    break;
+                case BOOL:
+                    generator.writeBoolean(data.asBool());
+                    break;
+                case LONG:
+                    generator.writeNumber(data.asLong());
+                    break;
+                case DOUBLE:
+                    if (Double.isFinite(data.asDouble()))
+                        generator.writeNumber(data.asDouble());
+                    else
+                        generator.writeNull();
+                    break;
+                case STRING:
+                    byte[] utf8 = data.asUtf8();
+                    generator.writeUTF8String(utf8, 0, utf8.length);
+                    break;
+                case DATA:
+                    generator.writeString(toHexString(data.asData()));
+                    break;
+                case ARRAY:
+                    generator.writeStartArray();
+                    for (int i = 0; i < data.entryCount(); i++)
+                        renderInspectorValue(data.entry(i));
+                    generator.writeEndArray();
+                    break;
+                case OBJECT:
+                    generator.writeStartObject();
+                    for (Map.Entry<String, Inspector> field : data.fields()) {
+                        generator.writeFieldName(field.getKey());
+                        renderInspectorValue(field.getValue());
+                    }
+                    generator.writeEndObject();
+                    break;
+            }
+        }
+
+        private static final char[] hexDigits = "0123456789ABCDEF".toCharArray();
+
+        /** Returns data as a hex string on the form rendered by {@link com.yahoo.data.access.simple.JsonRender} */
+        private static String toHexString(byte[] data) {
+            char[] hex = new char[2 + 2 * data.length];
+            hex[0] = '0';
+            hex[1] = 'x';
+            for (int i = 0; i < data.length; i++) {
+                hex[2 + 2 * i] = hexDigits[(data[i] >> 4) & 0xf];
+                hex[3 + 2 * i] = hexDigits[data[i] & 0xf];
             }
-            generator.writeRawValue(intermediate.toString());
+            return new String(hex);
         }
 
         private void renderFieldContents(Object field) throws IOException {
@@ -24,6 +24,7 @@ import java.nio.ByteBuffer;
 import java.util.logging.Logger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -210,6 +211,46 @@ public class BackendTestCase {
         }
         BackendStatistics stats = backend.getStatistics();
         assertEquals(1, stats.totalConnections());
+        assertEquals(0, stats.queuedWrites);
+        assertEquals(1, stats.createdConnections);
+        assertEquals(1, stats.encodedPackets);
+        assertEquals(1, stats.decodedPackets);
+
+        assertTrue(backend.probeConnection());
+        stats = backend.getStatistics();
+        assertEquals(1, stats.reusedConnections);
+        assertEquals(0.5, stats.connectionReuseRate(), 0.0001);
+        channel.close();
+
+        FS4Channel queryChannel = backend.openChannel();
+        assertEquals(1, backend.getStatistics().activeChannels);
+        queryChannel.close();
+        assertEquals(0, backend.getStatistics().activeChannels);
+    }
+
+    @Test
+    public void requireThatPacketsAreRejectedWhenMaxInflightChannelsIsReached() throws IOException {
+        ListenerPool listenerPool = new ListenerPool("test", 1);
+        Backend limitedBackend = new Backend(server.host.getHostString(), server.host.getPort(), "container.0",
+                                             listenerPool, new ConnectionPool(), 1);
+        FS4Channel first = limitedBackend.openChannel();
+        FS4Channel second = limitedBackend.openChannel();
+        Query q = new Query("/?query=a");
+
+        assertTrue(limitedBackend.sendPacket(QueryPacket.create("container.0", q), first.getChannelId()));
+        assertFalse(limitedBackend.sendPacket(QueryPacket.create("container.0", q), second.getChannelId()));
+        assertEquals(1, limitedBackend.getStatistics().rejectedPackets);
+        assertTrue("Later packets on an admitted channel are not rejected",
+                   limitedBackend.sendPacket(QueryPacket.create("container.0", q), first.getChannelId()));
+        assertEquals(1, limitedBackend.getStatistics().rejectedPackets);
+
+        first.close();
+        assertTrue("Closing a channel makes room for another",
+                   limitedBackend.sendPacket(QueryPacket.create("container.0", q), second.getChannelId()));
+        second.close();
+        limitedBackend.shutdown();
+        limitedBackend.close();
+        listenerPool.close();
     }
 
 }
@@ -2,6 +2,7 @@
 package com.yahoo.prelude.fastsearch.test;
 
 import com.yahoo.config.subscription.ConfigGetter;
+import com.yahoo.data.access.Inspector;
 import com.yahoo.prelude.fastsearch.DocumentdbInfoConfig;
 import com.yahoo.prelude.fastsearch.ByteField;
 import com.yahoo.prelude.fastsearch.DataField;
@@ -19,6 +20,8 @@ import org.junit.Test;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Collections;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -75,6 +78,25 @@ public class DocsumDefinitionTestCase {
         assertEquals("index:null/0/" + asHexString(hit.getGlobalId()), hit.getId().toString());
     }
 
+    @Test
+    public void testFieldsAreConvertedOnlyWhenAccessed() {
+        CountingStringField topic = new CountingStringField("TOPIC");
+        CountingStringField title = new CountingStringField("TITLE");
+        DocsumDefinitionSet set = new DocsumDefinitionSet(Collections.singletonList(
+                new DocsumDefinition("default", Arrays.asList(topic, title))));
+        FastHit hit = new FastHit();
+
+        set.lazyDecode("default", makeDocsum(), hit);
+        assertEquals(0, topic.conversions);
+        assertEquals(0, title.conversions);
+
+        assertEquals("Arts/Celebrities/Madonna", hit.getField("TOPIC"));
+        assertEquals("Arts/Celebrities/Madonna", hit.getField("TOPIC"));
+        assertNull(hit.getField("WORDS"));
+        assertEquals("Converted once", 1, topic.conversions);
+        assertEquals("Never accessed", 0, title.conversions);
+    }
+
     private static String asHexString(GlobalId gid) {
         StringBuilder sb = new StringBuilder();
         byte[] rawGid = gid.getRawId();
@@ -115,4 +137,20 @@ public class DocsumDefinitionTestCase {
         return new DocsumDefinitionSet(config.documentdb(0));
     }
 
+    private static class CountingStringField extends StringField {
+
+        int conversions = 0;
+
+        CountingStringField(String name) {
+            super(name);
+        }
+
+        @Override
+        public Object convert(Inspector value) {
+            conversions++;
+            return super.convert(value);
+        }
+
+    }
+
 }
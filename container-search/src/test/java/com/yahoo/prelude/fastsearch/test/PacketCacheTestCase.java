@@ -9,6 +9,7 @@ import com.yahoo.search.Query;
 import com.yahoo.prelude.fastsearch.CacheKey;
 import com.yahoo.prelude.fastsearch.PacketCache;
 import com.yahoo.prelude.fastsearch.PacketWrapper;
+import com.yahoo.prelude.fastsearch.SegmentedPacketCache;
 import org.junit.Test;
 
 import java.nio.ByteBuffer;
@@ -78,6 +79,7 @@ public class PacketCacheTestCase {
         assertNotNull(cache.get(key2));
         assertNotNull(cache.get(key3));
         assertEquals(keysz*2 + length*2, cache.totalPacketSize());
+        assertEquals(1, cache.evictionCount());
     }
 
     // more control that delete code does not change internal access order
@@ -171,6 +173,35 @@ public class PacketCacheTestCase {
         assertEquals(Integer.MAX_VALUE, cache.getByteCapacity());
     }
 
+    @Test
+    public void testSegmentedCache() throws BufferTooSmallException {
+        SegmentedPacketCache cache = new SegmentedPacketCache(64, 0, 5 * 3600, 10);
+        assertEquals(16, cache.segmentCount());
+        assertEquals(64, cache.getCapacity());
+
+        cache.put(key1, createCacheEntry(key1), System.currentTimeMillis());
+        cache.put(key2, createCacheEntry(key2), System.currentTimeMillis() - 10 * 3600 * 1000);
+        assertNotNull(cache.get(key1, System.currentTimeMillis()));
+        assertNull(cache.get(key2, System.currentTimeMillis()));
+        assertNull(cache.get(key3, System.currentTimeMillis()));
+        assertNotNull(cache.peek(key1, System.currentTimeMillis()));
+        assertNull(cache.peek(key3, System.currentTimeMillis()));
+        assertEquals(1, cache.hitCount());
+        assertEquals(2, cache.missCount());
+        assertEquals(key1.byteSize() + length, cache.totalPacketSize());
+
+        cache.clear();
+        assertNull(cache.get(key1, System.currentTimeMillis()));
+        assertEquals(0, cache.totalPacketSize());
+    }
+
+    @Test
+    public void testSegmentedCacheKeepsSegmentsAtLeastOneMegabyte() {
+        assertEquals(4, new SegmentedPacketCache(5, 0, 5 * 3600, 16).segmentCount());
+        assertEquals(1, new SegmentedPacketCache(0, 1024, 5 * 3600, 16).segmentCount());
+        assertEquals(Integer.MAX_VALUE, new SegmentedPacketCache(4096, 5 * 3600).getByteCapacity());
+    }
+
     /** Creates a 64-byte packet in an array wrapped in a PacketWrapper */
     private PacketWrapper createCacheEntry(CacheKey key) throws BufferTooSmallException {
         ByteBuffer data = ByteBuffer.allocate(length);
@@ -0,0 +1,164 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.cache.test;
+
+import com.yahoo.component.chain.Chain;
+import com.yahoo.metrics.simple.MetricReceiver;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.Searcher;
+import com.yahoo.search.cache.ResultCacheSearcher;
+import com.yahoo.search.config.ResultCacheConfig;
+import com.yahoo.search.result.ErrorMessage;
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.searchchain.Execution;
+import com.yahoo.test.ManualClock;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author bratseth
+ */
+public class ResultCacheSearcherTestCase {
+
+    @Test
+    public void testCaching() {
+        ManualClock clock = new ManualClock();
+        MetricReceiver.MockReceiver metric = new MetricReceiver.MockReceiver();
+        ResultCacheSearcher cacheSearcher = new ResultCacheSearcher(config(), metric, clock);
+        BackendSearcher backend = new BackendSearcher();
+        Chain<Searcher> chain = new Chain<>(cacheSearcher, backend);
+
+        Result result = search("?query=foo&restrict=music", chain);
+        assertEquals(1, backend.searches);
+        assertEquals("Filled before caching", 1, backend.fills);
+        assertEquals("value of foo", result.hits().get(0).getField("title"));
+
+        result = search("?query=foo&restrict=music", chain);
+        assertEquals("Served from the cache", 1, backend.searches);
+        assertEquals("value of foo", result.hits().get(0).getField("title"));
+        assertEquals("Not filled again", 1, backend.fills);
+
+        result.hits().get(0).setField("title", "modified");
+        assertEquals("Modifying a served result does not change the cache",
+                     "value of foo", search("?query=foo&restrict=music", chain).hits().get(0).getField("title"));
+
+        search("?query=bar&restrict=music", chain);
+        search("?query=foo&restrict=music&hits=5", chain);
+        search("?query=foo&restrict=music&ranking=other", chain);
+        search("?query=foo&restrict=music&ranking.matchPhase.attribute=a&ranking.matchPhase.maxHits=100", chain);
+        search("?query=foo&restrict=music&ranking.matchPhase.attribute=a&ranking.matchPhase.maxHits=100" +
+               "&ranking.matchPhase.diversity.attribute=b", chain);
+        search("?query=foo&restrict=music&ranking.listFeatures=true", chain);
+        search("?query=foo&restrict=music&myCustomProperty=1", chain);
+        assertEquals("Different queries are not served from the cache", 8, backend.searches);
+
+        search("?query=foo&restrict=music&timeout=5", chain);
+        assertEquals("Timeout is not part of the key", 8, backend.searches);
+
+        search("?query=foo&restrict=music&nocache", chain);
+        assertEquals(9, backend.searches);
+
+        assertEquals(3, cacheSearcher.cache().get().hitCount());
+        assertEquals(8, cacheSearcher.cache().get().missCount());
+        assertEquals(3, metric.getSnapshot().getMapForMetric("resultCacheHits").values().iterator().next().getCount());
+    }
+
+    @Test
+    public void testExpiryAndInvalidation() {
+        ManualClock clock = new ManualClock();
+        ResultCacheSearcher cacheSearcher = new ResultCacheSearcher(config(), new MetricReceiver.MockReceiver(), clock);
+        BackendSearcher backend = new BackendSearcher();
+        Chain<Searcher> chain = new Chain<>(cacheSearcher, backend);
+
+        search("?query=foo&restrict=music", chain);
+        search("?query=foo&restrict=books", chain);
+        search("?query=foo", chain);
+        assertEquals(3, backend.searches);
+
+        clock.advance(Duration.ofSeconds(20));
+        search("?query=foo&restrict=music", chain);
+        search("?query=foo&restrict=books", chain);
+        search("?query=foo", chain);
+        assertEquals("Results searching 'music' and all types expired by the music window", 5, backend.searches);
+
+        clock.advance(Duration.ofSeconds(1));
+        cacheSearcher.cache().get().invalidate("books");
+        clock.advance(Duration.ofSeconds(1));
+        search("?query=foo&restrict=music", chain);
+        search("?query=foo&restrict=books", chain);
+        search("?query=foo", chain);
+        assertEquals("Results searching 'books' and all types are invalidated", 7, backend.searches);
+
+        clock.advance(Duration.ofSeconds(61));
+        search("?query=foo&restrict=books", chain);
+        assertEquals("Expired by the default max age", 8, backend.searches);
+    }
+
+    @Test
+    public void testErrorsAreNotCached() {
+        BackendSearcher backend = new BackendSearcher();
+        Chain<Searcher> chain = new Chain<>(new ResultCacheSearcher(config(), new MetricReceiver.MockReceiver(), new ManualClock()),
+                                            backend);
+        search("?query=foo&fail", chain);
+        search("?query=foo&fail", chain);
+        assertEquals(2, backend.searches);
+    }
+
+    @Test
+    public void testDisabledCache() {
+        ResultCacheSearcher cacheSearcher = new ResultCacheSearcher(new ResultCacheConfig(new ResultCacheConfig.Builder().maxSizeMegaBytes(0)),
+                                                                    new MetricReceiver.MockReceiver());
+        BackendSearcher backend = new BackendSearcher();
+        Chain<Searcher> chain = new Chain<>(cacheSearcher, backend);
+        search("?query=foo", chain);
+        search("?query=foo", chain);
+        assertEquals(2, backend.searches);
+        assertTrue( ! cacheSearcher.cache().isPresent());
+    }
+
+    private ResultCacheConfig config() {
+        ResultCacheConfig.Builder builder = new ResultCacheConfig.Builder();
+        builder.maxSizeMegaBytes(10);
+        builder.maxAge(60);
+        builder.documentType(new ResultCacheConfig.DocumentType.Builder().name("music").maxAge(10));
+        return new ResultCacheConfig(builder);
+    }
+
+    private Result search(String request, Chain<Searcher> chain) {
+        return new Execution(chain, Execution.Context.createContextStub()).search(new Query(request));
+    }
+
+    private static class BackendSearcher extends Searcher {
+
+        int searches = 0;
+        int fills = 0;
+
+        @Override
+        public Result search(Query query, Execution execution) {
+            searches++;
+            if (query.properties().getBoolean("fail"))
+                return new Result(query, ErrorMessage.createBackendCommunicationError("Failed"));
+            Result result = new Result(query);
+            Hit hit = new Hit("hit:1");
+            hit.setFillable();
+            result.hits().add(hit);
+            result.setTotalHitCount(1);
+            return result;
+        }
+
+        @Override
+        public void fill(Result result, String summaryClass, Execution execution) {
+            fills++;
+            for (Hit hit : result.hits()) {
+                hit.setField("title", "value of " + result.getQuery().getModel().getQueryString());
+                hit.setFilled(summaryClass);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,71 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.compress.CompressionType;
+import com.yahoo.compress.Compressor;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author bratseth
+ */
+public class AdaptiveCompressorTest {
+
+    private final AdaptiveCompressor compressor = new AdaptiveCompressor(new Compressor(CompressionType.LZ4, 5, 0.95, 0), 100);
+
+    @Test
+    public void testSmallPayloadsAreNotCompressed() {
+        assertEquals(CompressionType.INCOMPRESSIBLE, compressor.compress(CompressionType.LZ4, compressible(99)).type());
+        assertEquals(CompressionType.LZ4, compressor.compress(CompressionType.LZ4, compressible(100)).type());
+    }
+
+    @Test
+    public void testNoCompressionIsRespected() {
+        assertEquals(CompressionType.NONE, compressor.compress(CompressionType.NONE, compressible(1000)).type());
+        assertEquals(0, compressor.compressedCount());
+    }
+
+    @Test
+    public void testCompressionIsSkippedAfterIneffectiveAttempts() {
+        // First attempt fails: Skip the next one
+        assertEquals(CompressionType.INCOMPRESSIBLE, compressor.compress(CompressionType.LZ4, incompressible(1000)).type());
+        assertEquals(CompressionType.INCOMPRESSIBLE, compressor.compress(CompressionType.LZ4, compressible(1000)).type());
+
+        // Second attempt fails: Skip the next two
+        assertEquals(CompressionType.INCOMPRESSIBLE, compressor.compress(CompressionType.LZ4, incompressible(1000)).type());
+        assertEquals(CompressionType.INCOMPRESSIBLE, compressor.compress(CompressionType.LZ4, compressible(1000)).type());
+        assertEquals(CompressionType.INCOMPRESSIBLE, compressor.compress(CompressionType.LZ4, compressible(1000)).type());
+
+        // Third attempt succeeds: Compress each following payload
+        assertEquals(CompressionType.LZ4, compressor.compress(CompressionType.LZ4, compressible(1000)).type());
+        assertEquals(CompressionType.LZ4, compressor.compress(CompressionType.LZ4, compressible(1000)).type());
+        assertEquals(2, compressor.compressedCount());
+        assertEquals(5, compressor.uncompressedCount());
+    }
+
+    @Test
+    public void testCompressedPayloadCanBeDecompressed() {
+        byte[] data = compressible(1000);
+        Compressor.Compression compression = compressor.compress(CompressionType.LZ4, data);
+        assertEquals(CompressionType.LZ4, compression.type());
+        byte[] decompressed = compressor.compressor().decompress(compression);
+        assertEquals(new String(data), new String(decompressed));
+    }
+
+    private byte[] compressible(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++)
+            data[i] = (byte)('a' + i % 4);
+        return data;
+    }
+
+    private byte[] incompressible(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+}
@@ -1,6 +1,7 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.search.dispatch;
 
+import com.yahoo.compress.CompressionType;
 import com.yahoo.prelude.fastsearch.DocsumDefinition;
 import com.yahoo.prelude.fastsearch.DocsumDefinitionSet;
 import com.yahoo.prelude.fastsearch.DocsumField;
@@ -65,6 +66,46 @@ public class FillTestCase {
         assertEquals(4L, result.hits().get("hit:4").getField("field2"));
     }
 
+    @Test
+    public void testConcurrentFills() {
+        Map<Integer, Client.NodeConnection> nodes = new HashMap<>();
+        nodes.put(0, client.createConnection("host0", 123));
+        nodes.put(1, client.createConnection("host1", 123));
+        RpcResourcePool rpcResourcePool = new RpcResourcePool(client, nodes);
+
+        Result result1 = new Result(new Query());
+        result1.hits().add(createHit(0, 0));
+        result1.hits().add(createHit(1, 1));
+        Result result2 = new Result(new Query());
+        result2.hits().add(createHit(1, 2));
+
+        client.setDocsumReponse("host0", 0, "summaryClass1", map("field1", "s.0.0", "field2", 0));
+        client.setDocsumReponse("host1", 1, "summaryClass1", map("field1", "s.1.1", "field2", 1));
+        client.setDocsumReponse("host1", 2, "summaryClass1", map("field1", "s.1.2", "field2", 2));
+
+        FillInvoker invoker1 = rpcResourcePool.getFillInvoker(db());
+        FillInvoker invoker2 = rpcResourcePool.getFillInvoker(db());
+        invoker1.startFill(result1, "summaryClass1");
+        invoker2.startFill(result2, "summaryClass1");
+        invoker2.awaitFill(result2, "summaryClass1");
+        invoker1.awaitFill(result1, "summaryClass1");
+
+        assertEquals("s.0.0", result1.hits().get("hit:0").getField("field1").toString());
+        assertEquals("s.1.1", result1.hits().get("hit:1").getField("field1").toString());
+        assertEquals("s.1.2", result2.hits().get("hit:2").getField("field1").toString());
+        assertNull(result1.hits().getError());
+        assertNull(result2.hits().getError());
+    }
+
+    @Test
+    public void testRequestedCompression() {
+        assertEquals(CompressionType.LZ4, RpcFillInvoker.requestedCompression(new Query()));
+        assertEquals(CompressionType.NONE, RpcFillInvoker.requestedCompression(new Query("?dispatch.compression=none")));
+        assertEquals(CompressionType.LZ4, RpcFillInvoker.requestedCompression(new Query("?dispatch.compression=lz4")));
+        assertEquals(CompressionType.LZ4, RpcFillInvoker.requestedCompression(new Query("?dispatch.compression=incompressible")));
+        assertEquals(CompressionType.LZ4, RpcFillInvoker.requestedCompression(new Query("?dispatch.compression=foo")));
+    }
+
     @Test
     public void testEmptyHits() {
         Map<Integer, Client.NodeConnection> nodes = new HashMap<>();
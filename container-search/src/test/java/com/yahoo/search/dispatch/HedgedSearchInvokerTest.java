@@ -0,0 +1,118 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.fs4.QueryPacket;
+import com.yahoo.prelude.fastsearch.CacheKey;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.searchchain.Execution;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author ollivir
+ */
+public class HedgedSearchInvokerTest {
+
+    @Test
+    public void requireThatHedgeIsNotSentWhenPrimaryRespondsInTime() throws IOException {
+        HedgedSearchInvoker.Statistics statistics = new HedgedSearchInvoker.Statistics();
+        TestInvoker primary = new TestInvoker("primary", true);
+        TestInvoker hedge = new TestInvoker("hedge", true);
+        SearchInvoker invoker = new HedgedSearchInvoker(primary, 1000, () -> Optional.of(hedge), statistics);
+
+        Result result = invoker.search(new Query(), null, null, null);
+
+        assertEquals("primary", result.hits().get(0).getId().toString());
+        assertFalse(hedge.sent);
+        assertEquals(0, statistics.fired());
+        invoker.close();
+        assertTrue(primary.released);
+    }
+
+    @Test
+    public void requireThatHedgeIsUsedWhenItRespondsFirst() throws IOException {
+        HedgedSearchInvoker.Statistics statistics = new HedgedSearchInvoker.Statistics();
+        TestInvoker primary = new TestInvoker("primary", false);
+        TestInvoker hedge = new TestInvoker("hedge", true);
+        AtomicBoolean primaryTornDown = new AtomicBoolean(false);
+        AtomicBoolean primaryCancelled = new AtomicBoolean(false);
+        primary.teardown((success, time) -> primaryTornDown.set(true));
+        primary.cancellation(() -> primaryCancelled.set(true));
+        SearchInvoker invoker = new HedgedSearchInvoker(primary, 1, () -> Optional.of(hedge), statistics);
+
+        Result result = invoker.search(new Query(), null, null, null);
+
+        assertEquals("hedge", result.hits().get(0).getId().toString());
+        assertTrue(hedge.sent);
+        assertTrue("The slow primary is cancelled", primary.released);
+        assertTrue(primaryCancelled.get());
+        assertFalse("The cancelled primary is not released as a failure", primaryTornDown.get());
+        assertEquals(1, statistics.fired());
+        assertEquals(1, statistics.won());
+        assertEquals(0, statistics.wasted());
+        invoker.close();
+        assertTrue(hedge.released);
+    }
+
+    @Test
+    public void requireThatPrimaryIsUsedWhenNoHedgeIsAvailable() throws IOException {
+        HedgedSearchInvoker.Statistics statistics = new HedgedSearchInvoker.Statistics();
+        TestInvoker primary = new TestInvoker("primary", false);
+        Query query = new Query();
+        query.setTimeout(50);
+        SearchInvoker invoker = new HedgedSearchInvoker(primary, 1, Optional::empty, statistics);
+
+        Result result = invoker.search(query, null, null, null);
+
+        assertEquals("primary", result.hits().get(0).getId().toString());
+        assertEquals(0, statistics.fired());
+        invoker.close();
+        assertTrue(primary.released);
+    }
+
+    private static class TestInvoker extends SearchInvoker {
+
+        private final String id;
+        private final boolean respond;
+        private Query query;
+        boolean sent = false;
+        boolean released = false;
+
+        TestInvoker(String id, boolean respond) {
+            super(Optional.empty());
+            this.id = id;
+            this.respond = respond;
+        }
+
+        @Override
+        protected void sendSearchRequest(Query query, QueryPacket queryPacket) {
+            this.query = query;
+            this.sent = true;
+            if (respond)
+                responseAvailable();
+        }
+
+        @Override
+        protected Result getSearchResult(CacheKey cacheKey, Execution execution) {
+            Result result = new Result(query);
+            result.hits().add(new Hit(id));
+            return result;
+        }
+
+        @Override
+        protected void release() {
+            released = true;
+        }
+
+    }
+
+}
@@ -3,9 +3,11 @@ package com.yahoo.search.dispatch;
 
 import com.yahoo.search.dispatch.LoadBalancer.AdaptiveScheduler;
 import com.yahoo.search.dispatch.LoadBalancer.GroupStatus;
+import com.yahoo.search.dispatch.LoadBalancer.LatencyAwareScheduler;
 import com.yahoo.search.dispatch.searchcluster.Group;
 import com.yahoo.search.dispatch.searchcluster.Node;
 import com.yahoo.search.dispatch.searchcluster.SearchCluster;
+import com.yahoo.vespa.config.search.DispatchConfig;
 import junit.framework.AssertionFailedError;
 import org.junit.Test;
 
@@ -156,16 +158,143 @@ public class LoadBalancerTest {
         assertThat(sched.takeNextGroup(null).get().groupId(), equalTo(4));
     }
 
+    @Test
+    public void requireTailSearchTimeTracksHighQuantile() {
+        GroupStatus gs = newGroupStatus(1);
+        gs.setQueryStatistics(0, 0.5, 0.5);
+        for (int i = 0; i < 20000; i++) {
+            updateSearchTime(gs, (i % 100) * 0.01);
+        }
+        assertThat(gs.averageSearchTime(), closeTo(0.495, 0.05));
+        assertThat(gs.tailSearchTime(), closeTo(0.98, 0.05));
+    }
+
+    @Test
+    public void requireThatFailuresAreTracked() {
+        GroupStatus gs = newGroupStatus(1);
+        for (int i = 0; i < 100; i++) {
+            gs.allocate();
+            gs.release(i % 2 == 0, 0.1);
+        }
+        assertThat(gs.failureRate(), closeTo(0.32, 0.01));
+    }
+
+    @Test
+    public void requireThatLatencyAwareSchedulerPrefersTheCheapestOfTwo() {
+        List<GroupStatus> scoreboard = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            GroupStatus gs = newGroupStatus(i);
+            gs.setQueryStatistics(100, 0.1 * (i + 1), 0.2 * (i + 1));
+            scoreboard.add(gs);
+        }
+        LatencyAwareScheduler sched = new LatencyAwareScheduler(new Random(1), scoreboard);
+        for (int i = 0; i < 100; i++) {
+            assertThat(sched.takeNextGroup(null).get().groupId(), equalTo(0));
+        }
+
+        // Enough queries in flight on the fast group makes the slow one cheaper
+        for (int i = 0; i < 3; i++)
+            scoreboard.get(0).allocate();
+        assertThat(sched.takeNextGroup(null).get().groupId(), equalTo(1));
+        assertThat(sched.takeNextGroup(Collections.singleton(1)).get().groupId(), equalTo(0));
+    }
+
+    @Test
+    public void requireThatLatencyAwareSchedulerBacksOffFromGroupsWithHighTailLatency() {
+        List<GroupStatus> scoreboard = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            GroupStatus gs = newGroupStatus(i);
+            gs.setQueryStatistics(100, 0.1, 0.2);
+            scoreboard.add(gs);
+        }
+        scoreboard.get(2).setQueryStatistics(100, 0.1, 1.0);
+        LatencyAwareScheduler sched = new LatencyAwareScheduler(new Random(1), scoreboard);
+
+        int[] selections = new int[3];
+        for (int i = 0; i < 1000; i++) {
+            GroupStatus gs = sched.takeNextGroup(null).get();
+            selections[gs.groupId()]++;
+        }
+        assertThat(selections[2] > 0, is(true));
+        assertThat(selections[2] < 40, is(true));
+        assertThat(selections[0] > 400, is(true));
+        assertThat(selections[1] > 400, is(true));
+    }
+
+    @Test
+    public void requireThatLatencyAwareSchedulerStopsBackingOffFromGroupsWhoseLatencyRecovers() {
+        List<GroupStatus> scoreboard = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            GroupStatus gs = newGroupStatus(i);
+            gs.setQueryStatistics(100, 0.1, 0.2);
+            scoreboard.add(gs);
+        }
+        scoreboard.get(2).setQueryStatistics(100, 0.1, 1.0);
+        LatencyAwareScheduler sched = new LatencyAwareScheduler(new Random(1), scoreboard);
+
+        // Probes go to the backed off group even though it is the most expensive, so its estimates recover
+        for (int i = 0; i < 500000; i++) {
+            updateSearchTime(sched.takeNextGroup(null).get(), 0.1);
+        }
+        double bestTail = Math.min(scoreboard.get(0).tailSearchTime(), scoreboard.get(1).tailSearchTime());
+        assertThat(scoreboard.get(2).tailSearchTime() < 3 * bestTail, is(true));
+    }
+
+    @Test
+    public void requireThatLatencyAwareSchedulerFallsBackToGroupsWithoutCoverage() {
+        List<GroupStatus> scoreboard = new ArrayList<>();
+        scoreboard.add(newGroupStatus(0, false));
+        scoreboard.add(newGroupStatus(1, true));
+        LatencyAwareScheduler sched = new LatencyAwareScheduler(new Random(1), scoreboard);
+        assertThat(sched.takeNextGroup(null).get().groupId(), equalTo(1));
+        assertThat(sched.takeNextGroup(Collections.singleton(1)).get().groupId(), equalTo(0));
+    }
+
     private static void updateSearchTime(GroupStatus gs, double time) {
         gs.allocate();
         gs.release(true, time);
     }
 
+    @Test
+    public void requireThatCancelledQueriesCountNeitherAsSearchTimeNorAsFailures() {
+        GroupStatus gs = newGroupStatus(1);
+        gs.setQueryStatistics(0, 0.1, 0.2);
+        for (int i = 0; i < 100; i++) {
+            gs.allocate();
+            gs.cancel();
+        }
+        assertThat(gs.allocations(), is(0));
+        assertThat(gs.failureRate(), is(0.0));
+        assertThat(gs.averageSearchTime(), is(0.1));
+        assertThat(gs.tailSearchTime(), is(0.2));
+    }
+
+    @Test
+    public void requireThatHedgeDelayIsTailLatencyOnceKnown() {
+        Node n1 = new Node(0, "test-node1", 0, 0);
+        Node n2 = new Node(1, "test-node2", 1, 1);
+        SearchCluster cluster = new SearchCluster("a", createDispatchConfig(n1, n2), null, 1, null);
+        LoadBalancer lb = new LoadBalancer(cluster, DispatchConfig.DistributionPolicy.ROUNDROBIN, 0.9);
+        Group group = cluster.orderedGroups().get(0);
+
+        assertThat(lb.hedgeDelay(group).isPresent(), is(false));
+        for (int i = 0; i < 1000; i++) {
+            Group taken = lb.takeGroup(null).get();
+            lb.releaseGroup(taken, true, 100.0);
+        }
+        assertThat(lb.hedgeDelay(group).isPresent(), is(true));
+        assertThat((double)lb.hedgeDelay(group).getAsLong(), closeTo(100.0, 10.0));
+    }
+
     private GroupStatus newGroupStatus(int id) {
+        return newGroupStatus(id, true);
+    }
+
+    private GroupStatus newGroupStatus(int id, boolean sufficientCoverage) {
         Group dummyGroup = new Group(id, Collections.emptyList()) {
             @Override
             public boolean hasSufficientCoverage() {
-                return true;
+                return sufficientCoverage;
             }
         };
         return new GroupStatus(dummyGroup);
@@ -66,7 +66,7 @@ public class MockClient implements Client {
             }
         }
         byte[] slimeBytes = BinaryFormat.encode(responseSlime);
-        Compressor.Compression compressionResult = compressor.compress(compression, slimeBytes);
+        Compressor.Compression compressionResult = compressor.compress(CompressionType.LZ4, slimeBytes);
         GetDocsumsResponse response = new GetDocsumsResponse(compressionResult.type().getCode(), slimeBytes.length,
                                                              compressionResult.data(), hitsContext);
         responseReceiver.receive(GetDocsumsResponseOrError.fromResponse(response));
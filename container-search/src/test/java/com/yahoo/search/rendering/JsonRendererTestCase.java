@@ -1145,6 +1145,55 @@ public class JsonRendererTestCase {
         assertEqualJson(expected, summary);
     }
 
+    @Test
+    public void testStructuredDataIsRenderedFromSlime() throws IOException, InterruptedException, ExecutionException {
+        String expected = "{\n"
+                + "    \"root\": {\n"
+                + "        \"children\": [\n"
+                + "            {\n"
+                + "                \"fields\": {\n"
+                + "                    \"structured\": {\n"
+                + "                        \"string\": \"bl\u00e5b\u00e6r \\\"quoted\\\"\",\n"
+                + "                        \"long\": 7,\n"
+                + "                        \"double\": 0.5,\n"
+                + "                        \"nan\": null,\n"
+                + "                        \"bool\": true,\n"
+                + "                        \"data\": \"0x01AB\",\n"
+                + "                        \"array\": [1, {\"nested\": \"value\"}]\n"
+                + "                    }\n"
+                + "                },\n"
+                + "                \"id\": \"StructuredData\",\n"
+                + "                \"relevance\": 1.0\n"
+                + "            }\n"
+                + "        ],\n"
+                + "        \"fields\": {\n"
+                + "            \"totalCount\": 1\n"
+                + "        },\n"
+                + "        \"id\": \"toplevel\",\n"
+                + "        \"relevance\": 1.0\n"
+                + "    }\n"
+                + "}\n";
+        Slime slime = new Slime();
+        Cursor struct = slime.setObject();
+        struct.setString("string", "bl\u00e5b\u00e6r \"quoted\"");
+        struct.setLong("long", 7);
+        struct.setDouble("double", 0.5);
+        struct.setDouble("nan", Double.NaN);
+        struct.setBool("bool", true);
+        struct.setData("data", new byte[] { 0x01, (byte)0xab });
+        Cursor array = struct.setArray("array");
+        array.addLong(1);
+        array.addObject().setString("nested", "value");
+
+        Result r = newEmptyResult();
+        Hit h = new Hit("StructuredData");
+        h.setField("structured", new StructuredData(new SlimeAdapter(slime.get())));
+        r.hits().add(h);
+        r.setTotalHitCount(1L);
+        String summary = render(r);
+        assertEqualJson(expected, summary);
+    }
+
     @Test
     public void testThatTheJsonValidatorCanCatchErrors() {
         String json = "{"
@@ -0,0 +1,206 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.test;
+
+import com.yahoo.container.jdisc.HttpRequest;
+import com.yahoo.jdisc.http.HttpRequest.Method;
+import com.yahoo.prelude.fastsearch.DocsumDefinition;
+import com.yahoo.prelude.fastsearch.DocsumDefinitionSet;
+import com.yahoo.prelude.fastsearch.DocsumField;
+import com.yahoo.prelude.fastsearch.FastHit;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.query.profile.QueryProfile;
+import com.yahoo.search.query.profile.compiled.CompiledQueryProfile;
+import com.yahoo.search.query.parser.Parsable;
+import com.yahoo.search.query.parser.ParserEnvironment;
+import com.yahoo.search.rendering.JsonRenderer;
+import com.yahoo.search.searchchain.Execution;
+import com.yahoo.search.yql.YqlParser;
+import com.yahoo.slime.BinaryFormat;
+import com.yahoo.slime.Cursor;
+import com.yahoo.slime.Slime;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.serialization.TypedBinaryFormat;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.IntSupplier;
+
+/**
+ * Measures the time spent in each stage of the hot path of a query through the container:
+ * Parsing YQL, creating a query from a request using a query profile with variants,
+ * compiling query profiles, decoding document summaries into hits and rendering a result as JSON.
+ * <p>
+ * The fixtures are sized to resemble production queries: The query profile has nested profiles and
+ * variants in two dimensions, and results have 100 hits with string, numeric, tensor and structured fields.
+ * <p>
+ * Run the main method to print the time per operation of each stage.
+ *
+ * @author bratseth
+ */
+public class QueryPathMicroBenchmark {
+
+    private static final String yql =
+            "select * from sources music, books where " +
+            "(title contains \"best\" or artist contains ([{\"stem\": false}]\"mozart\")) and " +
+            "year > 1990 and weakAnd(default contains \"classical\", default contains \"music\") " +
+            "order by year desc limit 100 timeout 1000;";
+
+    private final YqlParser parser = new YqlParser(new ParserEnvironment());
+    private final QueryProfile profile = createProfile();
+    private final CompiledQueryProfile compiledProfile = profile.compile(null);
+    private final DocsumDefinitionSet docsumDefinitions = createDocsumDefinitions();
+    private final List<byte[]> docsums = createDocsums(100);
+    private final JsonRenderer renderer = new JsonRenderer();
+
+    public void run() {
+        benchmark("Parsing YQL", 100000, this::parseYql);
+        benchmark("Creating a query from a request with a query profile", 100000, this::createQuery);
+        benchmark("Compiling a query profile with variants", 1000, this::compileProfile);
+        benchmark("Decoding 100 hits and accessing 3 fields", 10000, this::decodeHits);
+        benchmark("Rendering a 100 hit result as JSON", 1000, this::renderResult);
+        renderer.deconstruct();
+    }
+
+    /** Runs the given operation to warm up and then again while timing it, and prints the time per operation */
+    private void benchmark(String description, int count, IntSupplier operation) {
+        long result = 0;
+        for (int i = 0; i < count; i++) // warm-up
+            result += operation.getAsInt();
+        long startTime = System.nanoTime();
+        for (int i = 0; i < count; i++)
+            result += operation.getAsInt();
+        long totalTime = System.nanoTime() - startTime;
+        // The result is printed to make sure the operations are not optimized away
+        System.out.println(String.format("%-55s %10.2f microseconds per operation (ignore: %d)",
+                                         description, totalTime / 1000.0 / count, result));
+    }
+
+    private int parseYql() {
+        return parser.parse(new Parsable().setQuery(yql)).getRoot().getTermCount();
+    }
+
+    private int createQuery() {
+        Query query = new Query(HttpRequest.createTestRequest("?query=classical+music&hits=20&x=x1&y=y2" +
+                                                              "&presentation.bolding=true",
+                                                              Method.GET),
+                                compiledProfile);
+        return query.getHits() + query.properties().getString("a.b").length();
+    }
+
+    private int compileProfile() {
+        return createProfile().compile(null).getId().getName().length();
+    }
+
+    private int decodeHits() {
+        int result = 0;
+        for (FastHit hit : decode()) {
+            result += ((String)hit.getField("title")).length();
+            result += ((Long)hit.getField("year")).intValue();
+            result += hit.getField("embedding") != null ? 1 : 0;
+        }
+        return result;
+    }
+
+    private int renderResult() {
+        Result result = new Result(new Query("?query=classical+music"));
+        for (FastHit hit : decode())
+            result.hits().add(hit);
+        result.setTotalHitCount(docsums.size());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            JsonRenderer rendererInstance = (JsonRenderer)renderer.clone();
+            rendererInstance.init();
+            rendererInstance.render(out, result, new Execution(Execution.Context.createContextStub()), null).get();
+        }
+        catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+        return out.size();
+    }
+
+    private List<FastHit> decode() {
+        List<FastHit> hits = new ArrayList<>(docsums.size());
+        for (int i = 0; i < docsums.size(); i++) {
+            FastHit hit = new FastHit("hit:" + i, 1.0 / (i + 1));
+            docsumDefinitions.lazyDecode("default", docsums.get(i), hit);
+            hits.add(hit);
+        }
+        return hits;
+    }
+
+    private static QueryProfile createProfile() {
+        QueryProfile nested = new QueryProfile("nested");
+        for (int i = 0; i < 10; i++)
+            nested.set("field" + i, "value" + i, null);
+
+        QueryProfile profile = new QueryProfile("main");
+        profile.setDimensions(new String[] { "x", "y" });
+        profile.set("a", nested, null);
+        profile.set("a.b", "default", null);
+        profile.set("hits", "10", null);
+        for (int x = 1; x <= 5; x++) {
+            profile.set("a.b", "x" + x, new String[] { "x" + x }, null);
+            for (int y = 1; y <= 5; y++) {
+                profile.set("a.b", "x" + x + ".y" + y, new String[] { "x" + x, "y" + y }, null);
+                profile.set("ranking.profile", "profile" + y, new String[] { "x" + x, "y" + y }, null);
+            }
+        }
+        profile.freeze();
+        return profile;
+    }
+
+    private static DocsumDefinitionSet createDocsumDefinitions() {
+        List<DocsumField> fields = new ArrayList<>();
+        fields.add(DocsumField.create("title", "string"));
+        fields.add(DocsumField.create("artist", "string"));
+        fields.add(DocsumField.create("body", "longstring"));
+        fields.add(DocsumField.create("year", "int64"));
+        fields.add(DocsumField.create("price", "double"));
+        fields.add(DocsumField.create("embedding", "tensor"));
+        fields.add(DocsumField.create("tracks", "jsonstring"));
+        List<DocsumDefinition> definitions = new ArrayList<>();
+        definitions.add(new DocsumDefinition("default", fields));
+        return new DocsumDefinitionSet(definitions);
+    }
+
+    private static List<byte[]> createDocsums(int count) {
+        byte[] embedding = TypedBinaryFormat.encode(Tensor.from("tensor(x[8]):{{x:0}:0.1,{x:1}:0.2,{x:2}:0.3,{x:3}:0.4," +
+                                                                "{x:4}:0.5,{x:5}:0.6,{x:6}:0.7,{x:7}:0.8}"));
+        List<byte[]> docsums = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Slime slime = new Slime();
+            Cursor docsum = slime.setObject();
+            docsum.setString("title", "The best of classical music, volume " + i);
+            docsum.setString("artist", "Wolfgang Amadeus Mozart");
+            docsum.setString("body", "A collection of the most loved pieces of classical music. ".repeat(10));
+            docsum.setLong("year", 1990 + i % 30);
+            docsum.setDouble("price", 9.99 + i);
+            docsum.setData("embedding", embedding);
+            Cursor tracks = docsum.setArray("tracks");
+            for (int t = 0; t < 10; t++) {
+                Cursor track = tracks.addObject();
+                track.setString("name", "Track " + t);
+                track.setLong("length", 180 + t);
+            }
+
+            byte[] slimeBytes = BinaryFormat.encode(slime);
+            ByteBuffer buffer = ByteBuffer.allocate(slimeBytes.length + 4);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(DocsumDefinitionSet.SLIME_MAGIC_ID);
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            buffer.put(slimeBytes);
+            docsums.add(buffer.array());
+        }
+        return docsums;
+    }
+
+    public static void main(String[] args) {
+        new QueryPathMicroBenchmark().run();
+    }
+
+}
@@ -3,6 +3,7 @@ package com.yahoo.document.json.readers;
 
 import com.yahoo.document.datatypes.TensorFieldValue;
 import com.yahoo.document.json.TokenBuffer;
+import com.yahoo.tensor.IndexedTensor;
 import com.yahoo.tensor.MappedTensor;
 import com.yahoo.tensor.Tensor;
 
@@ -11,6 +12,7 @@ import static com.yahoo.document.json.readers.JsonParserHelpers.*;
 /**
  * Reads the tensor format described at
  * http://docs.vespa.ai/documentation/reference/document-json-put-format.html#tensor
+ * Dense tensors may alternatively be given as a 'values' array, see {@link com.yahoo.tensor.serialization.JsonFormat}.
  */
 public class TensorReader {
 
@@ -18,6 +20,7 @@ public class TensorReader {
     public static final String TENSOR_DIMENSIONS = "dimensions";
     public static final String TENSOR_CELLS = "cells";
     public static final String TENSOR_VALUE = "value";
+    public static final String TENSOR_VALUES = "values";
 
     public static void fillTensor(TokenBuffer buffer, TensorFieldValue tensorFieldValue) {
         Tensor.Builder tensorBuilder = Tensor.Builder.of(tensorFieldValue.getDataType().getTensorType());
@@ -27,6 +30,8 @@ public class TensorReader {
         for (buffer.next(); buffer.nesting() >= initNesting; buffer.next()) {
             if (TensorReader.TENSOR_CELLS.equals(buffer.currentName()))
                 readTensorCells(buffer, tensorBuilder);
+            else if (TensorReader.TENSOR_VALUES.equals(buffer.currentName()))
+                readTensorValues(buffer, tensorBuilder);
         }
         expectObjectEnd(buffer.currentToken());
         tensorFieldValue.assign(tensorBuilder.build());
@@ -40,6 +45,32 @@ public class TensorReader {
         expectCompositeEnd(buffer.currentToken());
     }
 
+    /**
+     * Reads the values of a dense tensor given as an array in order of increasing direct index,
+     * possibly nested in an array for each dimension, directly into the tensor without creating addresses.
+     */
+    public static void readTensorValues(TokenBuffer buffer, Tensor.Builder tensorBuilder) {
+        if ( ! (tensorBuilder instanceof IndexedTensor.BoundBuilder))
+            throw new IllegalArgumentException("The 'values' field is only supported for dense tensors with bound " +
+                                               "dimensions, not " + tensorBuilder.type());
+        IndexedTensor.BoundBuilder denseBuilder = (IndexedTensor.BoundBuilder)tensorBuilder;
+        long size = tensorBuilder.type().dimensions().stream().mapToLong(d -> d.size().get()).reduce(1, (a, b) -> a * b);
+        expectArrayStart(buffer.currentToken());
+        int initNesting = buffer.nesting();
+        long index = 0;
+        for (buffer.next(); buffer.nesting() >= initNesting; buffer.next()) {
+            if ( ! buffer.currentToken().isScalarValue()) continue; // nested arrays
+            if (index >= size)
+                throw new IllegalArgumentException("A tensor of type " + tensorBuilder.type() + " has " + size +
+                                                   " values, but 'values' contains more");
+            denseBuilder.cellByDirectIndex(index++, Double.valueOf(buffer.currentText()));
+        }
+        expectCompositeEnd(buffer.currentToken());
+        if (index != size)
+            throw new IllegalArgumentException("A tensor of type " + tensorBuilder.type() + " has " + size +
+                                               " values, but 'values' contains " + index);
+    }
+
     public static void readTensorCell(TokenBuffer buffer, Tensor.Builder tensorBuilder) {
         expectObjectStart(buffer.currentToken());
         int initNesting = buffer.nesting();
@@ -1,6 +1,7 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.document.serialization;
 
+import com.yahoo.compress.CompressionType;
 import com.yahoo.compress.Compressor;
 
 import com.yahoo.document.ArrayDataType;
@@ -52,6 +53,7 @@ import com.yahoo.document.update.TensorAddUpdate;
 import com.yahoo.document.update.TensorModifyUpdate;
 import com.yahoo.document.update.TensorRemoveUpdate;
 import com.yahoo.document.update.ValueUpdate;
+import com.yahoo.io.ByteBufferPool;
 import com.yahoo.io.GrowableByteBuffer;
 import com.yahoo.tensor.serialization.TypedBinaryFormat;
 import com.yahoo.vespa.objects.BufferSerializer;
@@ -332,7 +334,7 @@ public class VespaDocumentSerializer6 extends BufferSerializer implements Docume
         GrowableByteBuffer bigBuffer = buf;
 
         //create a new buffer and serialize into that for a while:
-        GrowableByteBuffer buffer = new GrowableByteBuffer(4096, 2.0f);
+        GrowableByteBuffer buffer = new GrowableByteBuffer(ByteBufferPool.heap(), 4096);
         buf = buffer;
 
         List<Integer> fieldIds = new LinkedList<>();
@@ -352,8 +354,10 @@ public class VespaDocumentSerializer6 extends BufferSerializer implements Docume
         buf = bigBuffer;
 
         int uncompressedSize = buffer.remaining();
-        Compressor.Compression compression =
-            s.getDataType().getCompressor().compress(buffer.getByteBuffer().array(), buffer.remaining());
+        Compressor compressor = s.getDataType().getCompressor();
+        Compressor.Compression compression = compressor.type() == CompressionType.NONE
+            ? new Compressor.Compression(CompressionType.NONE, uncompressedSize, null) // don't copy the data
+            : compressor.compress(buffer.getByteBuffer().array(), buffer.remaining());
 
         // Actual serialization starts here.
         int lenPos = buf.position();
@@ -377,6 +381,7 @@ public class VespaDocumentSerializer6 extends BufferSerializer implements Docume
         } else {
             put(null, buffer.getByteBuffer());
         }
+        buffer.release();
         int dataLength = buf.position() - pos;
 
         int posNow = buf.position();
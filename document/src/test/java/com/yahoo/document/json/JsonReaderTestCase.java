@@ -1280,6 +1280,29 @@ public class JsonReaderTestCase {
         assertTrue(tensor instanceof IndexedTensor); // this matters for performance
     }
 
+    @Test
+    public void testParsingOfDenseTensorWithValues() {
+        String expected = "tensor(x[2],y[3]):{{x:0,y:0}:1.0,{x:0,y:1}:2.0,{x:0,y:2}:3.0," +
+                                                "{x:1,y:0}:4.0,{x:1,y:1}:5.0,{x:1,y:2}:6.0}";
+        Tensor tensor = assertTensorField(expected,
+                                          createPutWithTensor(inputJson("{",
+                                                                        "  'values': [1.0, 2.0, 3.0, 4.0, 5.0, 6.0]",
+                                                                        "}"), "dense_tensor"), "dense_tensor");
+        assertTrue(tensor instanceof IndexedTensor);
+        assertTensorField(expected,
+                          createPutWithTensor(inputJson("{",
+                                                        "  'values': [[1, 2, 3], [4, 5, 6]]",
+                                                        "}"), "dense_tensor"), "dense_tensor");
+        try {
+            createPutWithTensor(inputJson("{ 'values': [1, 2, 3] }"), "dense_tensor");
+            fail("Expected exception");
+        }
+        catch (JsonReaderException e) {
+            assertEquals("A tensor of type tensor(x[2],y[3]) has 6 values, but 'values' contains 3",
+                         e.getCause().getMessage());
+        }
+    }
+
     @Test
     public void testParsingOfTensorWithSingleCellInDifferentJsonOrder() {
         assertSparseTensorField("{{x:a,y:b}:2.0}",
@@ -7,6 +7,7 @@ import com.yahoo.concurrent.CopyOnWriteHashMap;
 import com.yahoo.document.DocumentTypeManager;
 import com.yahoo.document.serialization.*;
 import com.yahoo.documentapi.messagebus.loadtypes.LoadTypeSet;
+import com.yahoo.io.ByteBufferPool;
 import com.yahoo.io.GrowableByteBuffer;
 import com.yahoo.log.LogLevel;
 import com.yahoo.messagebus.Routable;
@@ -92,24 +93,29 @@ final class RoutableRepository {
                                     " (version " + version + ").");
             return new byte[0];
         }
-        DocumentSerializer out;
-
-        if (version.getMajor() >= 5) {
-            out = DocumentSerializerFactory.createHead(new GrowableByteBuffer(8192));
-        } else {
-            out = DocumentSerializerFactory.create42(new GrowableByteBuffer(8192));
-        }
+        // Serialize into a pooled buffer, such that only the exact sized result is allocated for each routable
+        GrowableByteBuffer buffer = new GrowableByteBuffer(ByteBufferPool.heap(), 8192);
+        try {
+            DocumentSerializer out;
+            if (version.getMajor() >= 5) {
+                out = DocumentSerializerFactory.createHead(buffer);
+            } else {
+                out = DocumentSerializerFactory.create42(buffer);
+            }
 
-        out.putInt(null, type);
-        if (!factory.encode(obj, out)) {
-            log.log(LogLevel.ERROR, "Routable factory " + factory.getClass().getName() + " failed to serialize " +
-                                    "routable of type " + type + " (version " + version + ").");
-            return new byte[0];
+            out.putInt(null, type);
+            if (!factory.encode(obj, out)) {
+                log.log(LogLevel.ERROR, "Routable factory " + factory.getClass().getName() + " failed to serialize " +
+                                        "routable of type " + type + " (version " + version + ").");
+                return new byte[0];
+            }
+            byte[] ret = new byte[out.getBuf().position()];
+            out.getBuf().rewind();
+            out.getBuf().get(ret);
+            return ret;
+        } finally {
+            buffer.release();
         }
-        byte[] ret = new byte[out.getBuf().position()];
-        out.getBuf().rewind();
-        out.getBuf().get(ret);
-        return ret;
     }
 
     /**
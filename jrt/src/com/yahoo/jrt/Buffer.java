@@ -2,6 +2,8 @@
 package com.yahoo.jrt;
 
 
+import com.yahoo.io.ByteBufferPool;
+
 import java.nio.ByteBuffer;
 
 
@@ -9,6 +11,9 @@ class Buffer {
 
     static final int MAX_IO = 65000;
 
+    /** Buffers taken when growing and given back when growing or shrinking, as large buffers are short lived */
+    private static final ByteBufferPool pool = ByteBufferPool.heap();
+
     private ByteBuffer buf;
     private int        readPos;
     private int        writePos;
@@ -54,11 +59,12 @@ class Buffer {
             if (buf.capacity() + free < minFree) {
                 size = buf.capacity() + minFree;
             }
-            ByteBuffer tmp = ByteBuffer.allocate(size);
+            ByteBuffer tmp = pool.acquire(size);
             tmp.order(buf.order());
             buf.position(readPos);
             buf.limit(writePos);
             tmp.put(buf);
+            pool.release(buf);
             buf = tmp;
             readPos = 0;
         }
@@ -83,6 +89,7 @@ class Buffer {
         buf.position(rpos);
         buf.limit(wpos);
         tmp.put(buf);
+        pool.release(buf);
         buf = tmp;
         readPos = 0;
         writePos = used;
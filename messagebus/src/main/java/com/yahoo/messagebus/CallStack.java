@@ -39,6 +39,18 @@ public class CallStack {
         return frame.handler;
     }
 
+    /**
+     * Returns the handler at the bottom of this stack, i.e. the one that was pushed first and that will receive the
+     * reply last, without modifying the stack. This is typically the reply handler of the session that sent the
+     * message.
+     *
+     * @return The bottom handler, or null if this stack is empty.
+     */
+    public ReplyHandler bottom() {
+        StackFrame frame = stack.peekLast();
+        return frame == null ? null : frame.handler;
+    }
+
     /**
      * Swap the content of this and the argument stack.
      *
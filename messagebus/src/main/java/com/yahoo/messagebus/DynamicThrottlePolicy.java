@@ -4,6 +4,9 @@ package com.yahoo.messagebus;
 import com.yahoo.concurrent.SystemTimer;
 import com.yahoo.concurrent.Timer;
 import com.yahoo.log.LogLevel;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Logger;
 
 /**
@@ -11,6 +14,10 @@ import java.util.logging.Logger;
  * {@link SourceSession} is allowed to have.
  *
  * <b>NOTE:</b> By context, "pending" is refering to the number of sent messages that have not been replied to yet.
+ * <p>
+ * The window size is read without locking when deciding whether a message can be sent, and the messages sent and
+ * replies received are counted with atomic counters. Only the thread which completes a resize period takes a lock
+ * to compute the new window size.
  *
  * @author Simon Thoresen Hult
  */
@@ -18,14 +25,14 @@ public class DynamicThrottlePolicy extends StaticThrottlePolicy {
 
     private static final long IDLE_TIME_MILLIS = 60000;
     private final Timer timer;
-    private int numSent = 0;
-    private int numOk = 0;
-    private double resizeRate = 3;
+    private final AtomicInteger numSent = new AtomicInteger(0);
+    private final LongAdder numOk = new LongAdder();
+    private volatile double resizeRate = 3;
     private long resizeTime = 0;
-    private long timeOfLastMessage;
+    private volatile long timeOfLastMessage;
     private double efficiencyThreshold = 1.0;
     private double windowSizeIncrement = 20;
-    private double windowSize = windowSizeIncrement;
+    private volatile double windowSize = windowSizeIncrement;
     private double minWindowSize = windowSizeIncrement;
     private double maxWindowSize = Integer.MAX_VALUE;
     private double windowSizeBackOff = 0.9;
@@ -71,7 +78,9 @@ public class DynamicThrottlePolicy extends StaticThrottlePolicy {
         long time = timer.milliTime();
         double elapsed = (time - timeOfLastMessage);
         if (elapsed > IDLE_TIME_MILLIS) {
-            windowSize = Math.min(windowSize, pendingCount + windowSizeIncrement);
+            synchronized (this) {
+                windowSize = Math.min(windowSize, pendingCount + windowSizeIncrement);
+            }
         }
         timeOfLastMessage = time;
         return pendingCount < windowSize;
@@ -80,17 +89,26 @@ public class DynamicThrottlePolicy extends StaticThrottlePolicy {
     @Override
     public void processMessage(Message message) {
         super.processMessage(message);
-        if (++numSent < windowSize * resizeRate) {
+        if (numSent.incrementAndGet() < windowSize * resizeRate) {
             return;
         }
+        resize();
+    }
+
+    private synchronized void resize() {
+        if (numSent.get() < windowSize * resizeRate) {
+            return; // another thread resized while this was waiting
+        }
 
         long time = timer.milliTime();
         double elapsed = time - resizeTime;
         resizeTime = time;
 
-        double throughput = numOk / elapsed;
-        numSent = 0;
-        numOk = 0;
+        double throughput = numOk.sumThenReset() / elapsed;
+        numSent.set(0);
+
+        // Compute the new window size locally, as the window size is read concurrently
+        double windowSize = this.windowSize;
 
         if (log.isLoggable(LogLevel.DEBUG)) {
             log.log(LogLevel.DEBUG, "windowSize " + windowSize + " throughput " + throughput);
@@ -121,13 +139,14 @@ public class DynamicThrottlePolicy extends StaticThrottlePolicy {
         }
         windowSize = Math.max(minWindowSize, windowSize);
         windowSize = Math.min(maxWindowSize, windowSize);
+        this.windowSize = windowSize;
     }
 
     @Override
     public void processReply(Reply reply) {
         super.processReply(reply);
         if ( ! reply.hasErrors()) {
-            ++numOk;
+            numOk.increment();
         }
     }
 
@@ -0,0 +1,338 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus;
+
+import com.yahoo.concurrent.SystemTimer;
+import com.yahoo.concurrent.Timer;
+import com.yahoo.log.LogLevel;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * This is an implementation of the {@link ThrottlePolicy} that offers a dynamic limit to the number of pending
+ * messages a {@link SourceSession} is allowed to have, based on the latency of the replies rather than the throughput.
+ * <p>
+ * The latency of a message is the time from it is sent until its reply is received. As long as the receivers keep up,
+ * adding more pending messages does not increase the latency, and the window keeps growing. Once a receiver starts to
+ * queue messages, the latency rises above the minimum latency seen, and the window shrinks in proportion to this
+ * increase. This lets the window settle just above the point where the receivers are saturated, and makes it react
+ * within a single round trip when they become overloaded. Replies saying that the receiver is busy back off the
+ * window immediately.
+ * <p>
+ * The window is resized each time a window's worth of replies has been received. The new window size is
+ * <code>windowSize * gradient + sqrt(windowSize)</code>, where the gradient is
+ * <code>latencyTolerance * minLatency / latency</code>, capped to [0.5, 1], and the result is smoothed towards the
+ * current window size. The minimum latency is reset periodically, such that the window adapts to lasting changes in the
+ * latency which are not caused by queueing, such as a different network path. To avoid measuring latency which is
+ * inflated by queueing at the receivers, the window is reduced by the back off factor while the minimum latency is
+ * measured anew, and only messages sent after this reduction are used for the new minimum.
+ * <p>
+ * The aggressiveness of this policy is tuned by the latency tolerance, which is how many times the minimum latency
+ * replies may take before the window shrinks, and the smoothing, which is how large fraction of each computed change
+ * to apply.
+ * <p>
+ * Latencies are measured in milliseconds by the timer of this, and latencies below a millisecond are counted as one.
+ *
+ * <b>NOTE:</b> By context, "pending" is refering to the number of sent messages that have not been replied to yet.
+ *
+ * @author bratseth
+ */
+public class LatencyThrottlePolicy extends StaticThrottlePolicy {
+
+    private static final Logger log = Logger.getLogger(LatencyThrottlePolicy.class.getName());
+
+    private final Timer timer;
+
+    /** The number of replies received since the last resize */
+    private final AtomicInteger numReplies = new AtomicInteger(0);
+    /** The sum and count of the latencies of the successful replies received since the last resize */
+    private final LongAdder latencySum = new LongAdder();
+    private final LongAdder latencyCount = new LongAdder();
+    /** The min latency of the successful replies received since the last resize */
+    private final AtomicLong periodMinLatency = new AtomicLong(Long.MAX_VALUE);
+    /** Whether any reply received since the last resize says that the receiver is busy */
+    private volatile boolean busy = false;
+
+    private volatile double windowSize = 20;
+    private double minWindowSize = 1;
+    private double maxWindowSize = Integer.MAX_VALUE;
+    private double latencyTolerance = 1.5;
+    private double smoothing = 0.5;
+    private double windowSizeBackOff = 0.5;
+    private long minLatencyPeriodMillis = 60000;
+
+    /** The min latency used to compute the gradient, and the time it was last measured anew */
+    private long minLatency = Long.MAX_VALUE;
+    private long timeOfMinLatencyReset;
+
+    /** The time the current min latency probe started, or -1 if not probing */
+    private volatile long probeStartTime = -1;
+    /** The min latency of the successful replies to messages sent since the current probe started */
+    private final AtomicLong probeMinLatency = new AtomicLong(Long.MAX_VALUE);
+    /** The window size to restore when the current probe ends */
+    private double windowSizeBeforeProbe;
+
+    /**
+     * Constructs a new instance of this policy and sets the appropriate default values of member data.
+     */
+    public LatencyThrottlePolicy() {
+        this(SystemTimer.INSTANCE);
+    }
+
+    /**
+     * Constructs a new instance of this class using the given clock to measure latency.
+     *
+     * @param timer the timer to use
+     */
+    public LatencyThrottlePolicy(Timer timer) {
+        this.timer = timer;
+        this.timeOfMinLatencyReset = timer.milliTime();
+    }
+
+    @Override
+    public boolean canSend(Message message, int pendingCount) {
+        if ( ! super.canSend(message, pendingCount)) {
+            return false;
+        }
+        return pendingCount < windowSize;
+    }
+
+    @Override
+    public void processMessage(Message message) {
+        super.processMessage(message);
+        message.setContext(new SendContext(message.getContext(), timer.milliTime()));
+    }
+
+    @Override
+    public void processReply(Reply reply) {
+        SendContext context = (SendContext)reply.getContext();
+        reply.setContext(context.parentContext);
+        super.processReply(reply);
+
+        if (reply.hasErrors()) {
+            if (isBusy(reply)) {
+                busy = true;
+            }
+        }
+        else {
+            long latency = Math.max(1, timer.milliTime() - context.sendTime);
+            latencySum.add(latency);
+            latencyCount.increment();
+            periodMinLatency.accumulateAndGet(latency, Math::min);
+            long probeStartTime = this.probeStartTime;
+            if (probeStartTime >= 0 && context.sendTime >= probeStartTime) {
+                probeMinLatency.accumulateAndGet(latency, Math::min);
+            }
+        }
+        if (numReplies.incrementAndGet() < windowSize) {
+            return;
+        }
+        resize();
+    }
+
+    private static boolean isBusy(Reply reply) {
+        for (int i = 0; i < reply.getNumErrors(); i++) {
+            int code = reply.getError(i).getCode();
+            if (code == ErrorCode.SESSION_BUSY || (code >= ErrorCode.APP_TRANSIENT_ERROR && code < ErrorCode.FATAL_ERROR)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized void resize() {
+        if (numReplies.get() < windowSize) {
+            return; // another thread resized while this was waiting
+        }
+        numReplies.set(0);
+        long count = latencyCount.sumThenReset();
+        long sum = latencySum.sumThenReset();
+        long periodMin = periodMinLatency.getAndSet(Long.MAX_VALUE);
+        boolean busy = this.busy;
+        this.busy = false;
+
+        long time = timer.milliTime();
+        minLatency = Math.min(minLatency, periodMin);
+        if (probeStartTime >= 0) {
+            long probeMin = probeMinLatency.get();
+            if (probeMin == Long.MAX_VALUE) {
+                return; // no replies to messages sent during this probe yet
+            }
+            minLatency = probeMin;
+            timeOfMinLatencyReset = time;
+            probeStartTime = -1;
+            this.windowSize = busy ? Math.max(minWindowSize, windowSizeBeforeProbe * windowSizeBackOff)
+                                   : windowSizeBeforeProbe;
+            return;
+        }
+        if (time - timeOfMinLatencyReset > minLatencyPeriodMillis) {
+            windowSizeBeforeProbe = this.windowSize;
+            probeMinLatency.set(Long.MAX_VALUE);
+            probeStartTime = time;
+            this.windowSize = Math.max(minWindowSize, windowSizeBeforeProbe * windowSizeBackOff);
+            return;
+        }
+
+        // Compute the new window size locally, as the window size is read concurrently
+        double windowSize = this.windowSize;
+        if (busy) {
+            windowSize *= windowSizeBackOff;
+        }
+        else if (count > 0) {
+            double latency = (double)sum / count;
+            double gradient = Math.max(0.5, Math.min(1.0, latencyTolerance * minLatency / latency));
+            double newSize = windowSize * gradient + Math.sqrt(windowSize);
+            windowSize = (1 - smoothing) * windowSize + smoothing * newSize;
+            if (log.isLoggable(LogLevel.DEBUG)) {
+                log.log(LogLevel.DEBUG, "windowSize " + windowSize + " latency " + latency + " minLatency " + minLatency);
+            }
+        }
+        windowSize = Math.max(minWindowSize, windowSize);
+        windowSize = Math.min(maxWindowSize, windowSize);
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Sets how many times the minimum latency replies may take before the window size is reduced.
+     * Higher values are more aggressive, and lets more messages queue up at the receivers. This must be finite and at least 1.
+     *
+     * @param latencyTolerance the tolerance to set
+     * @return this, to allow chaining
+     */
+    public LatencyThrottlePolicy setLatencyTolerance(double latencyTolerance) {
+        if ( ! (latencyTolerance >= 1) || Double.isInfinite(latencyTolerance))
+            throw new IllegalArgumentException("Latency tolerance must be a finite number of at least 1, but got " + latencyTolerance);
+        this.latencyTolerance = latencyTolerance;
+        return this;
+    }
+
+    /** Returns how many times the minimum latency replies may take before the window size is reduced */
+    public double getLatencyTolerance() {
+        return latencyTolerance;
+    }
+
+    /**
+     * Sets the fraction of each computed change to the window size which is applied. Higher values are more
+     * responsive, and lower values are more stable. This value is capped to the (0, 1] range.
+     *
+     * @param smoothing the smoothing to set
+     * @return this, to allow chaining
+     */
+    public LatencyThrottlePolicy setSmoothing(double smoothing) {
+        this.smoothing = Math.max(Double.MIN_VALUE, Math.min(1, smoothing));
+        return this;
+    }
+
+    /** Returns the fraction of each computed change to the window size which is applied */
+    public double getSmoothing() {
+        return smoothing;
+    }
+
+    /**
+     * Sets the factor of window size to back off to when a receiver replies that it is busy.
+     * This value is capped to the [0, 1] range.
+     *
+     * @param windowSizeBackOff the back off to set
+     * @return this, to allow chaining
+     */
+    public LatencyThrottlePolicy setWindowSizeBackOff(double windowSizeBackOff) {
+        this.windowSizeBackOff = Math.max(0, Math.min(1, windowSizeBackOff));
+        return this;
+    }
+
+    /** Returns the factor of window size to back off to when a receiver replies that it is busy */
+    public double getWindowSizeBackOff() {
+        return windowSizeBackOff;
+    }
+
+    /**
+     * Sets the time after which the minimum latency is reset to the minimum latency seen since it was last reset.
+     *
+     * @param minLatencyPeriodMillis the period to set, in milliseconds
+     * @return this, to allow chaining
+     */
+    public LatencyThrottlePolicy setMinLatencyPeriod(long minLatencyPeriodMillis) {
+        this.minLatencyPeriodMillis = minLatencyPeriodMillis;
+        return this;
+    }
+
+    /** Returns the time after which the minimum latency is reset, in milliseconds */
+    public long getMinLatencyPeriod() {
+        return minLatencyPeriodMillis;
+    }
+
+    /**
+     * Sets the maximium number of pending operations allowed at any time, in
+     * order to avoid using too much resources.
+     *
+     * @param max the max to set
+     * @return this, to allow chaining
+     */
+    public LatencyThrottlePolicy setMaxWindowSize(double max) {
+        this.maxWindowSize = max;
+        return this;
+    }
+
+    /**
+     * Get the maximum number of pending operations allowed at any time.
+     *
+     * @return the maximum number of operations
+     */
+    public double getMaxWindowSize() {
+        return maxWindowSize;
+    }
+
+    /**
+     * Sets the minimium number of pending operations allowed at any time, in
+     * order to keep a level of performance.
+     *
+     * @param min the min to set
+     * @return this, to allow chaining
+     */
+    public LatencyThrottlePolicy setMinWindowSize(double min) {
+        this.minWindowSize = min;
+        return this;
+    }
+
+    /**
+     * Get the minimum number of pending operations allowed at any time.
+     *
+     * @return the minimum number of operations
+     */
+    public double getMinWindowSize() {
+        return minWindowSize;
+    }
+
+    @Override
+    public LatencyThrottlePolicy setMaxPendingCount(int maxCount) {
+        super.setMaxPendingCount(maxCount);
+        maxWindowSize = maxCount;
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of pending messages currently allowed.
+     *
+     * @return the max limit
+     */
+    @Override
+    public int getMaxPendingCount() {
+        return (int)windowSize;
+    }
+
+    /** The context of a message sent through this, which holds the context set by the super class */
+    private static class SendContext {
+
+        final Object parentContext;
+        final long sendTime;
+
+        SendContext(Object parentContext, long sendTime) {
+            this.parentContext = parentContext;
+            this.sendTime = sendTime;
+        }
+
+    }
+
+}
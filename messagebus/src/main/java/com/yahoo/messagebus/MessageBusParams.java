@@ -19,6 +19,7 @@ public class MessageBusParams {
     private RetryPolicy retryPolicy;
     private int maxPendingCount;
     private int maxPendingSize;
+    private int messengerThreads;
 
     /**
      * Constructs a new instance of this parameter object with default values for all members.
@@ -27,6 +28,7 @@ public class MessageBusParams {
         retryPolicy = new RetryTransientErrorsPolicy();
         maxPendingCount = 1024;
         maxPendingSize = 128 * 1024 * 1024;
+        messengerThreads = 1;
     }
 
     /**
@@ -39,6 +41,7 @@ public class MessageBusParams {
         retryPolicy = params.retryPolicy;
         maxPendingCount = params.maxPendingCount;
         maxPendingSize = params.maxPendingSize;
+        messengerThreads = params.messengerThreads;
     }
 
     /**
@@ -143,4 +146,25 @@ public class MessageBusParams {
         this.maxPendingSize = maxSize;
         return this;
     }
+
+    /**
+     * Returns the number of threads the messenger of the bus distributes the delivery of messages and replies over.
+     *
+     * @return The number of threads.
+     */
+    public int getMessengerThreads() {
+        return messengerThreads;
+    }
+
+    /**
+     * Sets the number of threads the messenger of the bus distributes the delivery of messages and replies over.
+     * The replies to each session are always delivered in order by the same thread.
+     *
+     * @param messengerThreads The number of threads, at least 1.
+     * @return This, to allow chaining.
+     */
+    public MessageBusParams setMessengerThreads(int messengerThreads) {
+        this.messengerThreads = messengerThreads;
+        return this;
+    }
 }
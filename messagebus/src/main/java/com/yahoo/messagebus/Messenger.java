@@ -3,44 +3,102 @@ package com.yahoo.messagebus;
 
 import com.yahoo.concurrent.DaemonThreadFactory;
 import com.yahoo.log.LogLevel;
+import com.yahoo.messagebus.metrics.AverageMetric;
+import com.yahoo.messagebus.metrics.MetricSet;
+import com.yahoo.messagebus.metrics.ValueMetric;
+import com.yahoo.messagebus.routing.RoutingNode;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 
 /**
- * <p>This class implements a single thread that is able to process arbitrary
- * tasks. Tasks are enqueued using the synchronized {@link #enqueue(Task)}
- * method, and are run in the order they were enqueued.</p>
+ * <p>This class implements a set of threads that are able to process arbitrary
+ * tasks. The tasks are distributed over a number of shards, each having its
+ * own thread and queue, such that the work of different sessions may proceed
+ * in parallel. Tasks are enqueued using {@link #enqueue(Task)}, and all tasks
+ * enqueued to the same shard are run in the order they were enqueued.</p>
+ *
+ * <p>Replies are sharded by the session they belong to, that is the handler
+ * at the bottom of the call stack of the message they reply to, so the
+ * replies to a single session are always handled in order by the same
+ * thread.
+ * Messages having a sequence id are sharded by that id, while other messages
+ * are sharded by their handler. Recurrent tasks are run by the first
+ * shard.</p>
+ *
+ * <p>Each shard tracks the number of tasks waiting in its queues and the
+ * time tasks spend waiting before they are run, see {@link
+ * #getMetrics()}.</p>
  *
  * @author Simon Thoresen Hult
  */
-public class Messenger implements Runnable {
+public class Messenger {
 
     private static final Logger log = Logger.getLogger(Messenger.class.getName());
     private final AtomicBoolean destroyed = new AtomicBoolean(false);
     private final List<Task> children = new ArrayList<>();
-    private final ExecutorService sendExecutor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("messenger.send"));
-    private final Queue<Task> queue = new ArrayDeque<>();
-
-    private final Thread thread = new Thread(this, "Messenger");
+    private final MetricSet metrics = new MetricSet("messenger");
+    private final Shard[] shards;
 
+    /**
+     * <p>Constructs a messenger which runs all tasks in a single thread.</p>
+     */
     public Messenger() {
-        thread.setDaemon(true);
+        this(1);
+    }
+
+    /**
+     * <p>Constructs a messenger which distributes its tasks over the given
+     * number of threads.</p>
+     *
+     * @param numThreads The number of threads, and shards, to use.
+     */
+    public Messenger(int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("A messenger must have at least one thread, not " + numThreads);
+        }
+        shards = new Shard[numThreads];
+        for (int i = 0; i < numThreads; ++i) {
+            shards[i] = new Shard(i, numThreads == 1 ? "" : "." + i);
+            metrics.addMetric(shards[i].metrics);
+        }
+    }
+
+    /**
+     * <p>Returns the number of threads, and shards, of this messenger.</p>
+     *
+     * @return The number of threads.
+     */
+    public int getNumThreads() {
+        return shards.length;
+    }
+
+    /**
+     * <p>Returns the metrics of this messenger. This contains a metric set
+     * for each shard, holding the current number of tasks waiting for the
+     * reply thread and the send thread of the shard, and the average time in
+     * milliseconds tasks waited before being run by each of them.</p>
+     *
+     * @return The metric set.
+     */
+    public MetricSet getMetrics() {
+        return metrics;
     }
 
     /**
      * <p>Adds a recurrent task to this that is to be run for every iteration of
-     * the main loop. This task must be very light-weight as to not block the
-     * messenger. Note that this method is NOT thread-safe, so it should NOT be
-     * used after calling {@link #start()}.</p>
+     * the main loop of the first shard. This task must be very light-weight as
+     * to not block the messenger. Note that this method is NOT thread-safe, so
+     * it should NOT be used after calling {@link #start()}.</p>
      *
      * @param task The task to add.
      */
@@ -49,13 +107,15 @@ public class Messenger implements Runnable {
     }
 
     /**
-     * <p>Starts the internal thread. This must be done AFTER all recurrent
+     * <p>Starts the internal threads. This must be done AFTER all recurrent
      * tasks have been added.</p>
      *
      * @see #addRecurrentTask(Task)
      */
     public void start() {
-        thread.start();
+        for (final Shard shard : shards) {
+            shard.thread.start();
+        }
     }
 
     /**
@@ -71,8 +131,11 @@ public class Messenger implements Runnable {
             msg.discard();
             return;
         }
+        final Shard shard = msg.hasSequenceId() ? shardOf(Long.hashCode(msg.getSequenceId()))
+                                                : shardOf(System.identityHashCode(handler));
         try {
-            sendExecutor.execute(new MessageTask(msg, handler));
+            shard.sendExecutor.execute(new MessageTask(msg, handler, shard));
+            shard.sendQueueSize.set(shard.sendExecutor.getQueue().size());
         } catch (RejectedExecutionException e) {
             msg.discard();
             log.warning("Execution rejected " + e.getMessage());
@@ -88,40 +151,75 @@ public class Messenger implements Runnable {
      * @param handler The handler to return to.
      */
     public void deliverReply(final Reply reply, final ReplyHandler handler) {
-        enqueue(new ReplyTask(reply, handler));
+        enqueue(new ReplyTask(reply, handler), shardOf(System.identityHashCode(sessionOf(reply, handler))));
+    }
+
+    /**
+     * <p>Returns the handler owning the given reply, which is the bottom of
+     * its call stack. A reply from the network is delivered to the leaf
+     * routing node of its message, and has an empty call stack, so the stack
+     * of the routed message is used in that case. If the stack is empty, the
+     * handler was the bottom of it and is returned.</p>
+     */
+    private static ReplyHandler sessionOf(final Reply reply, final ReplyHandler handler) {
+        final CallStack stack = handler instanceof RoutingNode ? ((RoutingNode)handler).getMessage().getCallStack()
+                                                               : reply.getCallStack();
+        final ReplyHandler session = stack.bottom();
+        return session != null ? session : handler;
     }
 
     /**
-     * <p>Enqueues the given task in the list of tasks that this worker is to
-     * process. If this thread has been destroyed previously, this method
-     * invokes {@link Messenger.Task#destroy()}.</p>
+     * <p>Enqueues the given task in the list of tasks that the first shard of
+     * this is to process. If this messenger has been destroyed previously,
+     * this method invokes {@link Messenger.Task#destroy()}.</p>
      *
      * @param task The task to enqueue.
      */
     public void enqueue(final Task task) {
+        enqueue(task, shards[0]);
+    }
+
+    private void enqueue(final Task task, final Shard shard) {
         if (destroyed.get()) {
             task.destroy();
             return;
         }
-        synchronized (this) {
-            queue.offer(task);
-            if (queue.size() == 1) {
-                notify();
-            }
+        shard.enqueue(task);
+    }
+
+    private Shard shardOf(int hash) {
+        if (shards.length == 1) {
+            return shards[0];
         }
+        return shards[Math.floorMod(hash ^ (hash >>> 16), shards.length)];
     }
 
     /**
-     * <p>Handshakes with the internal thread. If this method is called using
-     * the messenger thread, this will deadlock.</p>
+     * <p>Handshakes with all the internal threads, such that all tasks
+     * enqueued before this call have been run when it returns.</p>
+     *
+     * <p>If this method is called from one of the messenger threads, i.e. by
+     * a task or a callback, it returns immediately without waiting for any
+     * shard, as two shards waiting for each other would deadlock. Tasks
+     * enqueued earlier to the calling shard have already been run, as have
+     * all earlier replies to the same session, but tasks of the other shards
+     * may still be pending.</p>
      */
     public void sync() {
-        if (Thread.currentThread() == thread) {
-            return; // no need to wait for self
+        for (final Shard shard : shards) {
+            if (Thread.currentThread() == shard.thread) {
+                return; // no need to wait for self, and waiting for others may deadlock
+            }
+        }
+        final List<SyncTask> tasks = new ArrayList<>(shards.length);
+        for (final Shard shard : shards) {
+            final SyncTask task = new SyncTask();
+            enqueue(task, shard);
+            tasks.add(task);
+        }
+        for (final SyncTask task : tasks) {
+            task.await();
         }
-        final SyncTask task = new SyncTask();
-        enqueue(task);
-        task.await();
     }
 
     /**
@@ -134,16 +232,22 @@ public class Messenger implements Runnable {
      */
     public boolean destroy() {
         boolean done = false;
-        enqueue(Terminate.INSTANCE);
+        for (final Shard shard : shards) {
+            enqueue(Terminate.INSTANCE, shard);
+        }
         if (!destroyed.getAndSet(true)) {
-            sendExecutor.shutdownNow().forEach((Runnable task) -> {((MessageTask) task).msg.discard();});
+            for (final Shard shard : shards) {
+                shard.sendExecutor.shutdownNow().forEach((Runnable task) -> {((MessageTask) task).msg.discard();});
+            }
             try {
-                synchronized (this) {
-                    while (!queue.isEmpty()) {
-                        wait();
+                for (final Shard shard : shards) {
+                    synchronized (shard) {
+                        while (!shard.queue.isEmpty()) {
+                            shard.wait();
+                        }
                     }
+                    shard.thread.join();
                 }
-                thread.join();
             } catch (final InterruptedException e) {
                 // ignore
             }
@@ -152,52 +256,99 @@ public class Messenger implements Runnable {
         return done;
     }
 
-    @Override
-    public void run() {
-        while (true) {
-            Task task = null;
-            synchronized (this) {
-                if (queue.isEmpty()) {
-                    try {
-                        wait(100);
-                    } catch (final InterruptedException e) {
-                        continue;
+    /**
+     * <p>A thread with its queue of tasks, and an executor for sending
+     * messages.</p>
+     */
+    private class Shard implements Runnable {
+
+        final Queue<QueuedTask> queue = new ArrayDeque<>();
+        final Thread thread;
+        final ThreadPoolExecutor sendExecutor;
+        final boolean runChildren;
+
+        final MetricSet metrics;
+        final ValueMetric<Integer> queueSize;
+        final AverageMetric latency;
+        final ValueMetric<Integer> sendQueueSize;
+        final AverageMetric sendLatency;
+
+        Shard(final int index, final String nameSuffix) {
+            thread = new Thread(this, "Messenger" + nameSuffix);
+            thread.setDaemon(true);
+            sendExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                                                  new DaemonThreadFactory("messenger.send" + nameSuffix));
+            runChildren = index == 0;
+            metrics = new MetricSet("shard" + index);
+            queueSize = new ValueMetric<>("queuesize", 0, metrics);
+            latency = new AverageMetric("latency", metrics);
+            sendQueueSize = new ValueMetric<>("sendqueuesize", 0, metrics);
+            sendLatency = new AverageMetric("sendlatency", metrics);
+        }
+
+        synchronized void enqueue(final Task task) {
+            queue.offer(new QueuedTask(task));
+            queueSize.set(queue.size());
+            if (queue.size() == 1) {
+                notify();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                QueuedTask queued = null;
+                synchronized (this) {
+                    if (queue.isEmpty()) {
+                        try {
+                            wait(100);
+                        } catch (final InterruptedException e) {
+                            continue;
+                        }
+                    }
+                    if (queue.size() > 0) {
+                        queued = queue.poll();
+                        queueSize.set(queue.size());
                     }
                 }
-                if (queue.size() > 0) {
-                    task = queue.poll();
+                if (queued != null && queued.task == Terminate.INSTANCE) {
+                    break;
                 }
-            }
-            if (task == Terminate.INSTANCE) {
-                break;
-            }
-            if (task != null) {
-                try {
-                    task.run();
-                } catch (final Exception e) {
-                    log.log(LogLevel.ERROR, "An exception was thrown while running " + task.getClass().getName(), e);
+                if (queued != null) {
+                    final Task task = queued.task;
+                    latency.addValue(queued.millisSinceEnqueued());
+                    try {
+                        task.run();
+                    } catch (final Exception e) {
+                        log.log(LogLevel.ERROR, "An exception was thrown while running " + task.getClass().getName(), e);
+                    }
+                    try {
+                        task.destroy();
+                    } catch (final Exception e) {
+                        log.warning("An exception was thrown while destroying " + task.getClass().getName() + ": " +
+                                    e.toString());
+                        log.warning("Someone, somewhere might have to wait indefinetly for something.");
+                    }
                 }
-                try {
-                    task.destroy();
-                } catch (final Exception e) {
-                    log.warning("An exception was thrown while destroying " + task.getClass().getName() + ": " +
-                                e.toString());
-                    log.warning("Someone, somewhere might have to wait indefinetly for something.");
+                if (runChildren) {
+                    for (final Task child : children) {
+                        child.run();
+                    }
                 }
             }
-            for (final Task child : children) {
-                child.run();
+            if (runChildren) {
+                for (final Task child : children) {
+                    child.destroy();
+                }
             }
-        }
-        for (final Task child : children) {
-            child.destroy();
-        }
-        synchronized (this) {
-            while (!queue.isEmpty()) {
-                final Task task = queue.poll();
-                task.destroy();
+            synchronized (this) {
+                while (!queue.isEmpty()) {
+                    final QueuedTask queued = queue.poll();
+                    queued.task.destroy();
+                }
+                queueSize.set(0);
+                notify();
             }
-            notify();
         }
     }
 
@@ -219,18 +370,37 @@ public class Messenger implements Runnable {
         public void destroy();
     }
 
+    private static class QueuedTask {
+
+        final Task task;
+        final long enqueuedNanos = System.nanoTime();
+
+        QueuedTask(final Task task) {
+            this.task = task;
+        }
+
+        double millisSinceEnqueued() {
+            return (System.nanoTime() - enqueuedNanos) / 1_000_000.0;
+        }
+    }
+
     private static class MessageTask implements Runnable {
 
         final MessageHandler handler;
+        final Shard shard;
+        final long enqueuedNanos = System.nanoTime();
         Message msg;
 
-        MessageTask(final Message msg, final MessageHandler handler) {
+        MessageTask(final Message msg, final MessageHandler handler, final Shard shard) {
             this.msg = msg;
             this.handler = handler;
+            this.shard = shard;
         }
 
         @Override
         public void run() {
+            shard.sendLatency.addValue((System.nanoTime() - enqueuedNanos) / 1_000_000.0);
+            shard.sendQueueSize.set(shard.sendExecutor.getQueue().size());
             final Message msg = this.msg;
             this.msg = null;
             handler.handleMessage(msg);
@@ -42,20 +42,22 @@ public class RateThrottlingPolicy extends StaticThrottlePolicy {
 
         long period = timer.milliTime() / PERIOD;
 
-        while (currentPeriod < period) {
-            if (allotted > 0) {
-                allotted = 0.0;
+        synchronized (this) {
+            while (currentPeriod < period) {
+                if (allotted > 0) {
+                    allotted = 0.0;
+                }
+
+                allotted = allotted + PERIOD * desiredRate / 1000;
+                currentPeriod++;
             }
 
-            allotted = allotted + PERIOD * desiredRate / 1000;
-            currentPeriod++;
-        }
+            if (allotted > 0.0) {
+                allotted -= 1;
+                return true;
+            }
 
-        if (allotted > 0.0) {
-            allotted -= 1;
-            return true;
+            return false;
         }
-
-        return false;
     }
 }
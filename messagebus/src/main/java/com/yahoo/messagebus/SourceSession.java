@@ -5,13 +5,18 @@ import com.yahoo.messagebus.routing.Route;
 import com.yahoo.messagebus.routing.RoutingTable;
 
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A session supporting sending new messages.
+ * <p>
+ * Sending and handling replies does not take any lock in this session, so many threads may share one session:
+ * The pending count is an atomic counter, and the {@link ThrottlePolicy} of the session is required to be thread safe.
+ * Only resending of messages blocked in {@link #sendBlocking(Message)} is done under a lock.
  *
  * @author Simon Thoresen Hult
  */
@@ -25,9 +30,11 @@ public final class SourceSession implements ReplyHandler, MessageBus.SendBlocked
     private final ReplyHandler replyHandler;
     private final ThrottlePolicy throttlePolicy;
     private volatile double timeout;
-    private volatile int pendingCount = 0;
+    private final AtomicInteger pendingCount = new AtomicInteger(0);
+    /** The number of messages being sent or pending, plus replies whose handler has not yet returned */
+    private final AtomicInteger unfinishedCount = new AtomicInteger(0);
     private volatile boolean closed = false;
-    private final Queue<BlockedMessage> blockedQ = new LinkedList<>();
+    private final Queue<BlockedMessage> blockedQ = new ConcurrentLinkedQueue<>();
 
     /**
      * <p>The default constructor requires values for all final member variables
@@ -63,23 +70,20 @@ public final class SourceSession implements ReplyHandler, MessageBus.SendBlocked
         if (destroyed.getAndSet(true)) {
             return false;
         }
-        synchronized (lock) {
-            closed = true;
-        }
+        closed = true;
         sequencer.destroy();
         mbus.sync();
         return true;
     }
 
     /**
-     * Reject all new messages and wait until no messages are pending. Before
-     * returning, this method calls {@link #destroy()}.
+     * Reject all new messages and wait until no messages are pending, and the
+     * replies to all messages are handled. Before returning, this method calls
+     * {@link #destroy()}.
      */
     public void close() {
-        synchronized (lock) {
-            closed = true;
-        }
-        if (pendingCount == 0) {
+        closed = true;
+        if (unfinishedCount.get() == 0) {
             done.countDown();
         }
         try {
@@ -128,36 +132,54 @@ public final class SourceSession implements ReplyHandler, MessageBus.SendBlocked
     }
 
     private Result sendInternal(Message message) {
-        synchronized (lock) {
-            if (closed) {
-                return new Result(ErrorCode.SEND_QUEUE_CLOSED,
-                                  "Source session is closed.");
-            }
-            if (throttlePolicy != null && ! throttlePolicy.canSend(message, pendingCount)) {
-                return new Result(ErrorCode.SEND_QUEUE_FULL,
-                                  "Too much pending data (" + pendingCount + " messages).");
-            }
-            message.pushHandler(replyHandler);
-            if (throttlePolicy != null) {
-                throttlePolicy.processMessage(message);
-            }
-            ++pendingCount;
+        // Count this message as unfinished before checking whether the session is closed, so that close()
+        // either waits for this message or this sees the session as closed
+        unfinishedCount.incrementAndGet();
+        int pending = pendingCount.incrementAndGet();
+        if (closed) {
+            pendingCount.decrementAndGet();
+            finish();
+            return new Result(ErrorCode.SEND_QUEUE_CLOSED,
+                              "Source session is closed.");
+        }
+        if (throttlePolicy != null && ! throttlePolicy.canSend(message, pending - 1)) {
+            pendingCount.decrementAndGet();
+            finish();
+            return new Result(ErrorCode.SEND_QUEUE_FULL,
+                              "Too much pending data (" + (pending - 1) + " messages).");
+        }
+        message.pushHandler(replyHandler);
+        if (throttlePolicy != null) {
+            throttlePolicy.processMessage(message);
         }
         if (message.getTrace().shouldTrace(TraceLevel.COMPONENT)) {
             message.getTrace().trace(TraceLevel.COMPONENT,
                                  "Source session accepted a " + message.getApproxSize() + " byte message. " +
-                                 pendingCount + " message(s) now pending.");
+                                 pending + " message(s) now pending.");
         }
         message.pushHandler(this);
         sequencer.handleMessage(message);
         return Result.ACCEPTED;
     }
 
+    /**
+     * Signals completion if this finished the last unfinished message of a closed session. This is called when a
+     * message is rejected, or when the handler of its reply returns, such that close() does not return while a
+     * reply is being handled.
+     */
+    private void finish() {
+        if (unfinishedCount.decrementAndGet() == 0 && closed) {
+            done.countDown();
+        }
+    }
+
     @Override
     public boolean trySend() {
         if (destroyed.get()) return false;
-        sendBlockedMessages();
-        expireStalledBlockedMessages();
+        if ( ! blockedQ.isEmpty()) {
+            sendBlockedMessages();
+            expireStalledBlockedMessages();
+        }
         return true;
     }
 
@@ -236,9 +258,7 @@ public final class SourceSession implements ReplyHandler, MessageBus.SendBlocked
         Result res = send(msg);
         if (isSendQFull(res)) {
             BlockedMessage blockedMessage = new BlockedMessage(msg);
-            synchronized (lock) {
-                blockedQ.add(blockedMessage);
-            }
+            blockedQ.add(blockedMessage);
             res = blockedMessage.waitComplete();
         }
         return res;
@@ -272,23 +292,23 @@ public final class SourceSession implements ReplyHandler, MessageBus.SendBlocked
             reply.discard();
             return;
         }
-        boolean done;
-        synchronized (lock) {
-            --pendingCount;
-            if (throttlePolicy != null) {
-                throttlePolicy.processReply(reply);
-            }
-            done = (closed && pendingCount == 0);
+        if (throttlePolicy != null) {
+            throttlePolicy.processReply(reply);
+        }
+        int pending = pendingCount.decrementAndGet();
+        if ( ! blockedQ.isEmpty()) {
             sendBlockedMessages();
         }
         if (reply.getTrace().shouldTrace(TraceLevel.COMPONENT)) {
             reply.getTrace().trace(TraceLevel.COMPONENT,
-                                   "Source session received reply. " + pendingCount + " message(s) now pending.");
+                                   "Source session received reply. " + pending + " message(s) now pending.");
         }
         ReplyHandler handler = reply.popHandler();
-        handler.handleReply(reply);
-        if (done) {
-            this.done.countDown();
+        try {
+            handler.handleReply(reply);
+        }
+        finally {
+            finish();
         }
     }
 
@@ -370,7 +390,7 @@ public final class SourceSession implements ReplyHandler, MessageBus.SendBlocked
      * @return The pending count.
      */
     public int getPendingCount() {
-        return pendingCount;
+        return pendingCount.get();
     }
 
     /**
@@ -6,6 +6,9 @@ package com.yahoo.messagebus;
  * {@link SourceSession#send(Message)} needs to be accepted by this interface's {@link #canSend(Message, int)} method.
  * All messages accepted are passed through the {@link #processMessage(Message)} method, and the corresponding replies
  * are passed through the {@link #processReply(Reply)} method.
+ * <p>
+ * The source session does not synchronize calls to these methods, as many threads may send on the same session,
+ * so implementations must be thread safe.
  *
  * @author Simon Thoresen Hult
  */
@@ -1,6 +1,7 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.messagebus.network.local;
 
+import com.yahoo.concurrent.DaemonThreadFactory;
 import com.yahoo.component.Vtag;
 import com.yahoo.jrt.slobrok.api.IMirror;
 import com.yahoo.messagebus.EmptyReply;
@@ -27,7 +28,7 @@ import static com.yahoo.messagebus.ErrorCode.NO_ADDRESS_FOR_SERVICE;
  */
 public class LocalNetwork implements Network {
 
-    private final Executor executor = Executors.newSingleThreadExecutor();
+    private final Executor executor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("local.network"));
     private final LocalWire wire;
     private final String hostId;
     private volatile NetworkOwner owner;
@@ -64,6 +64,9 @@ public class RPCNetwork implements Network, MethodHandler {
     private final Mirror mirror;
     private final Register register;
     private final TreeMap<Version, RPCSendAdapter> sendAdapters = new TreeMap<>();
+    private final int maxBatchSize;
+    private final double batchDelaySecs;
+    private RPCSendBatch batchAdapter = null;
     private NetworkOwner owner;
     private final SlobrokConfigSubscriber slobroksConfig;
     private final LinkedHashMap<String, Route> lruRouteMap = new LinkedHashMap<>(10000, 0.5f, true);
@@ -88,6 +91,8 @@ public class RPCNetwork implements Network, MethodHandler {
         orb.setMaxInputBufferSize(params.getMaxInputBufferSize());
         orb.setMaxOutputBufferSize(params.getMaxOutputBufferSize());
         targetPool = new RPCTargetPool(params.getConnectionExpireSecs());
+        maxBatchSize = params.getMaxBatchSize();
+        batchDelaySecs = params.getBatchDelaySecs();
         servicePool = new RPCServicePool(this, 4096);
 
         Method method = new Method("mbus.getVersion", "", "s", this);
@@ -181,9 +186,17 @@ public class RPCNetwork implements Network, MethodHandler {
         this.owner = owner;
 
         RPCSendAdapter adapter1 = new RPCSendV1();
-        RPCSendAdapter adapter2 = new RPCSendV2();
+        RPCSendV2 adapter2 = new RPCSendV2();
         addSendAdapter(new Version(5), adapter1);
         addSendAdapter(new Version(6,149), adapter2);
+
+        // Batches are always received, but only sent when enabled
+        batchAdapter = new RPCSendBatch(adapter2, maxBatchSize, batchDelaySecs);
+        if (maxBatchSize > 0) {
+            addSendAdapter(RPCSendBatch.VERSION, batchAdapter);
+        } else {
+            batchAdapter.attach(this);
+        }
     }
 
     @Override
@@ -273,6 +286,9 @@ public class RPCNetwork implements Network, MethodHandler {
             if (slobroksConfig != null) {
                 slobroksConfig.shutdown();
             }
+            if (batchAdapter != null) {
+                batchAdapter.destroy();
+            }
             register.shutdown();
             mirror.shutdown();
             listener.shutdown().join();
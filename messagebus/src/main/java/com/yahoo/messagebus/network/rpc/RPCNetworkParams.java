@@ -19,6 +19,8 @@ public class RPCNetworkParams {
     private int maxInputBufferSize = 256 * 1024;
     private int maxOutputBufferSize = 256 * 1024;
     private double connectionExpireSecs = 30;
+    private int maxBatchSize = 0;
+    private double batchDelaySecs = 0.001;
 
     /**
      * Constructs a new instance of this class with reasonable default values.
@@ -40,6 +42,8 @@ public class RPCNetworkParams {
         connectionExpireSecs = params.connectionExpireSecs;
         maxInputBufferSize = params.maxInputBufferSize;
         maxOutputBufferSize = params.maxOutputBufferSize;
+        maxBatchSize = params.maxBatchSize;
+        batchDelaySecs = params.batchDelaySecs;
     }
 
     /**
@@ -142,6 +146,49 @@ public class RPCNetworkParams {
         return this;
     }
 
+    /**
+     * Returns the total payload size at which a batch of messages to the same target is sent, or 0 if messages are
+     * not batched.
+     *
+     * @return The number of bytes.
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Sets the total payload size at which a batch of messages to the same target is sent. Using the value 0, which
+     * is the default, means that each message is sent in its own request. Messages are only batched to recipients
+     * of a version supporting it, and which implement the batch method, see {@link RPCSendBatch}.
+     *
+     * @param maxBatchSize The number of bytes.
+     * @return This, to allow chaining.
+     */
+    public RPCNetworkParams setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    /**
+     * Returns the max number of seconds to wait for more messages to the same target before sending a batch.
+     *
+     * @return The number of seconds.
+     */
+    public double getBatchDelaySecs() {
+        return batchDelaySecs;
+    }
+
+    /**
+     * Sets the max number of seconds to wait for more messages to the same target before sending a batch.
+     *
+     * @param secs The number of seconds.
+     * @return This, to allow chaining.
+     */
+    public RPCNetworkParams setBatchDelaySecs(double secs) {
+        this.batchDelaySecs = secs;
+        return this;
+    }
+
     /**
      * Returns the maximum input buffer size allowed for the underlying FNET connection.
      *
@@ -116,34 +116,55 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
         Reply reply = null;
         Error error = null;
         if (!req.checkReturnTypes(getReturnSpec())) {
-            // Map all known JRT errors to the appropriate message bus error.
             reply = new EmptyReply();
-            switch (req.errorCode()) {
-                case com.yahoo.jrt.ErrorCode.TIMEOUT:
-                    error = new Error(ErrorCode.TIMEOUT,
-                            "A timeout occured while waiting for '" + serviceName + "' (" +
-                                    ctx.timeout + " seconds expired); " + req.errorMessage());
-                    break;
-                case com.yahoo.jrt.ErrorCode.CONNECTION:
-                    error = new Error(ErrorCode.CONNECTION_ERROR,
-                            "A connection error occured for '" + serviceName + "'; " + req.errorMessage());
-                    break;
-                default:
-                    error = new Error(ErrorCode.NETWORK_ERROR,
-                            "A network error occured for '" + serviceName + "'; " + req.errorMessage());
-            }
+            error = toError(req, serviceName, ctx.timeout);
         } else {
             reply = createReply(req.returnValues(), serviceName, ctx.trace);
         }
-        if (ctx.trace.shouldTrace(TraceLevel.SEND_RECEIVE)) {
-            ctx.trace.trace(TraceLevel.SEND_RECEIVE,
+        deliverReply(reply, error, ctx.recipient, ctx.trace);
+    }
+
+    /**
+     * Maps the error of a failed JRT request to the appropriate message bus error.
+     *
+     * @param req         The failed request.
+     * @param serviceName The name of the service the request was sent to.
+     * @param timeout     The timeout of the request in seconds.
+     * @return The message bus error.
+     */
+    static Error toError(Request req, String serviceName, double timeout) {
+        switch (req.errorCode()) {
+            case com.yahoo.jrt.ErrorCode.TIMEOUT:
+                return new Error(ErrorCode.TIMEOUT,
+                        "A timeout occured while waiting for '" + serviceName + "' (" +
+                                timeout + " seconds expired); " + req.errorMessage());
+            case com.yahoo.jrt.ErrorCode.CONNECTION:
+                return new Error(ErrorCode.CONNECTION_ERROR,
+                        "A connection error occured for '" + serviceName + "'; " + req.errorMessage());
+            default:
+                return new Error(ErrorCode.NETWORK_ERROR,
+                        "A network error occured for '" + serviceName + "'; " + req.errorMessage());
+        }
+    }
+
+    /**
+     * Delivers a reply received from the network to the owner of the network.
+     *
+     * @param reply     The reply received.
+     * @param error     An error to add to the reply, or null.
+     * @param recipient The recipient the message was sent to.
+     * @param trace     The trace of sending the message, to be swapped into the reply.
+     */
+    final void deliverReply(Reply reply, Error error, RoutingNode recipient, Trace trace) {
+        if (trace.shouldTrace(TraceLevel.SEND_RECEIVE)) {
+            trace.trace(TraceLevel.SEND_RECEIVE,
                     "Reply (type " + reply.getType() + ") received at " + clientIdent + ".");
         }
-        reply.getTrace().swap(ctx.trace);
+        reply.getTrace().swap(trace);
         if (error != null) {
             reply.addError(error);
         }
-        net.getOwner().deliverReply(reply, ctx.recipient);
+        net.getOwner().deliverReply(reply, recipient);
     }
 
     protected final class Params {
@@ -169,23 +190,36 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
 
         request.discardParameters(); // allow garbage collection of request parameters
 
+        receive(p, new ReplyContext(request, p.version), this);
+    }
+
+    /**
+     * Decodes the message of the given parameters and delivers it to the owner of the network. The reply to the
+     * message, or an error reply if the message could not be decoded, is passed to the given reply handler with the
+     * given context.
+     *
+     * @param p            The parameters received.
+     * @param replyContext The context to set in the message, and in the reply.
+     * @param replyHandler The handler of the reply.
+     */
+    final void receive(Params p, Object replyContext, ReplyHandler replyHandler) {
         // Make sure that the owner understands the protocol.
         Protocol protocol = net.getOwner().getProtocol(p.protocolName);
         if (protocol == null) {
-            replyError(request, p.version, p.traceLevel,
+            replyError(replyContext, replyHandler, p.traceLevel,
                     new Error(ErrorCode.UNKNOWN_PROTOCOL,
                             "Protocol '" + p.protocolName + "' is not known by " + serverIdent + "."));
             return;
         }
         Routable routable = protocol.decode(p.version, p.payload);
         if (routable == null) {
-            replyError(request, p.version, p.traceLevel,
+            replyError(replyContext, replyHandler, p.traceLevel,
                     new Error(ErrorCode.DECODE_ERROR,
                             "Protocol '" + protocol.getName() + "' failed to decode routable."));
             return;
         }
         if (routable instanceof Reply) {
-            replyError(request, p.version, p.traceLevel,
+            replyError(replyContext, replyHandler, p.traceLevel,
                     new Error(ErrorCode.DECODE_ERROR,
                             "Payload decoded to a reply when expecting a message."));
             return;
@@ -194,8 +228,8 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
         if (p.route != null && p.route.length() > 0) {
             msg.setRoute(net.getRoute(p.route));
         }
-        msg.setContext(new ReplyContext(request, p.version));
-        msg.pushHandler(this);
+        msg.setContext(replyContext);
+        msg.pushHandler(replyHandler);
         msg.setRetryEnabled(p.retryEnabled);
         msg.setRetry(p.retry);
         msg.setTimeReceivedNow();
@@ -213,42 +247,54 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
         ReplyContext ctx = (ReplyContext)reply.getContext();
         reply.setContext(null);
 
+        // Encode and return the reply through the RPC request.
+        byte[] payload = encodeReply(reply, ctx.version);
+        createResponse(ctx.request.returnValues(), reply, ctx.version, payload);
+        ctx.request.returnRequest();
+    }
+
+    /**
+     * Traces the sending of a reply and encodes it. If the reply can not be encoded, an error is added to it.
+     *
+     * @param reply   The reply to encode.
+     * @param version The version to serialize for.
+     * @return The encoded reply, which is empty for empty replies.
+     */
+    final byte[] encodeReply(Reply reply, Version version) {
         // Add trace information.
         if (reply.getTrace().shouldTrace(TraceLevel.SEND_RECEIVE)) {
             reply.getTrace().trace(TraceLevel.SEND_RECEIVE,
-                    "Sending reply (version " + ctx.version + ") from " + serverIdent + ".");
+                    "Sending reply (version " + version + ") from " + serverIdent + ".");
         }
 
-        // Encode and return the reply through the RPC request.
         byte[] payload = new byte[0];
         if (reply.getType() != 0) {
             Protocol protocol = net.getOwner().getProtocol(reply.getProtocol());
             if (protocol != null) {
-                payload = protocol.encode(ctx.version, reply);
+                payload = protocol.encode(version, reply);
             }
             if (payload == null || payload.length == 0) {
                 reply.addError(new Error(ErrorCode.ENCODE_ERROR,
                         "An error occured while encoding the reply."));
             }
         }
-        createResponse(ctx.request.returnValues(), reply, ctx.version, payload);
-        ctx.request.returnRequest();
+        return payload;
     }
 
     /**
      * Send an error reply for a given request.
      *
-     * @param request    The JRT request to reply to.
-     * @param version    The version to serialize for.
-     * @param traceLevel The trace level to set in the reply.
-     * @param err        The error to reply with.
+     * @param replyContext The context of the reply.
+     * @param replyHandler The handler to send the reply to.
+     * @param traceLevel   The trace level to set in the reply.
+     * @param err          The error to reply with.
      */
-    private void replyError(Request request, Version version, int traceLevel, Error err) {
+    private void replyError(Object replyContext, ReplyHandler replyHandler, int traceLevel, Error err) {
         Reply reply = new EmptyReply();
-        reply.setContext(new ReplyContext(request, version));
+        reply.setContext(replyContext);
         reply.getTrace().setLevel(traceLevel);
         reply.addError(err);
-        handleReply(reply);
+        replyHandler.handleReply(reply);
     }
 
     private static class SendContext {
@@ -0,0 +1,422 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus.network.rpc;
+
+import com.yahoo.component.Version;
+import com.yahoo.compress.CompressionType;
+import com.yahoo.compress.Compressor;
+import com.yahoo.concurrent.DaemonThreadFactory;
+import com.yahoo.jrt.DataValue;
+import com.yahoo.jrt.Int32Value;
+import com.yahoo.jrt.Int8Value;
+import com.yahoo.jrt.Method;
+import com.yahoo.jrt.MethodHandler;
+import com.yahoo.jrt.Request;
+import com.yahoo.jrt.RequestWaiter;
+import com.yahoo.jrt.Values;
+import com.yahoo.messagebus.EmptyReply;
+import com.yahoo.messagebus.Error;
+import com.yahoo.messagebus.ErrorCode;
+import com.yahoo.messagebus.Reply;
+import com.yahoo.messagebus.ReplyHandler;
+import com.yahoo.messagebus.Trace;
+import com.yahoo.messagebus.TraceLevel;
+import com.yahoo.messagebus.routing.Hop;
+import com.yahoo.messagebus.routing.Route;
+import com.yahoo.messagebus.routing.RoutingNode;
+import com.yahoo.slime.BinaryFormat;
+import com.yahoo.slime.Cursor;
+import com.yahoo.slime.Inspector;
+import com.yahoo.slime.Slime;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Implements the request adapter for method "mbus.slime.batch", which sends many messages to the same target
+ * in a single RPC. Messages to the same {@link RPCTarget} are collected until the total size of their payloads
+ * reaches the max batch size, or the batch delay has passed since the first of them was collected. They are then
+ * sent as one request holding an array of the same message fields as sent by {@link RPCSendV2}, and the replies
+ * are returned as an array in the same order and delivered to the recipient of each message.
+ * <p>
+ * The network uses this adapter to send to recipients of at least {@link #VERSION} when batching is enabled by
+ * {@link RPCNetworkParams#setMaxBatchSize(int)}, and otherwise falls back to {@link RPCSendV2}.
+ * The method is always registered, so that batches can be received also when sending does not batch.
+ * Peers of a sufficient version may still not implement the method, such as C++ nodes. When a batch fails
+ * because the method is unknown to its target, its messages are sent again one by one, and the target is
+ * remembered such that later messages to it are sent by {@link RPCSendV2} directly.
+ * <p>
+ * Each message is passed on with its own time remaining when the batch is sent, such that time spent waiting
+ * for the batch to fill up is accounted for, and the receiver times out each message by this. The timeout of a batch
+ * is the most remaining time of its messages, such that one message close to its deadline does not time out the
+ * others.
+ *
+ * @author bratseth
+ */
+public class RPCSendBatch implements RPCSendAdapter, MethodHandler, RequestWaiter, ReplyHandler {
+
+    /** The first version able to receive batches */
+    public static final Version VERSION = new Version(7, 100);
+
+    private final static String METHOD_NAME = "mbus.slime.batch";
+    private final static String METHOD_PARAMS = "bix";
+    private final static String METHOD_RETURN = "bix";
+    private static final String MESSAGES_F = "msgs";
+    private static final String REPLIES_F = "replies";
+
+    private final RPCSendV2 single;
+    private final int maxBatchSize;
+    private final long batchDelayMicros;
+    private final Compressor compressor = new Compressor(CompressionType.LZ4, 3, 0.90, 1024);
+    private final Map<RPCTarget, Batch> batches = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private RPCNetwork net = null;
+    private String clientIdent = "client";
+
+    /**
+     * Creates a batch adapter
+     *
+     * @param single the adapter which encodes and decodes each message and reply, and which sends messages
+     *               which are not batched
+     * @param maxBatchSize the total payload size in bytes at which a batch is sent, or 0 to only receive batches
+     * @param batchDelaySecs the max time to wait for more messages to a target before sending a batch
+     */
+    public RPCSendBatch(RPCSendV2 single, int maxBatchSize, double batchDelaySecs) {
+        this.single = single;
+        this.maxBatchSize = maxBatchSize;
+        this.batchDelayMicros = (long)(batchDelaySecs * 1_000_000);
+        this.scheduler = maxBatchSize > 0 ? new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("mbus.batch"))
+                                          : null;
+    }
+
+    @Override
+    public void attach(RPCNetwork net) {
+        this.net = net;
+        String prefix = net.getIdentity().getServicePrefix();
+        if (prefix != null && prefix.length() > 0) {
+            clientIdent = "'" + prefix + "'";
+        }
+        Method method = new Method(METHOD_NAME, METHOD_PARAMS, METHOD_RETURN, this);
+        method.methodDesc("Send a batch of message bus requests and get a batch of replies back.");
+        method.paramDesc(0, "encoding", "Encoding type of the payload.")
+              .paramDesc(1, "decoded_size", "Number of bytes after payload decoding.")
+              .paramDesc(2, "payload", "Slime encoded array of messages.");
+        method.returnDesc(0, "encoding", "Encoding type of the payload.")
+              .returnDesc(1, "decoded_size", "Number of bytes after payload decoding.")
+              .returnDesc(2, "payload", "Slime encoded array of replies, in the order of the messages.");
+        net.getSupervisor().addMethod(method);
+    }
+
+    @Override
+    public void send(RoutingNode recipient, Version version, byte[] payload, long timeRemaining) {
+        Route route = new Route(recipient.getRoute());
+        Hop hop = route.removeHop(0);
+        RPCServiceAddress address = (RPCServiceAddress)recipient.getServiceAddress();
+        RPCTarget target = address.getTarget();
+        if (maxBatchSize <= 0 || hop.getIgnoreResult() || payload.length >= maxBatchSize || target.isBatchUnsupported()) {
+            single.send(recipient, version, payload, timeRemaining);
+            return;
+        }
+
+        Entry entry = new Entry(recipient, version, route, address, payload);
+        if (entry.trace.shouldTrace(TraceLevel.SEND_RECEIVE)) {
+            entry.trace.trace(TraceLevel.SEND_RECEIVE,
+                              "Batching message (version " + version + ") from " + clientIdent + " to '" +
+                              address.getServiceName() + "' with " + timeRemaining * 0.001 + " seconds timeout.");
+        }
+        while (true) {
+            Batch batch = batches.computeIfAbsent(target, this::newBatch);
+            boolean full;
+            synchronized (batch) {
+                if (batch.sent) { // sent after it was looked up: Make sure it is removed, and try again
+                    batches.remove(target, batch);
+                    continue;
+                }
+                batch.add(entry);
+                full = batch.size >= maxBatchSize;
+                if (full) {
+                    batch.sent = true;
+                    batches.remove(target, batch);
+                }
+            }
+            if (full) {
+                send(batch);
+            }
+            return;
+        }
+    }
+
+    private Batch newBatch(RPCTarget target) {
+        Batch batch = new Batch(target);
+        scheduler.schedule(() -> net.getExecutor().execute(() -> sendIfUnsent(batch)),
+                           batchDelayMicros, TimeUnit.MICROSECONDS);
+        return batch;
+    }
+
+    private void sendIfUnsent(Batch batch) {
+        synchronized (batch) {
+            if (batch.sent) return;
+            batch.sent = true;
+            batches.remove(batch.target, batch);
+        }
+        send(batch);
+    }
+
+    private void send(Batch batch) {
+        Slime slime = new Slime();
+        Cursor messages = slime.setObject().setArray(MESSAGES_F);
+        long maxTimeRemaining = 0;
+        for (Iterator<Entry> i = batch.entries.iterator(); i.hasNext(); ) {
+            Entry entry = i.next();
+            long timeRemaining = entry.recipient.getMessage().getTimeRemainingNow();
+            if (timeRemaining <= 0) {
+                i.remove();
+                replyTimeout(entry);
+                continue;
+            }
+            RPCSendV2.encodeMessage(messages.addObject(), entry.version, entry.route, entry.address,
+                                    entry.recipient.getMessage(), timeRemaining, entry.trace.getLevel(), entry.payload);
+            maxTimeRemaining = Math.max(maxTimeRemaining, timeRemaining);
+        }
+        if (batch.entries.isEmpty()) return;
+
+        batch.timeout = maxTimeRemaining * 0.001;
+        byte[] serializedSlime = BinaryFormat.encode(slime,
+                                                     RPCSendV2.encodingCapacity(batch.size, batch.entries.size()));
+        Compressor.Compression compressionResult = compressor.compress(serializedSlime);
+        Request req = new Request(METHOD_NAME);
+        Values v = req.parameters();
+        v.add(new Int8Value(compressionResult.type().getCode()));
+        v.add(new Int32Value(compressionResult.uncompressedSize()));
+        v.add(new DataValue(compressionResult.data()));
+        req.setContext(batch);
+        batch.target.getJRTTarget().invokeAsync(req, batch.timeout, this);
+        req.discardParameters(); // allow garbage collection of request parameters
+    }
+
+    /** Sends all batches not yet sent, and stops scheduling sending of batches */
+    void destroy() {
+        if (scheduler == null) return;
+        scheduler.shutdownNow();
+        for (Batch batch : batches.values()) {
+            sendIfUnsent(batch);
+        }
+    }
+
+    @Override
+    public void handleRequestDone(Request req) {
+        net.getExecutor().execute(() -> doRequestDone(req));
+    }
+
+    private void doRequestDone(Request req) {
+        Batch batch = (Batch)req.getContext();
+        if (req.errorCode() == com.yahoo.jrt.ErrorCode.NO_SUCH_METHOD) {
+            batch.target.setBatchUnsupported();
+            for (Entry entry : batch.entries) {
+                sendSingle(entry);
+            }
+            return;
+        }
+
+        Inspector replies = null;
+        String decodeError = null;
+        if (req.checkReturnTypes(METHOD_RETURN)) {
+            try {
+                Values ret = req.returnValues();
+                CompressionType compression = CompressionType.valueOf(ret.get(0).asInt8());
+                byte[] slimeBytes = compressor.decompress(ret.get(2).asData(), compression, ret.get(1).asInt32());
+                replies = BinaryFormat.decode(slimeBytes).get().field(REPLIES_F);
+            } catch (RuntimeException e) {
+                decodeError = e.toString();
+            }
+        }
+        for (int i = 0; i < batch.entries.size(); i++) {
+            Entry entry = batch.entries.get(i);
+            String serviceName = ((RPCServiceAddress)entry.recipient.getServiceAddress()).getServiceName();
+            Reply reply;
+            Error error = null;
+            if (decodeError != null) {
+                reply = new EmptyReply();
+                error = new Error(ErrorCode.DECODE_ERROR,
+                                  "Failed to decode the replies from '" + serviceName + "': " + decodeError);
+            } else if (replies == null) {
+                reply = new EmptyReply();
+                error = RPCSend.toError(req, serviceName, batch.timeout);
+            } else if (replies.entries() != batch.entries.size()) {
+                reply = new EmptyReply();
+                error = new Error(ErrorCode.DECODE_ERROR,
+                                  "Expected " + batch.entries.size() + " replies from '" + serviceName +
+                                  "', but got " + replies.entries() + ".");
+            } else {
+                reply = single.decodeReply(replies.entry(i), serviceName, entry.trace);
+            }
+            single.deliverReply(reply, error, entry.recipient, entry.trace);
+        }
+    }
+
+    /** Sends the message of the given entry by itself, after its batch was not accepted by the target */
+    private void sendSingle(Entry entry) {
+        long timeRemaining = entry.recipient.getMessage().getTimeRemainingNow();
+        if (timeRemaining <= 0) {
+            replyTimeout(entry);
+            return;
+        }
+        single.send(entry.recipient, entry.version, entry.payload, timeRemaining);
+    }
+
+    private void replyTimeout(Entry entry) {
+        single.deliverReply(new EmptyReply(),
+                            new Error(ErrorCode.TIMEOUT, "Aborting transmission because zero time remains."),
+                            entry.recipient, entry.trace);
+    }
+
+    @Override
+    public void invoke(Request request) {
+        request.detach();
+        net.getExecutor().execute(() -> doInvoke(request));
+    }
+
+    private void doInvoke(Request request) {
+        List<RPCSend.Params> params = new ArrayList<>();
+        try {
+            Values args = request.parameters();
+            CompressionType compression = CompressionType.valueOf(args.get(0).asInt8());
+            byte[] slimeBytes = compressor.decompress(args.get(2).asData(), compression, args.get(1).asInt32());
+            Inspector messages = BinaryFormat.decode(slimeBytes).get().field(MESSAGES_F);
+            for (int i = 0; i < messages.entries(); i++) {
+                params.add(single.toParams(messages.entry(i)));
+            }
+        } catch (RuntimeException e) {
+            request.setError(com.yahoo.jrt.ErrorCode.METHOD_FAILED, "Failed to decode batch of messages: " + e);
+            request.returnRequest();
+            return;
+        }
+        request.discardParameters(); // allow garbage collection of request parameters
+
+        ReceivedBatch batch = new ReceivedBatch(request, params.size());
+        if (params.isEmpty()) {
+            batch.returnReplies();
+            return;
+        }
+        for (int i = 0; i < params.size(); i++) {
+            RPCSend.Params p = params.get(i);
+            single.receive(p, new ReplyContext(batch, i, p.version), this);
+        }
+    }
+
+    @Override
+    public void handleReply(Reply reply) {
+        ReplyContext ctx = (ReplyContext)reply.getContext();
+        reply.setContext(null);
+        byte[] payload = single.encodeReply(reply, ctx.version);
+        ctx.batch.setReply(ctx.index, reply, ctx.version, payload);
+    }
+
+    /** Encodes the replies of a received batch, and returns them when all are set */
+    private class ReceivedBatch {
+
+        final Request request;
+        final Reply[] replies;
+        final Version[] versions;
+        final byte[][] payloads;
+        int remaining;
+
+        ReceivedBatch(Request request, int size) {
+            this.request = request;
+            this.replies = new Reply[size];
+            this.versions = new Version[size];
+            this.payloads = new byte[size][];
+            this.remaining = size;
+        }
+
+        void setReply(int index, Reply reply, Version version, byte[] payload) {
+            synchronized (this) {
+                replies[index] = reply;
+                versions[index] = version;
+                payloads[index] = payload;
+                if (--remaining > 0) return;
+            }
+            returnReplies();
+        }
+
+        void returnReplies() {
+            Slime slime = new Slime();
+            Cursor array = slime.setObject().setArray(REPLIES_F);
+            int payloadSize = 0;
+            for (int i = 0; i < replies.length; i++) {
+                RPCSendV2.encodeReply(array.addObject(), replies[i], versions[i], payloads[i]);
+                payloadSize += payloads[i].length;
+            }
+            byte[] serializedSlime = BinaryFormat.encode(slime, RPCSendV2.encodingCapacity(payloadSize, replies.length));
+            Compressor.Compression compressionResult = compressor.compress(serializedSlime);
+            Values ret = request.returnValues();
+            ret.add(new Int8Value(compressionResult.type().getCode()));
+            ret.add(new Int32Value(compressionResult.uncompressedSize()));
+            ret.add(new DataValue(compressionResult.data()));
+            request.returnRequest();
+        }
+
+    }
+
+    /** Messages collected to be sent to a target in one request */
+    private static class Batch {
+
+        final RPCTarget target;
+        final List<Entry> entries = new ArrayList<>();
+        int size = 0;
+        /** The timeout of the request sending this, in seconds, set when it is sent */
+        double timeout = 0;
+        boolean sent = false;
+
+        Batch(RPCTarget target) {
+            this.target = target;
+        }
+
+        void add(Entry entry) {
+            entries.add(entry);
+            size += entry.payload.length;
+        }
+
+    }
+
+    /** A message collected in a batch, which is encoded when the batch is sent */
+    private static class Entry {
+
+        final RoutingNode recipient;
+        final Trace trace;
+        final Version version;
+        final Route route;
+        final RPCServiceAddress address;
+        final byte[] payload;
+
+        Entry(RoutingNode recipient, Version version, Route route, RPCServiceAddress address, byte[] payload) {
+            this.recipient = recipient;
+            this.trace = new Trace(recipient.getTrace().getLevel());
+            this.version = version;
+            this.route = route;
+            this.address = address;
+            this.payload = payload;
+        }
+
+    }
+
+    private static class ReplyContext {
+
+        final ReceivedBatch batch;
+        final int index;
+        final Version version;
+
+        ReplyContext(ReceivedBatch batch, int index, Version version) {
+            this.batch = batch;
+            this.index = index;
+            this.version = version;
+        }
+
+    }
+
+}
@@ -26,6 +26,7 @@ public class RPCTarget implements RequestWaiter {
     private boolean targetInvoked = false;
     private Version version = null;
     private List<VersionHandler> versionHandlers = new LinkedList<>();
+    private volatile boolean batchUnsupported = false;
 
     /**
      * <p>Constructs a new instance of this class.</p>
@@ -81,6 +82,25 @@ public class RPCTarget implements RequestWaiter {
         return ref.get();
     }
 
+    /**
+     * <p>Returns whether this target is known to not implement the method
+     * receiving batches of messages, see {@link RPCSendBatch}.</p>
+     *
+     * @return True if batches should not be sent to this target.
+     */
+    boolean isBatchUnsupported() {
+        return batchUnsupported;
+    }
+
+    /**
+     * <p>Remembers that this target does not implement the method receiving
+     * batches of messages, such that messages to it are sent one by one for
+     * as long as the connection is kept.</p>
+     */
+    void setBatchUnsupported() {
+        batchUnsupported = true;
+    }
+
     /**
      * <p>Requests the version of this target be passed to the given {@link
      * VersionHandler}. If the version is available, the handler is called
@@ -3,9 +3,13 @@ package com.yahoo.messagebus;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -95,6 +99,95 @@ public class MessengerTestCase {
         assertTrue(tryMessenger(msn));
     }
 
+    @Test
+    public void requireThatRepliesToTheSameHandlerAreDeliveredInOrder() throws InterruptedException {
+        Messenger msn = new Messenger(4);
+        msn.start();
+        int handlers = 8, replies = 1000;
+        List<OrderRecordingHandler> recorders = new ArrayList<>();
+        for (int i = 0; i < handlers; ++i) {
+            recorders.add(new OrderRecordingHandler(replies));
+        }
+        for (int i = 0; i < replies; ++i) {
+            for (OrderRecordingHandler recorder : recorders) {
+                Reply reply = new EmptyReply();
+                reply.setContext(i);
+                msn.deliverReply(reply, recorder);
+            }
+        }
+        for (OrderRecordingHandler recorder : recorders) {
+            assertTrue(recorder.done.await(60, TimeUnit.SECONDS));
+            assertTrue(recorder.inOrder);
+            assertEquals(replies, recorder.received);
+        }
+        msn.destroy();
+    }
+
+    @Test
+    public void requireThatSyncWaitsForAllShards() throws InterruptedException {
+        Messenger msn = new Messenger(4);
+        msn.start();
+        AtomicInteger handled = new AtomicInteger();
+        ReplyHandler handler = reply -> handled.incrementAndGet();
+        for (int i = 0; i < 100; ++i) {
+            msn.deliverReply(new EmptyReply(), handler);
+            msn.deliverReply(new EmptyReply(), reply -> handled.incrementAndGet());
+        }
+        msn.sync();
+        assertEquals(200, handled.get());
+        msn.destroy();
+    }
+
+    @Test
+    public void requireThatSyncFromAShardDoesNotWaitForTheOtherShards() throws InterruptedException {
+        Messenger msn = new Messenger(4);
+        msn.start();
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        msn.deliverReply(new EmptyReply(), reply -> {
+            blocked.countDown();
+            try {
+                release.await(60, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                // ignore
+            }
+        });
+        assertTrue(blocked.await(60, TimeUnit.SECONDS));
+
+        int handlers = 32;
+        CountDownLatch anySynced = new CountDownLatch(1);
+        CountDownLatch allSynced = new CountDownLatch(handlers);
+        for (int i = 0; i < handlers; ++i) {
+            msn.deliverReply(new EmptyReply(), reply -> {
+                msn.sync();
+                anySynced.countDown();
+                allSynced.countDown();
+            });
+        }
+        assertTrue(anySynced.await(60, TimeUnit.SECONDS));
+        assertEquals(1, release.getCount());
+
+        release.countDown();
+        assertTrue(allSynced.await(60, TimeUnit.SECONDS));
+        msn.destroy();
+    }
+
+    @Test
+    public void requireThatShardsHaveMetrics() throws InterruptedException {
+        Messenger msn = new Messenger(3);
+        assertEquals(3, msn.getNumThreads());
+        assertEquals(3, msn.getMetrics().getMetrics().size());
+        assertEquals("shard0", msn.getMetrics().getMetrics().get(0).getName());
+        msn.start();
+        assertTrue(tryMessenger(msn));
+        msn.destroy();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void requireThatAtLeastOneThreadIsUsed() {
+        new Messenger(0);
+    }
+
     private static boolean tryMessenger(Messenger msn) {
         MyTask task = new MyTask();
         msn.enqueue(task);
@@ -106,6 +199,24 @@ public class MessengerTestCase {
         }
     }
 
+    private static class OrderRecordingHandler implements ReplyHandler {
+
+        final CountDownLatch done;
+        int received = 0;
+        boolean inOrder = true;
+
+        OrderRecordingHandler(int expected) {
+            done = new CountDownLatch(expected);
+        }
+
+        @Override
+        public void handleReply(Reply reply) {
+            inOrder &= (Integer)reply.getContext() == received;
+            ++received;
+            done.countDown();
+        }
+    }
+
     private static class MyTask implements Messenger.Task {
 
         final CountDownLatch runLatch = new CountDownLatch(1);
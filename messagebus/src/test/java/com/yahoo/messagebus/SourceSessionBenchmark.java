@@ -0,0 +1,85 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus;
+
+import com.yahoo.messagebus.network.local.LocalNetwork;
+import com.yahoo.messagebus.network.local.LocalWire;
+import com.yahoo.messagebus.routing.Route;
+import com.yahoo.messagebus.test.SimpleMessage;
+import com.yahoo.messagebus.test.SimpleProtocol;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of a single source session shared by an increasing number of sending threads,
+ * over a local network to a destination which replies immediately.
+ * The messenger of the sending bus uses a thread per processor.
+ * Run the main method with an optional number of messages to send per thread count (default 1000000).
+ *
+ * @author bratseth
+ */
+public class SourceSessionBenchmark {
+
+    private static final int[] threadCounts = { 1, 2, 4, 8, 16, 32 };
+
+    public static void main(String[] args) throws InterruptedException {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        LocalWire wire = new LocalWire();
+        MessageBus sourceBus = createBus(wire, Runtime.getRuntime().availableProcessors());
+        MessageBus destinationBus = createBus(wire, 1);
+        DestinationSession[] destination = new DestinationSession[1];
+        destination[0] = destinationBus.createDestinationSession(new DestinationSessionParams().setMessageHandler(message -> {
+            Reply reply = new EmptyReply();
+            reply.swapState(message);
+            destination[0].reply(reply);
+        }));
+        Route route = Route.parse(destination[0].getConnectionSpec());
+
+        for (int i = 0; i < 2; i++) { // the first round warms up
+            for (int threads : threadCounts) {
+                long startNanos = System.nanoTime();
+                send(sourceBus, route, messages, threads);
+                double seconds = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+                System.out.println(String.format("%2d threads: %10.0f messages/s", threads, messages / seconds));
+            }
+        }
+        sourceBus.destroy();
+        destinationBus.destroy();
+    }
+
+    private static MessageBus createBus(LocalWire wire, int messengerThreads) {
+        return new MessageBus(new LocalNetwork(wire),
+                              new MessageBusParams().addProtocol(new SimpleProtocol())
+                                                    .setRetryPolicy(null)
+                                                    .setMessengerThreads(messengerThreads));
+    }
+
+    /** Sends the given number of messages, divided over the given number of threads, and waits for all replies */
+    private static void send(MessageBus bus, Route route, int messages, int threads) throws InterruptedException {
+        CountDownLatch replies = new CountDownLatch(messages);
+        SourceSession session = bus.createSourceSession(new SourceSessionParams().setTimeout(600.0)
+                                                                                 .setReplyHandler(reply -> replies.countDown()));
+        List<Thread> senders = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            int messagesOfThread = messages / threads + (i < messages % threads ? 1 : 0);
+            senders.add(new Thread(() -> {
+                try {
+                    for (int j = 0; j < messagesOfThread; j++)
+                        session.sendBlocking(new SimpleMessage("message").setRoute(route));
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        senders.forEach(Thread::start);
+        for (Thread sender : senders)
+            sender.join();
+        if ( ! replies.await(600, TimeUnit.SECONDS))
+            throw new IllegalStateException("Timed out waiting for replies");
+        session.close();
+    }
+
+}
@@ -14,12 +14,16 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author Simon Thoresen Hult
@@ -87,6 +91,47 @@ public class ThrottlerTestCase {
         dst_s.destroy();
     }
 
+    @Test
+    public void testMaxCountWithConcurrentSenders() throws InterruptedException {
+        SourceSessionParams params = new SourceSessionParams().setTimeout(600.0);
+        StaticThrottlePolicy policy = new StaticThrottlePolicy();
+        policy.setMaxPendingCount(10);
+        params.setThrottlePolicy(policy);
+
+        Receptor src_rr = new Receptor();
+        SourceSession src_s = src.mb.createSourceSession(src_rr, params);
+        QueueAdapter dst_q = new QueueAdapter();
+        DestinationSession dst_s = dst.mb.createDestinationSession("session", true, dst_q);
+        src.waitSlobrok("test/dst/session", 1);
+
+        // Let many threads send at once, and check that the window is never exceeded
+        AtomicInteger accepted = new AtomicInteger();
+        List<Thread> senders = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            senders.add(new Thread(() -> {
+                for (int j = 0; j < 100; j++) {
+                    if (src_s.send(new SimpleMessage("msg"), "test").isAccepted()) {
+                        accepted.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        senders.forEach(Thread::start);
+        for (Thread sender : senders) {
+            sender.join();
+        }
+        assertEquals(policy.getMaxPendingCount(), accepted.get());
+        assertEquals(policy.getMaxPendingCount(), src_s.getPendingCount());
+
+        assertTrue(dst_q.waitSize(policy.getMaxPendingCount(), 60));
+        while (!dst_q.isEmpty()) {
+            dst_s.acknowledge((Message)dst_q.dequeue());
+        }
+        src_s.close();
+        assertEquals(0, src_s.getPendingCount());
+        dst_s.destroy();
+    }
+
     @Test
     public void testMaxSize() {
         // Prepare a source session with throttle enabled.
@@ -204,6 +249,127 @@ public class ThrottlerTestCase {
         assertTrue(windowSize >= 40 && windowSize <= 50);
     }
 
+    @Test
+    public void testLatencyWindowSize() {
+        CustomTimer timer = new CustomTimer();
+        LatencyThrottlePolicy policy = new LatencyThrottlePolicy(timer);
+
+        double windowSize = getWindowSize(policy, timer, 100, 1000);
+        assertTrue(windowSize >= 100 && windowSize <= 115);
+
+        windowSize = getWindowSize(policy, timer, 200, 1000);
+        assertTrue(windowSize >= 200 && windowSize <= 220);
+
+        windowSize = getWindowSize(policy, timer, 50, 1000);
+        assertTrue(windowSize >= 50 && windowSize <= 60);
+    }
+
+    @Test
+    public void testLatencyToleranceLetsMoreMessagesQueue() {
+        CustomTimer timer = new CustomTimer();
+        LatencyThrottlePolicy policy = new LatencyThrottlePolicy(timer).setLatencyTolerance(3);
+
+        double windowSize = getWindowSize(policy, timer, 100, 1000);
+        assertTrue(windowSize >= 115 && windowSize <= 130);
+    }
+
+    @Test
+    public void testNonFiniteLatencyToleranceIsRejected() {
+        CustomTimer timer = new CustomTimer();
+        LatencyThrottlePolicy policy = new LatencyThrottlePolicy(timer);
+        for (double tolerance : new double[] { Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 0.5 }) {
+            try {
+                policy.setLatencyTolerance(tolerance);
+                fail("Expected tolerance " + tolerance + " to be rejected");
+            }
+            catch (IllegalArgumentException expected) { }
+        }
+        assertEquals(1.5, policy.getLatencyTolerance(), 0);
+
+        // The policy still opens its window, rather than being wedged by a non-finite gradient
+        double windowSize = getWindowSize(policy, timer, 100, 1000);
+        assertTrue(windowSize >= 100 && windowSize <= 115);
+    }
+
+    @Test
+    public void testLatencyWindowSizeAdaptsToChangedMinLatency() {
+        CustomTimer timer = new CustomTimer();
+        LatencyThrottlePolicy policy = new LatencyThrottlePolicy(timer).setMinLatencyPeriod(10 * 1000);
+
+        double windowSize = getWindowSize(policy, timer, 100, 1000);
+        assertTrue(windowSize >= 100 && windowSize <= 115);
+
+        // The latency of the receivers triples without queueing
+        windowSize = getWindowSize(policy, timer, 100, 3000);
+        assertTrue(windowSize >= 100 && windowSize <= 115);
+    }
+
+    @Test
+    public void testLatencyWindowSizeBacksOffWhenBusy() {
+        CustomTimer timer = new CustomTimer();
+        LatencyThrottlePolicy policy = new LatencyThrottlePolicy(timer).setMinLatencyPeriod(Long.MAX_VALUE);
+
+        getWindowSize(policy, timer, 100, 1000);
+        double windowSize = policy.getMaxPendingCount();
+        assertTrue(windowSize >= 100 && windowSize <= 115);
+
+        Message msg = new SimpleMessage("foo");
+        int numPending = 0;
+        while (policy.canSend(msg, numPending)) {
+            policy.processMessage(msg);
+            ++numPending;
+        }
+        timer.millis += 1000;
+        for (int i = 0; i < numPending; ++i) {
+            Reply reply = new SimpleReply("bar");
+            reply.setContext(msg.getContext());
+            reply.addError(new Error(ErrorCode.SESSION_BUSY, "busy"));
+            policy.processReply(reply);
+        }
+        assertEquals(windowSize / 2, policy.getMaxPendingCount(), 1);
+    }
+
+    @Test
+    public void testLatencyMinAndMaxWindowSize() {
+        CustomTimer timer = new CustomTimer();
+        LatencyThrottlePolicy policy = new LatencyThrottlePolicy(timer).setMinWindowSize(150);
+        double windowSize = getWindowSize(policy, timer, 100, 1000);
+        assertTrue(windowSize >= 150);
+
+        policy = new LatencyThrottlePolicy(timer).setMaxWindowSize(50);
+        assertEquals(50, getWindowSize(policy, timer, 100, 1000));
+    }
+
+    /**
+     * Sends and replies to all messages the given policy allows 999 times, where replies take the given latency
+     * until more than the given number of messages are pending, after which the latency grows linearly.
+     * Returns the largest window size of the last 100 rounds, to disregard the reduced window of min latency probes.
+     */
+    private int getWindowSize(LatencyThrottlePolicy policy, CustomTimer timer, int maxPending, long latency) {
+        Message msg = new SimpleMessage("foo");
+        List<Object> contexts = new ArrayList<>();
+        int windowSize = 0;
+        for (int i = 0; i < 999; ++i) {
+            contexts.clear();
+            while (policy.canSend(msg, contexts.size())) {
+                policy.processMessage(msg);
+                contexts.add(msg.getContext());
+            }
+            int numPending = contexts.size();
+            timer.millis += (numPending < maxPending) ? latency : latency + (numPending - maxPending) * latency / 10;
+
+            for (Object context : contexts) {
+                Reply reply = new SimpleReply("bar");
+                reply.setContext(context);
+                policy.processReply(reply);
+            }
+            if (i >= 899) {
+                windowSize = Math.max(windowSize, policy.getMaxPendingCount());
+            }
+        }
+        return windowSize;
+    }
+
     private int getWindowSize(DynamicThrottlePolicy policy, CustomTimer timer, int maxPending) {
         Message msg = new SimpleMessage("foo");
         Reply reply = new SimpleReply("bar");
@@ -10,7 +10,10 @@ import com.yahoo.messagebus.test.SimpleProtocol;
 import com.yahoo.messagebus.test.SimpleReply;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.TimeUnit;
 
@@ -19,6 +22,8 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.number.OrderingComparison.lessThan;
 import static org.hamcrest.number.OrderingComparison.greaterThanOrEqualTo;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
@@ -146,6 +151,167 @@ public class LocalNetworkTest {
 
     }
 
+    @Test
+    public void requireThatRepliesToEachSessionAreDeliveredInOrderWithManyMessengerThreads() throws InterruptedException {
+        final LocalWire wire = new LocalWire();
+
+        final Server serverA = new Server(wire, 4);
+        final int sessions = 4, messages = 200;
+        final List<OrderRecordingHandler> recorders = new ArrayList<>();
+        final List<SourceSession> sources = new ArrayList<>();
+        for (int i = 0; i < sessions; ++i) {
+            final OrderRecordingHandler recorder = new OrderRecordingHandler(messages);
+            recorders.add(recorder);
+            sources.add(serverA.mbus.createSourceSession(new SourceSessionParams()
+                                                                 .setTimeout(600.0)
+                                                                 .setThrottlePolicy(null)
+                                                                 .setReplyHandler(recorder)));
+        }
+
+        final Server serverB = new Server(wire);
+        final DestinationSession destination = serverB.newDestinationSession();
+
+        for (int i = 0; i < messages; ++i) {
+            for (int j = 0; j < sessions; ++j) {
+                final Message msg = new SimpleMessage(j + ":" + i);
+                msg.setRoute(new Route().addHop(Hop.parse(destination.getConnectionSpec())));
+                assertThat(sources.get(j).send(msg).isAccepted(), is(true));
+            }
+        }
+
+        final List<List<String>> replied = new ArrayList<>();
+        for (int i = 0; i < sessions; ++i) {
+            replied.add(new ArrayList<>());
+        }
+        for (int i = 0; i < sessions * messages; ++i) {
+            final Message msg = serverB.messages.poll(60, TimeUnit.SECONDS);
+            assertThat(msg, instanceOf(SimpleMessage.class));
+            final String value = ((SimpleMessage)msg).getValue();
+            replied.get(Integer.parseInt(value.substring(0, value.indexOf(':')))).add(value);
+            final Reply reply = new SimpleReply(value);
+            reply.swapState(msg);
+            destination.reply(reply);
+        }
+
+        for (int i = 0; i < sessions; ++i) {
+            final OrderRecordingHandler recorder = recorders.get(i);
+            assertTrue(recorder.done.await(60, TimeUnit.SECONDS));
+            assertEquals(replied.get(i), recorder.values);
+        }
+
+        serverA.mbus.destroy();
+        serverB.mbus.destroy();
+    }
+
+    @Test
+    public void requireThatCloseFromAnotherMessengerThreadWaitsForTheReplyBeingHandled() throws InterruptedException {
+        final LocalWire wire = new LocalWire();
+
+        final Server serverA = new Server(wire, 4);
+        final Server serverB = new Server(wire);
+        final DestinationSession destination = serverB.newDestinationSession();
+
+        final ThreadRecordingHandler blockingHandler = new ThreadRecordingHandler();
+        final SourceSession blocking = serverA.mbus.createSourceSession(new SourceSessionParams()
+                                                                                .setTimeout(600.0)
+                                                                                .setReplyHandler(blockingHandler));
+        final Thread blockingThread = sendAndReply(blocking, blockingHandler, serverB, destination);
+
+        // Find a session whose replies are handled by another messenger thread
+        ThreadRecordingHandler closingHandler;
+        SourceSession closing;
+        do {
+            closingHandler = new ThreadRecordingHandler();
+            closing = serverA.mbus.createSourceSession(new SourceSessionParams()
+                                                               .setTimeout(600.0)
+                                                               .setReplyHandler(closingHandler));
+        } while (sendAndReply(closing, closingHandler, serverB, destination) == blockingThread);
+
+        // The last reply to the closed session is no longer pending, but close must wait until it is handled
+        blockingHandler.block = true;
+        send(blocking, destination);
+        reply(serverB, destination);
+        assertTrue(blockingHandler.handling.await(60, TimeUnit.SECONDS));
+
+        closingHandler.toClose = blocking;
+        send(closing, destination);
+        reply(serverB, destination);
+        assertFalse(closingHandler.closed.await(100, TimeUnit.MILLISECONDS));
+
+        blockingHandler.released.countDown();
+        assertTrue(closingHandler.closed.await(60, TimeUnit.SECONDS));
+
+        serverA.mbus.destroy();
+        serverB.mbus.destroy();
+    }
+
+    /** Sends a message from the given session and replies to it, and returns the thread which handles the reply */
+    private static Thread sendAndReply(SourceSession source, ThreadRecordingHandler handler,
+                                       Server server, DestinationSession destination) throws InterruptedException {
+        send(source, destination);
+        reply(server, destination);
+        final Thread thread = handler.threads.poll(60, TimeUnit.SECONDS);
+        assertNotNull(thread);
+        return thread;
+    }
+
+    private static void send(SourceSession source, DestinationSession destination) {
+        final Message msg = new SimpleMessage("foo");
+        msg.setRoute(new Route().addHop(Hop.parse(destination.getConnectionSpec())));
+        assertThat(source.send(msg).isAccepted(), is(true));
+    }
+
+    private static void reply(Server server, DestinationSession destination) throws InterruptedException {
+        final Message msg = server.messages.poll(60, TimeUnit.SECONDS);
+        assertThat(msg, instanceOf(SimpleMessage.class));
+        final Reply reply = new SimpleReply("bar");
+        reply.swapState(msg);
+        destination.reply(reply);
+    }
+
+    private static class ThreadRecordingHandler implements ReplyHandler {
+
+        final BlockingDeque<Thread> threads = new LinkedBlockingDeque<>();
+        final CountDownLatch handling = new CountDownLatch(1);
+        final CountDownLatch released = new CountDownLatch(1);
+        final CountDownLatch closed = new CountDownLatch(1);
+        volatile boolean block = false;
+        volatile SourceSession toClose = null;
+
+        @Override
+        public void handleReply(final Reply reply) {
+            if (block) {
+                handling.countDown();
+                try {
+                    released.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            if (toClose != null) {
+                toClose.close();
+                closed.countDown();
+            }
+            threads.addLast(Thread.currentThread());
+        }
+    }
+
+    private static class OrderRecordingHandler implements ReplyHandler {
+
+        final List<String> values = new ArrayList<>();
+        final CountDownLatch done;
+
+        OrderRecordingHandler(int expected) {
+            done = new CountDownLatch(expected);
+        }
+
+        @Override
+        public void handleReply(final Reply reply) {
+            values.add(((SimpleReply)reply).getValue());
+            done.countDown();
+        }
+    }
+
     private static class Server implements MessageHandler, ReplyHandler {
 
         final MessageBus mbus;
@@ -153,9 +319,14 @@ public class LocalNetworkTest {
         final BlockingDeque<Reply> replies = new LinkedBlockingDeque<>();
 
         Server(final LocalWire wire) {
+            this(wire, 1);
+        }
+
+        Server(final LocalWire wire, final int messengerThreads) {
             mbus = new MessageBus(new LocalNetwork(wire),
                                   new MessageBusParams().addProtocol(new SimpleProtocol())
-                                                        .setRetryPolicy(null));
+                                                        .setRetryPolicy(null)
+                                                        .setMessengerThreads(messengerThreads));
         }
 
         SourceSession newSourceSession() {
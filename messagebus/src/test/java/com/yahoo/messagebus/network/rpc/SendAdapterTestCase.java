@@ -17,8 +17,11 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static org.junit.Assert.*;
 
@@ -105,6 +108,90 @@ public class SendAdapterTestCase {
         }
     }
 
+    @Test
+    public void requireCorrectVersionSelectionWithBatching() throws ListenFailedException {
+        TestServer batchingServer = createBatchingServer(1000);
+        try {
+            assertTrue(batchingServer.net.getSendAdapter(new Version(6,149)) instanceof RPCSendV2);
+            assertTrue(batchingServer.net.getSendAdapter(new Version(7,99)) instanceof RPCSendV2);
+            assertTrue(batchingServer.net.getSendAdapter(new Version(7,100)) instanceof RPCSendBatch);
+            assertTrue(batchingServer.net.getSendAdapter(new Version(9,9999)) instanceof RPCSendBatch);
+        }
+        finally {
+            batchingServer.destroy();
+        }
+    }
+
+    @Test
+    public void requireThatMessagesCanBeSentInBatches() throws ListenFailedException {
+        assertBatchedSend(new Version(9, 999), 100); // batched by size
+        assertBatchedSend(new Version(9, 999), 1000000); // batched by time
+        assertBatchedSend(new Version(7, 99), 100); // the destination does not support batches
+    }
+
+    @Test
+    public void requireThatMessagesAreSentOneByOneToTargetsNotImplementingBatches() throws ListenFailedException {
+        ((RPCNetwork)dstServer.net).getSupervisor().removeMethod("mbus.slime.batch");
+        assertBatchedSend(new Version(9, 999), 100, false);
+        assertBatchedSend(new Version(9, 999), 1000000, false);
+    }
+
+    private void assertBatchedSend(Version dstVersion, int maxBatchSize) throws ListenFailedException {
+        assertBatchedSend(dstVersion, maxBatchSize, true);
+    }
+
+    private void assertBatchedSend(Version dstVersion, int maxBatchSize, boolean dstImplementsBatches) throws ListenFailedException {
+        TestServer batchingServer = createBatchingServer(maxBatchSize);
+        batchingServer.net.setVersion(new Version(9, 999));
+        dstServer.net.setVersion(dstVersion);
+        Receptor replies = new Receptor();
+        SourceSession session = batchingServer.mb.createSourceSession(
+                new SourceSessionParams().setTimeout(600.0).setThrottlePolicy(null).setReplyHandler(replies));
+        try {
+            assertTrue(batchingServer.waitSlobrok("dst/session", 1));
+            int count = 25;
+            for (int i = 0; i < count; i++) {
+                Message msg = new SimpleMessage("message" + i);
+                msg.getTrace().setLevel(9);
+                assertTrue(session.send(msg, Route.parse("dst/session")).isAccepted());
+            }
+            List<Message> received = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                Message msg = ((Receptor)dstSession.getMessageHandler()).getMessage(300);
+                assertNotNull(msg);
+                received.add(msg);
+            }
+            for (Message msg : received) {
+                Reply reply = new SimpleReply("reply to " + ((SimpleMessage)msg).getValue());
+                reply.swapState(msg);
+                dstSession.reply(reply);
+            }
+            Set<String> replyValues = new HashSet<>();
+            for (int i = 0; i < count; i++) {
+                Reply reply = replies.getReply(300);
+                assertNotNull(reply);
+                assertFalse(reply.hasErrors());
+                assertEquals(dstImplementsBatches && dstVersion.compareTo(RPCSendBatch.VERSION) >= 0,
+                             reply.getTrace().toString().contains("Batching message"));
+                replyValues.add(((SimpleReply)reply).getValue());
+                assertEquals("reply to " + ((SimpleMessage)reply.getMessage()).getValue(), ((SimpleReply)reply).getValue());
+            }
+            assertEquals(count, replyValues.size());
+        }
+        finally {
+            session.destroy();
+            batchingServer.destroy();
+        }
+    }
+
+    private TestServer createBatchingServer(int maxBatchSize) throws ListenFailedException {
+        return new TestServer(new MessageBusParams().addProtocol(new TestProtocol()),
+                              new RPCNetworkParams().setIdentity(new Identity("batching"))
+                                                    .setSlobrokConfigId(TestServer.getSlobrokConfig(slobrok))
+                                                    .setMaxBatchSize(maxBatchSize)
+                                                    .setBatchDelaySecs(0.005));
+    }
+
     ////////////////////////////////////////////////////////////////////////////////
     //
     // Utilities
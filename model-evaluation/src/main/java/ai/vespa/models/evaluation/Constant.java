@@ -2,26 +2,58 @@
 package ai.vespa.models.evaluation;
 
 import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorType;
+
+import java.util.function.Supplier;
 
 /**
  * A named constant loaded from a file.
+ * The value of a constant may be loaded when it is first requested rather than when the constant is created.
  *
- * This is immutable.
+ * This is immutable and multithread safe.
  *
  * @author bratseth
  */
 class Constant {
 
     private final String name;
-    private final Tensor value;
+    private final TensorType type;
+    private final Supplier<Tensor> loader;
+    private volatile Tensor value;
 
     Constant(String name, Tensor value) {
         this.name = name;
+        this.type = value.type();
+        this.loader = null;
         this.value = value;
     }
 
+    /**
+     * Creates a constant whose value is loaded by the given supplier when first requested
+     *
+     * @param name the name of the constant
+     * @param type the type of the value of this constant
+     * @param loader the supplier of the value of this, which will be invoked at most once
+     */
+    Constant(String name, TensorType type, Supplier<Tensor> loader) {
+        this.name = name;
+        this.type = type;
+        this.loader = loader;
+    }
+
     public String name() { return name; }
 
-    public Tensor value() { return value; }
+    /** Returns the type of this, without loading its value */
+    public TensorType type() { return type; }
+
+    public Tensor value() {
+        Tensor value = this.value;
+        if (value != null) return value;
+        synchronized (this) {
+            if (this.value == null)
+                this.value = loader.get();
+            return this.value;
+        }
+    }
 
 }
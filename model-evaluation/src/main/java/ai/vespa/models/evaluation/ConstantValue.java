@@ -0,0 +1,142 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.models.evaluation;
+
+import com.yahoo.searchlib.rankingexpression.evaluation.TensorValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.Value;
+import com.yahoo.searchlib.rankingexpression.rule.Function;
+import com.yahoo.searchlib.rankingexpression.rule.TruthOperator;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorType;
+
+/**
+ * The Value of a constant, which is not loaded until the value is first requested,
+ * such that constants which are never used are never loaded.
+ * This is multithread safe and may be shared between contexts.
+ *
+ * @author bratseth
+ */
+class ConstantValue extends Value {
+
+    private final Constant constant;
+
+    private volatile TensorValue value = null;
+
+    ConstantValue(Constant constant) {
+        this.constant = constant;
+    }
+
+    private TensorValue value() {
+        TensorValue value = this.value;
+        if (value == null)
+            this.value = value = new TensorValue(constant.value());
+        return value;
+    }
+
+    @Override
+    public TensorType type() {
+        return constant.type();
+    }
+
+    @Override
+    public double asDouble() {
+        return value().asDouble();
+    }
+
+    @Override
+    public Tensor asTensor() {
+        return value().asTensor();
+    }
+
+    @Override
+    public boolean hasDouble() {
+        return type().rank() == 0;
+    }
+
+    @Override
+    public boolean asBoolean() {
+        return value().asBoolean();
+    }
+
+    @Override
+    public Value negate() {
+        return value().negate();
+    }
+
+    @Override
+    public Value add(Value value) {
+        return value().add(value);
+    }
+
+    @Override
+    public Value subtract(Value value) {
+        return value().subtract(value);
+    }
+
+    @Override
+    public Value multiply(Value value) {
+        return value().multiply(value);
+    }
+
+    @Override
+    public Value divide(Value value) {
+        return value().divide(value);
+    }
+
+    @Override
+    public Value modulo(Value value) {
+        return value().modulo(value);
+    }
+
+    @Override
+    public Value and(Value value) {
+        return value().and(value);
+    }
+
+    @Override
+    public Value or(Value value) {
+        return value().or(value);
+    }
+
+    @Override
+    public Value not() {
+        return value().not();
+    }
+
+    @Override
+    public Value power(Value value) {
+        return value().power(value);
+    }
+
+    @Override
+    public Value compare(TruthOperator operator, Value value) {
+        return value().compare(operator, value);
+    }
+
+    @Override
+    public Value function(Function function, Value value) {
+        return value().function(function, value);
+    }
+
+    @Override
+    public Value asMutable() {
+        return value().asMutable();
+    }
+
+    @Override
+    public String toString() {
+        return "constant(" + constant.name() + ")";
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other == this) return true;
+        if (!(other instanceof Value)) return false;
+        return value().equals(other);
+    }
+
+    @Override
+    public int hashCode() {
+        return value().hashCode();
+    }
+
+}
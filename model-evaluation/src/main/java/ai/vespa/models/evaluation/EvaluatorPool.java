@@ -0,0 +1,54 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.models.evaluation;
+
+import com.yahoo.searchlib.rankingexpression.ExpressionFunction;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * A bounded pool of evaluators of a function. Evaluators are reset and returned to the pool when they are closed,
+ * such that evaluating a function in steady state does not create new contexts.
+ * When the pool is empty a new evaluator is created, and when it is full closed evaluators are discarded.
+ *
+ * This is multithread safe.
+ *
+ * @author bratseth
+ */
+class EvaluatorPool {
+
+    /** The max number of idle evaluators kept by a pool, enough for each processor to have a couple in use */
+    static final int defaultMaxSize = Runtime.getRuntime().availableProcessors() * 2;
+
+    private final ExpressionFunction function;
+
+    /** The context evaluators are copied from, which is never used for evaluation itself */
+    private final LazyArrayContext prototype;
+
+    private final ArrayBlockingQueue<FunctionEvaluator> evaluators;
+
+    EvaluatorPool(ExpressionFunction function, LazyArrayContext prototype, int maxSize) {
+        this.function = function;
+        this.prototype = prototype;
+        this.evaluators = new ArrayBlockingQueue<>(maxSize);
+    }
+
+    /** Returns an unused evaluator from this pool, or a new one if none is available */
+    FunctionEvaluator acquire() {
+        FunctionEvaluator evaluator = evaluators.poll();
+        if (evaluator != null) {
+            evaluator.reopen();
+            return evaluator;
+        }
+        return new FunctionEvaluator(function, prototype.copy(), this);
+    }
+
+    /** Resets the given evaluator of this pool and keeps it for reuse, unless this is full */
+    void release(FunctionEvaluator evaluator) {
+        evaluator.reset();
+        evaluators.offer(evaluator);
+    }
+
+    /** Returns the number of idle evaluators in this */
+    int size() { return evaluators.size(); }
+
+}
@@ -5,28 +5,52 @@ import com.google.common.annotations.Beta;
 import com.yahoo.searchlib.rankingexpression.ExpressionFunction;
 import com.yahoo.searchlib.rankingexpression.evaluation.DoubleValue;
 import com.yahoo.searchlib.rankingexpression.evaluation.TensorValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.Value;
 import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorAddress;
 import com.yahoo.tensor.TensorType;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
- * An evaluator which can be used to evaluate a single function once.
+ * An evaluator which can be used to evaluate a single function once,
+ * either for a single set of bindings or for a batch of them.
+ * <p>
+ * Evaluators taken from a pool must be closed when they are no longer used, which returns them to the pool
+ * to be reused by a later evaluation. Closing has no effect on other evaluators.
  *
  * @author bratseth
  */
 @Beta
 // This wraps all access to the context and the ranking expression to avoid incorrect usage
-public class FunctionEvaluator {
+public class FunctionEvaluator implements AutoCloseable {
 
     private final ExpressionFunction function;
     private final LazyArrayContext context;
+
+    /** The pool this is returned to on close, or null if this is not pooled */
+    private final EvaluatorPool pool;
+
     private boolean evaluated = false;
+    private boolean closed = false;
 
     FunctionEvaluator(ExpressionFunction function, LazyArrayContext context) {
+        this(function, context, null);
+    }
+
+    FunctionEvaluator(ExpressionFunction function, LazyArrayContext context, EvaluatorPool pool) {
         this.function = function;
         this.context = context;
+        this.pool = pool;
     }
 
     /**
@@ -39,6 +63,11 @@ public class FunctionEvaluator {
     public FunctionEvaluator bind(String name, Tensor value) {
         if (evaluated)
             throw new IllegalStateException("Cannot bind a new value in a used evaluator");
+        context.put(name, new TensorValue(validate(name, value)));
+        return this;
+    }
+
+    private Tensor validate(String name, Tensor value) {
         TensorType requiredType = function.argumentTypes().get(name);
         if (requiredType == null)
             throw new IllegalArgumentException("'" + name + "' is not a valid argument in " + function +
@@ -47,8 +76,7 @@ public class FunctionEvaluator {
                                                                                   .collect(Collectors.joining(", ")));
         if ( ! value.type().isAssignableTo(requiredType))
             throw new IllegalArgumentException("'" + name + "' must be of type " + requiredType + ", not " + value.type());
-        context.put(name, new TensorValue(value));
-        return this;
+        return value;
     }
 
     /**
@@ -64,14 +92,178 @@ public class FunctionEvaluator {
     }
 
     public Tensor evaluate() {
+        requireArgumentsBound();
+        evaluated = true;
+        return function.getBody().evaluate(context).asTensor();
+    }
+
+    /**
+     * Evaluates this function once for each of the given sets of bindings, and returns the results in the same order.
+     * Values bound in this by <code>bind</code> are used in every evaluation where they are not bound by the
+     * binding set itself.
+     * <p>
+     * This is cheaper than evaluating a new evaluator for each binding set, as the same context is reused
+     * for the entire batch, and the constants and the resolved evaluation plans of the function are shared
+     * by all the evaluations.
+     *
+     * @param batch the sets of argument bindings to evaluate this function with
+     * @return the result of each evaluation, in the order of the binding sets
+     * @throws IllegalArgumentException if an argument is not valid for this function
+     * @throws IllegalStateException if this evaluator is already used, or an argument is missing in a binding set
+     */
+    public List<Tensor> evaluate(List<Map<String, Tensor>> batch) {
+        if (evaluated)
+            throw new IllegalStateException("Cannot evaluate a batch in a used evaluator");
+        evaluated = true;
+
+        List<Tensor> results = new ArrayList<>(batch.size());
+        Map<String, Value> sharedValues = new HashMap<>();
+        for (Map<String, Tensor> bindings : batch) {
+            for (Map.Entry<String, Tensor> binding : bindings.entrySet()) {
+                Tensor value = validate(binding.getKey(), binding.getValue());
+                sharedValues.computeIfAbsent(binding.getKey(), context::get);
+                context.put(binding.getKey(), new TensorValue(value));
+            }
+            requireArgumentsBound();
+            context.resetFunctionValues();
+            results.add(function.getBody().evaluate(context).asTensor());
+
+            for (String name : bindings.keySet()) // restore the values shared by the batch
+                context.put(name, sharedValues.get(name));
+        }
+        return results;
+    }
+
+    /**
+     * Evaluates this function for each label in the given batch dimension.
+     * Each argument which has the batch dimension is sliced into one argument value per label of that dimension,
+     * while arguments without it are used in all the evaluations. The results are returned as a single tensor
+     * having the batch dimension in addition to the dimensions of the function result.
+     * <p>
+     * For example, if the function takes an argument <code>x</code> of type <code>tensor(d1[784])</code>,
+     * it can be evaluated for 500 inputs at once by passing a <code>tensor(batch{},d1[784])</code> as <code>x</code>
+     * with the batch dimension <code>batch</code>.
+     *
+     * @param batchDimension the name of the dimension holding the batch
+     * @param arguments the argument values, each of which may or may not have the batch dimension
+     * @return the results of evaluating the function for each label of the batch dimension, as one tensor
+     * @throws IllegalArgumentException if no argument has the batch dimension, the batch dimension has no labels,
+     *         an argument having the batch dimension has no value for one of its labels, or an argument is not valid
+     * @throws IllegalStateException if this evaluator is already used, or an argument is missing
+     */
+    public Tensor evaluate(String batchDimension, Map<String, Tensor> arguments) {
+        Optional<TensorType.Dimension> dimension = Optional.empty();
+        Map<String, Map<String, Tensor>> batch = new LinkedHashMap<>();
+        Set<String> batchArguments = new HashSet<>();
+        for (Map.Entry<String, Tensor> argument : arguments.entrySet()) {
+            if (argument.getValue().type().dimension(batchDimension).isPresent()) {
+                if ( ! dimension.isPresent())
+                    dimension = argument.getValue().type().dimension(batchDimension);
+                batchArguments.add(argument.getKey());
+                for (Map.Entry<String, Tensor> slice : slice(argument.getValue(), batchDimension).entrySet())
+                    batch.computeIfAbsent(slice.getKey(), __ -> new HashMap<>()).put(argument.getKey(), slice.getValue());
+            }
+            else {
+                bind(argument.getKey(), argument.getValue());
+            }
+        }
+        if ( ! dimension.isPresent())
+            throw new IllegalArgumentException("No argument to " + function + " has the batch dimension '" +
+                                               batchDimension + "'");
+        if (batch.isEmpty())
+            throw new IllegalArgumentException("The batch dimension '" + batchDimension + "' of the arguments to " +
+                                               function + " has no labels");
+        for (Map.Entry<String, Map<String, Tensor>> entry : batch.entrySet()) {
+            for (String argument : batchArguments)
+                if ( ! entry.getValue().containsKey(argument))
+                    throw new IllegalArgumentException("Argument '" + argument + "' has no value for label '" +
+                                                       entry.getKey() + "' of the batch dimension '" + batchDimension + "'");
+        }
+
+        List<Tensor> results = evaluate(new ArrayList<>(batch.values()));
+        return join(new ArrayList<>(batch.keySet()), results, dimension.get());
+    }
+
+    /**
+     * Returns this evaluator to the pool it was taken from, if any.
+     * This evaluator must not be used after it is closed, but the results it returned remain valid.
+     */
+    @Override
+    public void close() {
+        if (pool == null || closed) return;
+        closed = true;
+        pool.release(this);
+    }
+
+    /** Restores this to the state of a new evaluator, discarding all bound and computed values */
+    void reset() {
+        context.reset();
+        evaluated = false;
+    }
+
+    /** Marks this as taken from its pool, such that it can be closed again */
+    void reopen() {
+        closed = false;
+    }
+
+    private void requireArgumentsBound() {
         for (Map.Entry<String, TensorType> argument : function.argumentTypes().entrySet()) {
             if (argument.getValue().rank() == 0) continue; // Scalar argumentds can be skipped (defaults to 0)
             if (context.get(argument.getKey()) == LazyArrayContext.defaultContextValue)
                 throw new IllegalStateException("Missing argument '" + argument.getKey() +
                                                 "': Must be bound to a value of type " + argument.getValue());
         }
-        evaluated = true;
-        return function.getBody().evaluate(context).asTensor();
+    }
+
+    /** Returns the slices of the given tensor for each label in the given dimension, in the order encountered */
+    private static Map<String, Tensor> slice(Tensor tensor, String dimension) {
+        int dimensionIndex = tensor.type().indexOfDimension(dimension).get();
+        TensorType.Builder sliceTypeBuilder = new TensorType.Builder(tensor.type().valueType());
+        for (TensorType.Dimension d : tensor.type().dimensions())
+            if ( ! d.name().equals(dimension))
+                sliceTypeBuilder.dimension(d);
+        TensorType sliceType = sliceTypeBuilder.build();
+
+        Map<String, Tensor.Builder> slices = new LinkedHashMap<>();
+        String[] sliceLabels = new String[sliceType.rank()];
+        for (Iterator<Tensor.Cell> i = tensor.cellIterator(); i.hasNext(); ) {
+            Tensor.Cell cell = i.next();
+            TensorAddress address = cell.getKey();
+            for (int j = 0, k = 0; j < address.size(); j++)
+                if (j != dimensionIndex)
+                    sliceLabels[k++] = address.label(j);
+            slices.computeIfAbsent(address.label(dimensionIndex), __ -> Tensor.Builder.of(sliceType))
+                  .cell(TensorAddress.of(sliceLabels), cell.getValue());
+        }
+
+        Map<String, Tensor> builtSlices = new LinkedHashMap<>();
+        for (Map.Entry<String, Tensor.Builder> slice : slices.entrySet())
+            builtSlices.put(slice.getKey(), slice.getValue().build());
+        return builtSlices;
+    }
+
+    /** Returns the given tensors joined into one tensor where each is found at the corresponding label in the dimension */
+    private static Tensor join(List<String> labels, List<Tensor> tensors, TensorType.Dimension dimension) {
+        TensorType.Builder typeBuilder = new TensorType.Builder(tensors.get(0).type().valueType());
+        for (TensorType.Dimension d : tensors.get(0).type().dimensions())
+            typeBuilder.dimension(d);
+        typeBuilder.dimension(dimension);
+        TensorType type = typeBuilder.build();
+        int dimensionIndex = type.indexOfDimension(dimension.name()).get();
+
+        Tensor.Builder builder = Tensor.Builder.of(type);
+        String[] addressLabels = new String[type.rank()];
+        for (int i = 0; i < tensors.size(); i++) {
+            addressLabels[dimensionIndex] = labels.get(i);
+            for (Iterator<Tensor.Cell> cells = tensors.get(i).cellIterator(); cells.hasNext(); ) {
+                Tensor.Cell cell = cells.next();
+                for (int j = 0, k = 0; j < addressLabels.length; j++)
+                    if (j != dimensionIndex)
+                        addressLabels[j] = cell.getKey().label(k++);
+                builder.cell(TensorAddress.of(addressLabels), cell.getValue());
+            }
+        }
+        return builder.build();
     }
 
     /** Returns the function evaluated by this */
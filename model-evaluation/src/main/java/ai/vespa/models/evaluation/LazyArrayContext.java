@@ -8,7 +8,6 @@ import com.yahoo.searchlib.rankingexpression.Reference;
 import com.yahoo.searchlib.rankingexpression.evaluation.Context;
 import com.yahoo.searchlib.rankingexpression.evaluation.ContextIndex;
 import com.yahoo.searchlib.rankingexpression.evaluation.DoubleValue;
-import com.yahoo.searchlib.rankingexpression.evaluation.TensorValue;
 import com.yahoo.searchlib.rankingexpression.evaluation.Value;
 import com.yahoo.searchlib.rankingexpression.rule.CompositeNode;
 import com.yahoo.searchlib.rankingexpression.rule.ExpressionNode;
@@ -121,6 +120,22 @@ public final class LazyArrayContext extends Context implements ContextIndex {
         return index;
     }
 
+    /**
+     * Discards all function values computed in this context, such that this can be reused to evaluate
+     * with new argument values without creating a new copy.
+     */
+    void resetFunctionValues() {
+        indexedBindings.resetFunctionValues();
+    }
+
+    /**
+     * Restores this context to the state it had when it was created, such that it can be reused for a new
+     * evaluation as if it was a new copy: Values put in this are discarded, as are all function values computed.
+     */
+    void reset() {
+        indexedBindings.reset();
+    }
+
     /**
      * Creates a copy of this context suitable for evaluating against the same ranking expression
      * in a different thread or for re-binding free variables.
@@ -140,11 +155,15 @@ public final class LazyArrayContext extends Context implements ContextIndex {
         /** The current values set, pre-converted to doubles */
         private final Value[] values;
 
+        /** The values of this when it was created, which values are restored to on reset */
+        private final Value[] initialValues;
+
         private IndexedBindings(ImmutableMap<String, Integer> nameToIndex,
                                 Value[] values,
                                 ImmutableSet<String> arguments) {
             this.nameToIndex = nameToIndex;
             this.values = values;
+            this.initialValues = values.clone();
             this.arguments = arguments;
         }
 
@@ -178,7 +197,7 @@ public final class LazyArrayContext extends Context implements ContextIndex {
                 String constantReference = "constant(" + constant.name() + ")";
                 Integer index = nameToIndex.get(constantReference);
                 if (index != null)
-                    values[index] = new TensorValue(constant.value());
+                    values[index] = new ConstantValue(constant);
             }
 
             for (Map.Entry<FunctionReference, ExpressionFunction> referencedFunction : referencedFunctions.entrySet()) {
@@ -186,6 +205,7 @@ public final class LazyArrayContext extends Context implements ContextIndex {
                 if (index != null) // Referenced in this, so bind it
                     values[index] = new LazyValue(referencedFunction.getKey(), owner, model);
             }
+            initialValues = values.clone();
         }
 
         private void extractBindTargets(ExpressionNode node,
@@ -232,6 +252,17 @@ public final class LazyArrayContext extends Context implements ContextIndex {
         Set<String> arguments() { return arguments; }
         Integer indexOf(String name) { return nameToIndex.get(name); }
 
+        void reset() {
+            System.arraycopy(initialValues, 0, values, 0, values.length);
+            resetFunctionValues();
+        }
+
+        void resetFunctionValues() {
+            for (Value value : values)
+                if (value instanceof LazyValue)
+                    ((LazyValue)value).reset();
+        }
+
         IndexedBindings copy(Context context) {
             Value[] valueCopy = new Value[values.length];
             for (int i = 0; i < values.length; i++)
@@ -147,6 +147,11 @@ class LazyValue extends Value {
         return computedValue().hashCode();
     }
 
+    /** Discards the value computed by this, if any, such that it will be computed again on next access */
+    void reset() {
+        computedValue = null;
+    }
+
     LazyValue copyFor(Context context) {
         return new LazyValue(this.function, context, model);
     }
@@ -41,6 +41,9 @@ public class Model {
     /** Context prototypes, indexed by function name (as all invocations of the same function share the same context prototype) */
     private final ImmutableMap<String, LazyArrayContext> contextPrototypes;
 
+    /** Pools of reusable evaluators of the free functions, indexed by function name */
+    private final ImmutableMap<String, EvaluatorPool> evaluatorPools;
+
     private final ExpressionOptimizer expressionOptimizer = new ExpressionOptimizer();
 
     /** Programmatically create a model containing functions without constant of function references only */
@@ -98,6 +101,13 @@ public class Model {
             functionsBuilder.put(function.getKey(), optimizedFunction);
         }
         this.referencedFunctions = functionsBuilder.build();
+
+        ImmutableMap.Builder<String, EvaluatorPool> poolsBuilder = new ImmutableMap.Builder<>();
+        for (ExpressionFunction function : this.functions)
+            poolsBuilder.put(function.getName(), new EvaluatorPool(function,
+                                                                   contextPrototypes.get(function.getName()),
+                                                                   EvaluatorPool.defaultMaxSize));
+        this.evaluatorPools = poolsBuilder.build();
     }
 
     /** Returns an optimized version of the given function */
@@ -171,22 +181,54 @@ public class Model {
      * @throws IllegalArgumentException if the function is not present, or not uniquely identified by the names given
      */
     public FunctionEvaluator evaluatorOf(String ... names) {  // TODO: Parameter overloading?
+        return evaluatorOf(resolveFunction(names));
+    }
+
+    /**
+     * Returns an evaluator of the given function, taken from a pool of evaluators of the function.
+     * This is the same as {@link #evaluatorOf}, except that the evaluator must be closed after use, which
+     * returns it to the pool such that it can be reused. This avoids creating a new evaluation context for each
+     * evaluation. Pooled evaluators may be used by any thread, but by one thread at the time.
+     *
+     * Usage:
+     * <code>try (FunctionEvaluator evaluator = model.pooledEvaluatorOf("myFunction")) {
+     *     Tensor result = evaluator.bind("foo", value).bind("bar", value).evaluate();
+     * }</code>
+     *
+     * @param names the names identifying the function, as in {@link #evaluatorOf}
+     * @throws IllegalArgumentException if the function is not present, or not uniquely identified by the names given
+     */
+    public FunctionEvaluator pooledEvaluatorOf(String ... names) {
+        if (names.length == 1) { // fast path for the full function name
+            EvaluatorPool pool = evaluatorPools.get(names[0]);
+            if (pool != null) return pool.acquire();
+        }
+        return evaluatorPools.get(resolveFunction(names).getName()).acquire();
+    }
+
+    /** Returns the evaluator pool of the given free function, or null if it is not present. For testing. */
+    EvaluatorPool evaluatorPool(String functionName) {
+        return evaluatorPools.get(functionName);
+    }
+
+    /** Returns the function identified by the given names, as described in {@link #evaluatorOf} */
+    private ExpressionFunction resolveFunction(String ... names) {
         if (names.length == 0) {
             if (functions.size() > 1)
                 throwUndeterminedFunction("More than one function is available in " + this + ", but no name is given");
-            return evaluatorOf(functions.get(0));
+            return functions.get(0);
         }
         else if (names.length == 1) {
             String name = names[0];
             ExpressionFunction function = function(name);
-            if (function != null) return evaluatorOf(function);
+            if (function != null) return function;
 
             List<ExpressionFunction> functionsStartingByName =
                     functions.stream().filter(f -> f.getName().startsWith(name + ".")).collect(Collectors.toList());
             if (functionsStartingByName.size() == 0)
                 throwUndeterminedFunction("No function '" + name + "' in " + this);
             else if (functionsStartingByName.size() == 1)
-                return evaluatorOf(functionsStartingByName.get(0));
+                return functionsStartingByName.get(0);
             else
                 throwUndeterminedFunction("Multiple functions start by '" + name + "' in " + this);
 
@@ -195,7 +237,7 @@ public class Model {
             String name = names[0] + "." + names[1];
             ExpressionFunction function = function(name);
             if (function == null) throwUndeterminedFunction("No function '" + name + "' in " + this);
-            return evaluatorOf(function);
+            return function;
         }
         throw new IllegalArgumentException("No more than 2 names can be given when choosing a function, got " +
                                            Arrays.toString(names));
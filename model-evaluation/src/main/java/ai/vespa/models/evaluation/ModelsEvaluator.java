@@ -49,6 +49,20 @@ public class ModelsEvaluator extends AbstractComponent {
         return requireModel(modelName).evaluatorOf(names);
     }
 
+    /**
+     * Returns an evaluator of the given function in the given model, taken from a pool of evaluators of the function.
+     * The evaluator must be closed after use, which returns it to the pool. The pools are owned by the models,
+     * and are therefore discarded along with the models of this when a new evaluator replaces this.
+     *
+     * @param modelName the name of the model
+     * @param names the 0-2 name components identifying the output to compute
+     * @throws IllegalArgumentException if the function or model is not present
+     * @see Model#pooledEvaluatorOf
+     */
+    public FunctionEvaluator pooledEvaluatorOf(String modelName, String ... names) {
+        return requireModel(modelName).pooledEvaluatorOf(names);
+    }
+
     /** Returns the given model, or throws a IllegalArgumentException if it does not exist */
     public Model requireModel(String name) {
         Model model = models.get(name);
@@ -5,7 +5,6 @@ import com.yahoo.collections.Pair;
 import com.yahoo.config.FileReference;
 import com.yahoo.filedistribution.fileacquirer.FileAcquirer;
 import com.yahoo.io.GrowableByteBuffer;
-import com.yahoo.io.IOUtils;
 import com.yahoo.searchlib.rankingexpression.ExpressionFunction;
 import com.yahoo.searchlib.rankingexpression.RankingExpression;
 import com.yahoo.searchlib.rankingexpression.parser.ParseException;
@@ -18,6 +17,11 @@ import com.yahoo.vespa.config.search.core.RankingConstantsConfig;
 import java.io.File;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -38,6 +42,9 @@ import java.util.regex.Pattern;
  */
 public class RankProfilesConfigImporter {
 
+    /** The max number of bytes read from the start of a constant file to find the type of its tensor */
+    private static final int maxTypeHeaderSize = 64 * 1024;
+
     private final FileAcquirer fileAcquirer;
 
     public RankProfilesConfigImporter(FileAcquirer fileAcquirer) {
@@ -51,8 +58,9 @@ public class RankProfilesConfigImporter {
     public Map<String, Model> importFrom(RankProfilesConfig config, RankingConstantsConfig constantsConfig) {
         try {
             Map<String, Model> models = new HashMap<>();
+            List<Constant> largeConstants = readLargeConstants(constantsConfig);
             for (RankProfilesConfig.Rankprofile profile : config.rankprofile()) {
-                Model model = importProfile(profile, constantsConfig);
+                Model model = importProfile(profile, largeConstants);
                 models.put(model.name(), model);
             }
             return models;
@@ -62,10 +70,10 @@ public class RankProfilesConfigImporter {
         }
     }
 
-    private Model importProfile(RankProfilesConfig.Rankprofile profile, RankingConstantsConfig constantsConfig)
+    private Model importProfile(RankProfilesConfig.Rankprofile profile, List<Constant> largeConstants)
             throws ParseException {
 
-        List<Constant> constants = readLargeConstants(constantsConfig);
+        List<Constant> constants = new ArrayList<>(largeConstants);
 
         Map<FunctionReference, ExpressionFunction> functions = new LinkedHashMap<>();
         Map<FunctionReference, ExpressionFunction> referencedFunctions = new LinkedHashMap<>();
@@ -136,28 +144,59 @@ public class RankProfilesConfigImporter {
         return null;
     }
 
+    /**
+     * Returns the large constants of the given config. These are shared by all the models. Their files are
+     * acquired and validated here, but their values are not read until they are first used.
+     */
     private List<Constant> readLargeConstants(RankingConstantsConfig constantsConfig) {
         List<Constant> constants = new ArrayList<>();
 
+        boolean readsByFileReference = overridesReadTensorFromFileReference();
         for (RankingConstantsConfig.Constant constantConfig : constantsConfig.constant()) {
-            constants.add(new Constant(constantConfig.name(),
-                                       readTensorFromFile(constantConfig.name(),
-                                                          TensorType.fromSpec(constantConfig.type()),
-                                                          constantConfig.fileref())));
+            String name = constantConfig.name();
+            TensorType type = TensorType.fromSpec(constantConfig.type());
+            FileReference fileReference = constantConfig.fileref();
+            if (readsByFileReference) { // let the subclass both acquire and read the file when the constant is used
+                constants.add(new Constant(name, type, () -> readTensorFromFile(name, type, fileReference)));
+            }
+            else {
+                File file = acquireConstantFile(name, type, fileReference);
+                constants.add(new Constant(name, type, () -> readTensorFromFile(name, type, file)));
+            }
         }
         return constants;
     }
 
-    protected Tensor readTensorFromFile(String name, TensorType type, FileReference fileReference) {
+    /** Returns whether a subclass overrides the deprecated {@link #readTensorFromFile(String, TensorType, FileReference)} */
+    private boolean overridesReadTensorFromFileReference() {
+        for (Class<?> c = getClass(); c != RankProfilesConfigImporter.class; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod("readTensorFromFile", String.class, TensorType.class, FileReference.class);
+                return true;
+            }
+            catch (NoSuchMethodException e) {
+                // check the superclass
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Waits for the file of a constant to become available, and validates that it holds a tensor
+     * which can be assigned to the type of the constant.
+     */
+    protected File acquireConstantFile(String name, TensorType type, FileReference fileReference) {
         try {
             File file = fileAcquirer.waitFor(fileReference, 7, TimeUnit.DAYS);
-            if (file.getName().endsWith(".tbf"))
-                return TypedBinaryFormat.decode(Optional.of(type),
-                                                GrowableByteBuffer.wrap(IOUtils.readFileBytes(file)));
-            else
+            if ( ! file.getName().endsWith(".tbf"))
                 throw new IllegalArgumentException("Constant files on other formats than .tbf are not supported, got " +
                                                    file + " for constant " + name);
             // TODO: Support json and json.lz4
+            TensorType fileType = readType(file);
+            if ( ! fileType.isAssignableTo(type))
+                throw new IllegalArgumentException("Constant " + name + " has type " + type + ", but " + file +
+                                                   " contains a tensor of type " + fileType);
+            return file;
         }
         catch (InterruptedException e) {
             throw new IllegalStateException("Gave up waiting for constant " + name);
@@ -167,6 +206,52 @@ public class RankProfilesConfigImporter {
         }
     }
 
+    /**
+     * Reads a constant tensor from a file returned by {@link #acquireConstantFile}. Dense tensors of double or
+     * float cells are memory mapped rather than read into the heap, such that their values are read from the
+     * file when accessed.
+     */
+    protected Tensor readTensorFromFile(String name, TensorType type, File file) {
+        try {
+            return TypedBinaryFormat.decodeWithoutCopying(Optional.of(type), map(file));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Acquires and reads a constant tensor from file.
+     *
+     * @deprecated override {@link #acquireConstantFile} and {@link #readTensorFromFile(String, TensorType, File)}
+     *             instead, such that constant files are acquired and validated on import
+     */
+    @Deprecated // TODO: Remove on Vespa 8
+    protected Tensor readTensorFromFile(String name, TensorType type, FileReference fileReference) {
+        return readTensorFromFile(name, type, acquireConstantFile(name, type, fileReference));
+    }
+
+    /** Reads the type of the tensor in the given file, without reading the tensor */
+    private static TensorType readType(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate((int)Math.min(channel.size(), maxTypeHeaderSize));
+            while (header.hasRemaining())
+                if (channel.read(header) < 0) break;
+            header.flip();
+            return TypedBinaryFormat.decodeType(new GrowableByteBuffer(header));
+        }
+        catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Could not read the tensor type of " + file, e);
+        }
+    }
+
+    /** Maps the given file into memory. The mapping remains valid after the file is closed. */
+    private static MappedByteBuffer map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
     /** Collected information about small constants */
     private static class SmallConstantsInfo {
 
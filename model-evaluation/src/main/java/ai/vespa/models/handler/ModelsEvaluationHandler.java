@@ -20,6 +20,7 @@ import java.io.OutputStream;
 import java.net.URI;
 import java.nio.charset.Charset;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.Executor;
@@ -30,6 +31,9 @@ public class ModelsEvaluationHandler extends ThreadedHttpRequestHandler {
     public static final String VERSION_V1 = "v1";
     public static final String EVALUATE = "eval";
 
+    /** The request property naming the argument dimension holding a batch of inputs to evaluate at once */
+    public static final String BATCH = "batch";
+
     private final ModelsEvaluator modelsEvaluator;
 
     public ModelsEvaluationHandler(ModelsEvaluator modelsEvaluator, Executor executor) {
@@ -71,15 +75,40 @@ public class ModelsEvaluationHandler extends ThreadedHttpRequestHandler {
     }
 
     private HttpResponse evaluateModel(HttpRequest request, Model model, String[] function)  {
-        FunctionEvaluator evaluator = model.evaluatorOf(function);
+        try (FunctionEvaluator evaluator = model.pooledEvaluatorOf(function)) {
+            Optional<String> batchDimension = property(request, BATCH);
+            if (batchDimension.isPresent())
+                return evaluateModelBatch(request, evaluator, batchDimension.get());
+            for (Map.Entry<String, TensorType> argument : evaluator.function().argumentTypes().entrySet()) {
+                property(request, argument.getKey()).ifPresent(value -> evaluator.bind(argument.getKey(),
+                                                                                       Tensor.from(argument.getValue(), value)));
+            }
+            Tensor result = evaluator.evaluate();
+            return new Response(200, JsonFormat.encode(result));
+        }
+    }
+
+    /**
+     * Evaluates a batch of inputs at once. Arguments having the batch dimension must be given with their
+     * type (as "tensor(batch{},...):{...}"), while other arguments are parsed as in single evaluation and used
+     * for all the inputs of the batch.
+     */
+    private HttpResponse evaluateModelBatch(HttpRequest request, FunctionEvaluator evaluator, String batchDimension) {
+        Map<String, Tensor> arguments = new LinkedHashMap<>();
         for (Map.Entry<String, TensorType> argument : evaluator.function().argumentTypes().entrySet()) {
-            property(request, argument.getKey()).ifPresent(value -> evaluator.bind(argument.getKey(),
-                                                                                   Tensor.from(argument.getValue(), value)));
+            property(request, argument.getKey()).ifPresent(value -> arguments.put(argument.getKey(),
+                                                                                  batchArgument(argument.getValue(), value)));
         }
-        Tensor result = evaluator.evaluate();
+        Tensor result = evaluator.evaluate(batchDimension, arguments);
         return new Response(200, JsonFormat.encode(result));
     }
 
+    private Tensor batchArgument(TensorType argumentType, String value) {
+        if (value.trim().startsWith("tensor"))
+            return Tensor.from(value);
+        return Tensor.from(argumentType, value);
+    }
+
     private HttpResponse listAllModels(HttpRequest request) {
         Slime slime = new Slime();
         Cursor root = slime.setObject();
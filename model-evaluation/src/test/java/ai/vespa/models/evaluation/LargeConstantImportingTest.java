@@ -0,0 +1,102 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.models.evaluation;
+
+import com.yahoo.config.FileReference;
+import com.yahoo.config.subscription.ConfigGetter;
+import com.yahoo.config.subscription.FileSource;
+import com.yahoo.filedistribution.fileacquirer.MockFileAcquirer;
+import com.yahoo.io.IOUtils;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorType;
+import com.yahoo.tensor.serialization.TypedBinaryFormat;
+import com.yahoo.vespa.config.search.RankProfilesConfig;
+import com.yahoo.vespa.config.search.core.RankingConstantsConfig;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that large constants are memory mapped from their files, and not read until they are used.
+ *
+ * @author bratseth
+ */
+public class LargeConstantImportingTest {
+
+    private static final String configDirectory = "src/test/resources/config/largeconstant/";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testImportingLargeConstant() throws IOException {
+        Tensor constant = Tensor.from("tensor(x[2],y[3]):{{x:0,y:0}:1.0,{x:0,y:1}:2.0,{x:0,y:2}:3.0," +
+                                                         "{x:1,y:0}:4.0,{x:1,y:1}:5.0,{x:1,y:2}:6.0}");
+        File file = temporaryFolder.newFile("my_tensor.tbf");
+        IOUtils.writeFile(file, TypedBinaryFormat.encode(constant));
+
+        List<String> acquiredConstants = new ArrayList<>();
+        List<String> readConstants = new ArrayList<>();
+        RankProfilesConfigImporter importer = new RankProfilesConfigImporter(MockFileAcquirer.returnFile(file)) {
+            @Override
+            protected File acquireConstantFile(String name, TensorType type, FileReference fileReference) {
+                acquiredConstants.add(name);
+                return super.acquireConstantFile(name, type, fileReference);
+            }
+
+            @Override
+            protected Tensor readTensorFromFile(String name, TensorType type, File file) {
+                readConstants.add(name);
+                return super.readTensorFromFile(name, type, file);
+            }
+        };
+        Map<String, Model> models = importer.importFrom(rankProfilesConfig(), rankingConstantsConfig());
+        assertEquals("Constant files are acquired on import", List.of("my_tensor"), acquiredConstants);
+        assertEquals("No constants are read on import", List.of(), readConstants);
+
+        Model model = models.get("my_profile");
+        assertEquals(TensorType.fromSpec("tensor(x[2],y[3])"),
+                     model.evaluatorOf("firstphase").context().get("constant(my_tensor)").type());
+        assertEquals("Types are known without reading constants", List.of(), readConstants);
+
+        assertEquals(21.0, model.evaluatorOf("firstphase").evaluate().asDouble(), 0.00000000001);
+        assertEquals(21.0, model.evaluatorOf("firstphase").evaluate().asDouble(), 0.00000000001);
+        assertEquals("Only the used constant is read, once", List.of("my_tensor"), readConstants);
+    }
+
+    @Test
+    public void testImportingLargeConstantOfWrongType() throws IOException {
+        File file = temporaryFolder.newFile("my_tensor.tbf");
+        IOUtils.writeFile(file, TypedBinaryFormat.encode(Tensor.from("tensor(x[3]):{{x:0}:1.0,{x:1}:2.0,{x:2}:3.0}")));
+
+        try {
+            new RankProfilesConfigImporter(MockFileAcquirer.returnFile(file)).importFrom(rankProfilesConfig(),
+                                                                                       rankingConstantsConfig());
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("Constant my_tensor has type tensor(x[2],y[3]), but " + file +
+                         " contains a tensor of type tensor(x[3])",
+                         e.getMessage());
+        }
+    }
+
+    private RankProfilesConfig rankProfilesConfig() {
+        return new ConfigGetter<>(new FileSource(new File(configDirectory + "rank-profiles.cfg")),
+                                  RankProfilesConfig.class).getConfig("");
+    }
+
+    private RankingConstantsConfig rankingConstantsConfig() {
+        return new ConfigGetter<>(new FileSource(new File(configDirectory + "ranking-constants.cfg")),
+                                  RankingConstantsConfig.class).getConfig("");
+    }
+
+}
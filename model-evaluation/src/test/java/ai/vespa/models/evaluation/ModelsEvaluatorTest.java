@@ -17,8 +17,12 @@ import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
 /**
  * @author bratseth
@@ -36,6 +40,75 @@ public class ModelsEvaluatorTest {
         assertEquals(32.0, function.evaluate().asDouble(), delta);
     }
 
+    @Test
+    public void testBatchEvaluation() {
+        ModelsEvaluator models = createModels("src/test/resources/config/rankexpression/");
+
+        FunctionEvaluator function = models.evaluatorOf("macros", "secondphase");
+        function.bind("rankBoost", 5);
+        List<Map<String, Tensor>> batch = List.of(Map.of("match", scalar(3), "rankBoost", scalar(1)),
+                                                  Map.of("match", scalar(1)),
+                                                  Map.of("match", scalar(3)));
+        List<Tensor> results = function.evaluate(batch);
+        assertEquals(3, results.size());
+        assertEquals(16.0, results.get(0).asDouble(), delta);
+        assertEquals(24.0, results.get(1).asDouble(), delta);
+        assertEquals(32.0, results.get(2).asDouble(), delta);
+
+        function = models.evaluatorOf("macros", "secondphase");
+        Tensor result = function.evaluate("doc", Map.of("match", Tensor.from("tensor(doc{}):{{doc:a}:3.0,{doc:b}:1.0}"),
+                                                        "rankBoost", scalar(5)));
+        assertEquals(Tensor.from("tensor(doc{}):{{doc:a}:32.0,{doc:b}:24.0}"), result);
+
+        try {
+            models.evaluatorOf("macros", "secondphase").evaluate("doc", Map.of("match", Tensor.from("tensor(doc{}):{}"),
+                                                                                "rankBoost", scalar(5)));
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("The batch dimension 'doc' of the arguments to function 'secondphase' has no labels",
+                         Exceptions.toMessageString(e));
+        }
+
+        try {
+            models.evaluatorOf("macros", "secondphase").evaluate("doc", Map.of("match", Tensor.from("tensor(doc{}):{{doc:a}:3.0,{doc:b}:1.0}"),
+                                                                                "rankBoost", Tensor.from("tensor(doc{}):{{doc:a}:5.0}")));
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("Argument 'rankBoost' has no value for label 'b' of the batch dimension 'doc'",
+                         Exceptions.toMessageString(e));
+        }
+    }
+
+    @Test
+    public void testPooledEvaluation() {
+        ModelsEvaluator models = createModels("src/test/resources/config/rankexpression/");
+
+        FunctionEvaluator first;
+        try (FunctionEvaluator function = models.pooledEvaluatorOf("macros", "secondphase")) {
+            function.bind("match", 3);
+            function.bind("rankBoost", 5);
+            assertEquals(32.0, function.evaluate().asDouble(), delta);
+            first = function;
+        }
+        first.close(); // closing again has no effect
+
+        try (FunctionEvaluator function = models.pooledEvaluatorOf("macros", "secondphase")) {
+            assertSame("The closed evaluator is reused", first, function);
+            function.bind("match", 1);
+            assertEquals("Values bound and computed before are discarded", 4.0, function.evaluate().asDouble(), delta);
+
+            try (FunctionEvaluator other = models.pooledEvaluatorOf("macros", "secondphase")) {
+                assertNotSame("Evaluators in use are not handed out", function, other);
+                other.bind("match", 3);
+                other.bind("rankBoost", 5);
+                assertEquals(32.0, other.evaluate().asDouble(), delta);
+            }
+        }
+        assertEquals(2, models.requireModel("macros").evaluatorPool("secondphase").size());
+    }
+
     @Test
     public void testBindingValidation() {
         List<ExpressionFunction> functions = new ArrayList<>();
@@ -98,6 +171,10 @@ public class ModelsEvaluatorTest {
 
     }
 
+    private Tensor scalar(double value) {
+        return Tensor.Builder.of(TensorType.empty).cell(value).build();
+    }
+
     // TODO: Test argument-less function
     // TODO: Test with nested functions
 
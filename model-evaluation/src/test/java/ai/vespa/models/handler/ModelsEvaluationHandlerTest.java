@@ -80,6 +80,19 @@ public class ModelsEvaluationHandlerTest {
         assertResponse(url, properties, 200, expected);
     }
 
+    @Test
+    public void testXgBoostBatchEvaluation() {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("batch", "doc");
+        properties.put("f29", "tensor(doc{}):{{doc:a}:-1.0,{doc:b}:0.0}");
+        properties.put("f56", "tensor(doc{}):{{doc:a}:0.2,{doc:b}:0.0}");
+        properties.put("f60", "tensor(doc{}):{{doc:a}:0.3,{doc:b}:0.0}");
+        properties.put("f109", "tensor(doc{}):{{doc:a}:0.4,{doc:b}:0.0}");
+        String url = "http://localhost/model-evaluation/v1/xgboost_2_2/eval";
+        String expected = "{\"cells\":[{\"address\":{\"doc\":\"a\"},\"value\":-7.936679999999999},{\"address\":{\"doc\":\"b\"},\"value\":-8.17695}]}";
+        assertResponse(url, properties, 200, expected);
+    }
+
     @Test
     public void testMnistSoftmaxDetails() {
         String url = "http://localhost:8080/model-evaluation/v1/mnist_softmax";
@@ -0,0 +1,55 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation.compilation;
+
+import com.yahoo.searchlib.rankingexpression.Reference;
+import com.yahoo.searchlib.rankingexpression.evaluation.Context;
+import com.yahoo.searchlib.rankingexpression.evaluation.DoubleValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.Value;
+import com.yahoo.searchlib.rankingexpression.rule.CompositeNode;
+import com.yahoo.searchlib.rankingexpression.rule.ExpressionNode;
+import com.yahoo.searchlib.rankingexpression.rule.SerializationContext;
+import com.yahoo.tensor.TensorType;
+import com.yahoo.tensor.evaluation.TypeContext;
+
+import java.util.Deque;
+
+/**
+ * A subexpression compiled by the {@link ExpressionCompiler}. This evaluates to the same double value as the
+ * expression it is compiled from, and serializes to the same string.
+ *
+ * @author bratseth
+ */
+public final class CompiledNode extends ExpressionNode {
+
+    /** The expression this is compiled from */
+    private final ExpressionNode source;
+
+    private final DoubleExpression compiled;
+
+    CompiledNode(ExpressionNode source, DoubleExpression compiled) {
+        this.source = source;
+        this.compiled = compiled;
+    }
+
+    /** Returns the expression this was compiled from */
+    public ExpressionNode source() { return source; }
+
+    @Override
+    public TensorType type(TypeContext<Reference> context) { return TensorType.empty; }
+
+    @Override
+    public Value evaluate(Context context) {
+        return new DoubleValue(compiled.evaluate(context));
+    }
+
+    /** Returns the value of this as a double, without creating a value object */
+    public double evaluateDouble(Context context) {
+        return compiled.evaluate(context);
+    }
+
+    @Override
+    public StringBuilder toString(StringBuilder string, SerializationContext context, Deque<String> path, CompositeNode parent) {
+        return source.toString(string, context, path, parent);
+    }
+
+}
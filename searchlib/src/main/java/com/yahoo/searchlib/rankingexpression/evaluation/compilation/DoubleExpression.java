@@ -0,0 +1,19 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation.compilation;
+
+import com.yahoo.searchlib.rankingexpression.evaluation.Context;
+
+import java.io.Serializable;
+
+/**
+ * A compiled expression which computes a double value directly, without creating a value object per node.
+ *
+ * @author bratseth
+ */
+@FunctionalInterface
+interface DoubleExpression extends Serializable {
+
+    /** Returns the value of this in the given context, which must be indexed as the context this was compiled for */
+    double evaluate(Context context);
+
+}
@@ -0,0 +1,261 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation.compilation;
+
+import com.yahoo.searchlib.rankingexpression.RankingExpression;
+import com.yahoo.searchlib.rankingexpression.evaluation.BooleanValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.ContextIndex;
+import com.yahoo.searchlib.rankingexpression.evaluation.DoubleValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.OptimizationReport;
+import com.yahoo.searchlib.rankingexpression.evaluation.Optimizer;
+import com.yahoo.searchlib.rankingexpression.evaluation.Value;
+import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTForestNode;
+import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTNode;
+import com.yahoo.searchlib.rankingexpression.rule.ArithmeticNode;
+import com.yahoo.searchlib.rankingexpression.rule.ArithmeticOperator;
+import com.yahoo.searchlib.rankingexpression.rule.ComparisonNode;
+import com.yahoo.searchlib.rankingexpression.rule.CompositeNode;
+import com.yahoo.searchlib.rankingexpression.rule.ConstantNode;
+import com.yahoo.searchlib.rankingexpression.rule.EmbracedNode;
+import com.yahoo.searchlib.rankingexpression.rule.ExpressionNode;
+import com.yahoo.searchlib.rankingexpression.rule.Function;
+import com.yahoo.searchlib.rankingexpression.rule.FunctionNode;
+import com.yahoo.searchlib.rankingexpression.rule.GeneratorLambdaFunctionNode;
+import com.yahoo.searchlib.rankingexpression.rule.IfNode;
+import com.yahoo.searchlib.rankingexpression.rule.LambdaFunctionNode;
+import com.yahoo.searchlib.rankingexpression.rule.NegativeNode;
+import com.yahoo.searchlib.rankingexpression.rule.NotNode;
+import com.yahoo.searchlib.rankingexpression.rule.ReferenceNode;
+import com.yahoo.searchlib.rankingexpression.rule.SetMembershipNode;
+import com.yahoo.searchlib.rankingexpression.rule.TensorFunctionNode;
+import com.yahoo.searchlib.rankingexpression.rule.TruthOperator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * <p>Compiles the parts of ranking expressions which compute double values into chains of {@link DoubleExpression}s,
+ * which the JIT compiler can inline into straight line code, and which do not create value objects
+ * for each node evaluated. This supports arithmetic, comparisons, if conditions, set membership tests, functions,
+ * constants, variables and optimized GBDT nodes. Subexpressions containing anything else, such as tensor functions,
+ * are left to be interpreted, and any compilable subexpressions inside them are compiled.</p>
+ *
+ * <p>Compiled expressions look up variables by index and assume that all variables have double values, so
+ * they <b>must</b> be evaluated using an instance of
+ * {@link com.yahoo.searchlib.rankingexpression.evaluation.DoubleOnlyArrayContext} (or another context holding
+ * only double values) created from the ranking expression <i>before</i> it is compiled.
+ * As that cannot be checked here, this optimizer is disabled by default.</p>
+ *
+ * <p>This class is not multithread safe.</p>
+ *
+ * @author bratseth
+ */
+public class ExpressionCompiler extends Optimizer {
+
+    public ExpressionCompiler() {
+        setEnabled(false);
+    }
+
+    @Override
+    public void optimize(RankingExpression expression, ContextIndex context, OptimizationReport report) {
+        if ( ! isEnabled()) return;
+        expression.setRoot(compile(expression.getRoot(), context, report));
+        report.note("Expression compilation done");
+    }
+
+    /** Returns the node compiled if possible, and otherwise the node with its children compiled where possible */
+    private ExpressionNode compile(ExpressionNode node, ContextIndex context, OptimizationReport report) {
+        if ( ! (node instanceof CompositeNode) || node instanceof CompiledNode) return node; // nothing to gain
+
+        Optional<DoubleExpression> compiled = toDoubleExpression(node, context);
+        if (compiled.isPresent()) {
+            report.incMetric("Compiled subexpressions", 1);
+            return new CompiledNode(node, compiled.get());
+        }
+
+        if (node instanceof TensorFunctionNode || node instanceof LambdaFunctionNode ||
+            node instanceof GeneratorLambdaFunctionNode) return node; // references inside may be to lambda arguments
+
+        CompositeNode composite = (CompositeNode)node;
+        List<ExpressionNode> children = new ArrayList<>(composite.children().size());
+        for (ExpressionNode child : composite.children())
+            children.add(compile(child, context, report));
+        return composite.setChildren(children);
+    }
+
+    /** Returns the given node as a double expression, or empty if it (or a descendant) cannot be compiled */
+    private Optional<DoubleExpression> toDoubleExpression(ExpressionNode node, ContextIndex context) {
+        if (node instanceof ConstantNode)
+            return constantValue((ConstantNode)node).map(value -> c -> value);
+        if (node instanceof ReferenceNode)
+            return variableIndex((ReferenceNode)node, context).map(index -> c -> c.getDouble(index));
+        if (node instanceof EmbracedNode)
+            return toDoubleExpression(((EmbracedNode)node).getValue(), context);
+        if (node instanceof NegativeNode)
+            return toDoubleExpression(((NegativeNode)node).getValue(), context).map(value -> c -> - value.evaluate(c));
+        if (node instanceof NotNode)
+            return toDoubleExpression(((NotNode)node).getValue(), context).map(value -> c -> value.evaluate(c) != 0.0 ? 0 : 1);
+        if (node instanceof ArithmeticNode)
+            return arithmetic((ArithmeticNode)node, context);
+        if (node instanceof ComparisonNode)
+            return comparison((ComparisonNode)node, context);
+        if (node instanceof IfNode)
+            return ifCondition((IfNode)node, context);
+        if (node instanceof SetMembershipNode)
+            return setMembership((SetMembershipNode)node, context);
+        if (node instanceof FunctionNode)
+            return function((FunctionNode)node, context);
+        if (node instanceof GBDTNode) {
+            double[] values = ((GBDTNode)node).values();
+            return Optional.of(c -> GBDTNode.evaluate(values, 0, c));
+        }
+        if (node instanceof GBDTForestNode) {
+            double[] values = ((GBDTForestNode)node).values();
+            return Optional.of(c -> GBDTForestNode.evaluate(values, c));
+        }
+        if (node instanceof CompiledNode)
+            return Optional.of(((CompiledNode)node)::evaluateDouble);
+        return Optional.empty();
+    }
+
+    private Optional<Double> constantValue(ConstantNode node) {
+        Value value = node.getValue();
+        if ( ! (value instanceof DoubleValue) && ! (value instanceof BooleanValue)) return Optional.empty();
+        return Optional.of(value.asDouble());
+    }
+
+    private Optional<Integer> variableIndex(ReferenceNode node, ContextIndex context) {
+        try {
+            return Optional.of(context.getIndex(node.toString()));
+        }
+        catch (NullPointerException | IllegalArgumentException e) { // not known to the context
+            return Optional.empty();
+        }
+    }
+
+    /** Compiles arithmetic in the same precedence order as it is interpreted by {@link ArithmeticNode} */
+    private Optional<DoubleExpression> arithmetic(ArithmeticNode node, ContextIndex context) {
+        List<DoubleExpression> children = new ArrayList<>(node.children().size());
+        for (ExpressionNode child : node.children()) {
+            Optional<DoubleExpression> compiledChild = toDoubleExpression(child, context);
+            if ( ! compiledChild.isPresent()) return Optional.empty();
+            children.add(compiledChild.get());
+        }
+
+        Iterator<DoubleExpression> child = children.iterator();
+        Deque<Item> stack = new ArrayDeque<>();
+        stack.push(new Item(ArithmeticOperator.OR, child.next()));
+        for (Iterator<ArithmeticOperator> it = node.operators().iterator(); it.hasNext() && child.hasNext();) {
+            ArithmeticOperator op = it.next();
+            while (stack.peek().op.hasPrecedenceOver(op))
+                popStack(stack);
+            stack.push(new Item(op, child.next()));
+        }
+        while (stack.size() > 1)
+            popStack(stack);
+        return Optional.of(stack.getFirst().expression);
+    }
+
+    private void popStack(Deque<Item> stack) {
+        Item rhs = stack.pop();
+        Item lhs = stack.peek();
+        lhs.expression = combine(lhs.expression, rhs.op, rhs.expression);
+    }
+
+    private DoubleExpression combine(DoubleExpression x, ArithmeticOperator op, DoubleExpression y) {
+        switch (op) {
+            case OR: return c -> x.evaluate(c) != 0.0 || y.evaluate(c) != 0.0 ? 1 : 0;
+            case AND: return c -> x.evaluate(c) != 0.0 && y.evaluate(c) != 0.0 ? 1 : 0;
+            case PLUS: return c -> x.evaluate(c) + y.evaluate(c);
+            case MINUS: return c -> x.evaluate(c) - y.evaluate(c);
+            case MULTIPLY: return c -> x.evaluate(c) * y.evaluate(c);
+            case DIVIDE: return c -> x.evaluate(c) / y.evaluate(c);
+            case MODULO: return c -> x.evaluate(c) % y.evaluate(c);
+            case POWER: return c -> Function.pow.evaluate(x.evaluate(c), y.evaluate(c));
+            default: throw new IllegalArgumentException("Unknown operator " + op);
+        }
+    }
+
+    private Optional<DoubleExpression> comparison(ComparisonNode node, ContextIndex context) {
+        Optional<DoubleExpression> left = toDoubleExpression(node.getLeftCondition(), context);
+        Optional<DoubleExpression> right = toDoubleExpression(node.getRightCondition(), context);
+        if ( ! left.isPresent() || ! right.isPresent()) return Optional.empty();
+
+        DoubleExpression x = left.get(), y = right.get();
+        TruthOperator operator = node.getOperator();
+        return Optional.of(c -> operator.evaluate(x.evaluate(c), y.evaluate(c)) ? 1 : 0);
+    }
+
+    private Optional<DoubleExpression> ifCondition(IfNode node, ContextIndex context) {
+        Optional<DoubleExpression> condition = toDoubleExpression(node.getCondition(), context);
+        Optional<DoubleExpression> trueExpression = toDoubleExpression(node.getTrueExpression(), context);
+        Optional<DoubleExpression> falseExpression = toDoubleExpression(node.getFalseExpression(), context);
+        if ( ! condition.isPresent() || ! trueExpression.isPresent() || ! falseExpression.isPresent())
+            return Optional.empty();
+
+        DoubleExpression test = condition.get(), ifTrue = trueExpression.get(), ifFalse = falseExpression.get();
+        return Optional.of(c -> test.evaluate(c) != 0.0 ? ifTrue.evaluate(c) : ifFalse.evaluate(c));
+    }
+
+    /**
+     * Compiles a set membership test of a variable against constant numbers.
+     * Other tests are left to be interpreted as they compare values by type as well as by value.
+     */
+    private Optional<DoubleExpression> setMembership(SetMembershipNode node, ContextIndex context) {
+        if ( ! (node.getTestValue() instanceof ReferenceNode)) return Optional.empty();
+        Optional<Integer> index = variableIndex((ReferenceNode)node.getTestValue(), context);
+        if ( ! index.isPresent()) return Optional.empty();
+
+        double[] setValues = new double[node.getSetValues().size()];
+        for (int i = 0; i < setValues.length; i++) {
+            ExpressionNode setValue = node.getSetValues().get(i);
+            if ( ! (setValue instanceof ConstantNode) || ! (((ConstantNode)setValue).getValue() instanceof DoubleValue))
+                return Optional.empty();
+            setValues[i] = ((ConstantNode)setValue).getValue().asDouble();
+        }
+
+        int variableIndex = index.get();
+        return Optional.of(c -> {
+            double testValue = c.getDouble(variableIndex);
+            for (double setValue : setValues)
+                if (testValue == setValue) return 1;
+            return 0;
+        });
+    }
+
+    private Optional<DoubleExpression> function(FunctionNode node, ContextIndex context) {
+        Function function = node.getFunction();
+        List<ExpressionNode> arguments = node.children();
+        if (arguments.size() == 0) {
+            double value = function.evaluate(0, 0);
+            return Optional.of(c -> value);
+        }
+
+        Optional<DoubleExpression> argument1 = toDoubleExpression(arguments.get(0), context);
+        if ( ! argument1.isPresent()) return Optional.empty();
+        DoubleExpression x = argument1.get();
+        if (arguments.size() == 1)
+            return Optional.of(c -> function.evaluate(x.evaluate(c), 0));
+
+        Optional<DoubleExpression> argument2 = toDoubleExpression(arguments.get(1), context);
+        if ( ! argument2.isPresent()) return Optional.empty();
+        DoubleExpression y = argument2.get();
+        return Optional.of(c -> function.evaluate(x.evaluate(c), y.evaluate(c)));
+    }
+
+    private static class Item {
+
+        final ArithmeticOperator op;
+        DoubleExpression expression;
+
+        Item(ArithmeticOperator op, DoubleExpression expression) {
+            this.op = op;
+            this.expression = expression;
+        }
+
+    }
+
+}
@@ -0,0 +1,281 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization;
+
+import com.yahoo.searchlib.rankingexpression.evaluation.ContextIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Evaluates an optimized GBDT forest for many documents at once.
+ * <p>
+ * The forest is decoded once into flat arrays of nodes, where each node holds its variable index, comparison
+ * constant and the indexes of its two children. Leaves are nodes whose children are the leaf itself.
+ * Documents are scored tree by tree over blocks of documents, such that the nodes of each tree and the
+ * features of the block stay in the cache.
+ * <p>
+ * Trees having only less-than conditions, which is the common case, are walked without branching:
+ * Each step selects the next node by indexing the child array with the outcome of the comparison,
+ * and the walk always takes as many steps as the depth of the tree, as leaves stay at themselves.
+ * Four documents are walked at once so that the processor can overlap their memory reads.
+ * <p>
+ * This produces exactly the same scores as evaluating the {@link GBDTForestNode} for each document.
+ * Instances are immutable and may be used by multiple threads.
+ *
+ * @author bratseth
+ */
+public final class GBDTBatchEvaluator {
+
+    /** The number of documents scored per tree before moving on to the next tree */
+    private static final int documentBlockSize = 256;
+
+    private static final byte LESS = 0, EQUAL = 1, IN = 2, LEAF = 3;
+
+    /** The root node of each tree, in the order the trees are summed */
+    private final int[] treeRoots;
+
+    /** The max number of steps from the root to a leaf of each tree */
+    private final int[] treeDepths;
+
+    /** Whether each tree has only less-than conditions */
+    private final boolean[] lessOnlyTrees;
+
+    /** The comparison operator of each node, or LEAF */
+    private final byte[] operators;
+
+    /** The index of the variable compared in each node, 0 for leaves */
+    private final int[] variables;
+
+    /**
+     * The constant compared with in each node, for set membership nodes the start of the set in setValues,
+     * and for leaves the value of the leaf
+     */
+    private final double[] constants;
+
+    /** The size of the set of each set membership node, or 0 for other nodes */
+    private final int[] setSizes;
+
+    /** The values of all the sets of set membership nodes */
+    private final double[] setValues;
+
+    /** The node to go to from each node when its condition is true (at 2 * node) or false (at 2 * node + 1) */
+    private final int[] children;
+
+    /** The number of variables referenced by this forest, which is the max variable index + 1 */
+    private final int variableCount;
+
+    /** Creates a batch evaluator of an optimized forest */
+    public GBDTBatchEvaluator(GBDTForestNode forest) {
+        this(forest.values());
+    }
+
+    /** Creates a batch evaluator of optimized forest values on the format produced by the {@link GBDTForestOptimizer} */
+    GBDTBatchEvaluator(double[] forestValues) {
+        Decoder decoder = new Decoder(forestValues);
+        this.treeRoots = decoder.treeRoots.stream().mapToInt(Integer::intValue).toArray();
+        this.treeDepths = decoder.treeDepths.stream().mapToInt(Integer::intValue).toArray();
+        this.lessOnlyTrees = new boolean[treeRoots.length];
+        for (int i = 0; i < treeRoots.length; i++)
+            lessOnlyTrees[i] = decoder.lessOnlyTrees.get(i);
+        this.operators = Arrays.copyOf(decoder.operators, decoder.nodeCount);
+        this.variables = Arrays.copyOf(decoder.variables, decoder.nodeCount);
+        this.constants = Arrays.copyOf(decoder.constants, decoder.nodeCount);
+        this.setSizes = Arrays.copyOf(decoder.setSizes, decoder.nodeCount);
+        this.setValues = decoder.setValues.stream().mapToDouble(Double::doubleValue).toArray();
+        this.children = Arrays.copyOf(decoder.children, decoder.nodeCount * 2);
+        this.variableCount = decoder.maxVariable + 1;
+    }
+
+    /** Returns the number of trees in this forest */
+    public int treeCount() { return treeRoots.length; }
+
+    /** Returns the min number of features each document must have: The highest variable index used + 1 */
+    public int variableCount() { return variableCount; }
+
+    /**
+     * Scores a batch of documents.
+     *
+     * @param features the feature values of all the documents, where the value of the variable at index i in
+     *                 document d is at <code>d * featureCount + i</code>, using the variable indexes of the context
+     *                 the forest was optimized with
+     * @param featureCount the number of features of each document, at least {@link #variableCount}
+     * @param scores the array to write the score of each document to. Its length is the number of documents scored
+     * @throws IllegalArgumentException if the feature array is too small for the given number of documents
+     */
+    public void evaluate(double[] features, int featureCount, double[] scores) {
+        if (featureCount < variableCount)
+            throw new IllegalArgumentException("This forest needs " + variableCount + " features per document, but " +
+                                               "got " + featureCount);
+        if (features.length < (long)featureCount * scores.length)
+            throw new IllegalArgumentException("Expected " + featureCount * scores.length + " feature values for " +
+                                               scores.length + " documents, but got " + features.length);
+
+        Arrays.fill(scores, 0);
+        for (int blockStart = 0; blockStart < scores.length; blockStart += documentBlockSize) {
+            int blockEnd = Math.min(blockStart + documentBlockSize, scores.length);
+            for (int tree = 0; tree < treeRoots.length; tree++) {
+                int document = blockStart;
+                if (lessOnlyTrees[tree]) {
+                    for (; document + 4 <= blockEnd; document += 4)
+                        addLeavesOf4(treeRoots[tree], treeDepths[tree], features, featureCount, document, scores);
+                }
+                for (; document < blockEnd; document++)
+                    scores[document] += constants[leafOf(treeRoots[tree], features, document * featureCount)];
+            }
+        }
+    }
+
+    /**
+     * Scores a batch of documents, each given as a context indexed as the context the forest was optimized with.
+     *
+     * @return the score of each document, in the order of the given contexts
+     */
+    public double[] evaluate(List<? extends ContextIndex> documents) {
+        double[] features = new double[documents.size() * variableCount];
+        for (int document = 0; document < documents.size(); document++) {
+            ContextIndex context = documents.get(document);
+            for (int variable = 0; variable < variableCount; variable++)
+                features[document * variableCount + variable] = context.getDouble(variable);
+        }
+        double[] scores = new double[documents.size()];
+        evaluate(features, variableCount, scores);
+        return scores;
+    }
+
+    /** Walks a tree having only less-than conditions for four consecutive documents, and adds the leaf values reached */
+    private void addLeavesOf4(int root, int depth, double[] features, int featureCount, int document, double[] scores) {
+        int offset0 = document * featureCount, offset1 = offset0 + featureCount,
+            offset2 = offset1 + featureCount, offset3 = offset2 + featureCount;
+        int node0 = root, node1 = root, node2 = root, node3 = root;
+        for (int step = 0; step < depth; step++) {
+            node0 = children[2 * node0 + (features[offset0 + variables[node0]] < constants[node0] ? 0 : 1)];
+            node1 = children[2 * node1 + (features[offset1 + variables[node1]] < constants[node1] ? 0 : 1)];
+            node2 = children[2 * node2 + (features[offset2 + variables[node2]] < constants[node2] ? 0 : 1)];
+            node3 = children[2 * node3 + (features[offset3 + variables[node3]] < constants[node3] ? 0 : 1)];
+        }
+        scores[document] += constants[node0];
+        scores[document + 1] += constants[node1];
+        scores[document + 2] += constants[node2];
+        scores[document + 3] += constants[node3];
+    }
+
+    /** Returns the leaf reached from the given node for the document with the given feature offset */
+    private int leafOf(int node, double[] features, int featureOffset) {
+        while (operators[node] != LEAF)
+            node = children[2 * node + (isTrue(node, features[featureOffset + variables[node]]) ? 0 : 1)];
+        return node;
+    }
+
+    private boolean isTrue(int node, double feature) {
+        switch (operators[node]) {
+            case LESS: return feature < constants[node];
+            case EQUAL: return feature == constants[node];
+            default:
+                int setStart = (int)constants[node];
+                for (int i = setStart; i < setStart + setSizes[node]; i++)
+                    if (feature == setValues[i]) return true;
+                return false;
+        }
+    }
+
+    /** Decodes the packed forest format into node arrays. See {@link GBDTNode} for a description of the format. */
+    private static class Decoder {
+
+        private final double[] values;
+
+        final List<Integer> treeRoots = new ArrayList<>();
+        final List<Integer> treeDepths = new ArrayList<>();
+        final List<Boolean> lessOnlyTrees = new ArrayList<>();
+        final List<Double> setValues = new ArrayList<>();
+
+        int nodeCount = 0;
+        byte[] operators = new byte[16];
+        int[] variables = new int[16];
+        double[] constants = new double[16];
+        int[] setSizes = new int[16];
+        int[] children = new int[32];
+        int maxVariable = -1;
+
+        /** Whether the tree currently decoded has only less-than conditions */
+        private boolean lessOnly;
+
+        Decoder(double[] values) {
+            this.values = values;
+            int pc = 0;
+            while (pc < values.length) {
+                int treeSize = (int)values[pc++];
+                lessOnly = true;
+                int[] depth = new int[1];
+                treeRoots.add(decode(pc, 0, depth));
+                treeDepths.add(depth[0]);
+                lessOnlyTrees.add(lessOnly);
+                pc += treeSize;
+            }
+        }
+
+        /**
+         * Decodes the node starting at pc and returns its index
+         *
+         * @param level the number of steps from the root to this node
+         * @param maxLevel the max level of any leaf seen, updated by this
+         */
+        private int decode(int pc, int level, int[] maxLevel) {
+            int node = addNode();
+            double value = values[pc++];
+            if (value < GBDTNode.MAX_LEAF_VALUE) {
+                operators[node] = LEAF;
+                constants[node] = value;
+                children[2 * node] = node;
+                children[2 * node + 1] = node;
+                maxLevel[0] = Math.max(maxLevel[0], level);
+                return node;
+            }
+
+            int offset = (int)value - GBDTNode.MAX_LEAF_VALUE;
+            if (offset < GBDTNode.MAX_VARIABLES) {
+                operators[node] = LESS;
+                variables[node] = offset;
+                constants[node] = values[pc++];
+            }
+            else if (offset < GBDTNode.MAX_VARIABLES * 2) {
+                operators[node] = EQUAL;
+                variables[node] = offset - GBDTNode.MAX_VARIABLES;
+                constants[node] = values[pc++];
+                lessOnly = false;
+            }
+            else {
+                operators[node] = IN;
+                variables[node] = offset - GBDTNode.MAX_VARIABLES * 2;
+                int setSize = (int)values[pc++];
+                constants[node] = setValues.size();
+                setSizes[node] = setSize;
+                for (int i = 0; i < setSize; i++)
+                    setValues.add(values[pc++]);
+                lessOnly = false;
+            }
+            maxVariable = Math.max(maxVariable, variables[node]);
+
+            // pc is now at the jump value: The true branch follows it, and the false branch starts at pc + jump
+            int trueChild = decode(pc + 1, level + 1, maxLevel);
+            int falseChild = decode(pc + (int)values[pc], level + 1, maxLevel);
+            children[2 * node] = trueChild;
+            children[2 * node + 1] = falseChild;
+            return node;
+        }
+
+        private int addNode() {
+            if (nodeCount == operators.length) {
+                int capacity = nodeCount * 2;
+                operators = Arrays.copyOf(operators, capacity);
+                variables = Arrays.copyOf(variables, capacity);
+                constants = Arrays.copyOf(constants, capacity);
+                setSizes = Arrays.copyOf(setSizes, capacity);
+                children = Arrays.copyOf(children, capacity * 2);
+            }
+            return nodeCount++;
+        }
+
+    }
+
+}
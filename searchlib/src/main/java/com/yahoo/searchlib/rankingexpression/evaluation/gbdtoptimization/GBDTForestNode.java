@@ -29,8 +29,15 @@ public class GBDTForestNode extends ExpressionNode {
     @Override
     public final TensorType type(TypeContext<Reference> context) { return TensorType.empty; }
 
+    /** Returns a direct reference to the values of this. The returned array must not be modified. */
+    public final double[] values() { return values; }
+
     @Override
     public final Value evaluate(Context context) {
+        return new DoubleValue(evaluate(values, context));
+    }
+
+    public static double evaluate(double[] values, Context context) {
         int pc = 0;
         double treeSum = 0;
         while (pc < values.length) {
@@ -38,7 +45,7 @@ public class GBDTForestNode extends ExpressionNode {
             treeSum += GBDTNode.evaluate(values, pc, context);
             pc += nextTree;
         }
-        return new DoubleValue(treeSum);
+        return treeSum;
     }
 
     /** Returns (optimized sum of condition trees) */
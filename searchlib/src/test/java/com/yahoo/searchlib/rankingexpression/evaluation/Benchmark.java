@@ -2,6 +2,7 @@
 package com.yahoo.searchlib.rankingexpression.evaluation;
 
 import com.yahoo.searchlib.rankingexpression.RankingExpression;
+import com.yahoo.searchlib.rankingexpression.evaluation.compilation.ExpressionCompiler;
 import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTForestOptimizer;
 import com.yahoo.searchlib.rankingexpression.parser.ParseException;
 import com.yahoo.searchlib.rankingexpression.rule.CompositeNode;
@@ -41,6 +42,7 @@ public final class Benchmark {
             res.add(evaluateTree(exp, numRuns));
             res.add(evaluateTreeOptimized(exp, numRuns));
             res.add(evaluateForestOptimized(exp, numRuns));
+            res.add(evaluateCompiled(exp, numRuns));
         } catch (IOException e) {
             System.out.println("An error occured while reading the content of file '" + args[0] + "': " + e);
             System.exit(1);
@@ -106,6 +108,23 @@ public final class Benchmark {
         return ret;
     }
 
+    private static Result evaluateCompiled(String str, int numRuns) throws ParseException {
+        Result ret = new Result();
+        ret.name = "Compiled";
+
+        RankingExpression exp = new RankingExpression(str);
+        List<String> vars = new LinkedList<String>();
+        getFeatures(exp.getRoot(), vars);
+
+        DoubleOnlyArrayContext ctx = new DoubleOnlyArrayContext(exp);
+        ExpressionOptimizer optimizer = new ExpressionOptimizer();
+        optimizer.getOptimizer(ExpressionCompiler.class).setEnabled(true);
+        optimizer.optimize(exp, ctx);
+
+        benchmark(exp, vars, ctx, numRuns, ret);
+        return ret;
+    }
+
     private static void benchmark(RankingExpression exp, List<String> vars, Context ctx, int numRuns, Result out) {
         for (int i = 0, len = vars.size(); i < len; ++i) {
             ctx.put(vars.get(i), i / (double)len);
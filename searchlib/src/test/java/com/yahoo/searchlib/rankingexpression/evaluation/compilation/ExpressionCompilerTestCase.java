@@ -0,0 +1,105 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation.compilation;
+
+import com.yahoo.searchlib.rankingexpression.RankingExpression;
+import com.yahoo.searchlib.rankingexpression.evaluation.DoubleOnlyArrayContext;
+import com.yahoo.searchlib.rankingexpression.evaluation.ExpressionOptimizer;
+import com.yahoo.searchlib.rankingexpression.evaluation.MapContext;
+import com.yahoo.searchlib.rankingexpression.evaluation.OptimizationReport;
+import com.yahoo.searchlib.rankingexpression.parser.ParseException;
+import com.yahoo.searchlib.rankingexpression.rule.ArithmeticNode;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that compiled expressions evaluate to the same values as interpreted ones.
+ *
+ * @author bratseth
+ */
+public class ExpressionCompilerTestCase {
+
+    private static final double delta = 0.00000000001;
+
+    @Test
+    public void testArithmetic() throws ParseException {
+        assertCompiled("a + b * c - d / 2", 1, 2, 3, 4);
+        assertCompiled("a - b - c + d", 1, 2, 3, 4); // same associativity as interpreted
+        assertCompiled("a ^ 2 % 3 * -b", 2, 3, 0, 0);
+        assertCompiled("(a + b) * (c + d)", 1, 2, 3, 4);
+        assertCompiled("a && b || !c", 1, 0, 1, 0);
+    }
+
+    @Test
+    public void testConditionsAndFunctions() throws ParseException {
+        assertCompiled("if (a < b, c, d)", 1, 2, 3, 4);
+        assertCompiled("if (a >= b, c, d)", 1, 2, 3, 4);
+        assertCompiled("if (a in [1, 2, 3], b * 2, if (c == d, 1, 0))", 2, 3, 4, 4);
+        assertCompiled("if (a in [1, 2, 3], b * 2, if (c == d, 1, 0))", 5, 3, 4, 4);
+        assertCompiled("max(a, b) + min(c, d) + log(a + 1) + sqrt(b)", 1, 2, 3, 4);
+        assertCompiled("if (a ~= b, 1, 0) + (a != b)", 1, 1.0000000001, 0, 0);
+    }
+
+    @Test
+    public void testGbdtIsCompiled() throws ParseException {
+        assertCompiled("if (a < 1.5, if (b < 2.5, 0.1, 0.2), 0.3) + if (c < 3.5, 0.4, if (d == 4, 0.5, 0.6)) + a", 1, 3, 4, 4);
+    }
+
+    @Test
+    public void testUncompilableSubexpressionsAreInterpreted() throws ParseException {
+        RankingExpression expression = new RankingExpression("a + reduce(tensor(x[3])(x + 1), sum) + (c * d + 1)");
+        DoubleOnlyArrayContext context = new DoubleOnlyArrayContext(expression, true);
+        OptimizationReport report = compile(expression, context);
+
+        assertTrue(expression.getRoot() instanceof ArithmeticNode);
+        assertEquals(2, report.getMetric("Compiled subexpressions"));
+        context.put("a", 1);
+        context.put("b", 2);
+        context.put("c", 3);
+        context.put("d", 4);
+        assertEquals(1 + (1 + 2 + 3) + (3 * 4 + 1), expression.evaluate(context).asDouble(), delta);
+    }
+
+    @Test
+    public void testCompilationIsDisabledByDefault() throws ParseException {
+        RankingExpression expression = new RankingExpression("a + b");
+        new ExpressionOptimizer().optimize(expression, new DoubleOnlyArrayContext(expression));
+        assertTrue(expression.getRoot() instanceof ArithmeticNode);
+    }
+
+    @Test
+    public void testCompiledExpressionSerialization() throws ParseException {
+        RankingExpression expression = new RankingExpression("if (a < b, c + 1, d * 2)");
+        String interpreted = expression.toString();
+        compile(expression, new DoubleOnlyArrayContext(expression));
+        assertTrue(expression.getRoot() instanceof CompiledNode);
+        assertEquals(interpreted, expression.toString());
+    }
+
+    private void assertCompiled(String expressionString, double a, double b, double c, double d) throws ParseException {
+        RankingExpression expression = new RankingExpression(expressionString);
+        MapContext mapContext = new MapContext();
+        mapContext.put("a", a);
+        mapContext.put("b", b);
+        mapContext.put("c", c);
+        mapContext.put("d", d);
+        double interpreted = expression.evaluate(mapContext).asDouble();
+
+        DoubleOnlyArrayContext context = new DoubleOnlyArrayContext(expression, true);
+        compile(expression, context);
+        assertTrue("Compiled " + expressionString, expression.getRoot() instanceof CompiledNode);
+        context.put("a", a);
+        context.put("b", b);
+        context.put("c", c);
+        context.put("d", d);
+        assertEquals(expressionString, interpreted, expression.evaluate(context).asDouble(), delta);
+    }
+
+    private OptimizationReport compile(RankingExpression expression, DoubleOnlyArrayContext context) {
+        ExpressionOptimizer optimizer = new ExpressionOptimizer();
+        optimizer.getOptimizer(ExpressionCompiler.class).setEnabled(true);
+        return optimizer.optimize(expression, context);
+    }
+
+}
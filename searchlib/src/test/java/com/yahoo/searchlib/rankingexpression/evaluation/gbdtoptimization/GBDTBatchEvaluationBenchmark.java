@@ -0,0 +1,89 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization;
+
+import com.yahoo.io.IOUtils;
+import com.yahoo.searchlib.rankingexpression.RankingExpression;
+import com.yahoo.searchlib.rankingexpression.evaluation.DoubleOnlyArrayContext;
+import com.yahoo.searchlib.rankingexpression.evaluation.ExpressionOptimizer;
+import com.yahoo.searchlib.rankingexpression.parser.ParseException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares scoring a batch of documents with a forest one document at a time, as done by
+ * {@link GBDTForestNode}, with scoring them all at once with a {@link GBDTBatchEvaluator}.
+ * Run the main method with an optional expression file (default src/test/files/ranking03.expression).
+ *
+ * @author bratseth
+ */
+public class GBDTBatchEvaluationBenchmark {
+
+    private static final int documentCount = 500;
+    private static final int iterations = 2000;
+
+    public static void main(String[] args) throws IOException, ParseException {
+        String file = args.length > 0 ? args[0] : "src/test/files/ranking03.expression";
+        String expressionString = IOUtils.readFile(new File(file));
+        RankingExpression expression = new RankingExpression(expressionString);
+        DoubleOnlyArrayContext prototype = new DoubleOnlyArrayContext(expression);
+        new ExpressionOptimizer().optimize(expression, prototype);
+        GBDTBatchEvaluator evaluator = new GBDTBatchEvaluator((GBDTForestNode)expression.getRoot());
+
+        // Draw feature values around the thresholds they are compared with, to get realistic branching
+        Map<String, List<Double>> thresholds = new HashMap<>();
+        Matcher condition = Pattern.compile("(\\w+) < ([-0-9.E]+)").matcher(expressionString);
+        while (condition.find())
+            thresholds.computeIfAbsent(condition.group(1), __ -> new ArrayList<>()).add(Double.parseDouble(condition.group(2)));
+
+        Random random = new Random(17);
+        int featureCount = prototype.size();
+        List<String> names = new ArrayList<>(prototype.names());
+        double[] features = new double[documentCount * featureCount];
+        List<DoubleOnlyArrayContext> documents = new ArrayList<>();
+        for (int document = 0; document < documentCount; document++) {
+            DoubleOnlyArrayContext context = prototype.clone();
+            for (int variable = 0; variable < featureCount; variable++) {
+                List<Double> variableThresholds = thresholds.getOrDefault(names.get(variable), List.of(1.0));
+                double threshold = variableThresholds.get(random.nextInt(variableThresholds.size()));
+                double value = threshold * (0.5 + random.nextDouble());
+                context.put(variable, value);
+                features[document * featureCount + variable] = value;
+            }
+            documents.add(context);
+        }
+        double[] scores = new double[documentCount];
+
+        System.out.println("Scoring " + documentCount + " documents with " + evaluator.treeCount() + " trees");
+        for (int run = 0; run < 3; run++) { // the first runs are warm-up
+            long startTime = System.nanoTime();
+            double total = 0;
+            for (int i = 0; i < iterations; i++)
+                for (DoubleOnlyArrayContext document : documents)
+                    total += expression.evaluate(document).asDouble();
+            long perDocumentTime = System.nanoTime() - startTime;
+
+            startTime = System.nanoTime();
+            double batchTotal = 0;
+            for (int i = 0; i < iterations; i++) {
+                evaluator.evaluate(features, featureCount, scores);
+                for (double score : scores)
+                    batchTotal += score;
+            }
+            long batchTime = System.nanoTime() - startTime;
+
+            if (total != batchTotal)
+                throw new IllegalStateException("Batch score sum " + batchTotal + " differs from " + total);
+            System.out.println(String.format("Per document: %8.2f microseconds per batch, batch: %8.2f microseconds per batch",
+                                             perDocumentTime / 1000.0 / iterations, batchTime / 1000.0 / iterations));
+        }
+    }
+
+}
@@ -0,0 +1,96 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization;
+
+import com.yahoo.io.IOUtils;
+import com.yahoo.searchlib.rankingexpression.RankingExpression;
+import com.yahoo.searchlib.rankingexpression.evaluation.DoubleOnlyArrayContext;
+import com.yahoo.searchlib.rankingexpression.evaluation.ExpressionOptimizer;
+import com.yahoo.searchlib.rankingexpression.parser.ParseException;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that batch evaluation of forests produces the same scores as evaluating each document.
+ *
+ * @author bratseth
+ */
+public class GBDTBatchEvaluatorTestCase {
+
+    @Test
+    public void testBatchEvaluation() throws ParseException {
+        String forest =
+                "if (A < 1.5, if (B < 2.5, 0.1, 0.2), if (C == 3, 0.3, 0.4)) + \n" +
+                "if (C in [1, 2, 4], -0.5, if (A < 0.5, 0.6, -0.7)) + \n" +
+                "if (D < 0.5, 0.8, 0.9)";
+        assertEquals(3, assertBatchEvaluation(forest, 1000, 3).treeCount());
+    }
+
+    @Test
+    public void testBatchEvaluationOfLargeForest() throws ParseException, IOException {
+        assertBatchEvaluation(IOUtils.readFile(new File("src/test/files/ranking03.expression")), 1000, 500000);
+    }
+
+    @Test
+    public void testFeatureCountValidation() throws ParseException {
+        GBDTBatchEvaluator evaluator = optimize(new RankingExpression("if (A < 1, 1, 2) + if (B < 1, 3, 4)"),
+                                                null);
+        try {
+            evaluator.evaluate(new double[1], 1, new double[1]);
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("This forest needs 2 features per document, but got 1", e.getMessage());
+        }
+        try {
+            evaluator.evaluate(new double[5], 2, new double[3]);
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("Expected 6 feature values for 3 documents, but got 5", e.getMessage());
+        }
+    }
+
+    /**
+     * Asserts that the scores of the given number of documents with random features are the same
+     * when evaluated in a batch as when evaluated one by one.
+     */
+    private GBDTBatchEvaluator assertBatchEvaluation(String forest, int documentCount, double maxFeatureValue)
+            throws ParseException {
+        RankingExpression expression = new RankingExpression(forest);
+        DoubleOnlyArrayContext prototype = new DoubleOnlyArrayContext(expression);
+        GBDTBatchEvaluator evaluator = optimize(expression, prototype);
+        assertTrue(expression.getRoot() instanceof GBDTForestNode);
+
+        Random random = new Random(17);
+        List<DoubleOnlyArrayContext> documents = new ArrayList<>();
+        for (int i = 0; i < documentCount; i++) {
+            DoubleOnlyArrayContext document = prototype.clone();
+            for (int variable = 0; variable < document.size(); variable++)
+                document.put(variable, i % 7 == 0 ? Math.floor(random.nextDouble() * 5) // hit equality tests
+                                                  : random.nextDouble() * maxFeatureValue);
+            documents.add(document);
+        }
+
+        double[] scores = evaluator.evaluate(documents);
+        for (int i = 0; i < documentCount; i++)
+            assertEquals("Document " + i, expression.evaluate(documents.get(i)).asDouble(), scores[i], 0);
+        return evaluator;
+    }
+
+    private GBDTBatchEvaluator optimize(RankingExpression expression, DoubleOnlyArrayContext context) {
+        if (context == null)
+            context = new DoubleOnlyArrayContext(expression);
+        new ExpressionOptimizer().optimize(expression, context);
+        return new GBDTBatchEvaluator((GBDTForestNode)expression.getRoot());
+    }
+
+}
@@ -26,6 +26,8 @@ public final class FeedParams {
 
     public boolean getSilentUpgrade() { return silentUpgrade; }
 
+    public double getLatencyTolerance() { return latencyTolerance; }
+
     /**
      * Enumeration of data formats that are acceptable by the OutputStream
      * returned by {@link com.yahoo.vespa.http.client.Session#stream(CharSequence)}.
@@ -50,6 +52,7 @@ public final class FeedParams {
         private boolean denyIfBusyV3 = true;
         private long maxSleepTimeMs = 3000;
         private boolean silentUpgrade = true;
+        private double latencyTolerance = 0.0;
 
         /**
          * Make server not throw 4xx/5xx for situations that are normal during upgrade as this can esily mask
@@ -88,6 +91,22 @@ public final class FeedParams {
             return this;
         }
 
+        /**
+         * If this is positive, the gateway throttles the operations it sends to Vespa by the latency of
+         * the replies rather than by their throughput, letting replies take up to this many times the
+         * minimum latency seen before reducing the number of pending operations. Higher values are more
+         * aggressive. Operations are throttled by throughput on gateways which do not support this.
+         * @param latencyTolerance the latency tolerance, finite and at least 1, or 0 to throttle by throughput.
+         * @return this, for chaining
+         */
+        public Builder setLatencyTolerance(double latencyTolerance) {
+            if (latencyTolerance != 0.0 && ( ! (latencyTolerance >= 1.0) || Double.isInfinite(latencyTolerance))) {
+                throw new IllegalArgumentException("Latency tolerance must be 0 or a finite number of at least 1, but got " + latencyTolerance);
+            }
+            this.latencyTolerance = latencyTolerance;
+            return this;
+        }
+
         /**
          * Sets the data format to be used.
          *
@@ -229,7 +248,7 @@ public final class FeedParams {
             return new FeedParams(
                     dataFormat, serverTimeout, clientTimeout, route,
                     maxChunkSizeBytes, maxInFlightRequests, localQueueTimeOut, priority,
-                    denyIfBusyV3, maxSleepTimeMs, silentUpgrade);
+                    denyIfBusyV3, maxSleepTimeMs, silentUpgrade, latencyTolerance);
         }
 
         public long getClientTimeout(TimeUnit unit) {
@@ -268,12 +287,12 @@ public final class FeedParams {
     private final boolean denyIfBusyV3;
     private final long maxSleepTimeMs;
     private final boolean silentUpgrade;
-
+    private final double latencyTolerance;
 
     private FeedParams(DataFormat dataFormat, long serverTimeout, long clientTimeout, String route,
                        int maxChunkSizeBytes, final int maxInFlightRequests,
                        long localQueueTimeOut, String priority, boolean denyIfBusyV3, long maxSleepTimeMs,
-                       boolean silentUpgrade) {
+                       boolean silentUpgrade, double latencyTolerance) {
         this.dataFormat = dataFormat;
         this.serverTimeoutMillis = serverTimeout;
         this.clientTimeoutMillis = clientTimeout;
@@ -285,6 +304,7 @@ public final class FeedParams {
         this.denyIfBusyV3 = denyIfBusyV3;
         this.maxSleepTimeMs = maxSleepTimeMs;
         this.silentUpgrade = silentUpgrade;
+        this.latencyTolerance = latencyTolerance;
     }
 
     public DataFormat getDataFormat() {
@@ -33,5 +33,6 @@ public final class Headers {
     public static final String OUTSTANDING_REQUESTS = "X-Yahoo-Outstanding-Requests";
     public static final String HOSTNAME = "X-Yahoo-Hostname";
     public static final String SILENTUPGRADE = "X-Yahoo-Silent-Upgrade";
+    public static final String LATENCY_TOLERANCE = "X-Yahoo-Feed-Latency-Tolerance";
 
 }
@@ -223,6 +223,9 @@ class ApacheGatewayConnection implements GatewayConnection {
             httpPost.setHeader(Headers.SILENTUPGRADE, "true");
         }
         httpPost.setHeader(Headers.TIMEOUT, "" + feedParams.getServerTimeout(TimeUnit.SECONDS));
+        if (feedParams.getLatencyTolerance() > 0.0) {
+            httpPost.setHeader(Headers.LATENCY_TOLERANCE, String.valueOf(feedParams.getLatencyTolerance()));
+        }
 
         for (Map.Entry<String, String> extraHeader : connectionParams.getHeaders()) {
             httpPost.addHeader(extraHeader.getKey(), extraHeader.getValue());
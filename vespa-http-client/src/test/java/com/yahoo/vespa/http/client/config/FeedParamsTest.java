@@ -25,6 +25,7 @@ public class FeedParamsTest {
         assertThat(params.getRoute(), nullValue());
         assertThat(params.getServerTimeout(TimeUnit.SECONDS), is(180L));
         assertThat(params.getClientTimeout(TimeUnit.SECONDS), is(20L));
+        assertThat(params.getLatencyTolerance(), is(0.0));
     }
 
     @Test
@@ -49,6 +50,24 @@ public class FeedParamsTest {
 
         assertThat(params.getServerTimeout(TimeUnit.SECONDS), is(333L));
         assertThat(params.getClientTimeout(TimeUnit.SECONDS), is(222L));
+
+        params = new FeedParams.Builder().setLatencyTolerance(2.0).build();
+        assertThat(params.getLatencyTolerance(), is(2.0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLatencyToleranceBelowOne() {
+        new FeedParams.Builder().setLatencyTolerance(0.5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLatencyToleranceNaN() {
+        new FeedParams.Builder().setLatencyTolerance(Double.NaN);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLatencyToleranceInfinite() {
+        new FeedParams.Builder().setLatencyTolerance(Double.POSITIVE_INFINITY);
     }
 
 }
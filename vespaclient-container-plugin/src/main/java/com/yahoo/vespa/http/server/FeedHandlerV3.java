@@ -14,6 +14,7 @@ import com.yahoo.documentapi.metrics.DocumentApiMetrics;
 import com.yahoo.jdisc.Metric;
 import com.yahoo.jdisc.ReferencedResource;
 import com.yahoo.log.LogLevel;
+import com.yahoo.messagebus.LatencyThrottlePolicy;
 import com.yahoo.messagebus.ReplyHandler;
 import com.yahoo.messagebus.SourceSessionParams;
 import com.yahoo.messagebus.shared.SharedSourceSession;
@@ -152,6 +153,14 @@ public class FeedHandlerV3 extends LoggingRequestHandler {
                 // NOP
             }
         }
+        String latencyTolerance = request.getHeader(Headers.LATENCY_TOLERANCE);
+        if (latencyTolerance != null) {
+            try {
+                params.setThrottlePolicy(new LatencyThrottlePolicy().setLatencyTolerance(Double.parseDouble(latencyTolerance)));
+            } catch (IllegalArgumentException e) { // includes NumberFormatException
+                // NOP
+            }
+        }
         return params;
     }
 
@@ -24,6 +24,7 @@ public class FeederOptions {
     private int maxPendingBytes = 0;
     private int maxPendingDocs = 0;
     private double maxFeedRate = 0.0;
+    private double latencyTolerance = 0.0;
     private String documentManagerConfigId = "client";
     private String idPrefix = "";
     private String route = "default";
@@ -54,6 +55,7 @@ public class FeederOptions {
         maxPendingBytes = src.maxPendingBytes;
         maxPendingDocs = src.maxPendingDocs;
         maxFeedRate = src.maxFeedRate;
+        latencyTolerance = src.latencyTolerance;
         documentManagerConfigId = src.documentManagerConfigId;
         idPrefix = src.idPrefix;
         route = src.route;
@@ -80,6 +82,7 @@ public class FeederOptions {
         setMessageBusPort(config.mbusport());
         setDocprocChain(config.docprocchain());
         setMaxFeedRate(config.maxfeedrate());
+        setLatencyTolerance(config.latencytolerance());
     }
 
     public void setMaxFeedRate(double feedRate) {
@@ -91,6 +94,19 @@ public class FeederOptions {
         return maxFeedRate;
     }
 
+    /**
+     * Sets how many times the minimum latency replies may take before the number of pending operations is reduced.
+     * If this is positive, and no max feed rate is set, pending operations are throttled by a
+     * {@link LatencyThrottlePolicy} rather than by throughput.
+     */
+    public void setLatencyTolerance(double latencyTolerance) {
+        this.latencyTolerance = latencyTolerance;
+    }
+
+    public double getLatencyTolerance() {
+        return latencyTolerance;
+    }
+
     public boolean getRetryEnabled() {
         return retryEnabled;
     }
@@ -234,6 +250,8 @@ public class FeederOptions {
         StaticThrottlePolicy policy;
         if (maxFeedRate > 0.0) {
             policy = new RateThrottlingPolicy(maxFeedRate);
+        } else if (latencyTolerance > 0.0) {
+            policy = new LatencyThrottlePolicy().setLatencyTolerance(Math.max(1.0, latencyTolerance));
         } else if ((maxPendingDocs == 0) && (maxPendingBytes == 0)) {
             policy = new DynamicThrottlePolicy();
         } else {
@@ -300,6 +318,7 @@ public class FeederOptions {
         if (maxPendingBytes != that.maxPendingBytes) return false;
         if (maxPendingDocs != that.maxPendingDocs) return false;
         if (maxFeedRate != that.maxFeedRate) return false;
+        if (latencyTolerance != that.latencyTolerance) return false;
         if (mbusPort != that.mbusPort) return false;
         if (priorityExplicitlySet != that.priorityExplicitlySet) return false;
         if (Double.compare(that.retryDelay, retryDelay) != 0) return false;
@@ -337,6 +356,7 @@ public class FeederOptions {
         result = 31 * result + maxPendingBytes;
         result = 31 * result + maxPendingDocs;
         result = 31 * result + ((int)(maxFeedRate * 1000));
+        result = 31 * result + ((int)(latencyTolerance * 1000));
         result = 31 * result + (documentManagerConfigId != null ? documentManagerConfigId.hashCode() : 0);
         result = 31 * result + (idPrefix != null ? idPrefix.hashCode() : 0);
         result = 31 * result + (route != null ? route.hashCode() : 0);
@@ -1,6 +1,10 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.feedapi;
 
+import com.yahoo.messagebus.DynamicThrottlePolicy;
+import com.yahoo.messagebus.LatencyThrottlePolicy;
+import com.yahoo.messagebus.RateThrottlingPolicy;
+import com.yahoo.messagebus.ThrottlePolicy;
 import static org.junit.Assert.*;
 import org.junit.Test;
 
@@ -86,6 +90,26 @@ public class FeederOptionsTestCase {
         assertFalse(f2.equals(f1));
         assertFalse(f1.equals(f2));
         assertTrue(f1.hashCode() != f2.hashCode());
+
+        f1.setMaxFeedRate(34.0);
+        f2.setLatencyTolerance(2.0);
+        assertFalse(f2.equals(f1));
+        assertFalse(f1.equals(f2));
+        assertTrue(f1.hashCode() != f2.hashCode());
+    }
+
+    @Test
+    public void testThrottlePolicy() {
+        FeederOptions options = new FeederOptions();
+        assertEquals(DynamicThrottlePolicy.class, options.toSourceSessionParams().getThrottlePolicy().getClass());
+
+        options.setLatencyTolerance(2.0);
+        ThrottlePolicy policy = options.toSourceSessionParams().getThrottlePolicy();
+        assertEquals(LatencyThrottlePolicy.class, policy.getClass());
+        assertEquals(2.0, ((LatencyThrottlePolicy)policy).getLatencyTolerance(), 1e-9);
+
+        options.setMaxFeedRate(34.0);
+        assertEquals(RateThrottlingPolicy.class, options.toSourceSessionParams().getThrottlePolicy().getClass());
     }
 
 }
@@ -0,0 +1,128 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.io;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of byte buffers, either heap or direct, in power of two size classes.
+ * Buffers are taken from the pool by {@link #acquire} and given back by {@link #release} when they are no longer used,
+ * such that short lived buffers for serialization and network I/O can be reused rather than allocated
+ * (and collected) for each use.
+ * <p>
+ * Buffers larger than the max size of this pool are allocated when acquired and dropped when released.
+ * The number of bytes kept in the pool for each size class is bounded, and buffers released to a full class are
+ * dropped. A buffer must not be used after it is released.
+ * <p>
+ * This is thread safe.
+ *
+ * @author bratseth
+ */
+public class ByteBufferPool {
+
+    private static final ByteBufferPool heapPool = new ByteBufferPool(false);
+
+    private final boolean direct;
+    private final int minSizeBits;
+    private final int maxSizeBits;
+    private final long maxPooledBytesPerSize;
+
+    /** The free buffers of each size class, from the smallest */
+    private final Deque<ByteBuffer>[] free;
+    /** The number of bytes held in each size class */
+    private final AtomicLong[] pooledBytes;
+
+    /** Creates a pool of buffers from 4 kb to 1 Mb, holding at most 4 Mb of buffers of each size */
+    public ByteBufferPool(boolean direct) {
+        this(direct, 4 * 1024, 1024 * 1024, 4 * 1024 * 1024);
+    }
+
+    /**
+     * Creates a pool of buffers.
+     *
+     * @param direct whether to pool direct or heap buffers
+     * @param minSize the size of the smallest buffers of this, which is rounded up to a power of two
+     * @param maxSize the size of the largest buffers of this, which is rounded up to a power of two
+     * @param maxPooledBytesPerSize the max number of bytes to hold in free buffers of each size
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public ByteBufferPool(boolean direct, int minSize, int maxSize, long maxPooledBytesPerSize) {
+        if (minSize < 1 || maxSize < minSize || maxSize > 1 << 30)
+            throw new IllegalArgumentException("Invalid buffer sizes: min " + minSize + ", max " + maxSize);
+        this.direct = direct;
+        this.minSizeBits = sizeBits(minSize);
+        this.maxSizeBits = sizeBits(maxSize);
+        this.maxPooledBytesPerSize = maxPooledBytesPerSize;
+        int sizeClasses = maxSizeBits - minSizeBits + 1;
+        this.free = new Deque[sizeClasses];
+        this.pooledBytes = new AtomicLong[sizeClasses];
+        for (int i = 0; i < sizeClasses; i++) {
+            free[i] = new ConcurrentLinkedDeque<>();
+            pooledBytes[i] = new AtomicLong(0);
+        }
+    }
+
+    /** Returns a shared pool of heap buffers */
+    public static ByteBufferPool heap() { return heapPool; }
+
+    /** Returns whether the buffers of this are direct */
+    public boolean isDirect() { return direct; }
+
+    /**
+     * Returns a cleared, big endian buffer with at least the given capacity. The buffer should be released to this
+     * when it is no longer used.
+     */
+    public ByteBuffer acquire(int minCapacity) {
+        int sizeBits = Math.max(minSizeBits, sizeBits(minCapacity));
+        if (sizeBits > maxSizeBits) return allocate(minCapacity);
+
+        int sizeClass = sizeBits - minSizeBits;
+        ByteBuffer buffer = free[sizeClass].pollFirst();
+        if (buffer == null) return allocate(1 << sizeBits);
+
+        pooledBytes[sizeClass].addAndGet(-buffer.capacity());
+        buffer.clear();
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        return buffer;
+    }
+
+    /**
+     * Gives a buffer back to this, which may then return it from {@link #acquire}. The buffer must not be used by the
+     * caller after this. Buffers which do not belong in this pool are ignored.
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || buffer.isReadOnly() || buffer.isDirect() != direct) return;
+        int capacity = buffer.capacity();
+        if (Integer.bitCount(capacity) != 1) return; // not a size class of this
+        int sizeBits = sizeBits(capacity);
+        if (sizeBits < minSizeBits || sizeBits > maxSizeBits) return;
+
+        int sizeClass = sizeBits - minSizeBits;
+        if (pooledBytes[sizeClass].addAndGet(capacity) > maxPooledBytesPerSize) {
+            pooledBytes[sizeClass].addAndGet(-capacity);
+            return;
+        }
+        free[sizeClass].offerFirst(buffer);
+    }
+
+    /** Returns the number of bytes currently held in free buffers of this */
+    public long pooledBytes() {
+        long sum = 0;
+        for (AtomicLong bytes : pooledBytes)
+            sum += bytes.get();
+        return sum;
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    /** Returns the number of bits needed to hold the given size, i.e the exponent of the power of two size class */
+    private static int sizeBits(int size) {
+        return size <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(size - 1);
+    }
+
+}
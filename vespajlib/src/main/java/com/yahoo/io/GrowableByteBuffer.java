@@ -22,6 +22,10 @@ import java.nio.*;
  * No methods except getByteBuffer() expose the encapsulated
  * ByteBuffer, which is intentional.
  *
+ * A buffer may be created from a {@link ByteBufferPool}, in which case it
+ * grows by acquiring buffers from the pool. Such a buffer should be given
+ * back to the pool by calling {@link #release} when it is no longer used.
+ *
  * @author Einar M R Rosenvinge
  */
 public class GrowableByteBuffer implements Comparable<GrowableByteBuffer> {
@@ -31,6 +35,7 @@ public class GrowableByteBuffer implements Comparable<GrowableByteBuffer> {
     private ByteBuffer buffer;
     private float growFactor;
     private int mark = -1;
+    private final ByteBufferPool pool;
 
     // NOTE: It might have been better to subclass HeapByteBuffer,
     // but that class is package-private. Subclassing ByteBuffer would involve
@@ -48,6 +53,7 @@ public class GrowableByteBuffer implements Comparable<GrowableByteBuffer> {
         //NOTE: We MUST NEVER have a base size of 0, since checkAndGrow() will go into an infinite loop then
         if (baseSize < 16) baseSize = 16;
         buffer = ByteBuffer.allocate(baseSize);
+        pool = null;
     }
 
     public GrowableByteBuffer(int baseSize) {
@@ -61,6 +67,30 @@ public class GrowableByteBuffer implements Comparable<GrowableByteBuffer> {
     public GrowableByteBuffer(ByteBuffer buffer, float growFactor) {
         this.buffer = buffer;
         setGrowFactor(growFactor);
+        pool = null;
+    }
+
+    /**
+     * Creates a buffer which takes its storage from the given pool.
+     * Call {@link #release} to give the storage back when this is no longer used.
+     *
+     * @param pool the pool to acquire buffers from
+     * @param baseSize the initial minimum capacity of this
+     */
+    public GrowableByteBuffer(ByteBufferPool pool, int baseSize) {
+        setGrowFactor(DEFAULT_GROW_FACTOR);
+        this.pool = pool;
+        buffer = pool.acquire(Math.max(16, baseSize));
+    }
+
+    /**
+     * Gives the storage of this back to the pool it was acquired from, if any.
+     * Neither this nor any buffer returned from {@link #getByteBuffer} can be used after this is called.
+     */
+    public void release() {
+        if (pool == null || buffer == null) return;
+        pool.release(buffer);
+        buffer = null;
     }
 
 
@@ -93,7 +123,9 @@ public class GrowableByteBuffer implements Comparable<GrowableByteBuffer> {
     protected void grow(int newSize) {
         //create new buffer:
         ByteBuffer newByteBuf;
-        if (buffer.isDirect()) {
+        if (pool != null) {
+            newByteBuf = pool.acquire(newSize);
+        } else if (buffer.isDirect()) {
             newByteBuf = ByteBuffer.allocateDirect(newSize);
         } else {
             newByteBuf = ByteBuffer.allocate(newSize);
@@ -122,7 +154,10 @@ public class GrowableByteBuffer implements Comparable<GrowableByteBuffer> {
         //NOTE: No need to preserve "limit" property, it would be
         //pointless to grow then...
 
-        //set new buffer to be our buffer:
+        //set new buffer to be our buffer, and give the old one back to its pool:
+        if (pool != null) {
+            pool.release(buffer);
+        }
         buffer = newByteBuf;
     }
 
@@ -44,6 +44,19 @@ public class BinaryFormat {
         return encoder.encode(slime);
     }
 
+    /**
+     * Take a Slime object and serialize it into binary format, using an encoding buffer
+     * of the given initial size. If the size is large enough, the encoded data is not
+     * copied while encoding.
+     * @param slime the object which is to be serialized.
+     * @param initialCapacity the initial size of the encoding buffer.
+     * @return a new byte array with just the encoded slime.
+     **/
+    public static byte[] encode(Slime slime, int initialCapacity) {
+        BinaryEncoder encoder = new BinaryEncoder(initialCapacity);
+        return encoder.encode(slime);
+    }
+
     /**
      * Take binary data and deserialize it into a Slime object.
      * The data is assumed to be the binary representation
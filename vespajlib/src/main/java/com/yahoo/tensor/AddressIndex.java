@@ -0,0 +1,200 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact, immutable index from tensor addresses of a fixed size to consecutive ordinals, in insertion order.
+ * This is used by sparse tensors to store cells without an address object and a boxed value per cell:
+ * Each distinct label is stored once in a dictionary, the addresses are stored as a packed array of label ids,
+ * and addresses are looked up in an open addressing hash table over the label ids.
+ *
+ * @author bratseth
+ */
+final class AddressIndex {
+
+    /** The number of labels in each address */
+    private final int rank;
+
+    /** The number of addresses in this */
+    private final int size;
+
+    /** The distinct labels of this, indexed by label id */
+    private final String[] labels;
+
+    /** The label ids of the distinct labels of this */
+    private final Map<String, Integer> labelIds;
+
+    /** The label ids of each address, at ordinal * rank + label index */
+    private final int[] addressLabels;
+
+    /** The hash table of this: Each slot is either 0 (empty) or 1 + the ordinal of an address */
+    private final int[] slots;
+
+    private AddressIndex(int rank, int size, String[] labels, Map<String, Integer> labelIds,
+                         int[] addressLabels, int[] slots) {
+        this.rank = rank;
+        this.size = size;
+        this.labels = labels;
+        this.labelIds = labelIds;
+        this.addressLabels = addressLabels;
+        this.slots = slots;
+    }
+
+    /** Returns the number of addresses in this */
+    int size() { return size; }
+
+    /** Returns the number of labels in each address of this */
+    int rank() { return rank; }
+
+    /** Returns the ordinal of the given address, or -1 if it is not present in this */
+    int indexOf(TensorAddress address) {
+        if (address.size() != rank) return -1;
+
+        int hash = 1;
+        for (int i = 0; i < rank; i++) {
+            Integer labelId = labelIds.get(address.label(i));
+            if (labelId == null) return -1;
+            hash = 31 * hash + labelId;
+        }
+
+        int mask = slots.length - 1;
+        for (int slot = spread(hash) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int ordinal = slots[slot] - 1;
+            if (labelsEqual(ordinal, address))
+                return ordinal;
+        }
+        return -1;
+    }
+
+    private boolean labelsEqual(int ordinal, TensorAddress address) {
+        for (int i = 0; i < rank; i++)
+            if ( ! labels[addressLabels[ordinal * rank + i]].equals(address.label(i))) return false;
+        return true;
+    }
+
+    /** Returns the label at the given index in the address with the given ordinal */
+    String label(int ordinal, int labelIndex) {
+        return labels[addressLabels[ordinal * rank + labelIndex]];
+    }
+
+    /** Creates and returns the address with the given ordinal */
+    TensorAddress address(int ordinal) {
+        String[] addressLabels = new String[rank];
+        for (int i = 0; i < rank; i++)
+            addressLabels[i] = label(ordinal, i);
+        return TensorAddress.of(addressLabels);
+    }
+
+    /** Returns the hash code of the address with the given ordinal, without creating the address */
+    int addressHashCode(int ordinal) {
+        int hash = 1;
+        for (int i = 0; i < rank; i++)
+            hash = 31 * hash + label(ordinal, i).hashCode();
+        return hash; // as TensorAddress.hashCode
+    }
+
+    private static int spread(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /** Builds an address index. This is not multithread safe. */
+    static final class Builder {
+
+        private final int rank;
+
+        private final List<String> labels = new ArrayList<>();
+        private final Map<String, Integer> labelIds = new HashMap<>();
+
+        private int size = 0;
+        private int[] addressLabels;
+        private int[] slots;
+
+        /** The label ids of the address currently being added, to avoid allocating them per address */
+        private final int[] currentLabels;
+
+        Builder(int rank) {
+            this.rank = rank;
+            this.addressLabels = new int[rank * 8];
+            this.slots = new int[16];
+            this.currentLabels = new int[rank];
+        }
+
+        /** Returns the number of distinct addresses added to this so far */
+        int size() { return size; }
+
+        /**
+         * Adds an address to this, unless it is already present.
+         *
+         * @return the ordinal of the address
+         * @throws IllegalArgumentException if the address does not have the size of the addresses of this
+         */
+        int add(TensorAddress address) {
+            if (address.size() != rank)
+                throw new IllegalArgumentException("Expected an address with " + rank + " labels, but got " + address);
+
+            int hash = 1;
+            for (int i = 0; i < rank; i++) {
+                currentLabels[i] = labelIdOf(address.label(i));
+                hash = 31 * hash + currentLabels[i];
+            }
+
+            int mask = slots.length - 1;
+            int slot = spread(hash) & mask;
+            for (; slots[slot] != 0; slot = (slot + 1) & mask) {
+                int ordinal = slots[slot] - 1;
+                if (currentLabelsEqual(ordinal))
+                    return ordinal;
+            }
+
+            int ordinal = size++;
+            if (addressLabels.length < size * rank)
+                addressLabels = Arrays.copyOf(addressLabels, addressLabels.length * 2);
+            System.arraycopy(currentLabels, 0, addressLabels, ordinal * rank, rank);
+            slots[slot] = ordinal + 1;
+            if (size * 2 > slots.length)
+                rehash(slots.length * 2);
+            return ordinal;
+        }
+
+        private int labelIdOf(String label) {
+            Integer labelId = labelIds.get(label);
+            if (labelId != null) return labelId;
+            labelIds.put(label, labels.size());
+            labels.add(label);
+            return labels.size() - 1;
+        }
+
+        private boolean currentLabelsEqual(int ordinal) {
+            for (int i = 0; i < rank; i++)
+                if (addressLabels[ordinal * rank + i] != currentLabels[i]) return false;
+            return true;
+        }
+
+        private void rehash(int capacity) {
+            slots = new int[capacity];
+            int mask = capacity - 1;
+            for (int ordinal = 0; ordinal < size; ordinal++) {
+                int hash = 1;
+                for (int i = 0; i < rank; i++)
+                    hash = 31 * hash + addressLabels[ordinal * rank + i];
+                int slot = spread(hash) & mask;
+                while (slots[slot] != 0)
+                    slot = (slot + 1) & mask;
+                slots[slot] = ordinal + 1;
+            }
+        }
+
+        AddressIndex build() {
+            return new AddressIndex(rank, size, labels.toArray(new String[0]), new HashMap<>(labelIds),
+                                    Arrays.copyOf(addressLabels, size * rank), slots.clone());
+        }
+
+    }
+
+}
@@ -0,0 +1,65 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor;
+
+/**
+ * An indexed tensor implementation storing cell values as bfloat16 - the upper 16 bits of a float,
+ * having the same range as a float but less precision.
+ *
+ * @author bratseth
+ */
+class IndexedBFloat16Tensor extends IndexedTensor {
+
+    private final short[] values;
+
+    IndexedBFloat16Tensor(TensorType type, DimensionSizes dimensionSizes, short[] values) {
+        super(type, dimensionSizes);
+        this.values = values;
+    }
+
+    @Override
+    public long size() {
+        return values.length;
+    }
+
+    @Override
+    public double get(long valueIndex) { return fromBFloat16(values[(int)valueIndex]); }
+
+    @Override
+    IndexedTensor withSameValueType(TensorType type) {
+        return new IndexedBFloat16Tensor(type, dimensionSizes(), values);
+    }
+
+    /** Returns the given value as a bfloat16 by truncating the lower 16 bits of the value as a float */
+    static short toBFloat16(double value) {
+        return (short)(Float.floatToRawIntBits((float)value) >>> 16);
+    }
+
+    /** Returns the float value of a bfloat16 */
+    static float fromBFloat16(short value) {
+        return Float.intBitsToFloat(value << 16);
+    }
+
+    static class BoundBFloat16Builder extends BoundBuilder {
+
+        private short[] values;
+
+        BoundBFloat16Builder(TensorType type, DimensionSizes sizes) {
+            super(type, sizes);
+            values = new short[(int)sizes.totalSize()];
+        }
+
+        @Override
+        public void cellByDirectIndex(long index, double value) {
+            values[(int)index] = toBFloat16(value);
+        }
+
+        @Override
+        public IndexedTensor build() {
+            IndexedTensor tensor = new IndexedBFloat16Tensor(type, sizes(), values);
+            values = null; // prevent further modification
+            return tensor;
+        }
+
+    }
+
+}
@@ -0,0 +1,35 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * An indexed tensor implementation which reads its cell values from a double buffer rather than holding them,
+ * such that the values may be kept outside the heap, e.g in a memory mapped file.
+ *
+ * @author bratseth
+ */
+class IndexedDoubleBufferTensor extends IndexedTensor {
+
+    /** The values of this, starting at index 0. This is only accessed by absolute index. */
+    private final DoubleBuffer values;
+
+    IndexedDoubleBufferTensor(TensorType type, DimensionSizes dimensionSizes, DoubleBuffer values) {
+        super(type, dimensionSizes);
+        this.values = values;
+    }
+
+    @Override
+    public long size() {
+        return values.limit();
+    }
+
+    @Override
+    public double get(long valueIndex) { return values.get((int)valueIndex); }
+
+    @Override
+    IndexedTensor withSameValueType(TensorType type) {
+        return new IndexedDoubleBufferTensor(type, dimensionSizes(), values);
+    }
+
+}
@@ -0,0 +1,61 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * An indexed tensor implementation storing cell values as doubles.
+ *
+ * @author bratseth
+ */
+class IndexedDoubleTensor extends IndexedTensor {
+
+    private final double[] values;
+
+    IndexedDoubleTensor(TensorType type, DimensionSizes dimensionSizes, double[] values) {
+        super(type, dimensionSizes);
+        this.values = values;
+    }
+
+    @Override
+    public long size() {
+        return values.length;
+    }
+
+    @Override
+    public double get(long valueIndex) { return values[(int)valueIndex]; }
+
+    @Override
+    IndexedTensor withSameValueType(TensorType type) {
+        return new IndexedDoubleTensor(type, dimensionSizes(), values);
+    }
+
+    static class BoundDoubleBuilder extends BoundBuilder {
+
+        private double[] values;
+
+        BoundDoubleBuilder(TensorType type, DimensionSizes sizes) {
+            super(type, sizes);
+            values = new double[(int)sizes.totalSize()];
+        }
+
+        @Override
+        public void cellByDirectIndex(long index, double value) {
+            values[(int)index] = value;
+        }
+
+        @Override
+        public void cellsByDirectIndex(DoubleBuffer values) {
+            values.get(this.values);
+        }
+
+        @Override
+        public IndexedTensor build() {
+            IndexedTensor tensor = new IndexedDoubleTensor(type, sizes(), values);
+            values = null; // prevent further modification
+            return tensor;
+        }
+
+    }
+
+}
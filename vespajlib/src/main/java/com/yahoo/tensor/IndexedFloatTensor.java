@@ -0,0 +1,61 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor;
+
+import java.nio.FloatBuffer;
+
+/**
+ * An indexed tensor implementation storing cell values as floats.
+ *
+ * @author bratseth
+ */
+class IndexedFloatTensor extends IndexedTensor {
+
+    private final float[] values;
+
+    IndexedFloatTensor(TensorType type, DimensionSizes dimensionSizes, float[] values) {
+        super(type, dimensionSizes);
+        this.values = values;
+    }
+
+    @Override
+    public long size() {
+        return values.length;
+    }
+
+    @Override
+    public double get(long valueIndex) { return values[(int)valueIndex]; }
+
+    @Override
+    IndexedTensor withSameValueType(TensorType type) {
+        return new IndexedFloatTensor(type, dimensionSizes(), values);
+    }
+
+    static class BoundFloatBuilder extends BoundBuilder {
+
+        private float[] values;
+
+        BoundFloatBuilder(TensorType type, DimensionSizes sizes) {
+            super(type, sizes);
+            values = new float[(int)sizes.totalSize()];
+        }
+
+        @Override
+        public void cellByDirectIndex(long index, double value) {
+            values[(int)index] = (float)value;
+        }
+
+        @Override
+        public void cellsByDirectIndex(FloatBuffer values) {
+            values.get(this.values);
+        }
+
+        @Override
+        public IndexedTensor build() {
+            IndexedTensor tensor = new IndexedFloatTensor(type, sizes(), values);
+            values = null; // prevent further modification
+            return tensor;
+        }
+
+    }
+
+}
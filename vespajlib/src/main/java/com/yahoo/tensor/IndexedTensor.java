@@ -4,6 +4,8 @@ package com.yahoo.tensor;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -16,11 +18,12 @@ import java.util.Set;
 import java.util.function.DoubleBinaryOperator;
 
 /**
- * An indexed (dense) tensor backed by a double array.
+ * An indexed (dense) tensor. The cell values are stored in an array of the value type of the tensor type,
+ * by a subclass of this for each value type.
  *
  * @author bratseth
  */
-public class IndexedTensor implements Tensor {
+public abstract class IndexedTensor implements Tensor {
 
     /** The prescribed and possibly abstract type this is an instance of */
     private final TensorType type;
@@ -28,18 +31,14 @@ public class IndexedTensor implements Tensor {
     /** The sizes of the dimensions of this in the order of the dimensions of the type */
     private final DimensionSizes dimensionSizes;
 
-    private final double[] values;
-
-    private IndexedTensor(TensorType type, DimensionSizes dimensionSizes, double[] values) {
+    IndexedTensor(TensorType type, DimensionSizes dimensionSizes) {
         this.type = type;
         this.dimensionSizes = dimensionSizes;
-        this.values = values;
     }
 
+    /** Returns the number of cells in this */
     @Override
-    public long size() {
-        return values.length;
-    }
+    public abstract long size();
 
     /**
      * Returns an iterator over the cells of this.
@@ -102,7 +101,7 @@ public class IndexedTensor implements Tensor {
      * @throws IndexOutOfBoundsException if any of the indexes are out of bound or a wrong number of indexes are given
      */
     public double get(long ... indexes) {
-        return values[(int)toValueIndex(indexes, dimensionSizes)];
+        return get(toValueIndex(indexes, dimensionSizes));
     }
 
     /** Returns the value at this address, or NaN if there is no value at this address */
@@ -110,7 +109,7 @@ public class IndexedTensor implements Tensor {
     public double get(TensorAddress address) {
         // optimize for fast lookup within bounds:
         try {
-            return values[(int)toValueIndex(address, dimensionSizes)];
+            return get(toValueIndex(address, dimensionSizes));
         }
         catch (IndexOutOfBoundsException e) {
             return Double.NaN;
@@ -124,7 +123,7 @@ public class IndexedTensor implements Tensor {
      * @param valueIndex the direct index into the underlying data.
      * @throws IndexOutOfBoundsException if index is out of bounds
      */
-    public double get(long valueIndex) { return values[(int)valueIndex]; }
+    public abstract double get(long valueIndex);
 
     private static long toValueIndex(long[] indexes, DimensionSizes sizes) {
         if (indexes.length == 1) return indexes[0]; // for speed
@@ -169,23 +168,68 @@ public class IndexedTensor implements Tensor {
             throw new IllegalArgumentException("IndexedTensor.withType: types are not compatible. Current type: '" +
                     this.type.toString() + "', requested type: '" + type.toString() + "'");
         }
-        return new IndexedTensor(type, dimensionSizes, values);
+        if (this.type.valueType() == type.valueType())
+            return withSameValueType(type);
+
+        BoundBuilder builder = BoundBuilder.create(type, dimensionSizes);
+        for (long i = 0; i < size(); i++)
+            builder.cellByDirectIndex(i, get(i));
+        return builder.build();
     }
 
+    /** Returns this with the given type, which is compatible with the type of this and has the same value type */
+    abstract IndexedTensor withSameValueType(TensorType type);
+
     public DimensionSizes dimensionSizes() {
         return dimensionSizes;
     }
 
+    /**
+     * Returns a tensor which reads its cell values from the given buffer instead of holding a copy of them.
+     * This allows large tensors to be backed by memory mapped files.
+     * The values from the position of the buffer are used in the order of increasing direct index,
+     * and must not be changed while the returned tensor is in use.
+     *
+     * @throws IllegalArgumentException if the sizes do not match the type, or if the buffer does not have
+     *                                  exactly the number of values given by the sizes remaining
+     */
+    public static IndexedTensor of(TensorType type, DimensionSizes sizes, DoubleBuffer values) {
+        validateBufferSize(type, sizes, values.remaining());
+        return new IndexedDoubleBufferTensor(type, sizes, values.slice());
+    }
+
+    /**
+     * Returns a tensor which reads its cell values from the given buffer instead of holding a copy of them.
+     * This allows large tensors to be backed by memory mapped files.
+     * The values from the position of the buffer are used in the order of increasing direct index,
+     * and must not be changed while the returned tensor is in use.
+     *
+     * @throws IllegalArgumentException if the sizes do not match the type, or if the buffer does not have
+     *                                  exactly the number of values given by the sizes remaining
+     */
+    public static IndexedTensor of(TensorType type, DimensionSizes sizes, FloatBuffer values) {
+        validateBufferSize(type, sizes, values.remaining());
+        return new IndexedFloatBufferTensor(type, sizes, values.slice());
+    }
+
+    private static void validateBufferSize(TensorType type, DimensionSizes sizes, int valueCount) {
+        if (sizes.dimensions() != type.rank())
+            throw new IllegalArgumentException(sizes.dimensions() + " is the wrong number of dimensions for " + type);
+        if (valueCount != sizes.totalSize())
+            throw new IllegalArgumentException("A tensor of type " + type + " with these sizes has " + sizes.totalSize() +
+                                               " values, but the buffer has " + valueCount);
+    }
+
     @Override
     public Map<TensorAddress, Double> cells() {
         if (dimensionSizes.dimensions() == 0)
-            return Collections.singletonMap(TensorAddress.of(), values[0]);
+            return Collections.singletonMap(TensorAddress.of(), get(0));
 
         ImmutableMap.Builder<TensorAddress, Double> builder = new ImmutableMap.Builder<>();
-        Indexes indexes = Indexes.of(dimensionSizes, dimensionSizes, values.length);
-        for (long i = 0; i < values.length; i++) {
+        Indexes indexes = Indexes.of(dimensionSizes, dimensionSizes, size());
+        for (long i = 0; i < size(); i++) {
             indexes.next();
-            builder.put(indexes.toAddress(), values[(int)i]);
+            builder.put(indexes.toAddress(), get(i));
         }
         return builder.build();
     }
@@ -201,7 +245,12 @@ public class IndexedTensor implements Tensor {
     }
 
     @Override
-    public int hashCode() { return Arrays.hashCode(values); }
+    public int hashCode() {
+        int result = 1;
+        for (long i = 0; i < size(); i++)
+            result = 31 * result + Double.hashCode(get(i));
+        return result;
+    }
 
     @Override
     public String toString() { return Tensor.toStandardString(this); }
@@ -216,13 +265,13 @@ public class IndexedTensor implements Tensor {
 
         final TensorType type;
 
-        private Builder(TensorType type) {
+        Builder(TensorType type) {
             this.type = type;
         }
 
         public static Builder of(TensorType type) {
             if (type.dimensions().stream().allMatch(d -> d instanceof TensorType.IndexedBoundDimension))
-                return new BoundBuilder(type);
+                return BoundBuilder.create(type, BoundBuilder.dimensionSizesOf(type));
             else
                 return new UnboundBuilder(type);
         }
@@ -245,7 +294,7 @@ public class IndexedTensor implements Tensor {
                                                        " but cannot be larger than " + size.get() + " in " + type);
             }
 
-            return new BoundBuilder(type, sizes);
+            return BoundBuilder.create(type, sizes);
         }
 
         public abstract Builder cell(double value, long ... indexes);
@@ -258,14 +307,27 @@ public class IndexedTensor implements Tensor {
 
     }
 
-    /** A bound builder can create the double array directly */
-    public static class BoundBuilder extends Builder {
+    /** A bound builder can create the value array of the tensor directly */
+    public abstract static class BoundBuilder extends Builder {
 
-        private DimensionSizes sizes;
-        private double[] values;
+        private final DimensionSizes sizes;
+
+        BoundBuilder(TensorType type, DimensionSizes sizes) {
+            super(type);
+            if ( sizes.dimensions() != type.dimensions().size())
+                throw new IllegalArgumentException("Must have a dimension size entry for each dimension in " + type);
+            this.sizes = sizes;
+        }
 
-        private BoundBuilder(TensorType type) {
-            this(type, dimensionSizesOf(type));
+        /** Returns a bound builder creating a tensor storing cell values of the value type of the given type */
+        static BoundBuilder create(TensorType type, DimensionSizes sizes) {
+            switch (type.valueType()) {
+                case DOUBLE: return new IndexedDoubleTensor.BoundDoubleBuilder(type, sizes);
+                case FLOAT: return new IndexedFloatTensor.BoundFloatBuilder(type, sizes);
+                case BFLOAT16: return new IndexedBFloat16Tensor.BoundBFloat16Builder(type, sizes);
+                case INT8: return new IndexedInt8Tensor.BoundInt8Builder(type, sizes);
+                default: throw new IllegalArgumentException("Unknown tensor value type " + type.valueType());
+            }
         }
 
         static DimensionSizes dimensionSizesOf(TensorType type) {
@@ -275,17 +337,11 @@ public class IndexedTensor implements Tensor {
             return b.build();
         }
 
-        private BoundBuilder(TensorType type, DimensionSizes sizes) {
-            super(type);
-            if ( sizes.dimensions() != type.dimensions().size())
-                throw new IllegalArgumentException("Must have a dimension size entry for each dimension in " + type);
-            this.sizes = sizes;
-            values = new double[(int)sizes.totalSize()];
-        }
+        DimensionSizes sizes() { return sizes; }
 
         @Override
         public BoundBuilder cell(double value, long ... indexes) {
-            values[(int)toValueIndex(indexes, sizes)] = value;
+            cellByDirectIndex(toValueIndex(indexes, sizes), value);
             return this;
         }
 
@@ -296,24 +352,15 @@ public class IndexedTensor implements Tensor {
 
         @Override
         public Builder cell(TensorAddress address, double value) {
-            values[(int)toValueIndex(address, sizes)] = value;
+            cellByDirectIndex(toValueIndex(address, sizes), value);
             return this;
         }
 
-        @Override
-        public IndexedTensor build() {
-            IndexedTensor tensor = new IndexedTensor(type, sizes, values);
-            // prevent further modification
-            sizes = null;
-            values = null;
-            return tensor;
-        }
-
         @Override
         public Builder cell(Cell cell, double value) {
             long directIndex = cell.getDirectIndex();
             if (directIndex >= 0) // optimization
-                values[(int)directIndex] = value;
+                cellByDirectIndex(directIndex, value);
             else
                 super.cell(cell, value);
             return this;
@@ -324,10 +371,31 @@ public class IndexedTensor implements Tensor {
          * This requires knowledge of the internal layout of cells in this implementation, and should therefore
          * probably not be used (but when it can be used it is fast).
          */
-        public void cellByDirectIndex(long index, double value) {
-            values[(int)index] = value;
+        public abstract void cellByDirectIndex(long index, double value);
+
+        /**
+         * Sets the values of all the cells of this from a buffer containing them in order of increasing direct index.
+         * This reads as many values as there are cells in this, starting at the position of the buffer,
+         * and advances the position past them.
+         */
+        public void cellsByDirectIndex(DoubleBuffer values) {
+            for (long i = 0; i < sizes.totalSize(); i++)
+                cellByDirectIndex(i, values.get());
+        }
+
+        /**
+         * Sets the values of all the cells of this from a buffer containing them in order of increasing direct index.
+         * This reads as many values as there are cells in this, starting at the position of the buffer,
+         * and advances the position past them.
+         */
+        public void cellsByDirectIndex(FloatBuffer values) {
+            for (long i = 0; i < sizes.totalSize(); i++)
+                cellByDirectIndex(i, values.get());
         }
 
+        @Override
+        public abstract IndexedTensor build();
+
     }
 
     /**
@@ -347,13 +415,16 @@ public class IndexedTensor implements Tensor {
         public IndexedTensor build() {
             if (firstDimension == null) throw new IllegalArgumentException("Tensor of type " + type() + " has no values");
 
-            if (type.dimensions().isEmpty()) // single number
-                return new IndexedTensor(type, new DimensionSizes.Builder(type.dimensions().size()).build(), new double[] {(Double) firstDimension.get(0) });
+            if (type.dimensions().isEmpty()) { // single number
+                BoundBuilder builder = BoundBuilder.create(type, new DimensionSizes.Builder(0).build());
+                builder.cellByDirectIndex(0, (Double)firstDimension.get(0));
+                return builder.build();
+            }
 
             DimensionSizes dimensionSizes = findDimensionSizes(firstDimension);
-            double[] values = new double[(int)dimensionSizes.totalSize()];
-            fillValues(0, 0, firstDimension, dimensionSizes, values);
-            return new IndexedTensor(type, dimensionSizes, values);
+            BoundBuilder builder = BoundBuilder.create(type, dimensionSizes);
+            fillValues(0, 0, firstDimension, dimensionSizes, builder);
+            return builder.build();
         }
 
         private DimensionSizes findDimensionSizes(List<Object> firstDimension) {
@@ -382,15 +453,15 @@ public class IndexedTensor implements Tensor {
 
         @SuppressWarnings("unchecked")
         private void fillValues(int currentDimensionIndex, long offset, List<Object> currentDimension,
-                                DimensionSizes sizes, double[] values) {
+                                DimensionSizes sizes, BoundBuilder builder) {
             if (currentDimensionIndex < sizes.dimensions() - 1) { // recurse to next dimension
                 for (long i = 0; i < currentDimension.size(); i++)
                     fillValues(currentDimensionIndex + 1,
                                offset + productOfDimensionsAfter(currentDimensionIndex, sizes) * i,
-                               (List<Object>) currentDimension.get((int)i), sizes, values);
+                               (List<Object>) currentDimension.get((int)i), sizes, builder);
             } else { // last dimension - fill values
                 for (long i = 0; i < currentDimension.size(); i++) {
-                    values[(int)(offset + i)] = nullAsZero((Double)currentDimension.get((int)i)); // fill missing values as zero
+                    builder.cellByDirectIndex(offset + i, nullAsZero((Double)currentDimension.get((int)i))); // fill missing values as zero
                 }
             }
         }
@@ -460,7 +531,7 @@ public class IndexedTensor implements Tensor {
     private final class CellIterator implements Iterator<Cell> {
 
         private long count = 0;
-        private final Indexes indexes = Indexes.of(dimensionSizes, dimensionSizes, values.length);
+        private final Indexes indexes = Indexes.of(dimensionSizes, dimensionSizes, size());
         private final LazyCell reusedCell = new LazyCell(indexes, Double.NaN);
 
         @Override
@@ -485,17 +556,13 @@ public class IndexedTensor implements Tensor {
 
         @Override
         public boolean hasNext() {
-            return count < values.length;
+            return count < size();
         }
 
         @Override
         public Double next() {
-            try {
-                return values[(int)count++];
-            }
-            catch (IndexOutOfBoundsException e) {
-                throw new NoSuchElementException("No element at position " + count);
-            }
+            if ( ! hasNext()) throw new NoSuchElementException("No element at position " + count);
+            return get(count++);
         }
 
     }
@@ -3,13 +3,17 @@ package com.yahoo.tensor;
 
 import com.google.common.collect.ImmutableMap;
 
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.function.DoubleBinaryOperator;
 
 /**
- * A sparse implementation of a tensor backed by a Map of cells to values.
+ * A sparse implementation of a tensor. The cell addresses are kept in an {@link AddressIndex}, which stores each
+ * distinct label once, and the values in a primitive array, such that no objects are allocated per cell
+ * unless they are requested.
  *
  * @author bratseth
  */
@@ -17,31 +21,44 @@ public class MappedTensor implements Tensor {
 
     private final TensorType type;
 
-    private final ImmutableMap<TensorAddress, Double> cells;
+    /** The addresses of the cells of this */
+    private final AddressIndex index;
+
+    /** The cell values of this, indexed by the ordinal of their address in the index */
+    private final double[] values;
 
     /** Creates a sparse tensor. The cell addresses must match the type. */
-    private MappedTensor(TensorType type, Map<TensorAddress, Double> cells) {
+    private MappedTensor(TensorType type, AddressIndex index, double[] values) {
         this.type = type;
-        this.cells = ImmutableMap.copyOf(cells);
+        this.index = index;
+        this.values = values;
     }
 
     @Override
     public TensorType type() { return type; }
 
     @Override
-    public long size() { return cells.size(); }
+    public long size() { return values.length; }
 
     @Override
-    public double get(TensorAddress address) { return cells.getOrDefault(address, Double.NaN); }
+    public double get(TensorAddress address) {
+        int ordinal = index.indexOf(address);
+        return ordinal < 0 ? Double.NaN : values[ordinal];
+    }
 
     @Override
-    public Iterator<Cell> cellIterator() { return new CellIteratorAdaptor(cells.entrySet().iterator()); }
+    public Iterator<Cell> cellIterator() { return new CellIterator(); }
 
     @Override
-    public Iterator<Double> valueIterator() { return cells.values().iterator(); }
+    public Iterator<Double> valueIterator() { return Arrays.stream(values).iterator(); }
 
     @Override
-    public Map<TensorAddress, Double> cells() { return cells; }
+    public Map<TensorAddress, Double> cells() {
+        ImmutableMap.Builder<TensorAddress, Double> cells = new ImmutableMap.Builder<>();
+        for (int ordinal = 0; ordinal < values.length; ordinal++)
+            cells.put(index.address(ordinal), values[ordinal]);
+        return cells.build();
+    }
 
     @Override
     public Tensor withType(TensorType other) {
@@ -49,22 +66,20 @@ public class MappedTensor implements Tensor {
             throw new IllegalArgumentException("MappedTensor.withType: types are not compatible. Current type: '" +
                     this.type.toString() + "', requested type: '" + type.toString() + "'");
         }
-        return new MappedTensor(other, cells);
+        return new MappedTensor(other, index, values);
     }
 
     @Override
     public Tensor merge(DoubleBinaryOperator op, Map<TensorAddress, Double> addCells) {
-
-        // currently, underlying implementation disallows multiple entries with the same key
-
         Tensor.Builder builder = Tensor.Builder.of(type());
-        for (Map.Entry<TensorAddress, Double> cell  : cells.entrySet()) {
-            TensorAddress address = cell.getKey();
-            double value = cell.getValue();
-            builder.cell(address, addCells.containsKey(address) ? op.applyAsDouble(value, addCells.get(address)) : value);
+        for (int ordinal = 0; ordinal < values.length; ordinal++) {
+            TensorAddress address = index.address(ordinal);
+            double value = values[ordinal];
+            Double addValue = addCells.get(address);
+            builder.cell(address, addValue != null ? op.applyAsDouble(value, addValue) : value);
         }
         for (Map.Entry<TensorAddress, Double> addCell : addCells.entrySet()) {
-            if ( ! cells.containsKey(addCell.getKey())) {
+            if (index.indexOf(addCell.getKey()) < 0) {
                 builder.cell(addCell.getKey(), addCell.getValue());
             }
         }
@@ -74,18 +89,22 @@ public class MappedTensor implements Tensor {
     @Override
     public Tensor remove(Set<TensorAddress> addresses) {
         Tensor.Builder builder = Tensor.Builder.of(type());
-        for (Iterator<Tensor.Cell> i = cellIterator(); i.hasNext(); ) {
-            Tensor.Cell cell = i.next();
-            TensorAddress address = cell.getKey();
+        for (int ordinal = 0; ordinal < values.length; ordinal++) {
+            TensorAddress address = index.address(ordinal);
             if ( ! addresses.contains(address)) {
-                builder.cell(address, cell.getValue());
+                builder.cell(address, values[ordinal]);
             }
         }
         return builder.build();
     }
 
     @Override
-    public int hashCode() { return cells.hashCode(); }
+    public int hashCode() {
+        int hashCode = 0;
+        for (int ordinal = 0; ordinal < values.length; ordinal++)
+            hashCode += index.addressHashCode(ordinal) ^ Double.hashCode(values[ordinal]); // as Map.hashCode
+        return hashCode;
+    }
 
     @Override
     public String toString() { return Tensor.toStandardString(this); }
@@ -96,15 +115,20 @@ public class MappedTensor implements Tensor {
         return Tensor.equals(this, ((Tensor)other));
     }
 
+    /**
+     * Builds a mapped tensor. If a cell is added multiple times, the last value added is used.
+     */
     public static class Builder implements Tensor.Builder {
 
         private final TensorType type;
-        private final ImmutableMap.Builder<TensorAddress, Double> cells = new ImmutableMap.Builder<>();
+        private final AddressIndex.Builder index;
+        private double[] values = new double[8];
 
         public static Builder of(TensorType type) { return new Builder(type); }
 
         private Builder(TensorType type) {
             this.type = type;
+            this.index = new AddressIndex.Builder(type.rank());
         }
 
         public CellBuilder cell() {
@@ -116,38 +140,58 @@ public class MappedTensor implements Tensor {
 
         @Override
         public Builder cell(TensorAddress address, double value) {
-            cells.put(address, value);
+            int ordinal = index.add(address);
+            if (ordinal >= values.length)
+                values = Arrays.copyOf(values, values.length * 2);
+            values[ordinal] = value;
             return this;
         }
 
         @Override
         public Builder cell(double value, long... labels) {
-            cells.put(TensorAddress.of(labels), value);
-            return this;
+            return cell(TensorAddress.of(labels), value);
         }
 
         @Override
         public MappedTensor build() {
-            return new MappedTensor(type, cells.build());
+            return new MappedTensor(type, index.build(), Arrays.copyOf(values, index.size()));
         }
 
     }
 
-    private static class CellIteratorAdaptor implements Iterator<Cell> {
+    private final class CellIterator implements Iterator<Cell> {
 
-        private final Iterator<Map.Entry<TensorAddress, Double>> adaptedIterator;
-
-        private CellIteratorAdaptor(Iterator<Map.Entry<TensorAddress, Double>> adaptedIterator) {
-            this.adaptedIterator = adaptedIterator;
-        }
+        private int ordinal = 0;
 
         @Override
-        public boolean hasNext() { return adaptedIterator.hasNext(); }
+        public boolean hasNext() { return ordinal < values.length; }
 
         @Override
         public Cell next() {
-            Map.Entry<TensorAddress, Double> entry = adaptedIterator.next();
-            return new Cell(entry.getKey(), entry.getValue());
+            if ( ! hasNext()) throw new NoSuchElementException("No cell at " + ordinal);
+            return new LazyCell(index, ordinal, values[ordinal++]);
+        }
+
+    }
+
+    /** A cell which does not create its address unless it is requested */
+    private static final class LazyCell extends Tensor.Cell {
+
+        private final AddressIndex index;
+        private final int ordinal;
+        private TensorAddress address = null;
+
+        LazyCell(AddressIndex index, int ordinal, double value) {
+            super(null, value);
+            this.index = index;
+            this.ordinal = ordinal;
+        }
+
+        @Override
+        public TensorAddress getKey() {
+            if (address == null)
+                address = index.address(ordinal);
+            return address;
         }
 
     }
@@ -2,13 +2,15 @@
 
 package com.yahoo.tensor;
 
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Set;
 import java.util.function.DoubleBinaryOperator;
 import java.util.stream.Collectors;
@@ -29,15 +31,15 @@ public class MixedTensor implements Tensor {
     /** The dimension specification for this tensor */
     private final TensorType type;
 
-    /** The list of cells in the tensor */
-    private final ImmutableList<Cell> cells;
+    /** The cell values of this, stored as consecutive dense subspaces in the order of the sparse index */
+    private final double[] values;
 
-    /** An index structure over the cell list */
+    /** An index structure over the cell values */
     private final Index index;
 
-    private MixedTensor(TensorType type, ImmutableList<Cell> cells, Index index) {
+    private MixedTensor(TensorType type, double[] values, Index index) {
         this.type = type;
-        this.cells = ImmutableList.copyOf(cells);
+        this.values = values;
         this.index = index;
     }
 
@@ -47,17 +49,12 @@ public class MixedTensor implements Tensor {
 
     /** Returns the size of the tensor measured in number of cells */
     @Override
-    public long size() { return cells.size(); }
+    public long size() { return values.length; }
 
     /** Returns the value at the given address */
     @Override
     public double get(TensorAddress address) {
-        long cellIndex = index.indexOf(address);
-        Cell cell = cells.get((int)cellIndex);
-        if (!address.equals(cell.getKey())) {
-            throw new IllegalStateException("Unable to find correct cell by direct index.");
-        }
-        return cell.getValue();
+        return values[(int)index.indexOf(address)];
     }
 
     /**
@@ -69,11 +66,7 @@ public class MixedTensor implements Tensor {
      */
     @Override
     public Iterator<Cell> cellIterator() {
-        return cells.iterator();
-    }
-
-    private Iterable<Cell> cellIterable() {
-        return this::cellIterator;
+        return new CellIterator();
     }
 
     /**
@@ -82,24 +75,14 @@ public class MixedTensor implements Tensor {
      */
     @Override
     public Iterator<Double> valueIterator() {
-        return new Iterator<>() {
-            Iterator<Cell> cellIterator = cellIterator();
-            @Override
-            public boolean hasNext() {
-                return cellIterator.hasNext();
-            }
-            @Override
-            public Double next() {
-                return cellIterator.next().getValue();
-            }
-        };
+        return Arrays.stream(values).iterator();
     }
 
     @Override
     public Map<TensorAddress, Double> cells() {
         ImmutableMap.Builder<TensorAddress, Double> builder = new ImmutableMap.Builder<>();
-        for (Cell cell : cells) {
-            builder.put(cell.getKey(), cell.getValue());
+        for (int i = 0; i < values.length; i++) {
+            builder.put(index.addressOf(i), values[i]);
         }
         return builder.build();
     }
@@ -110,15 +93,15 @@ public class MixedTensor implements Tensor {
             throw new IllegalArgumentException("MixedTensor.withType: types are not compatible. Current type: '" +
                     this.type.toString() + "', requested type: '" + type.toString() + "'");
         }
-        return new MixedTensor(other, cells, index);
+        return new MixedTensor(other, values, index);
     }
 
     @Override
     public Tensor merge(DoubleBinaryOperator op, Map<TensorAddress, Double> addCells) {
         Tensor.Builder builder = Tensor.Builder.of(type());
-        for (Cell cell  : cellIterable()) {
-            TensorAddress address = cell.getKey();
-            double value = cell.getValue();
+        for (int i = 0; i < values.length; i++) {
+            TensorAddress address = index.addressOf(i);
+            double value = values[i];
             builder.cell(address, addCells.containsKey(address) ? op.applyAsDouble(value, addCells.get(address)) : value);
         }
         for (Map.Entry<TensorAddress, Double> addCell : addCells.entrySet()) {
@@ -132,13 +115,13 @@ public class MixedTensor implements Tensor {
         Tensor.Builder builder = Tensor.Builder.of(type());
 
         // iterate through all sparse addresses referencing a dense subspace
-        for (Map.Entry<TensorAddress, Long> entry : index.sparseMap.entrySet()) {
-            TensorAddress sparsePartialAddress = entry.getKey();
+        int denseSubspaceSize = (int)index.denseSubspaceSize();
+        for (int subspace = 0; subspace < index.sparseMap.size(); subspace++) {
+            TensorAddress sparsePartialAddress = index.sparseMap.address(subspace);
             if ( ! addresses.contains(sparsePartialAddress)) {  // assumption: addresses only contain the sparse part
-                long offset = entry.getValue();
-                for (int i = 0; i < index.denseSubspaceSize; ++i) {
-                    Cell cell = cells.get((int)offset + i);
-                    builder.cell(cell.getKey(), cell.getValue());
+                int offset = subspace * denseSubspaceSize;
+                for (int i = 0; i < denseSubspaceSize; ++i) {
+                    builder.cell(index.addressOf(sparsePartialAddress, i), values[offset + i]);
                 }
             }
         }
@@ -146,7 +129,12 @@ public class MixedTensor implements Tensor {
     }
 
     @Override
-    public int hashCode() { return cells.hashCode(); }
+    public int hashCode() {
+        int hashCode = 0;
+        for (int i = 0; i < values.length; i++)
+            hashCode += index.addressOf(i).hashCode() ^ Double.hashCode(values[i]); // as Map.hashCode
+        return hashCode;
+    }
 
     @Override
     public String toString() { return Tensor.toStandardString(this); }
@@ -213,61 +201,51 @@ public class MixedTensor implements Tensor {
      */
     public static class BoundBuilder extends Builder {
 
-        /** For each sparse partial address, hold a dense subspace */
-        final private Map<TensorAddress, double[]> denseSubspaceMap = new HashMap<>();
         final private Index.Builder indexBuilder;
         final private Index index;
 
+        /** The dense subspaces added so far, in the order of their sparse address in the index */
+        private double[] values;
+
         private BoundBuilder(TensorType type) {
             super(type);
             indexBuilder = new Index.Builder(type);
             index = indexBuilder.index();
+            values = new double[(int)denseSubspaceSize() * 8];
         }
 
         public long denseSubspaceSize() {
             return index.denseSubspaceSize();
         }
 
-        private double[] denseSubspace(TensorAddress sparsePartial) {
-            if (!denseSubspaceMap.containsKey(sparsePartial)) {
-                denseSubspaceMap.put(sparsePartial, new double[(int)denseSubspaceSize()]);
-            }
-            return denseSubspaceMap.get(sparsePartial);
+        /** Returns the offset of the dense subspace of the given sparse address in the values */
+        private int denseSubspace(TensorAddress sparsePartial) {
+            int denseSubspaceSize = (int)denseSubspaceSize();
+            int offset = indexBuilder.put(sparsePartial) * denseSubspaceSize;
+            if (offset + denseSubspaceSize > values.length)
+                values = Arrays.copyOf(values, Math.max(values.length * 2, offset + denseSubspaceSize));
+            return offset;
         }
 
         @Override
         public Tensor.Builder cell(TensorAddress address, double value) {
             TensorAddress sparsePart = index.sparsePartialAddress(address);
-            long denseOffset = index.denseOffset(address);
-            double[] denseSubspace = denseSubspace(sparsePart);
-            denseSubspace[(int)denseOffset] = value;
+            int denseOffset = Objects.checkIndex((int)index.denseOffset(address), (int)denseSubspaceSize());
+            int cellIndex = denseSubspace(sparsePart) + denseOffset; // before accessing values, which may grow
+            values[cellIndex] = value;
             return this;
         }
 
         public Tensor.Builder block(TensorAddress sparsePart, double[] values) {
-            double[] denseSubspace = denseSubspace(sparsePart);
-            System.arraycopy(values, 0, denseSubspace, 0, (int)denseSubspaceSize());
+            int offset = denseSubspace(sparsePart);
+            System.arraycopy(values, 0, this.values, offset, (int)denseSubspaceSize());
             return this;
         }
 
         @Override
         public MixedTensor build() {
-            long count = 0;
-            ImmutableList.Builder<Cell> builder = new ImmutableList.Builder<>();
-
-            for (Map.Entry<TensorAddress, double[]> entry : denseSubspaceMap.entrySet()) {
-                TensorAddress sparsePart = entry.getKey();
-                indexBuilder.put(sparsePart, count);
-
-                double[] denseSubspace = entry.getValue();
-                for (long offset = 0; offset < denseSubspace.length; ++offset) {
-                    TensorAddress cellAddress = index.addressOf(sparsePart, offset);
-                    double value = denseSubspace[(int)offset];
-                    builder.add(new Cell(cellAddress, value));
-                    count++;
-                }
-            }
-            return new MixedTensor(type, builder.build(), indexBuilder.build());
+            Index index = indexBuilder.build();
+            return new MixedTensor(type, Arrays.copyOf(values, index.sparseMap.size() * (int)denseSubspaceSize()), index);
         }
 
     }
@@ -335,7 +313,7 @@ public class MixedTensor implements Tensor {
     }
 
     /**
-     * An immutable index into a list of cells.
+     * An immutable index into the cell values of a mixed tensor.
      * Contains additional information required
      * for handling mixed tensor addresses.
      * Assumes indexed dimensions are bound.
@@ -348,7 +326,8 @@ public class MixedTensor implements Tensor {
         private final List<TensorType.Dimension> mappedDimensions;
         private final List<TensorType.Dimension> indexedDimensions;
 
-        private ImmutableMap<TensorAddress, Long> sparseMap;
+        /** The sparse partial addresses of the dense subspaces, in the order of the subspaces */
+        private AddressIndex sparseMap;
         private long denseSubspaceSize = -1;
 
         private Index(TensorType type) {
@@ -361,10 +340,11 @@ public class MixedTensor implements Tensor {
 
         public long indexOf(TensorAddress address) {
             TensorAddress sparsePart = sparsePartialAddress(address);
-            if ( ! sparseMap.containsKey(sparsePart)) {
+            int subspace = sparseMap.indexOf(sparsePart);
+            if (subspace < 0) {
                 throw new IllegalArgumentException("Address not found");
             }
-            long base = sparseMap.get(sparsePart);
+            long base = subspace * denseSubspaceSize();
             long offset = denseOffset(address);
             return base + offset;
         }
@@ -372,15 +352,16 @@ public class MixedTensor implements Tensor {
         public static class Builder {
 
             private final Index index;
-            private final ImmutableMap.Builder<TensorAddress, Long> builder;
+            private final AddressIndex.Builder builder;
 
             public Builder(TensorType type) {
                 index = new Index(type);
-                builder = new ImmutableMap.Builder<>();
+                builder = new AddressIndex.Builder(index.sparseType.rank());
             }
 
-            public void put(TensorAddress address, long index) {
-                builder.put(address, index);
+            /** Adds a sparse partial address unless already present, and returns the ordinal of its dense subspace */
+            public int put(TensorAddress address) {
+                return builder.add(address);
             }
 
             public Index build() {
@@ -457,6 +438,12 @@ public class MixedTensor implements Tensor {
             return TensorAddress.of(labels);
         }
 
+        /** Returns the address of the cell at the given index into the cell values */
+        private TensorAddress addressOf(long cellIndex) {
+            long denseSubspaceSize = denseSubspaceSize();
+            return addressOf(sparseMap.address((int)(cellIndex / denseSubspaceSize)), cellIndex % denseSubspaceSize);
+        }
+
         private TensorAddress addressOf(TensorAddress sparsePart, long denseOffset) {
             TensorAddress densePart = denseOffsetToAddress(denseOffset);
             String[] labels = new String[type.dimensions().size()];
@@ -476,6 +463,43 @@ public class MixedTensor implements Tensor {
 
     }
 
+    private final class CellIterator implements Iterator<Cell> {
+
+        private int cellIndex = 0;
+
+        @Override
+        public boolean hasNext() { return cellIndex < values.length; }
+
+        @Override
+        public Cell next() {
+            if ( ! hasNext()) throw new NoSuchElementException("No cell at " + cellIndex);
+            return new LazyCell(index, cellIndex, values[cellIndex++]);
+        }
+
+    }
+
+    /** A cell which does not create its address unless it is requested */
+    private static final class LazyCell extends Tensor.Cell {
+
+        private final Index index;
+        private final int cellIndex;
+        private TensorAddress address = null;
+
+        LazyCell(Index index, int cellIndex, double value) {
+            super(null, value);
+            this.index = index;
+            this.cellIndex = cellIndex;
+        }
+
+        @Override
+        public TensorAddress getKey() {
+            if (address == null)
+                address = index.addressOf(cellIndex);
+            return address;
+        }
+
+    }
+
     public static TensorType createPartialType(List<TensorType.Dimension> dimensions) {
         TensorType.Builder builder = new TensorType.Builder();
         for (TensorType.Dimension dimension : dimensions) {
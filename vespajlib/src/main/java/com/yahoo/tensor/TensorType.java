@@ -15,22 +15,87 @@ import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
- * A tensor type with its dimensions. This is immutable.
+ * A tensor type with its dimensions and cell value type. This is immutable.
  * <p>
  * A dimension can be indexed (bound or unbound) or mapped.
+ * The cell value type determines the precision and storage size of the cell values of tensors of this type.
  *
  * @author geirst
  * @author bratseth
  */
 public class TensorType {
 
+    /** The cell value types a tensor may have, in order of decreasing precision */
+    public enum Value {
+
+        DOUBLE("double"), FLOAT("float"), BFLOAT16("bfloat16"), INT8("int8");
+
+        private final String id;
+
+        Value(String id) { this.id = id; }
+
+        /** Returns the name of this value type as used in tensor type specs */
+        public String id() { return id; }
+
+        /** Returns whether this value type has higher precision than the given */
+        public boolean isLargerThan(Value other) {
+            return this.ordinal() < other.ordinal();
+        }
+
+        /** Returns the value type of the highest precision of the two given */
+        public static Value largestOf(Value value1, Value value2) {
+            return value1.isLargerThan(value2) ? value1 : value2;
+        }
+
+        /**
+         * Returns the value type of the cells resulting from a computation on cells of the given types:
+         * The largest of the given types, but never smaller than float.
+         */
+        public static Value computedFrom(Value ... values) {
+            Value result = FLOAT;
+            for (Value value : values)
+                result = largestOf(result, value);
+            return result;
+        }
+
+        /**
+         * Returns the value type of the cells resulting from a computation on tensors of the given types.
+         * Arguments without dimensions are ignored, as single numbers are always doubles,
+         * and the result is double if all the arguments are single numbers.
+         */
+        public static Value computedFrom(TensorType ... types) {
+            Value result = null;
+            for (TensorType type : types) {
+                if (type.rank() == 0) continue;
+                result = result == null ? computedFrom(type.valueType()) : largestOf(result, computedFrom(type.valueType()));
+            }
+            return result == null ? DOUBLE : result;
+        }
+
+        public static Value fromId(String id) {
+            for (Value value : values())
+                if (value.id.equals(id)) return value;
+            throw new IllegalArgumentException("Unknown tensor cell value type '" + id + "'. " +
+                                               "Supported types are double, float, bfloat16 and int8");
+        }
+
+        @Override
+        public String toString() { return id; }
+
+    }
+
     /** The empty tensor type - which is the same as a double */
-    public static final TensorType empty = new TensorType(Collections.emptyList());
+    public static final TensorType empty = new TensorType(Value.DOUBLE, Collections.emptyList());
+
+    /** The type of the cell values of this */
+    private final Value valueType;
 
     /** Sorted list of the dimensions of this */
     private final ImmutableList<Dimension> dimensions;
 
-    private TensorType(Collection<Dimension> dimensions) {
+    private TensorType(Value valueType, Collection<Dimension> dimensions) {
+        // A tensor without dimensions is a single number, which is always a double
+        this.valueType = dimensions.isEmpty() ? Value.DOUBLE : valueType;
         List<Dimension> dimensionList = new ArrayList<>(dimensions);
         Collections.sort(dimensionList);
         this.dimensions = ImmutableList.copyOf(dimensionList);
@@ -46,11 +111,18 @@ public class TensorType {
      *     <li><code>dimension-name{}</code> - a mapped dimension
      * </ul>
      * Example: <code>tensor(x[10],y[20])</code> (a matrix)
+     * <p>
+     * The cell value type may be given as <code>tensor&lt;value-type&gt;(dimension1, ...)</code>
+     * where value-type is one of double (the default), float, bfloat16 and int8.
+     * Example: <code>tensor&lt;float&gt;(x[768])</code>
      */
     public static TensorType fromSpec(String specString) {
         return TensorTypeParser.fromSpec(specString);
     }
 
+    /** Returns the type of the cell values of this */
+    public Value valueType() { return valueType; }
+
     /** Returns the number of dimensions of this: dimensions().size() */
     public int rank() { return dimensions.size(); }
 
@@ -132,14 +204,16 @@ public class TensorType {
 
     @Override
     public String toString() {
-        return "tensor(" + dimensions.stream().map(Dimension::toString).collect(Collectors.joining(",")) + ")";
+        return "tensor" + (valueType == Value.DOUBLE ? "" : "<" + valueType.id() + ">") +
+               "(" + dimensions.stream().map(Dimension::toString).collect(Collectors.joining(",")) + ")";
     }
 
     @Override
     public boolean equals(Object other) {
         if (this == other) return true;
         if (other == null || getClass() != other.getClass()) return false;
-        return dimensions.equals(((TensorType)other).dimensions);
+        TensorType otherType = (TensorType)other;
+        return valueType == otherType.valueType && dimensions.equals(otherType.dimensions);
     }
 
     /** Returns whether the given type has the same dimension names as this */
@@ -160,7 +234,7 @@ public class TensorType {
         if (this.equals(other)) return Optional.of(this); // shortcut
         if (this.dimensions.size() != other.dimensions.size()) return Optional.empty();
 
-        Builder b = new Builder();
+        Builder b = new Builder(Value.largestOf(valueType, other.valueType));
         for (int i = 0; i < dimensions.size(); i++) {
             Dimension thisDim = this.dimensions().get(i);
             Dimension otherDim = other.dimensions().get(i);
@@ -193,7 +267,7 @@ public class TensorType {
 
     @Override
     public int hashCode() {
-        return dimensions.hashCode();
+        return Objects.hash(valueType, dimensions);
     }
 
     /**
@@ -373,8 +447,16 @@ public class TensorType {
 
         private final Map<String, Dimension> dimensions = new LinkedHashMap<>();
 
-        /** Creates an empty builder */
+        private Value valueType;
+
+        /** Creates an empty builder with cells of type double */
         public Builder() {
+            this(Value.DOUBLE);
+        }
+
+        /** Creates an empty builder with cells of the given type */
+        public Builder(Value valueType) {
+            this.valueType = valueType;
         }
 
         /**
@@ -383,16 +465,29 @@ public class TensorType {
          * If the same dimension is indexed with different size restrictions the largest size will be used.
          * If it is size restricted in one argument but not the other it will not be size restricted.
          * If it is indexed in one and mapped in the other it will become mapped.
+         *
+         * The value type will be the largest of the value types of the given types.
          */
         public Builder(TensorType ... types) {
-            for (TensorType type : types)
+            this.valueType = types.length == 0 ? Value.DOUBLE : types[0].valueType();
+            for (TensorType type : types) {
                 addDimensionsOf(type);
+                valueType = Value.largestOf(valueType, type.valueType());
+            }
         }
 
         /**
-         * Creates a builder from the given dimensions.
+         * Creates a builder from the given dimensions, having cells of type double.
          */
         public Builder(Iterable<Dimension> dimensions) {
+            this(Value.DOUBLE, dimensions);
+        }
+
+        /**
+         * Creates a builder from the given dimensions, having cells of the given type.
+         */
+        public Builder(Value valueType, Iterable<Dimension> dimensions) {
+            this.valueType = valueType;
             for (TensorType.Dimension dimension : dimensions) {
                 dimension(dimension);
             }
@@ -425,6 +520,15 @@ public class TensorType {
         /** Returns the current number of dimensions in this */
         public int rank() { return dimensions.size(); }
 
+        /** Sets the type of the cell values of the type built by this */
+        public Builder valueType(Value valueType) {
+            this.valueType = valueType;
+            return this;
+        }
+
+        /** Returns the current type of the cell values of the type built by this */
+        public Value valueType() { return valueType; }
+
         /**
          * Adds a new dimension to this
          *
@@ -491,7 +595,7 @@ public class TensorType {
         }
 
         public TensorType build() {
-            return new TensorType(dimensions.values());
+            return new TensorType(valueType, dimensions.values());
         }
 
     }
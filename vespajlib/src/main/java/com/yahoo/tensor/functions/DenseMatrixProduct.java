@@ -0,0 +1,166 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor.functions;
+
+import com.yahoo.tensor.DimensionSizes;
+import com.yahoo.tensor.IndexedTensor;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorType;
+
+import java.util.Collections;
+import java.util.Optional;
+
+/**
+ * The product of two dense tensors having at most two dimensions each, summed over their single common dimension:
+ * A vector-vector, vector-matrix, matrix-vector or matrix-matrix product.
+ * This is computed directly on arrays of the cell values with a cache blocked loop,
+ * rather than as a reduce over a join, which would create an intermediate tensor of the size of
+ * the two arguments multiplied.
+ *
+ * @author bratseth
+ */
+final class DenseMatrixProduct {
+
+    /** The number of columns and rows handled in each block, chosen to fit the blocks in the L1 cache */
+    private static final int blockSize = 64;
+
+    private final IndexedTensor a, b;
+    private final TensorType type;
+
+    /** The index of the dimension of a and b which is not summed over, or -1 if none */
+    private final int rowDimensionOfA, columnDimensionOfB;
+
+    /** The index of the dimension summed over in a and b */
+    private final int commonDimensionOfA, commonDimensionOfB;
+
+    /** The number of rows in a, the size of the common dimension, and the number of columns in b */
+    private final int rows, commonSize, columns;
+
+    private DenseMatrixProduct(IndexedTensor a, IndexedTensor b, String dimension) {
+        this.a = a;
+        this.b = b;
+        this.type = Reduce.outputType(Join.outputType(a.type(), b.type()), Collections.singletonList(dimension));
+        this.commonDimensionOfA = a.type().indexOfDimension(dimension).get();
+        this.commonDimensionOfB = b.type().indexOfDimension(dimension).get();
+        this.rowDimensionOfA = a.type().rank() == 2 ? 1 - commonDimensionOfA : -1;
+        this.columnDimensionOfB = b.type().rank() == 2 ? 1 - commonDimensionOfB : -1;
+        this.rows = rowDimensionOfA < 0 ? 1 : (int)a.dimensionSizes().size(rowDimensionOfA);
+        this.commonSize = (int)Math.min(a.dimensionSizes().size(commonDimensionOfA),
+                                        b.dimensionSizes().size(commonDimensionOfB));
+        this.columns = columnDimensionOfB < 0 ? 1 : (int)b.dimensionSizes().size(columnDimensionOfB);
+    }
+
+    /**
+     * Returns the product of the given tensors over the given dimension,
+     * or empty if the tensors are not dense tensors of at most two dimensions each
+     * having the given dimension as their only common dimension.
+     */
+    static Optional<DenseMatrixProduct> of(Tensor a, Tensor b, String dimension) {
+        if ( ! (a instanceof IndexedTensor) || ! (b instanceof IndexedTensor)) return Optional.empty();
+        if (a.type().rank() < 1 || a.type().rank() > 2 || b.type().rank() < 1 || b.type().rank() > 2) return Optional.empty();
+        if ( ! a.type().dimension(dimension).isPresent() || ! b.type().dimension(dimension).isPresent()) return Optional.empty();
+        for (TensorType.Dimension aDimension : a.type().dimensions())
+            if ( ! aDimension.name().equals(dimension) && b.type().dimension(aDimension.name()).isPresent())
+                return Optional.empty();
+
+        DenseMatrixProduct product = new DenseMatrixProduct((IndexedTensor)a, (IndexedTensor)b, dimension);
+        if (product.rows == 0 || product.commonSize == 0 || product.columns == 0) return Optional.empty();
+        return Optional.of(product);
+    }
+
+    /** Returns the type of the product */
+    TensorType type() { return type; }
+
+    /** Returns the product as a tensor */
+    IndexedTensor toTensor() {
+        return toTensor(type, multiply());
+    }
+
+    /**
+     * Returns the product with the given vector added to each row or column, or empty if the vector
+     * is not a dense tensor with one of the dimensions of the product, of the same size.
+     */
+    Optional<IndexedTensor> plus(Tensor vector) {
+        if ( ! (vector instanceof IndexedTensor) || vector.type().rank() != 1) return Optional.empty();
+        String vectorDimension = vector.type().dimensions().get(0).name();
+        long vectorSize = ((IndexedTensor)vector).dimensionSizes().size(0);
+
+        double[] product = multiply();
+        if (rowDimensionOfA >= 0 && a.type().dimensions().get(rowDimensionOfA).name().equals(vectorDimension)) {
+            if (vectorSize != rows) return Optional.empty();
+            for (int row = 0; row < rows; row++)
+                for (int column = 0; column < columns; column++)
+                    product[row * columns + column] += ((IndexedTensor)vector).get(row);
+        }
+        else if (columnDimensionOfB >= 0 && b.type().dimensions().get(columnDimensionOfB).name().equals(vectorDimension)) {
+            if (vectorSize != columns) return Optional.empty();
+            for (int row = 0; row < rows; row++)
+                for (int column = 0; column < columns; column++)
+                    product[row * columns + column] += ((IndexedTensor)vector).get(column);
+        }
+        else {
+            return Optional.empty();
+        }
+        return Optional.of(toTensor(Join.outputType(type, vector.type()), product));
+    }
+
+    /** Returns the product as a row-major array of rows * columns values */
+    private double[] multiply() {
+        double[] aValues = values(a, rowDimensionOfA, commonDimensionOfA, rows, commonSize);
+        double[] bValues = values(b, commonDimensionOfB, columnDimensionOfB, commonSize, columns);
+        double[] product = new double[rows * columns];
+
+        // Each product value is summed over the common dimension in increasing order, as in reduce(join(a, b))
+        for (int commonStart = 0; commonStart < commonSize; commonStart += blockSize) {
+            int commonEnd = Math.min(commonStart + blockSize, commonSize);
+            for (int columnStart = 0; columnStart < columns; columnStart += blockSize) {
+                int columnEnd = Math.min(columnStart + blockSize, columns);
+                for (int row = 0; row < rows; row++) {
+                    int productRow = row * columns;
+                    for (int i = commonStart; i < commonEnd; i++) {
+                        double aValue = aValues[row * commonSize + i];
+                        int bRow = i * columns;
+                        for (int column = columnStart; column < columnEnd; column++)
+                            product[productRow + column] += aValue * bValues[bRow + column];
+                    }
+                }
+            }
+        }
+        return product;
+    }
+
+    /**
+     * Returns the values of the given tensor as a row-major array of the given number of rows and columns
+     *
+     * @param rowDimension the index of the dimension to use as rows, or -1 to use a single row
+     * @param columnDimension the index of the dimension to use as columns, or -1 to use a single column
+     */
+    private static double[] values(IndexedTensor tensor, int rowDimension, int columnDimension, int rows, int columns) {
+        DimensionSizes sizes = tensor.dimensionSizes();
+        long rowStride = rowDimension == 0 && sizes.dimensions() == 2 ? sizes.size(1) : 1;
+        long columnStride = columnDimension == 0 && sizes.dimensions() == 2 ? sizes.size(1) : 1;
+        double[] values = new double[rows * columns];
+        for (int row = 0; row < rows; row++)
+            for (int column = 0; column < columns; column++)
+                values[row * columns + column] = tensor.get(row * rowStride + column * columnStride);
+        return values;
+    }
+
+    private IndexedTensor toTensor(TensorType type, double[] product) {
+        DimensionSizes.Builder sizes = new DimensionSizes.Builder(type.rank());
+        for (int i = 0; i < type.rank(); i++)
+            sizes.set(i, isRowDimension(type.dimensions().get(i).name()) ? rows : columns);
+        IndexedTensor.BoundBuilder builder = (IndexedTensor.BoundBuilder)IndexedTensor.Builder.of(type, sizes.build());
+
+        boolean rowsFirst = type.rank() < 2 || isRowDimension(type.dimensions().get(0).name());
+        for (int row = 0; row < rows; row++)
+            for (int column = 0; column < columns; column++)
+                builder.cellByDirectIndex(rowsFirst ? row * columns + column : column * rows + row,
+                                          product[row * columns + column]);
+        return builder.build();
+    }
+
+    private boolean isRowDimension(String dimension) {
+        return rowDimensionOfA >= 0 && a.type().dimensions().get(rowDimensionOfA).name().equals(dimension);
+    }
+
+}
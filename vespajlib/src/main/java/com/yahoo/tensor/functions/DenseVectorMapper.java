@@ -0,0 +1,64 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor.functions;
+
+import com.yahoo.tensor.DimensionSizes;
+import com.yahoo.tensor.IndexedTensor;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorType;
+
+/**
+ * Replaces each vector along one dimension of a dense tensor by a function of that vector,
+ * producing a tensor of the same shape. This is used to evaluate functions which normalize along a dimension
+ * in a single pass over a copy of the cell values, rather than as a join of the argument with a reduce of it.
+ *
+ * @author bratseth
+ */
+final class DenseVectorMapper {
+
+    /** A function replacing the values of a vector in place */
+    interface VectorFunction {
+
+        /**
+         * Replaces the values of a vector
+         *
+         * @param values the array containing the vector
+         * @param offset the index of the first value of the vector in the array
+         * @param stride the distance between consecutive values of the vector in the array
+         * @param size the number of values in the vector
+         */
+        void apply(double[] values, int offset, int stride, int size);
+
+    }
+
+    private DenseVectorMapper() {}
+
+    /** Returns whether the given tensor is dense and non-empty, and contains the given dimension */
+    static boolean canMap(Tensor tensor, String dimension) {
+        return tensor instanceof IndexedTensor && tensor.size() > 0 && tensor.type().dimension(dimension).isPresent();
+    }
+
+    /** Returns a tensor where each vector along the given dimension is replaced by applying the given function to it */
+    static Tensor map(IndexedTensor tensor, String dimension, VectorFunction function) {
+        double[] values = new double[(int)tensor.size()];
+        for (int i = 0; i < values.length; i++)
+            values[i] = tensor.get(i);
+
+        DimensionSizes sizes = tensor.dimensionSizes();
+        int dimensionIndex = tensor.type().indexOfDimension(dimension).get();
+        int size = (int)sizes.size(dimensionIndex);
+        int stride = 1;
+        for (int i = dimensionIndex + 1; i < sizes.dimensions(); i++)
+            stride *= sizes.size(i);
+        for (int outerStart = 0; outerStart < values.length; outerStart += size * stride)
+            for (int inner = 0; inner < stride; inner++)
+                function.apply(values, outerStart + inner, stride, size);
+
+        TensorType type = new TensorType.Builder(TensorType.Value.computedFrom(tensor.type().valueType()),
+                                                 tensor.type().dimensions()).build();
+        IndexedTensor.BoundBuilder builder = (IndexedTensor.BoundBuilder)IndexedTensor.Builder.of(type, sizes);
+        for (int i = 0; i < values.length; i++)
+            builder.cellByDirectIndex(i, values[i]);
+        return builder.build();
+    }
+
+}
@@ -36,6 +36,9 @@ public class Join extends PrimitiveTensorFunction {
     private final TensorFunction argumentA, argumentB;
     private final DoubleBinaryOperator combinator;
 
+    /** The plan for the argument types last evaluated by this, or null if not evaluated yet */
+    private volatile Plan plan = null;
+
     public Join(TensorFunction argumentA, TensorFunction argumentB, DoubleBinaryOperator combinator) {
         Objects.requireNonNull(argumentA, "The first argument tensor cannot be null");
         Objects.requireNonNull(argumentB, "The second argument tensor cannot be null");
@@ -47,7 +50,7 @@ public class Join extends PrimitiveTensorFunction {
 
     /** Returns the type resulting from applying Join to the two given types */
     public static TensorType outputType(TensorType a, TensorType b) {
-        return new TensorType.Builder(a, b).build();
+        return new TensorType.Builder(a, b).valueType(TensorType.Value.computedFrom(a, b)).build();
     }
 
     public DoubleBinaryOperator combinator() { return combinator; }
@@ -74,34 +77,106 @@ public class Join extends PrimitiveTensorFunction {
 
     @Override
     public <NAMETYPE extends TypeContext.Name> TensorType type(TypeContext<NAMETYPE> context) {
-        return new TensorType.Builder(argumentA.type(context), argumentB.type(context)).build();
+        return outputType(argumentA.type(context), argumentB.type(context));
     }
 
     @Override
     public <NAMETYPE extends TypeContext.Name> Tensor evaluate(EvaluationContext<NAMETYPE> context) {
         Tensor a = argumentA.evaluate(context);
         Tensor b = argumentB.evaluate(context);
-        TensorType joinedType = new TensorType.Builder(a.type(), b.type()).build();
-        return evaluate(a, b, joinedType, combinator);
+        Plan plan = plan(a.type(), b.type());
+        return plan.algorithm.evaluate(a, b, plan.joinedType, combinator);
+    }
+
+    /** Returns the plan of this for the given argument types, reusing the last plan if the types are unchanged */
+    private Plan plan(TensorType a, TensorType b) {
+        Plan plan = this.plan;
+        if (plan == null || ! plan.isFor(a, b))
+            this.plan = plan = new Plan(a, b);
+        return plan;
     }
 
     static Tensor evaluate(Tensor a, Tensor b, TensorType joinedType, DoubleBinaryOperator combinator) {
-        // Choose join algorithm
-        if (hasSingleIndexedDimension(a) && hasSingleIndexedDimension(b) && a.type().dimensions().get(0).name().equals(b.type().dimensions().get(0).name()))
-            return indexedVectorJoin((IndexedTensor)a, (IndexedTensor)b, joinedType, combinator);
-        else if (joinedType.dimensions().size() == a.type().dimensions().size() && joinedType.dimensions().size() == b.type().dimensions().size())
-            return singleSpaceJoin(a, b, joinedType, combinator);
-        else if (a.type().dimensions().containsAll(b.type().dimensions()))
-            return subspaceJoin(b, a, joinedType, true, combinator);
-        else if (b.type().dimensions().containsAll(a.type().dimensions()))
-            return subspaceJoin(a, b, joinedType, false, combinator);
-        else
-            return generalJoin(a, b, joinedType, combinator);
+        return Algorithm.of(a.type(), b.type(), joinedType).evaluate(a, b, joinedType, combinator);
+    }
+
+    /** The join algorithms, chosen by the types of the arguments */
+    private enum Algorithm {
+
+        indexedVector {
+            @Override
+            Tensor evaluate(Tensor a, Tensor b, TensorType joinedType, DoubleBinaryOperator combinator) {
+                return indexedVectorJoin((IndexedTensor)a, (IndexedTensor)b, joinedType, combinator);
+            }
+        },
+        singleSpace {
+            @Override
+            Tensor evaluate(Tensor a, Tensor b, TensorType joinedType, DoubleBinaryOperator combinator) {
+                return singleSpaceJoin(a, b, joinedType, combinator);
+            }
+        },
+        subspaceOfA {
+            @Override
+            Tensor evaluate(Tensor a, Tensor b, TensorType joinedType, DoubleBinaryOperator combinator) {
+                return subspaceJoin(b, a, joinedType, true, combinator);
+            }
+        },
+        subspaceOfB {
+            @Override
+            Tensor evaluate(Tensor a, Tensor b, TensorType joinedType, DoubleBinaryOperator combinator) {
+                return subspaceJoin(a, b, joinedType, false, combinator);
+            }
+        },
+        general {
+            @Override
+            Tensor evaluate(Tensor a, Tensor b, TensorType joinedType, DoubleBinaryOperator combinator) {
+                return generalJoin(a, b, joinedType, combinator);
+            }
+        };
+
+        abstract Tensor evaluate(Tensor a, Tensor b, TensorType joinedType, DoubleBinaryOperator combinator);
+
+        static Algorithm of(TensorType a, TensorType b, TensorType joinedType) {
+            if (hasSingleIndexedDimension(a) && hasSingleIndexedDimension(b) && a.dimensions().get(0).name().equals(b.dimensions().get(0).name()))
+                return indexedVector;
+            else if (joinedType.dimensions().size() == a.dimensions().size() && joinedType.dimensions().size() == b.dimensions().size())
+                return singleSpace;
+            else if (a.dimensions().containsAll(b.dimensions()))
+                return subspaceOfA;
+            else if (b.dimensions().containsAll(a.dimensions()))
+                return subspaceOfB;
+            else
+                return general;
+        }
+
+    }
+
+    /**
+     * The output type and join algorithm resolved for some argument types.
+     * As tensor functions are evaluated with the same argument types over and over, this is kept
+     * such that it is resolved once rather than on each evaluation.
+     */
+    private static final class Plan {
+
+        private final TensorType a, b;
+        private final TensorType joinedType;
+        private final Algorithm algorithm;
+
+        Plan(TensorType a, TensorType b) {
+            this.a = a;
+            this.b = b;
+            this.joinedType = outputType(a, b);
+            this.algorithm = Algorithm.of(a, b, joinedType);
+        }
+
+        boolean isFor(TensorType a, TensorType b) {
+            return (a == this.a || a.equals(this.a)) && (b == this.b || b.equals(this.b));
+        }
 
     }
 
-    private static boolean hasSingleIndexedDimension(Tensor tensor) {
-        return tensor.type().dimensions().size() == 1 && tensor.type().dimensions().get(0).isIndexed();
+    private static boolean hasSingleIndexedDimension(TensorType type) {
+        return type.dimensions().size() == 1 && type.dimensions().get(0).isIndexed();
     }
 
     private static Tensor indexedVectorJoin(IndexedTensor a, IndexedTensor b, TensorType type, DoubleBinaryOperator combinator) {
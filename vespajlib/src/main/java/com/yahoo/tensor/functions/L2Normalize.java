@@ -1,6 +1,11 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.tensor.functions;
 
+import com.yahoo.tensor.IndexedTensor;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.evaluation.EvaluationContext;
+import com.yahoo.tensor.evaluation.TypeContext;
+
 import java.util.Collections;
 import java.util.List;
 
@@ -38,6 +43,26 @@ public class L2Normalize extends CompositeTensorFunction {
                         ScalarFunctions.divide());
     }
 
+    /**
+     * Evaluates this in a single pass if the argument is dense, and by its primitive form otherwise.
+     * In both cases the argument is evaluated once.
+     */
+    @Override
+    public <NAMETYPE extends TypeContext.Name> Tensor evaluate(EvaluationContext<NAMETYPE> context) {
+        Tensor argument = this.argument.evaluate(context);
+        if ( ! DenseVectorMapper.canMap(argument, dimension))
+            return new L2Normalize(new ConstantTensor(argument), dimension).toPrimitive().evaluate(context);
+
+        return DenseVectorMapper.map((IndexedTensor)argument, dimension, (values, offset, stride, size) -> {
+            double sumOfSquares = 0;
+            for (int i = offset; i < offset + size * stride; i += stride)
+                sumOfSquares += values[i] * values[i];
+            double norm = Math.sqrt(sumOfSquares);
+            for (int i = offset; i < offset + size * stride; i += stride)
+                values[i] /= norm;
+        });
+    }
+
     @Override
     public String toString(ToStringContext context) {
         return "l2_normalize(" + argument.toString(context) + ", " + dimension + ")";
@@ -30,7 +30,12 @@ public class Map extends PrimitiveTensorFunction {
         this.mapper = mapper;
     }
 
-    public static TensorType outputType(TensorType inputType) { return inputType; }
+    /** Returns the type resulting from applying Map to the given type: Cells of the smaller types become floats */
+    public static TensorType outputType(TensorType inputType) {
+        TensorType.Value valueType = TensorType.Value.computedFrom(inputType);
+        if (valueType == inputType.valueType()) return inputType;
+        return new TensorType.Builder(valueType, inputType.dimensions()).build();
+    }
 
     public TensorFunction argument() { return argument; }
     public DoubleUnaryOperator mapper() { return mapper; }
@@ -52,13 +57,13 @@ public class Map extends PrimitiveTensorFunction {
 
     @Override
     public <NAMETYPE extends TypeContext.Name> TensorType type(TypeContext<NAMETYPE> context) {
-        return argument.type(context);
+        return outputType(argument.type(context));
     }
 
     @Override
     public <NAMETYPE extends TypeContext.Name> Tensor evaluate(EvaluationContext<NAMETYPE> context) {
         Tensor argument = argument().evaluate(context);
-        Tensor.Builder builder = Tensor.Builder.of(argument.type());
+        Tensor.Builder builder = Tensor.Builder.of(outputType(argument.type()));
         for (Iterator<Tensor.Cell> i = argument.cellIterator(); i.hasNext(); ) {
             java.util.Map.Entry<TensorAddress, Double> cell = i.next();
             builder.cell(cell.getKey(), mapper.applyAsDouble(cell.getValue()));
@@ -2,9 +2,14 @@
 package com.yahoo.tensor.functions;
 
 import com.google.common.collect.ImmutableList;
+import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorType;
+import com.yahoo.tensor.evaluation.EvaluationContext;
+import com.yahoo.tensor.evaluation.TypeContext;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * @author bratseth
@@ -43,6 +48,22 @@ public class Matmul extends CompositeTensorFunction {
                           dimension);
     }
 
+    /**
+     * Evaluates this directly as a matrix product if the arguments are dense vectors or matrices,
+     * and by its primitive form otherwise
+     */
+    @Override
+    public <NAMETYPE extends TypeContext.Name> Tensor evaluate(EvaluationContext<NAMETYPE> context) {
+        Tensor a = argument1.evaluate(context);
+        Tensor b = argument2.evaluate(context);
+        Optional<DenseMatrixProduct> product = DenseMatrixProduct.of(a, b, dimension);
+        if (product.isPresent())
+            return product.get().toTensor();
+        return Reduce.evaluate(Join.evaluate(a, b, Join.outputType(a.type(), b.type()), ScalarFunctions.multiply()),
+                               Collections.singletonList(dimension),
+                               Reduce.Aggregator.sum);
+    }
+
     @Override
     public String toString(ToStringContext context) {
         return "matmul(" + argument1.toString(context) + ", " + argument2.toString(context) + ", " + dimension + ")";
@@ -11,12 +11,10 @@ import com.yahoo.tensor.evaluation.TypeContext;
 
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
 
 /**
  * The <i>reduce</i> tensor operation returns a tensor produced from the argument tensor where some dimensions
@@ -32,6 +30,9 @@ public class Reduce extends PrimitiveTensorFunction {
     private final List<String> dimensions;
     private final Aggregator aggregator;
 
+    /** The plan for the argument type last evaluated by this, or null if not evaluated yet */
+    private volatile Plan plan = null;
+
     /** Creates a reduce function reducing all dimensions */
     public Reduce(TensorFunction argument, Aggregator aggregator) {
         this(argument, aggregator, Collections.emptyList());
@@ -62,7 +63,7 @@ public class Reduce extends PrimitiveTensorFunction {
 
     public static TensorType outputType(TensorType inputType, List<String> reduceDimensions) {
         if (reduceDimensions.isEmpty()) return TensorType.empty; // means reduce all
-        TensorType.Builder b = new TensorType.Builder();
+        TensorType.Builder b = new TensorType.Builder(TensorType.Value.computedFrom(inputType));
         for (TensorType.Dimension dimension : inputType.dimensions()) {
             if ( ! reduceDimensions.contains(dimension.name()))
                 b.dimension(dimension);
@@ -110,7 +111,7 @@ public class Reduce extends PrimitiveTensorFunction {
 
     private static TensorType type(TensorType argumentType, List<String> dimensions) {
         if (dimensions.isEmpty()) return TensorType.empty; // means reduce all
-        TensorType.Builder builder = new TensorType.Builder();
+        TensorType.Builder builder = new TensorType.Builder(TensorType.Value.computedFrom(argumentType));
         for (TensorType.Dimension dimension : argumentType.dimensions())
             if ( ! dimensions.contains(dimension.name())) // keep
                 builder.dimension(dimension);
@@ -119,50 +120,79 @@ public class Reduce extends PrimitiveTensorFunction {
 
     @Override
     public <NAMETYPE extends TypeContext.Name> Tensor evaluate(EvaluationContext<NAMETYPE> context) {
-        return evaluate(this.argument.evaluate(context), dimensions, aggregator);
+        Tensor argument = this.argument.evaluate(context);
+        Plan plan = this.plan;
+        if (plan == null || ! plan.isFor(argument.type()))
+            this.plan = plan = new Plan(argument, dimensions);
+        return plan.evaluate(argument, aggregator);
     }
 
     static Tensor evaluate(Tensor argument, List<String> dimensions, Aggregator aggregator) {
-        if ( ! dimensions.isEmpty() && ! argument.type().dimensionNames().containsAll(dimensions))
-            throw new IllegalArgumentException("Cannot reduce " + argument + " over dimensions " +
-                                               dimensions + ": Not all those dimensions are present in this tensor");
-
-        // Special case: Reduce all
-        if (dimensions.isEmpty() || dimensions.size() == argument.type().dimensions().size())
-            if (argument.type().dimensions().size() == 1 && argument instanceof IndexedTensor)
-                return reduceIndexedVector((IndexedTensor)argument, aggregator);
-            else
-                return reduceAllGeneral(argument, aggregator);
-
-        TensorType reducedType = type(argument.type(), dimensions);
-
-        // Reduce cells
-        Map<TensorAddress, ValueAggregator> aggregatingCells = new HashMap<>();
-        for (Iterator<Tensor.Cell> i = argument.cellIterator(); i.hasNext(); ) {
-            Map.Entry<TensorAddress, Double> cell = i.next();
-            TensorAddress reducedAddress = reduceDimensions(cell.getKey(), argument.type(), reducedType, dimensions);
-            aggregatingCells.putIfAbsent(reducedAddress, ValueAggregator.ofType(aggregator));
-            aggregatingCells.get(reducedAddress).aggregate(cell.getValue());
+        return new Plan(argument, dimensions).evaluate(argument, aggregator);
+    }
+
+    /**
+     * The output type and the dimensions to retain, resolved for some argument type.
+     * As tensor functions are evaluated with the same argument types over and over, this is kept
+     * such that it is resolved once rather than on each evaluation.
+     */
+    private static final class Plan {
+
+        private final TensorType argumentType;
+        private final TensorType reducedType;
+        private final boolean reduceAll;
+
+        /** The indexes of the argument dimensions which are retained in the reduced type */
+        private final int[] retainedIndexes;
+
+        Plan(Tensor argument, List<String> dimensions) {
+            if ( ! dimensions.isEmpty() && ! argument.type().dimensionNames().containsAll(dimensions))
+                throw new IllegalArgumentException("Cannot reduce " + argument + " over dimensions " +
+                                                   dimensions + ": Not all those dimensions are present in this tensor");
+            this.argumentType = argument.type();
+            this.reduceAll = dimensions.isEmpty() || dimensions.size() == argumentType.dimensions().size();
+            this.reducedType = type(argumentType, dimensions);
+            this.retainedIndexes = new int[reduceAll ? 0 : reducedType.dimensions().size()];
+            int retainedIndex = 0;
+            for (int i = 0; i < argumentType.dimensions().size() && ! reduceAll; i++)
+                if ( ! dimensions.contains(argumentType.dimensions().get(i).name()))
+                    retainedIndexes[retainedIndex++] = i;
+        }
+
+        boolean isFor(TensorType argumentType) {
+            return argumentType == this.argumentType || argumentType.equals(this.argumentType);
         }
-        Tensor.Builder reducedBuilder = Tensor.Builder.of(reducedType);
-        for (Map.Entry<TensorAddress, ValueAggregator> aggregatingCell : aggregatingCells.entrySet())
-            reducedBuilder.cell(aggregatingCell.getKey(), aggregatingCell.getValue().aggregatedValue());
 
-        return reducedBuilder.build();
+        Tensor evaluate(Tensor argument, Aggregator aggregator) {
+            // Special case: Reduce all
+            if (reduceAll)
+                if (argument.type().dimensions().size() == 1 && argument instanceof IndexedTensor)
+                    return reduceIndexedVector((IndexedTensor)argument, aggregator);
+                else
+                    return reduceAllGeneral(argument, aggregator);
+
+            // Reduce cells
+            Map<TensorAddress, ValueAggregator> aggregatingCells = new HashMap<>();
+            for (Iterator<Tensor.Cell> i = argument.cellIterator(); i.hasNext(); ) {
+                Map.Entry<TensorAddress, Double> cell = i.next();
+                TensorAddress reducedAddress = reduceDimensions(cell.getKey());
+                aggregatingCells.computeIfAbsent(reducedAddress, __ -> ValueAggregator.ofType(aggregator))
+                                .aggregate(cell.getValue());
+            }
+            Tensor.Builder reducedBuilder = Tensor.Builder.of(reducedType);
+            for (Map.Entry<TensorAddress, ValueAggregator> aggregatingCell : aggregatingCells.entrySet())
+                reducedBuilder.cell(aggregatingCell.getKey(), aggregatingCell.getValue().aggregatedValue());
 
-    }
+            return reducedBuilder.build();
+        }
+
+        private TensorAddress reduceDimensions(TensorAddress address) {
+            String[] reducedLabels = new String[retainedIndexes.length];
+            for (int i = 0; i < retainedIndexes.length; i++)
+                reducedLabels[i] = address.label(retainedIndexes[i]);
+            return TensorAddress.of(reducedLabels);
+        }
 
-    private static TensorAddress reduceDimensions(TensorAddress address, TensorType argumentType, TensorType reducedType, List<String> dimensions) {
-        Set<Integer> indexesToRemove = new HashSet<>();
-        for (String dimensionToRemove : dimensions)
-            indexesToRemove.add(argumentType.indexOfDimension(dimensionToRemove).get());
-
-        String[] reducedLabels = new String[reducedType.dimensions().size()];
-        int reducedLabelIndex = 0;
-        for (int i = 0; i < address.size(); i++)
-            if ( ! indexesToRemove.contains(i))
-                reducedLabels[reducedLabelIndex++] = address.label(i);
-        return TensorAddress.of(reducedLabels);
     }
 
     private static Tensor reduceAllGeneral(Tensor argument, Aggregator aggregator) {
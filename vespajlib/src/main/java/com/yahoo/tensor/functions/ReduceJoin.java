@@ -10,6 +10,7 @@ import com.yahoo.tensor.evaluation.EvaluationContext;
 import com.yahoo.tensor.evaluation.TypeContext;
 
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.function.DoubleBinaryOperator;
 import java.util.stream.Collectors;
@@ -33,6 +34,9 @@ public class ReduceJoin extends CompositeTensorFunction {
     private final Reduce.Aggregator aggregator;
     private final List<String> dimensions;
 
+    /** The plan for the argument types last evaluated by this, or null if not evaluated yet */
+    private volatile Plan plan = null;
+
     public ReduceJoin(Reduce reduce, Join join) {
         this(join.arguments().get(0), join.arguments().get(1), join.combinator(), reduce.aggregator(), reduce.dimensions());
     }
@@ -71,12 +75,15 @@ public class ReduceJoin extends CompositeTensorFunction {
     public final <NAMETYPE extends TypeContext.Name> Tensor evaluate(EvaluationContext<NAMETYPE> context) {
         Tensor a = argumentA.evaluate(context);
         Tensor b = argumentB.evaluate(context);
-        TensorType joinedType = new TensorType.Builder(a.type(), b.type()).build();
+        return plan(a.type(), b.type()).evaluate(a, b);
+    }
 
-        if (canOptimize(a, b)) {
-            return evaluate((IndexedTensor)a, (IndexedTensor)b, joinedType);
-        }
-        return Reduce.evaluate(Join.evaluate(a, b, joinedType, combinator), dimensions, aggregator);
+    /** Returns the plan of this for the given argument types, reusing the last plan if the types are unchanged */
+    private Plan plan(TensorType a, TensorType b) {
+        Plan plan = this.plan;
+        if (plan == null || ! plan.isFor(a, b))
+            this.plan = plan = new Plan(a, b);
+        return plan;
     }
 
     /**
@@ -89,22 +96,22 @@ public class ReduceJoin extends CompositeTensorFunction {
      *         given the two tensors.
      */
     public boolean canOptimize(Tensor a, Tensor b) {
-        if (a.type().dimensions().isEmpty() || b.type().dimensions().isEmpty())  // TODO: support scalars
-            return false;
-        if ( ! (a instanceof IndexedTensor))
-            return false;
-        if ( ! (a.type().dimensions().stream().allMatch(d -> d.type() == TensorType.Dimension.Type.indexedBound)))
+        return a instanceof IndexedTensor && b instanceof IndexedTensor && canOptimize(a.type(), b.type());
+    }
+
+    private boolean canOptimize(TensorType a, TensorType b) {
+        if (a.dimensions().isEmpty() || b.dimensions().isEmpty())  // TODO: support scalars
             return false;
-        if ( ! (b instanceof IndexedTensor))
+        if ( ! (a.dimensions().stream().allMatch(d -> d.type() == TensorType.Dimension.Type.indexedBound)))
             return false;
-        if ( ! (b.type().dimensions().stream().allMatch(d -> d.type() == TensorType.Dimension.Type.indexedBound)))
+        if ( ! (b.dimensions().stream().allMatch(d -> d.type() == TensorType.Dimension.Type.indexedBound)))
             return false;
 
-        TensorType commonDimensions = dimensionsInCommon((IndexedTensor)a, (IndexedTensor)b);
+        TensorType commonDimensions = dimensionsInCommon(a, b);
         if (dimensions.isEmpty()) {
-            if (a.type().dimensions().size() != commonDimensions.dimensions().size())
+            if (a.dimensions().size() != commonDimensions.dimensions().size())
                 return false;
-            if (b.type().dimensions().size() != commonDimensions.dimensions().size())
+            if (b.dimensions().size() != commonDimensions.dimensions().size())
                 return false;
         } else {
             for (TensorType.Dimension dimension : commonDimensions.dimensions()) {
@@ -116,27 +123,126 @@ public class ReduceJoin extends CompositeTensorFunction {
     }
 
     /**
-     * Evaluates the reduce-join. Special handling for common cases where the
-     * reduce dimension is the innermost dimension in both tensors.
+     * Tests whether this is a product of two sparse tensors having the same dimensions, reduced over all
+     * dimensions. This can be computed by looking up each cell of the smaller tensor in the larger,
+     * without creating the joined tensor.
      */
-    private Tensor evaluate(IndexedTensor a, IndexedTensor b, TensorType joinedType) {
-        TensorType reducedType = Reduce.outputType(joinedType, dimensions);
+    private boolean isSparseDotProduct(TensorType a, TensorType b) {
+        if (a.dimensions().isEmpty()) return false;
+        if (a.dimensions().stream().anyMatch(TensorType.Dimension::isIndexed)) return false;
+        if ( ! a.dimensionNames().equals(b.dimensionNames())) return false;
+        if (dimensions.isEmpty()) return true;
+        return dimensions.size() == a.dimensions().size() && a.dimensionNames().containsAll(dimensions);
+    }
 
-        if (reduceDimensionIsInnermost(a, b)) {
-            if (a.type().dimensions().size() == 1 && b.type().dimensions().size() == 1) {
-                return vectorVectorProduct(a, b, reducedType);
-            }
-            if (a.type().dimensions().size() == 1 && b.type().dimensions().size() == 2) {
-                return vectorMatrixProduct(a, b, reducedType, false);
+    /** The ways a reduce-join may be evaluated */
+    private enum Kernel { vectorVector, vectorMatrix, matrixVector, matrixMatrix, denseGeneral, sparseDotProduct, unfused }
+
+    /**
+     * The output types and kernel resolved for some argument types, and the strides and dimension index
+     * mappings needed by the kernel.
+     * As tensor functions are evaluated with the same argument types over and over, this is kept
+     * such that it is resolved once rather than on each evaluation.
+     */
+    private final class Plan {
+
+        private final TensorType a, b;
+        private final TensorType joinedType;
+        private final TensorType reducedType;
+        private final Kernel kernel;
+
+        // Only set for dense general evaluation:
+
+        private TensorType onlyInA, onlyInB, common;
+
+        // pre-calculated strides for each index position
+        private long[] stridesA, stridesB, stridesResult;
+
+        // mapping of dimension indexes
+        private int[] mapOnlyAToA, mapCommonToA, mapOnlyBToB, mapCommonToB, mapOnlyAToResult, mapOnlyBToResult;
+
+        Plan(TensorType a, TensorType b) {
+            this.a = a;
+            this.b = b;
+            this.joinedType = Join.outputType(a, b);
+            this.reducedType = Reduce.outputType(joinedType, dimensions);
+            this.kernel = kernel();
+            if (kernel == Kernel.denseGeneral) {
+                onlyInA = Reduce.outputType(a, dimensions);
+                onlyInB = Reduce.outputType(b, dimensions);
+                common = dimensionsInCommon(a, b);
+                stridesA = strides(a);
+                stridesB = strides(b);
+                stridesResult = strides(reducedType);
+                mapOnlyAToA = Join.mapIndexes(onlyInA, a);
+                mapCommonToA = Join.mapIndexes(common, a);
+                mapOnlyBToB = Join.mapIndexes(onlyInB, b);
+                mapCommonToB = Join.mapIndexes(common, b);
+                mapOnlyAToResult = Join.mapIndexes(onlyInA, reducedType);
+                mapOnlyBToResult = Join.mapIndexes(onlyInB, reducedType);
             }
-            if (a.type().dimensions().size() == 2 && b.type().dimensions().size() == 1) {
-                return vectorMatrixProduct(b, a, reducedType, true);
+        }
+
+        /**
+         * Chooses the kernel to use. Special handling is done for common cases where the
+         * reduce dimension is the innermost dimension in both tensors.
+         */
+        private Kernel kernel() {
+            if (canOptimize(a, b)) {
+                if (reduceDimensionIsInnermost(a, b)) {
+                    if (a.dimensions().size() == 1 && b.dimensions().size() == 1)
+                        return Kernel.vectorVector;
+                    if (a.dimensions().size() == 1 && b.dimensions().size() == 2)
+                        return Kernel.vectorMatrix;
+                    if (a.dimensions().size() == 2 && b.dimensions().size() == 1)
+                        return Kernel.matrixVector;
+                    if (a.dimensions().size() == 2 && b.dimensions().size() == 2)
+                        return Kernel.matrixMatrix;
+                }
+                return Kernel.denseGeneral;
             }
-            if (a.type().dimensions().size() == 2 && b.type().dimensions().size() == 2) {
-                return matrixMatrixProduct(a, b, reducedType);
+            if (isSparseDotProduct(a, b))
+                return Kernel.sparseDotProduct;
+            return Kernel.unfused;
+        }
+
+        boolean isFor(TensorType a, TensorType b) {
+            return (a == this.a || a.equals(this.a)) && (b == this.b || b.equals(this.b));
+        }
+
+        Tensor evaluate(Tensor a, Tensor b) {
+            if (kernel == Kernel.sparseDotProduct)
+                return sparseDotProduct(a, b);
+            if (kernel == Kernel.unfused || ! (a instanceof IndexedTensor) || ! (b instanceof IndexedTensor))
+                return Reduce.evaluate(Join.evaluate(a, b, joinedType, combinator), dimensions, aggregator);
+
+            IndexedTensor indexedA = (IndexedTensor)a;
+            IndexedTensor indexedB = (IndexedTensor)b;
+            switch (kernel) {
+                case vectorVector: return vectorVectorProduct(indexedA, indexedB, reducedType);
+                case vectorMatrix: return vectorMatrixProduct(indexedA, indexedB, reducedType, false);
+                case matrixVector: return vectorMatrixProduct(indexedB, indexedA, reducedType, true);
+                case matrixMatrix: return matrixMatrixProduct(indexedA, indexedB, reducedType);
+                default: return evaluateGeneral(indexedA, indexedB, this);
             }
         }
-        return evaluateGeneral(a, b, reducedType);
+
+    }
+
+    private Tensor sparseDotProduct(Tensor a, Tensor b) {
+        boolean swapped = a.size() > b.size();
+        Tensor smaller = swapped ? b : a;
+        Tensor larger = swapped ? a : b;
+
+        Reduce.ValueAggregator agg = Reduce.ValueAggregator.ofType(aggregator);
+        for (Iterator<Tensor.Cell> i = smaller.cellIterator(); i.hasNext(); ) {
+            Tensor.Cell cell = i.next();
+            double largerValue = larger.get(cell.getKey());
+            if (Double.isNaN(largerValue)) continue; // no match
+            agg.aggregate(swapped ? combinator.applyAsDouble(largerValue, cell.getValue())
+                                  : combinator.applyAsDouble(cell.getValue(), largerValue));
+        }
+        return Tensor.Builder.of(TensorType.empty).cell(agg.aggregatedValue()).build();
     }
 
     private Tensor vectorVectorProduct(IndexedTensor a, IndexedTensor b, TensorType reducedType) {
@@ -205,38 +311,22 @@ public class ReduceJoin extends CompositeTensorFunction {
         return builder.build();
     }
 
-    private Tensor evaluateGeneral(IndexedTensor a, IndexedTensor b, TensorType reducedType) {
-        IndexedTensor.BoundBuilder builder = (IndexedTensor.BoundBuilder)IndexedTensor.Builder.of(reducedType);
-        TensorType onlyInA = Reduce.outputType(a.type(), dimensions);
-        TensorType onlyInB = Reduce.outputType(b.type(), dimensions);
-        TensorType common = dimensionsInCommon(a, b);
-
-        // pre-calculate strides for each index position
-        long[] stridesA = strides(a.type());
-        long[] stridesB = strides(b.type());
-        long[] stridesResult = strides(reducedType);
-
-        // mapping of dimension indexes
-        int[] mapOnlyAToA = Join.mapIndexes(onlyInA, a.type());
-        int[] mapCommonToA = Join.mapIndexes(common, a.type());
-        int[] mapOnlyBToB = Join.mapIndexes(onlyInB, b.type());
-        int[] mapCommonToB = Join.mapIndexes(common, b.type());
-        int[] mapOnlyAToResult = Join.mapIndexes(onlyInA, reducedType);
-        int[] mapOnlyBToResult = Join.mapIndexes(onlyInB, reducedType);
+    private Tensor evaluateGeneral(IndexedTensor a, IndexedTensor b, Plan plan) {
+        IndexedTensor.BoundBuilder builder = (IndexedTensor.BoundBuilder)IndexedTensor.Builder.of(plan.reducedType);
 
         // TODO: refactor with code in IndexedTensor and Join
 
-        MultiDimensionIterator ic = new MultiDimensionIterator(common);
+        MultiDimensionIterator ic = new MultiDimensionIterator(plan.common);
         Reduce.ValueAggregator agg = Reduce.ValueAggregator.ofType(aggregator);
-        for (MultiDimensionIterator ia = new MultiDimensionIterator(onlyInA); ia.hasNext(); ia.next()) {
-            for (MultiDimensionIterator ib = new MultiDimensionIterator(onlyInB); ib.hasNext(); ib.next()) {
+        for (MultiDimensionIterator ia = new MultiDimensionIterator(plan.onlyInA); ia.hasNext(); ia.next()) {
+            for (MultiDimensionIterator ib = new MultiDimensionIterator(plan.onlyInB); ib.hasNext(); ib.next()) {
                 agg.reset();
                 for (ic.reset(); ic.hasNext(); ic.next()) {
-                    double va = a.get(toDirectIndex(ia, ic, stridesA, mapOnlyAToA, mapCommonToA));
-                    double vb = b.get(toDirectIndex(ib, ic, stridesB, mapOnlyBToB, mapCommonToB));
+                    double va = a.get(toDirectIndex(ia, ic, plan.stridesA, plan.mapOnlyAToA, plan.mapCommonToA));
+                    double vb = b.get(toDirectIndex(ib, ic, plan.stridesB, plan.mapOnlyBToB, plan.mapCommonToB));
                     agg.aggregate(combinator.applyAsDouble(va, vb));
                 }
-                builder.cellByDirectIndex(toDirectIndex(ia, ib, stridesResult, mapOnlyAToResult, mapOnlyBToResult),
+                builder.cellByDirectIndex(toDirectIndex(ia, ib, plan.stridesResult, plan.mapOnlyAToResult, plan.mapOnlyBToResult),
                                           agg.aggregatedValue());
             }
         }
@@ -267,10 +357,10 @@ public class ReduceJoin extends CompositeTensorFunction {
         return strides;
     }
 
-    private TensorType dimensionsInCommon(IndexedTensor a, IndexedTensor b) {
+    private TensorType dimensionsInCommon(TensorType a, TensorType b) {
         TensorType.Builder builder = new TensorType.Builder();
-        for (TensorType.Dimension aDim : a.type().dimensions()) {
-            for (TensorType.Dimension bDim : b.type().dimensions()) {
+        for (TensorType.Dimension aDim : a.dimensions()) {
+            for (TensorType.Dimension bDim : b.dimensions()) {
                 if (aDim.name().equals(bDim.name())) {
                     if ( ! aDim.size().isPresent()) {
                         builder.set(aDim);
@@ -289,10 +379,10 @@ public class ReduceJoin extends CompositeTensorFunction {
      * Tests if there is exactly one reduce dimension and it is the innermost
      * dimension in both tensors.
      */
-    private boolean reduceDimensionIsInnermost(Tensor a, Tensor b) {
+    private boolean reduceDimensionIsInnermost(TensorType a, TensorType b) {
         List<String> reducingDimensions = dimensions;
         if (reducingDimensions.isEmpty()) {
-            reducingDimensions = dimensionsInCommon((IndexedTensor)a, (IndexedTensor)b).dimensions().stream()
+            reducingDimensions = dimensionsInCommon(a, b).dimensions().stream()
                     .map(TensorType.Dimension::name)
                     .collect(Collectors.toList());
         }
@@ -300,14 +390,14 @@ public class ReduceJoin extends CompositeTensorFunction {
             return false;
         }
         String dimension = reducingDimensions.get(0);
-        int indexInA = a.type().indexOfDimension(dimension).orElseThrow(() ->
+        int indexInA = a.indexOfDimension(dimension).orElseThrow(() ->
                 new IllegalArgumentException("Reduce-Join dimension '" + dimension + "' missing in tensor A."));
-        if (indexInA != (a.type().dimensions().size() - 1)) {
+        if (indexInA != (a.dimensions().size() - 1)) {
             return false;
         }
-        int indexInB = b.type().indexOfDimension(dimension).orElseThrow(() ->
+        int indexInB = b.indexOfDimension(dimension).orElseThrow(() ->
                 new IllegalArgumentException("Reduce-Join dimension '" + dimension + "' missing in tensor B."));
-        if (indexInB < (b.type().dimensions().size() - 1)) {
+        if (indexInB < (b.dimensions().size() - 1)) {
             return false;
         }
         return true;
@@ -2,7 +2,11 @@
 package com.yahoo.tensor.functions;
 
 import com.google.common.collect.ImmutableList;
+import com.yahoo.tensor.IndexedTensor;
+import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorType;
+import com.yahoo.tensor.evaluation.EvaluationContext;
+import com.yahoo.tensor.evaluation.TypeContext;
 
 import java.util.Collections;
 import java.util.List;
@@ -44,6 +48,27 @@ public class Softmax extends CompositeTensorFunction {
                         ScalarFunctions.divide());
     }
 
+    /**
+     * Evaluates this in a single pass computing each exponential once if the argument is dense,
+     * and by its primitive form otherwise. In both cases the argument is evaluated once.
+     */
+    @Override
+    public <NAMETYPE extends TypeContext.Name> Tensor evaluate(EvaluationContext<NAMETYPE> context) {
+        Tensor argument = this.argument.evaluate(context);
+        if ( ! DenseVectorMapper.canMap(argument, dimension))
+            return new Softmax(new ConstantTensor(argument), dimension).toPrimitive().evaluate(context);
+
+        return DenseVectorMapper.map((IndexedTensor)argument, dimension, (values, offset, stride, size) -> {
+            double sum = 0;
+            for (int i = offset; i < offset + size * stride; i += stride) {
+                values[i] = Math.exp(values[i]);
+                sum += values[i];
+            }
+            for (int i = offset; i < offset + size * stride; i += stride)
+                values[i] /= sum;
+        });
+    }
+
     @Override
     public String toString(ToStringContext context) {
         return "softmax(" + argument.toString(context) + ", " + dimension + ")";
@@ -2,8 +2,13 @@
 package com.yahoo.tensor.functions;
 
 import com.google.common.collect.ImmutableList;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.evaluation.EvaluationContext;
+import com.yahoo.tensor.evaluation.TypeContext;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * @author bratseth
@@ -42,6 +47,32 @@ public class XwPlusB extends CompositeTensorFunction {
                         ScalarFunctions.add());
     }
 
+    /**
+     * Evaluates this directly as a matrix product with the bias added in place if the arguments are dense
+     * vectors or matrices, and by its primitive form otherwise
+     */
+    @Override
+    public <NAMETYPE extends TypeContext.Name> Tensor evaluate(EvaluationContext<NAMETYPE> context) {
+        Tensor xValue = x.evaluate(context);
+        Tensor wValue = w.evaluate(context);
+        Tensor bValue = b.evaluate(context);
+
+        Tensor product;
+        Optional<DenseMatrixProduct> denseProduct = DenseMatrixProduct.of(xValue, wValue, dimension);
+        if (denseProduct.isPresent()) {
+            Optional<? extends Tensor> sum = denseProduct.get().plus(bValue);
+            if (sum.isPresent()) return sum.get();
+            product = denseProduct.get().toTensor();
+        }
+        else {
+            product = Reduce.evaluate(Join.evaluate(xValue, wValue, Join.outputType(xValue.type(), wValue.type()),
+                                                    ScalarFunctions.multiply()),
+                                      Collections.singletonList(dimension),
+                                      Reduce.Aggregator.sum);
+        }
+        return Join.evaluate(product, bValue, Join.outputType(product.type(), bValue.type()), ScalarFunctions.add());
+    }
+
     @Override
     public String toString(ToStringContext context) {
         return "xw_plus_b(" + x.toString(context) + ", " +
@@ -7,27 +7,39 @@ import com.yahoo.tensor.IndexedTensor;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorType;
 
-import java.util.Iterator;
+import java.nio.ByteBuffer;
 import java.util.Optional;
 
 /**
  * Implementation of a dense binary format for a tensor on the form:
  *
  * Sorted dimensions = num_dimensions [dimension_str_len dimension_str_bytes dimension_size_int]*
- * Cell_values = [double, double, double, ...]*
+ * Cell_values = [value, value, value, ...]*
  * where values are encoded in order of increasing indexes in each dimension, increasing
- * indexes of later dimensions in the dimension type before earlier.
+ * indexes of later dimensions in the dimension type before earlier,
+ * and each value is a double, float, bfloat16 or int8 as given by the serialization value type.
  *
  * @author bratseth
  */
 public class DenseBinaryFormat implements BinaryFormat {
 
+    private final TensorType.Value serializationValueType;
+
+    public DenseBinaryFormat() {
+        this(TensorType.Value.DOUBLE);
+    }
+
+    /** Creates a dense format which encodes and decodes cell values as the given value type */
+    public DenseBinaryFormat(TensorType.Value serializationValueType) {
+        this.serializationValueType = serializationValueType;
+    }
+
     @Override
     public void encode(GrowableByteBuffer buffer, Tensor tensor) {
         if ( ! ( tensor instanceof IndexedTensor))
             throw new RuntimeException("The dense format is only supported for indexed tensors");
         encodeDimensions(buffer, (IndexedTensor)tensor);
-        encodeCells(buffer, tensor);
+        encodeCells(buffer, (IndexedTensor)tensor);
     }
 
     private void encodeDimensions(GrowableByteBuffer buffer, IndexedTensor tensor) {
@@ -38,10 +50,22 @@ public class DenseBinaryFormat implements BinaryFormat {
         }
     }
 
-    private void encodeCells(GrowableByteBuffer buffer, Tensor tensor) {
-        Iterator<Double> i = tensor.valueIterator();
-        while (i.hasNext())
-            buffer.putDouble(i.next());
+    /** Writes the cell values by direct index, with a loop for each value type to avoid boxing and branching */
+    private void encodeCells(GrowableByteBuffer buffer, IndexedTensor tensor) {
+        long size = tensor.size();
+        switch (serializationValueType) {
+            case DOUBLE:
+                for (long i = 0; i < size; i++)
+                    buffer.putDouble(tensor.get(i));
+                break;
+            case FLOAT:
+                for (long i = 0; i < size; i++)
+                    buffer.putFloat((float)tensor.get(i));
+                break;
+            default:
+                for (long i = 0; i < size; i++)
+                    TypedBinaryFormat.encodeValue(buffer, serializationValueType, tensor.get(i));
+        }
     }
 
     @Override
@@ -65,9 +89,34 @@ public class DenseBinaryFormat implements BinaryFormat {
         return builder.build();
     }
 
-    private TensorType decodeType(GrowableByteBuffer buffer) {
+    /**
+     * Decodes a tensor which reads its cell values from the given buffer rather than copying them,
+     * if the cell values are serialized as doubles or floats. Otherwise, this is the same as decode.
+     * The buffer is positioned after the tensor.
+     */
+    Tensor decodeWithoutCopying(Optional<TensorType> optionalType, GrowableByteBuffer buffer) {
+        if (serializationValueType != TensorType.Value.DOUBLE && serializationValueType != TensorType.Value.FLOAT)
+            return decode(optionalType, buffer);
+
+        TensorType serializedType = decodeType(buffer);
+        TensorType type = optionalType.orElse(serializedType);
+        if ( ! serializedType.isAssignableTo(type))
+            throw new IllegalArgumentException("Type/instance mismatch: A tensor of type " + serializedType +
+                                               " cannot be assigned to type " + type);
+        DimensionSizes sizes = sizesFromType(serializedType);
+        int valueSize = serializationValueType == TensorType.Value.DOUBLE ? Double.BYTES : Float.BYTES;
+        ByteBuffer values = TypedBinaryFormat.remainingBytes(buffer);
+        values.limit(Math.toIntExact(sizes.totalSize() * valueSize));
+        buffer.position(buffer.position() + values.limit());
+        if (serializationValueType == TensorType.Value.DOUBLE)
+            return IndexedTensor.of(type, sizes, values.asDoubleBuffer());
+        else
+            return IndexedTensor.of(type, sizes, values.asFloatBuffer());
+    }
+
+    TensorType decodeType(GrowableByteBuffer buffer) {
         int dimensionCount = buffer.getInt1_4Bytes();
-        TensorType.Builder builder = new TensorType.Builder();
+        TensorType.Builder builder = new TensorType.Builder(serializationValueType);
         for (int i = 0; i < dimensionCount; i++)
             builder.indexed(buffer.getUtf8String(), buffer.getInt1_4Bytes()); // XXX: Size truncation
         return builder.build();
@@ -81,9 +130,22 @@ public class DenseBinaryFormat implements BinaryFormat {
         return builder.build();
     }
 
+    /** Reads the cell values into the builder, in bulk when they are doubles or floats */
     private void decodeCells(DimensionSizes sizes, GrowableByteBuffer buffer, IndexedTensor.BoundBuilder builder) {
-        for (long i = 0; i < sizes.totalSize(); i++)
-            builder.cellByDirectIndex(i, buffer.getDouble());
+        int size = Math.toIntExact(sizes.totalSize());
+        switch (serializationValueType) {
+            case DOUBLE:
+                builder.cellsByDirectIndex(TypedBinaryFormat.remainingBytes(buffer).asDoubleBuffer());
+                buffer.position(buffer.position() + size * Double.BYTES);
+                break;
+            case FLOAT:
+                builder.cellsByDirectIndex(TypedBinaryFormat.remainingBytes(buffer).asFloatBuffer());
+                buffer.position(buffer.position() + size * Float.BYTES);
+                break;
+            default:
+                for (long i = 0; i < size; i++)
+                    builder.cellByDirectIndex(i, TypedBinaryFormat.decodeValue(buffer, serializationValueType));
+        }
     }
 
 }
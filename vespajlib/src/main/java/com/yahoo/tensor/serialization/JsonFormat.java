@@ -1,8 +1,14 @@
 // Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.tensor.serialization;
 
+import com.yahoo.slime.ArrayTraverser;
 import com.yahoo.slime.Cursor;
+import com.yahoo.slime.Inspector;
+import com.yahoo.slime.JsonDecoder;
+import com.yahoo.slime.ObjectTraverser;
 import com.yahoo.slime.Slime;
+import com.yahoo.slime.Type;
+import com.yahoo.tensor.IndexedTensor;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorAddress;
 import com.yahoo.tensor.TensorType;
@@ -13,6 +19,9 @@ import java.util.Iterator;
  * Writes tensors on the JSON format used in Vespa tensor document fields:
  * A JSON map containing a 'cells' array.
  * See http://docs.vespa.ai/documentation/reference/document-json-put-format.html#tensor
+ *
+ * Reads tensors on this format, or, for dense tensors, a JSON map containing a 'values' array with the cell values
+ * in order of increasing direct index (which may be nested in arrays for each dimension).
  */
 // TODO: We should probably move reading of this format from the document module to here
 public class JsonFormat {
@@ -38,4 +47,64 @@ public class JsonFormat {
             addressObject.setString(type.dimensions().get(i).name(), address.label(i));
     }
 
+    /**
+     * Deserializes the given JSON tensor to a tensor of the given type
+     *
+     * @throws IllegalArgumentException if the JSON is not a valid tensor of the given type
+     */
+    public static Tensor decode(TensorType type, byte[] jsonTensorValue) {
+        Tensor.Builder builder = Tensor.Builder.of(type);
+        Inspector root = new JsonDecoder().decode(new Slime(), jsonTensorValue).get();
+        if (root.field("error_message").valid())
+            throw new IllegalArgumentException("Could not parse a tensor from JSON: " + root.field("error_message").asString());
+        if (root.field("cells").valid())
+            decodeCells(root.field("cells"), builder);
+        else if (root.field("values").valid())
+            decodeValues(root.field("values"), builder);
+        return builder.build();
+    }
+
+    private static void decodeCells(Inspector cells, Tensor.Builder builder) {
+        if (cells.type() != Type.ARRAY)
+            throw new IllegalArgumentException("Expected 'cells' to contain an array, not " + cells.type());
+        cells.traverse((ArrayTraverser) (i, cell) -> decodeCell(cell, builder.cell()));
+    }
+
+    private static void decodeCell(Inspector cell, Tensor.Builder.CellBuilder cellBuilder) {
+        cell.field("address").traverse((ObjectTraverser) (dimension, label) -> cellBuilder.label(dimension, label.asString()));
+        cellBuilder.value(cell.field("value").asDouble());
+    }
+
+    /** Decodes the values of a dense tensor directly into the value array of the tensor, without creating addresses */
+    private static void decodeValues(Inspector values, Tensor.Builder builder) {
+        if ( ! (builder instanceof IndexedTensor.BoundBuilder))
+            throw new IllegalArgumentException("The 'values' field is only supported for dense tensors with bound " +
+                                               "dimensions, not " + builder.type());
+        IndexedTensor.BoundBuilder denseBuilder = (IndexedTensor.BoundBuilder)builder;
+        long size = denseBuilder.type().dimensions().stream().mapToLong(d -> d.size().get()).reduce(1, (a, b) -> a * b);
+        long valueCount = decodeValues(values, denseBuilder, 0, size);
+        if (valueCount != size)
+            throw new IllegalArgumentException("A tensor of type " + builder.type() + " has " + size + " values, " +
+                                               "but 'values' contains " + valueCount);
+    }
+
+    /** Decodes values from the given array, which may contain nested arrays, and returns the next direct index */
+    private static long decodeValues(Inspector values, IndexedTensor.BoundBuilder builder, long index, long size) {
+        if (values.type() != Type.ARRAY)
+            throw new IllegalArgumentException("Expected 'values' to contain an array, not " + values.type());
+        for (int i = 0; i < values.entries(); i++) {
+            Inspector value = values.entry(i);
+            if (value.type() == Type.ARRAY) {
+                index = decodeValues(value, builder, index, size);
+            }
+            else {
+                if (index >= size)
+                    throw new IllegalArgumentException("A tensor of type " + builder.type() + " has " + size +
+                                                       " values, but 'values' contains more");
+                builder.cellByDirectIndex(index++, value.asDouble());
+            }
+        }
+        return index;
+    }
+
 }
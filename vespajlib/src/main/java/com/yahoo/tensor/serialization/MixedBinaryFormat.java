@@ -21,6 +21,12 @@ import java.util.stream.Collectors;
  */
 class MixedBinaryFormat implements BinaryFormat {
 
+    private final TensorType.Value serializationValueType;
+
+    MixedBinaryFormat(TensorType.Value serializationValueType) {
+        this.serializationValueType = serializationValueType;
+    }
+
     @Override
     public void encode(GrowableByteBuffer buffer, Tensor tensor) {
         if ( ! ( tensor instanceof MixedTensor))
@@ -63,9 +69,9 @@ class MixedBinaryFormat implements BinaryFormat {
                     new IllegalStateException("Dimension not found in address."));
                 buffer.putUtf8String(cell.getKey().label(index));
             }
-            buffer.putDouble(cell.getValue());
+            TypedBinaryFormat.encodeValue(buffer, serializationValueType, cell.getValue());
             for (int i = 1; i < denseSubspaceSize; ++i ) {
-                buffer.putDouble(cellIterator.next().getValue());
+                TypedBinaryFormat.encodeValue(buffer, serializationValueType, cellIterator.next().getValue());
             }
         }
     }
@@ -88,8 +94,8 @@ class MixedBinaryFormat implements BinaryFormat {
         return builder.build();
     }
 
-    private TensorType decodeType(GrowableByteBuffer buffer) {
-        TensorType.Builder builder = new TensorType.Builder();
+    TensorType decodeType(GrowableByteBuffer buffer) {
+        TensorType.Builder builder = new TensorType.Builder(serializationValueType);
         int numMappedDimensions = buffer.getInt1_4Bytes();
         for (int i = 0; i < numMappedDimensions; ++i) {
             builder.mapped(buffer.getUtf8String());
@@ -117,9 +123,7 @@ class MixedBinaryFormat implements BinaryFormat {
             for (TensorType.Dimension sparseDimension : sparseDimensions) {
                 sparseAddress.add(sparseDimension.name(), buffer.getUtf8String());
             }
-            for (long denseOffset = 0; denseOffset < denseSubspaceSize; denseOffset++) {
-                denseSubspace[(int)denseOffset] = buffer.getDouble();
-            }
+            TypedBinaryFormat.decodeValues(buffer, serializationValueType, denseSubspace, denseSubspace.length);
             builder.block(sparseAddress.build(), denseSubspace);
         }
     }
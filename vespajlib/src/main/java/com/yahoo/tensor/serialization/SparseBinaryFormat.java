@@ -24,6 +24,12 @@ import java.util.Optional;
  */
 class SparseBinaryFormat implements BinaryFormat {
 
+    private final TensorType.Value serializationValueType;
+
+    SparseBinaryFormat(TensorType.Value serializationValueType) {
+        this.serializationValueType = serializationValueType;
+    }
+
     @Override
     public void encode(GrowableByteBuffer buffer, Tensor tensor) {
         encodeDimensions(buffer, tensor.type().dimensions());
@@ -42,7 +48,7 @@ class SparseBinaryFormat implements BinaryFormat {
         for (Iterator<Tensor.Cell> i = tensor.cellIterator(); i.hasNext(); ) {
             Map.Entry<TensorAddress, Double> cell = i.next();
             encodeAddress(buffer, cell.getKey());
-            buffer.putDouble(cell.getValue());
+            TypedBinaryFormat.encodeValue(buffer, serializationValueType, cell.getValue());
         }
     }
 
@@ -69,9 +75,9 @@ class SparseBinaryFormat implements BinaryFormat {
         return builder.build();
     }
 
-    private TensorType decodeType(GrowableByteBuffer buffer) {
+    TensorType decodeType(GrowableByteBuffer buffer) {
         int numDimensions = buffer.getInt1_4Bytes();
-        TensorType.Builder builder = new TensorType.Builder();
+        TensorType.Builder builder = new TensorType.Builder(serializationValueType);
         for (int i = 0; i < numDimensions; ++i)
             builder.mapped(buffer.getUtf8String());
         return builder.build();
@@ -82,7 +88,7 @@ class SparseBinaryFormat implements BinaryFormat {
         for (long i = 0; i < numCells; ++i) {
             Tensor.Builder.CellBuilder cellBuilder = builder.cell();
             decodeAddress(buffer, cellBuilder, type);
-            cellBuilder.value(buffer.getDouble());
+            cellBuilder.value(TypedBinaryFormat.decodeValue(buffer, serializationValueType));
         }
     }
 
@@ -7,6 +7,8 @@ import com.yahoo.tensor.MixedTensor;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorType;
 
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
 import java.util.Optional;
 
 /**
@@ -24,19 +26,30 @@ public class TypedBinaryFormat {
     private static final int DENSE_BINARY_FORMAT_TYPE = 2;
     private static final int MIXED_BINARY_FORMAT_TYPE = 3;
 
+    /** The format types used when the cell value type is not double, followed by the cell value type */
+    private static final int SPARSE_BINARY_FORMAT_WITH_CELLTYPE = 5;
+    private static final int DENSE_BINARY_FORMAT_WITH_CELLTYPE = 6;
+    private static final int MIXED_BINARY_FORMAT_WITH_CELLTYPE = 7;
+
+    private static final int DOUBLE_VALUE_TYPE = 0;
+    private static final int FLOAT_VALUE_TYPE = 1;
+    private static final int BFLOAT16_VALUE_TYPE = 2;
+    private static final int INT8_VALUE_TYPE = 3;
+
     public static byte[] encode(Tensor tensor) {
         GrowableByteBuffer buffer = new GrowableByteBuffer();
+        TensorType.Value valueType = tensor.type().valueType();
         if (tensor instanceof MixedTensor) {
-            buffer.putInt1_4Bytes(MIXED_BINARY_FORMAT_TYPE);
-            new MixedBinaryFormat().encode(buffer, tensor);
+            encodeFormatType(buffer, MIXED_BINARY_FORMAT_TYPE, MIXED_BINARY_FORMAT_WITH_CELLTYPE, valueType);
+            new MixedBinaryFormat(valueType).encode(buffer, tensor);
         }
         else if (tensor instanceof IndexedTensor) {
-            buffer.putInt1_4Bytes(DENSE_BINARY_FORMAT_TYPE);
-            new DenseBinaryFormat().encode(buffer, tensor);
+            encodeFormatType(buffer, DENSE_BINARY_FORMAT_TYPE, DENSE_BINARY_FORMAT_WITH_CELLTYPE, valueType);
+            new DenseBinaryFormat(valueType).encode(buffer, tensor);
         }
         else {
-            buffer.putInt1_4Bytes(SPARSE_BINARY_FORMAT_TYPE);
-            new SparseBinaryFormat().encode(buffer, tensor);
+            encodeFormatType(buffer, SPARSE_BINARY_FORMAT_TYPE, SPARSE_BINARY_FORMAT_WITH_CELLTYPE, valueType);
+            new SparseBinaryFormat(valueType).encode(buffer, tensor);
         }
         buffer.flip();
         byte[] result = new byte[buffer.remaining()];
@@ -55,11 +68,138 @@ public class TypedBinaryFormat {
     public static Tensor decode(Optional<TensorType> type, GrowableByteBuffer buffer) {
         int formatType = buffer.getInt1_4Bytes();
         switch (formatType) {
-            case MIXED_BINARY_FORMAT_TYPE: return new MixedBinaryFormat().decode(type, buffer);
-            case SPARSE_BINARY_FORMAT_TYPE: return new SparseBinaryFormat().decode(type, buffer);
-            case DENSE_BINARY_FORMAT_TYPE: return new DenseBinaryFormat().decode(type, buffer);
+            case MIXED_BINARY_FORMAT_TYPE: return new MixedBinaryFormat(TensorType.Value.DOUBLE).decode(type, buffer);
+            case SPARSE_BINARY_FORMAT_TYPE: return new SparseBinaryFormat(TensorType.Value.DOUBLE).decode(type, buffer);
+            case DENSE_BINARY_FORMAT_TYPE: return new DenseBinaryFormat(TensorType.Value.DOUBLE).decode(type, buffer);
+            case MIXED_BINARY_FORMAT_WITH_CELLTYPE: return new MixedBinaryFormat(decodeValueType(buffer)).decode(type, buffer);
+            case SPARSE_BINARY_FORMAT_WITH_CELLTYPE: return new SparseBinaryFormat(decodeValueType(buffer)).decode(type, buffer);
+            case DENSE_BINARY_FORMAT_WITH_CELLTYPE: return new DenseBinaryFormat(decodeValueType(buffer)).decode(type, buffer);
+            default: throw new IllegalArgumentException("Binary format type " + formatType + " is unknown");
+        }
+    }
+
+    /**
+     * Decodes a tensor from a buffer without copying the cell values of dense tensors having double or float cells:
+     * Such tensors read their cell values from the buffer when they are accessed. This is useful to avoid
+     * holding large tensors on the heap when the buffer is a memory mapped file.
+     * The buffer must not be modified while the returned tensor is in use.
+     * Other tensors are decoded as by {@link #decode}.
+     *
+     * @param type the type to decode and validate to, or empty to use the type given in the data
+     * @param buffer the buffer containing the data from its current position
+     * @return the resulting tensor
+     * @throws IllegalArgumentException if the tensor data was invalid
+     */
+    public static Tensor decodeWithoutCopying(Optional<TensorType> type, ByteBuffer buffer) {
+        GrowableByteBuffer wrapped = new GrowableByteBuffer(buffer.slice());
+        int formatType = wrapped.getInt1_4Bytes();
+        switch (formatType) {
+            case DENSE_BINARY_FORMAT_TYPE:
+                return new DenseBinaryFormat(TensorType.Value.DOUBLE).decodeWithoutCopying(type, wrapped);
+            case DENSE_BINARY_FORMAT_WITH_CELLTYPE:
+                return new DenseBinaryFormat(decodeValueType(wrapped)).decodeWithoutCopying(type, wrapped);
+            default:
+                return decode(type, new GrowableByteBuffer(buffer.slice()));
+        }
+    }
+
+    /**
+     * Decodes only the type of a tensor, such that it can be validated without decoding the tensor.
+     *
+     * @param buffer the buffer containing the tensor data from its current position
+     * @return the type of the serialized tensor
+     * @throws IllegalArgumentException if the data does not start with a valid tensor type
+     */
+    public static TensorType decodeType(GrowableByteBuffer buffer) {
+        int formatType = buffer.getInt1_4Bytes();
+        switch (formatType) {
+            case MIXED_BINARY_FORMAT_TYPE: return new MixedBinaryFormat(TensorType.Value.DOUBLE).decodeType(buffer);
+            case SPARSE_BINARY_FORMAT_TYPE: return new SparseBinaryFormat(TensorType.Value.DOUBLE).decodeType(buffer);
+            case DENSE_BINARY_FORMAT_TYPE: return new DenseBinaryFormat(TensorType.Value.DOUBLE).decodeType(buffer);
+            case MIXED_BINARY_FORMAT_WITH_CELLTYPE: return new MixedBinaryFormat(decodeValueType(buffer)).decodeType(buffer);
+            case SPARSE_BINARY_FORMAT_WITH_CELLTYPE: return new SparseBinaryFormat(decodeValueType(buffer)).decodeType(buffer);
+            case DENSE_BINARY_FORMAT_WITH_CELLTYPE: return new DenseBinaryFormat(decodeValueType(buffer)).decodeType(buffer);
             default: throw new IllegalArgumentException("Binary format type " + formatType + " is unknown");
         }
     }
 
+    /** Writes the format type, using the format type with cell type for other cell types than double */
+    private static void encodeFormatType(GrowableByteBuffer buffer, int formatType, int formatTypeWithCellType,
+                                         TensorType.Value valueType) {
+        if (valueType == TensorType.Value.DOUBLE) {
+            buffer.putInt1_4Bytes(formatType); // the same format as before cell types were introduced
+        }
+        else {
+            buffer.putInt1_4Bytes(formatTypeWithCellType);
+            buffer.putInt1_4Bytes(valueTypeId(valueType));
+        }
+    }
+
+    private static int valueTypeId(TensorType.Value valueType) {
+        switch (valueType) {
+            case DOUBLE: return DOUBLE_VALUE_TYPE;
+            case FLOAT: return FLOAT_VALUE_TYPE;
+            case BFLOAT16: return BFLOAT16_VALUE_TYPE;
+            case INT8: return INT8_VALUE_TYPE;
+            default: throw new IllegalArgumentException("Unknown tensor value type " + valueType);
+        }
+    }
+
+    private static TensorType.Value decodeValueType(GrowableByteBuffer buffer) {
+        int valueTypeId = buffer.getInt1_4Bytes();
+        switch (valueTypeId) {
+            case DOUBLE_VALUE_TYPE: return TensorType.Value.DOUBLE;
+            case FLOAT_VALUE_TYPE: return TensorType.Value.FLOAT;
+            case BFLOAT16_VALUE_TYPE: return TensorType.Value.BFLOAT16;
+            case INT8_VALUE_TYPE: return TensorType.Value.INT8;
+            default: throw new IllegalArgumentException("Tensor cell value type " + valueTypeId + " is unknown");
+        }
+    }
+
+    /** Returns a view of the remaining bytes of the given buffer, having the same byte order */
+    static ByteBuffer remainingBytes(GrowableByteBuffer buffer) {
+        return buffer.getByteBuffer().slice().order(buffer.order());
+    }
+
+    /** Reads the given number of cell values written by encodeValue into the start of the given array */
+    static void decodeValues(GrowableByteBuffer buffer, TensorType.Value valueType, double[] values, int count) {
+        switch (valueType) {
+            case DOUBLE:
+                remainingBytes(buffer).asDoubleBuffer().get(values, 0, count);
+                buffer.position(buffer.position() + count * Double.BYTES);
+                break;
+            case FLOAT:
+                FloatBuffer floats = remainingBytes(buffer).asFloatBuffer();
+                for (int i = 0; i < count; i++)
+                    values[i] = floats.get(i);
+                buffer.position(buffer.position() + count * Float.BYTES);
+                break;
+            default:
+                for (int i = 0; i < count; i++)
+                    values[i] = decodeValue(buffer, valueType);
+        }
+    }
+
+    /** Writes a cell value using the number of bytes of the given value type */
+    static void encodeValue(GrowableByteBuffer buffer, TensorType.Value valueType, double value) {
+        switch (valueType) {
+            case DOUBLE: buffer.putDouble(value); break;
+            case FLOAT: buffer.putFloat((float)value); break;
+            case BFLOAT16: buffer.putShort((short)(Float.floatToRawIntBits((float)value) >>> 16)); break;
+            case INT8: buffer.put((byte)(long)value); break;
+            default: throw new IllegalArgumentException("Unknown tensor value type " + valueType);
+        }
+    }
+
+    /** Reads a cell value written by encodeValue */
+    static double decodeValue(GrowableByteBuffer buffer, TensorType.Value valueType) {
+        switch (valueType) {
+            case DOUBLE: return buffer.getDouble();
+            case FLOAT: return buffer.getFloat();
+            case BFLOAT16: return Float.intBitsToFloat(buffer.getShort() << 16);
+            case INT8: return buffer.get();
+            default: throw new IllegalArgumentException("Unknown tensor value type " + valueType);
+        }
+    }
+
 }
@@ -0,0 +1,86 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.io;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author bratseth
+ */
+public class ByteBufferPoolTestCase {
+
+    @Test
+    public void testSizeClasses() {
+        ByteBufferPool pool = new ByteBufferPool(false, 100, 1000, 10000);
+        assertEquals(128, pool.acquire(1).capacity());
+        assertEquals(128, pool.acquire(128).capacity());
+        assertEquals(256, pool.acquire(129).capacity());
+        assertEquals(1024, pool.acquire(1000).capacity());
+        assertEquals(1025, pool.acquire(1025).capacity()); // larger than the pool: Not rounded
+    }
+
+    @Test
+    public void testReuse() {
+        ByteBufferPool pool = new ByteBufferPool(false, 16, 1024, 1024);
+        ByteBuffer buffer = pool.acquire(100);
+        buffer.putInt(7);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        pool.release(buffer);
+        assertEquals(128, pool.pooledBytes());
+
+        ByteBuffer reused = pool.acquire(65);
+        assertSame(buffer, reused);
+        assertEquals(0, reused.position());
+        assertEquals(128, reused.limit());
+        assertEquals(ByteOrder.BIG_ENDIAN, reused.order());
+        assertEquals(0, pool.pooledBytes());
+
+        assertNotSame(buffer, pool.acquire(100));
+    }
+
+    @Test
+    public void testBuffersNotBelongingToThePoolAreIgnored() {
+        ByteBufferPool pool = new ByteBufferPool(false, 16, 1024, 1024);
+        pool.release(ByteBuffer.allocate(100)); // not a size class
+        pool.release(ByteBuffer.allocate(2048)); // too large
+        pool.release(ByteBuffer.allocate(8)); // too small
+        pool.release(ByteBuffer.allocateDirect(128)); // direct
+        pool.release(ByteBuffer.allocate(128).asReadOnlyBuffer());
+        pool.release(null);
+        assertEquals(0, pool.pooledBytes());
+    }
+
+    @Test
+    public void testPooledBytesPerSizeAreBounded() {
+        ByteBufferPool pool = new ByteBufferPool(false, 16, 1024, 1024);
+        for (int i = 0; i < 10; i++) {
+            pool.release(ByteBuffer.allocate(256));
+            pool.release(ByteBuffer.allocate(16));
+        }
+        assertEquals(4 * 256 + 10 * 16, pool.pooledBytes());
+    }
+
+    @Test
+    public void testDirectPool() {
+        ByteBufferPool pool = new ByteBufferPool(true);
+        assertTrue(pool.isDirect());
+        ByteBuffer buffer = pool.acquire(5000);
+        assertTrue(buffer.isDirect());
+        assertEquals(8192, buffer.capacity());
+        pool.release(buffer);
+        assertSame(buffer, pool.acquire(8000));
+
+        pool.release(ByteBuffer.allocate(8192));
+        assertEquals(0, pool.pooledBytes());
+        assertFalse(ByteBufferPool.heap().isDirect());
+    }
+
+}
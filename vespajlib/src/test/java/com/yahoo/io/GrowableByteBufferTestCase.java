@@ -794,4 +794,28 @@ public class GrowableByteBufferTestCase {
         assertTrue(caught);
     }
 
+    @Test
+    public void testPooledBuffer() {
+        ByteBufferPool pool = new ByteBufferPool(false, 16, 1024, 4096);
+        GrowableByteBuffer buf = new GrowableByteBuffer(pool, 16);
+        assertEquals(16, buf.capacity());
+        for (int i = 0; i < 100; i++)
+            buf.putInt(i);
+        assertEquals(1024, buf.capacity()); // grown to 132 and 612 bytes, rounded up to the size classes of the pool
+        assertEquals(16 + 256, pool.pooledBytes()); // the buffers grown out of are given back
+        buf.flip();
+        for (int i = 0; i < 100; i++)
+            assertEquals(i, buf.getInt());
+
+        buf.release();
+        assertEquals(16 + 256 + 1024, pool.pooledBytes());
+        buf.release(); // no-op
+        assertEquals(16 + 256 + 1024, pool.pooledBytes());
+
+        GrowableByteBuffer reused = new GrowableByteBuffer(pool, 1000);
+        assertEquals(1024, reused.capacity());
+        assertEquals(0, reused.position());
+        assertEquals(16 + 256, pool.pooledBytes());
+    }
+
 }
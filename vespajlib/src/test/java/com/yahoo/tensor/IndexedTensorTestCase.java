@@ -42,6 +42,39 @@ public class IndexedTensorTestCase {
         assertEquals(singleValue, singleValueFromString);
     }
     
+    @Test
+    public void testValueTypes() {
+        assertValueType(IndexedDoubleTensor.class, 1.0000001, "tensor(x[3])");
+        assertValueType(IndexedFloatTensor.class, (float)1.0000001, "tensor<float>(x[3])");
+        assertValueType(IndexedBFloat16Tensor.class, 1.0, "tensor<bfloat16>(x[3])");
+        assertValueType(IndexedInt8Tensor.class, 1.0, "tensor<int8>(x[3])");
+    }
+
+    private void assertValueType(Class<?> expectedClass, double expectedValue, String typeSpec) {
+        TensorType type = TensorType.fromSpec(typeSpec);
+        Tensor tensor = Tensor.Builder.of(type).cell(1.0000001, 0).cell(-2.5, 1).cell(300, 2).build();
+        assertEquals(expectedClass, tensor.getClass());
+        assertEquals(type, tensor.type());
+        assertEquals(expectedValue, tensor.get(TensorAddress.of(0)), 0.0);
+        if (type.valueType() == TensorType.Value.INT8) {
+            assertEquals(-2.0, tensor.get(TensorAddress.of(1)), 0.0);
+            assertEquals(44.0, tensor.get(TensorAddress.of(2)), 0.0); // truncated to 8 bits
+        }
+        else {
+            assertEquals(-2.5, tensor.get(TensorAddress.of(1)), 0.0);
+            assertEquals(300.0, tensor.get(TensorAddress.of(2)), 0.0);
+        }
+    }
+
+    @Test
+    public void testChangingValueType() {
+        Tensor doubles = Tensor.from("tensor(x[2]):{{x:0}:1.5,{x:1}:2.0000001}");
+        IndexedTensor floats = ((IndexedTensor)doubles).withType(TensorType.fromSpec("tensor<float>(x[2])"));
+        assertEquals(IndexedFloatTensor.class, floats.getClass());
+        assertEquals((float)2.0000001, floats.get(1), 0.0);
+        assertEquals(TensorType.fromSpec("tensor(x[2])"), floats.withType(TensorType.fromSpec("tensor(x[2])")).type());
+    }
+
     @Test
     public void testBoundBuilding() {
         TensorType type = new TensorType.Builder().indexed("v", vSize)
@@ -4,7 +4,10 @@ package com.yahoo.tensor;
 import com.google.common.collect.Sets;
 import org.junit.Test;
 
+import java.util.Iterator;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -48,4 +51,41 @@ public class MappedTensorTestCase {
         assertEquals("tensor(x{},y{}):{{x:0,y:0}:1.0,{x:1,y:0}:2.0}", tensor.toString());
     }
 
+    @Test
+    public void testManyCells() {
+        TensorType type = new TensorType.Builder().mapped("x").mapped("y").build();
+        MappedTensor.Builder builder = MappedTensor.Builder.of(type);
+        for (int x = 0; x < 100; x++)
+            for (int y = 0; y < 100; y++)
+                builder.cell().label("x", "x" + x).label("y", "y" + y).value(x * 100 + y);
+        Tensor tensor = builder.build();
+
+        assertEquals(10000, tensor.size());
+        assertEquals(10000, tensor.cells().size());
+        assertEquals(4242.0, tensor.get(TensorAddress.of(new String[] { "x42", "y42" })), 0.0);
+        assertEquals(Double.NaN, tensor.get(TensorAddress.of(new String[] { "x42", "y100" })), 0.0);
+        assertEquals(Double.NaN, tensor.get(TensorAddress.of(new String[] { "y42", "x42" })), 0.0);
+        assertEquals(Double.NaN, tensor.get(TensorAddress.of(new String[] { "x42" })), 0.0);
+
+        Iterator<Tensor.Cell> cells = tensor.cellIterator();
+        for (int i = 0; i < 10000; i++) { // cells are iterated in insertion order
+            Tensor.Cell cell = cells.next();
+            assertEquals(TensorAddress.of(new String[] { "x" + i / 100, "y" + i % 100 }), cell.getKey());
+            assertEquals(i, cell.getValue(), 0.0);
+        }
+        assertEquals(tensor.cells().hashCode(), tensor.hashCode());
+    }
+
+    @Test
+    public void testRepeatedCellsUseTheLastValue() {
+        TensorType type = new TensorType.Builder().mapped("x").build();
+        Tensor tensor = Tensor.Builder.of(type).
+                cell().label("x", "0").value(1).
+                cell().label("x", "1").value(2).
+                cell().label("x", "0").value(3).build();
+        assertEquals("tensor(x{}):{{x:0}:3.0,{x:1}:2.0}", tensor.toString());
+        assertEquals(Tensor.from("tensor(x{}):{{x:0}:3.0,{x:1}:2.0}").hashCode(), tensor.hashCode());
+        assertNotEquals(Tensor.from("tensor(x{}):{{x:0}:1.0,{x:1}:2.0}").hashCode(), tensor.hashCode());
+    }
+
 }
@@ -152,4 +152,21 @@ public class MixedTensorTestCase {
                 tensor.toString());
     }
 
+    @Test
+    public void testManyDenseSubspaces() {
+        TensorType type = new TensorType.Builder().mapped("x").indexed("y", 3).build();
+        MixedTensor.BoundBuilder builder = (MixedTensor.BoundBuilder)MixedTensor.Builder.of(type);
+        for (int x = 0; x < 1000; x++)
+            builder.block(TensorAddress.of(new String[] { "x" + x }), new double[] { x, x + 0.1, x + 0.2 });
+        builder.cell().label("x", "x7").label("y", 1).value(42); // replaces a cell in an existing subspace
+        Tensor tensor = builder.build();
+
+        assertEquals(3000, tensor.size());
+        assertEquals(3000, tensor.cells().size());
+        assertEquals(999.2, tensor.get(TensorAddress.of(new String[] { "x999", "2" })), 0.0);
+        assertEquals(42.0, tensor.get(TensorAddress.of(new String[] { "x7", "1" })), 0.0);
+        assertEquals(tensor.cells().get(TensorAddress.of(new String[] { "x500", "0" })), 500.0, 0.0);
+        assertEquals(tensor, Tensor.from(tensor.toString()));
+    }
+
 }
@@ -36,6 +36,24 @@ public class TensorTestCase {
         assertEquals("tensor(d1{},d2{}):{{d1:l1,d2:l1}:-5.3,{d1:l1,d2:l2}:0.0}", Tensor.from("{ {d1:l1,d2:l1}:-5.3, {d2:l2, d1:l1}:0}").toString());
     }
 
+    @Test
+    public void testValueTypeResolution() {
+        Tensor doubles = Tensor.from("tensor(x[2]):{{x:0}:1.0,{x:1}:2.0}");
+        Tensor floats = Tensor.from("tensor<float>(x[2]):{{x:0}:1.0,{x:1}:2.0}");
+        Tensor int8s = Tensor.from("tensor<int8>(x[2],y[2]):{{x:0,y:0}:1.0,{x:1,y:1}:2.0}");
+
+        assertEquals("tensor(x[2])", doubles.multiply(floats).type().toString());
+        assertEquals("tensor<float>(x[2])", floats.multiply(floats).type().toString());
+        assertEquals("tensor<float>(x[2],y[2])", floats.multiply(int8s).type().toString());
+        assertEquals("tensor<float>(x[2])", floats.map(v -> v * 2).type().toString());
+        assertEquals("tensor<float>(x[2],y[2])", int8s.map(v -> v * 2).type().toString());
+        assertEquals("tensor<float>(y[2])", int8s.sum("x").type().toString());
+        assertEquals("tensor()", floats.sum().type().toString());
+        assertEquals(Tensor.from("tensor<float>(x[2]):{{x:0}:2.0,{x:1}:8.0}"), floats.multiply(floats).map(v -> v * 2));
+        assertEquals(Tensor.from("tensor<float>(x[2]):{{x:0}:3.0,{x:1}:5.0}"), floats.multiply(Tensor.from("{2.0}")).map(v -> v + 1));
+        assertEquals("tensor()", Tensor.from("{2.0}").map(v -> v + 1).type().toString());
+    }
+
     @Test
     public void testParseError() {
         try {
@@ -45,6 +45,31 @@ public class TensorTypeTestCase {
         assertTensorType("tensor(baR_09{})");
     }
 
+    @Test
+    public void requireThatValueTypesCanBeSpecified() {
+        assertTensorType("tensor<float>(x[5])");
+        assertTensorType("tensor<bfloat16>(x{},y[3])");
+        assertTensorType("tensor<int8>(x[])");
+        assertTensorType("tensor(x[5])", "tensor<double>(x[5])");
+        assertTensorType("tensor()", "tensor<float>()");
+        assertEquals(TensorType.Value.FLOAT, TensorType.fromSpec("tensor<float>(x[5])").valueType());
+        assertEquals(TensorType.Value.DOUBLE, TensorType.fromSpec("tensor(x[5])").valueType());
+        assertFalse(TensorType.fromSpec("tensor<float>(x[5])").equals(TensorType.fromSpec("tensor(x[5])")));
+        assertIllegalTensorType("tensor<int4>(x[5])", "Unknown tensor cell value type 'int4'");
+    }
+
+    @Test
+    public void testValueTypeResolution() {
+        assertEquals(TensorType.Value.DOUBLE, TensorType.Value.largestOf(TensorType.Value.DOUBLE, TensorType.Value.FLOAT));
+        assertEquals(TensorType.Value.BFLOAT16, TensorType.Value.largestOf(TensorType.Value.INT8, TensorType.Value.BFLOAT16));
+        assertEquals(TensorType.Value.FLOAT, TensorType.Value.computedFrom(TensorType.Value.INT8));
+        assertEquals(TensorType.Value.FLOAT, TensorType.Value.computedFrom(TensorType.Value.FLOAT, TensorType.Value.BFLOAT16));
+        assertEquals(TensorType.Value.DOUBLE, TensorType.Value.computedFrom(TensorType.Value.FLOAT, TensorType.Value.DOUBLE));
+        assertEquals(TensorType.Value.FLOAT, TensorType.Value.computedFrom(TensorType.fromSpec("tensor<float>(x[5])"), TensorType.empty));
+        assertEquals(TensorType.Value.FLOAT, TensorType.Value.computedFrom(TensorType.empty, TensorType.fromSpec("tensor<int8>(x[5])")));
+        assertEquals(TensorType.Value.DOUBLE, TensorType.Value.computedFrom(TensorType.empty, TensorType.empty));
+    }
+
     @Test
     public void requireThatIndexedBoundDimensionMustHaveNonZeroSize() {
         assertIllegalTensorType("tensor(x[0])", "Size of bound dimension 'x' must be at least 1");
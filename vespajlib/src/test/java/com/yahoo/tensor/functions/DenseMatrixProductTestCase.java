@@ -0,0 +1,92 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor.functions;
+
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorType;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that matmul and xw_plus_b evaluated as dense matrix products produce the same result
+ * as their primitive form.
+ *
+ * @author bratseth
+ */
+public class DenseMatrixProductTestCase {
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void testMatrixProducts() {
+        assertMatmul("tensor(i[3],k[4])", "tensor(k[4],j[5])", "k");
+        assertMatmul("tensor(k[4],i[3])", "tensor(k[4],j[5])", "k");
+        assertMatmul("tensor(i[3],k[4])", "tensor(j[5],k[4])", "k");
+        assertMatmul("tensor(j[3],k[4])", "tensor(i[5],k[4])", "k"); // columns before rows in the result
+        assertMatmul("tensor(k[4])", "tensor(k[4],j[5])", "k");
+        assertMatmul("tensor(i[3],k[4])", "tensor(k[4])", "k");
+        assertMatmul("tensor(k[4])", "tensor(k[4])", "k");
+        assertMatmul("tensor(i[3],k[4])", "tensor(k[6],j[5])", "k"); // different common dimension sizes
+        assertMatmul("tensor(i[70],k[130])", "tensor(k[130],j[90])", "k"); // several blocks
+        assertMatmul("tensor<float>(i[3],k[4])", "tensor<float>(k[4],j[5])", "k");
+    }
+
+    @Test
+    public void testXwPlusB() {
+        assertXwPlusB("tensor(i[3],k[4])", "tensor(k[4],j[5])", "tensor(j[5])", "k");
+        assertXwPlusB("tensor(i[3],k[4])", "tensor(k[4],j[5])", "tensor(i[3])", "k");
+        assertXwPlusB("tensor(k[4])", "tensor(k[4],j[5])", "tensor(j[5])", "k");
+        assertXwPlusB("tensor(i[70],k[130])", "tensor(k[130],j[90])", "tensor(j[90])", "k");
+        assertXwPlusB("tensor(i[3],k[4])", "tensor(k[4],j[5])", "tensor(j[4])", "k"); // not fused: smaller bias
+        assertXwPlusB("tensor(i[3],k[4])", "tensor(k[4],j[5])", "tensor(i[3],j[5])", "k"); // not fused: matrix bias
+    }
+
+    @Test
+    public void testApplicability() {
+        assertTrue(DenseMatrixProduct.of(random("tensor(i[3],k[4])"), random("tensor(k[4],j[5])"), "k").isPresent());
+        assertFalse(DenseMatrixProduct.of(random("tensor(b[2],i[3],k[4])"), random("tensor(b[2],k[4],j[5])"), "k").isPresent());
+        assertFalse(DenseMatrixProduct.of(random("tensor(i[3],k[4])"), random("tensor(i[3],k[4])"), "k").isPresent());
+        assertFalse(DenseMatrixProduct.of(random("tensor(i{},k[4])"), random("tensor(k[4],j[5])"), "k").isPresent());
+        assertFalse(DenseMatrixProduct.of(random("tensor(i[3],k[4])"), random("tensor(k[4],j[5])"), "j").isPresent());
+    }
+
+    private void assertMatmul(String aType, String bType, String dimension) {
+        Matmul matmul = new Matmul(new ConstantTensor(random(aType)), new ConstantTensor(random(bType)), dimension);
+        assertEquals(matmul.toPrimitive().evaluate(), matmul.evaluate());
+    }
+
+    private void assertXwPlusB(String xType, String wType, String bType, String dimension) {
+        XwPlusB xwPlusB = new XwPlusB(new ConstantTensor(random(xType)),
+                                      new ConstantTensor(random(wType)),
+                                      new ConstantTensor(random(bType)),
+                                      dimension);
+        assertEquals(xwPlusB.toPrimitive().evaluate(), xwPlusB.evaluate());
+    }
+
+    private Tensor random(String typeSpec) {
+        TensorType type = TensorType.fromSpec(typeSpec);
+        if (type.dimensions().stream().anyMatch(d -> ! d.isIndexed()))
+            return Tensor.Builder.of(type).cell().label("i", "a").label("k", 0).value(1.0).build();
+
+        Tensor.Builder builder = Tensor.Builder.of(type);
+        long[] indexes = new long[type.rank()];
+        addCells(builder, type, indexes, 0);
+        return builder.build();
+    }
+
+    private void addCells(Tensor.Builder builder, TensorType type, long[] indexes, int dimension) {
+        if (dimension == indexes.length) {
+            builder.cell(random.nextDouble(), indexes);
+            return;
+        }
+        for (long i = 0; i < type.dimensions().get(dimension).size().get(); i++) {
+            indexes[dimension] = i;
+            addCells(builder, type, indexes, dimension + 1);
+        }
+    }
+
+}
@@ -0,0 +1,52 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor.functions;
+
+import com.yahoo.tensor.Tensor;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that softmax and l2_normalize evaluated directly on dense tensors produce the same result
+ * as their primitive form.
+ *
+ * @author bratseth
+ */
+public class DenseVectorMapperTestCase {
+
+    private final String vector = "tensor(x[3]):{{x:0}:1.0,{x:1}:2.0,{x:2}:3.0}";
+    private final String matrix = "tensor(x[2],y[3]):{{x:0,y:0}:1.0,{x:0,y:1}:2.0,{x:0,y:2}:3.0," +
+                                                     "{x:1,y:0}:-1.0,{x:1,y:1}:0.5,{x:1,y:2}:4.0}";
+    private final String sparse = "tensor(x{},y[2]):{{x:a,y:0}:1.0,{x:a,y:1}:2.0,{x:b,y:0}:3.0,{x:b,y:1}:4.0}";
+
+    @Test
+    public void testSoftmax() {
+        assertSoftmax(vector, "x");
+        assertSoftmax(matrix, "x");
+        assertSoftmax(matrix, "y");
+        assertSoftmax(sparse, "y");
+        assertEquals(Tensor.from("tensor(x[2]):{{x:0}:0.5,{x:1}:0.5}"),
+                     Tensor.from("tensor(x[2]):{{x:0}:7.0,{x:1}:7.0}").softmax("x"));
+    }
+
+    @Test
+    public void testL2Normalize() {
+        assertL2Normalize(vector, "x");
+        assertL2Normalize(matrix, "x");
+        assertL2Normalize(matrix, "y");
+        assertL2Normalize(sparse, "y");
+        assertEquals(Tensor.from("tensor(x[2]):{{x:0}:0.6,{x:1}:0.8}"),
+                     Tensor.from("tensor(x[2]):{{x:0}:3.0,{x:1}:4.0}").l2Normalize("x"));
+    }
+
+    private void assertSoftmax(String tensor, String dimension) {
+        Softmax softmax = new Softmax(new ConstantTensor(tensor), dimension);
+        assertEquals(softmax.toPrimitive().evaluate(), softmax.evaluate());
+    }
+
+    private void assertL2Normalize(String tensor, String dimension) {
+        L2Normalize l2Normalize = new L2Normalize(new ConstantTensor(tensor), dimension);
+        assertEquals(l2Normalize.toPrimitive().evaluate(), l2Normalize.evaluate());
+    }
+
+}
@@ -46,4 +46,16 @@ public class JoinTestCase {
                              .divide(Tensor.from("tensor(y[],z[]):{ {y:0,z:0}:2, {y:1,z:0}:4, {y:2,z:0}:6 }")));
     }
 
+    @Test
+    public void testJoinWithScalarKeepsCellValueType() {
+        Tensor floats = Tensor.from("tensor<float>(x[2]):{{x:0}:1.0,{x:1}:2.0}");
+        Tensor int8s = Tensor.from("tensor<int8>(x[2]):{{x:0}:1.0,{x:1}:2.0}");
+        Tensor scalar = Tensor.from("{2.0}");
+
+        assertEquals(Tensor.from("tensor<float>(x[2]):{{x:0}:2.0,{x:1}:4.0}"), floats.multiply(scalar));
+        assertEquals(Tensor.from("tensor<float>(x[2]):{{x:0}:2.0,{x:1}:4.0}"), scalar.multiply(floats));
+        assertEquals("tensor<float>(x[2])", int8s.multiply(scalar).type().toString());
+        assertEquals("tensor()", scalar.multiply(scalar).type().toString());
+    }
+
 }
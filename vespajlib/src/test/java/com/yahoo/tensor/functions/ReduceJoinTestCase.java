@@ -0,0 +1,96 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor.functions;
+
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.evaluation.MapEvaluationContext;
+import com.yahoo.tensor.evaluation.VariableTensor;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that reduce-join evaluation produces the same result as evaluating the reduce and join separately,
+ * also when the same function is evaluated with changing argument types.
+ *
+ * @author bratseth
+ */
+public class ReduceJoinTestCase {
+
+    private final ReduceJoin dotProduct = new ReduceJoin(new VariableTensor("a"), new VariableTensor("b"),
+                                                         ScalarFunctions.multiply(), Reduce.Aggregator.sum,
+                                                         Collections.emptyList());
+
+    private final Join join = new Join(new VariableTensor("a"), new VariableTensor("b"), ScalarFunctions.multiply());
+    private final Reduce reduce = new Reduce(join, Reduce.Aggregator.sum);
+
+    @Test
+    public void testDenseDotProduct() {
+        assertEvaluation("tensor():{{}:32.0}",
+                         "tensor(x[3]):{{x:0}:1.0,{x:1}:2.0,{x:2}:3.0}",
+                         "tensor(x[3]):{{x:0}:4.0,{x:1}:5.0,{x:2}:6.0}");
+    }
+
+    @Test
+    public void testSparseDotProduct() {
+        assertEvaluation("tensor():{{}:28.0}",
+                         "tensor(x{}):{{x:a}:1.0,{x:b}:2.0,{x:c}:3.0}",
+                         "tensor(x{}):{{x:b}:5.0,{x:c}:6.0,{x:d}:7.0}");
+        assertEvaluation("tensor():{{}:28.0}", // the larger tensor first
+                         "tensor(x{}):{{x:b}:5.0,{x:c}:6.0,{x:d}:7.0,{x:e}:8.0}",
+                         "tensor(x{}):{{x:a}:1.0,{x:b}:2.0,{x:c}:3.0}");
+        assertEvaluation("tensor():{{}:0.0}",
+                         "tensor(x{},y{}):{{x:a,y:a}:1.0}",
+                         "tensor(x{},y{}):{{x:a,y:b}:1.0}");
+    }
+
+    @Test
+    public void testArgumentTypesChangingBetweenEvaluations() {
+        assertEvaluation("tensor():{{}:32.0}",
+                         "tensor(x[3]):{{x:0}:1.0,{x:1}:2.0,{x:2}:3.0}",
+                         "tensor(x[3]):{{x:0}:4.0,{x:1}:5.0,{x:2}:6.0}");
+        assertEvaluation("tensor():{{}:28.0}",
+                         "tensor(x{}):{{x:a}:1.0,{x:b}:2.0,{x:c}:3.0}",
+                         "tensor(x{}):{{x:b}:5.0,{x:c}:6.0,{x:d}:7.0}");
+        assertEvaluation("tensor():{{}:11.0}",
+                         "tensor(x[2]):{{x:0}:1.0,{x:1}:2.0}",
+                         "tensor(x[2]):{{x:0}:3.0,{x:1}:4.0}");
+        assertEvaluation("tensor():{{}:16.0}",
+                         "tensor(x[2],y[2]):{{x:0,y:0}:1.0,{x:0,y:1}:2.0,{x:1,y:0}:3.0,{x:1,y:1}:4.0}",
+                         "tensor(y[2]):{{y:0}:1.0,{y:1}:2.0}");
+    }
+
+    @Test
+    public void testMatrixProducts() {
+        ReduceJoin matmul = new ReduceJoin(new VariableTensor("a"), new VariableTensor("b"),
+                                           ScalarFunctions.multiply(), Reduce.Aggregator.sum,
+                                           List.of("y"));
+        Tensor a = Tensor.from("tensor(x[2],y[2]):{{x:0,y:0}:1.0,{x:0,y:1}:2.0,{x:1,y:0}:3.0,{x:1,y:1}:4.0}");
+        Tensor b = Tensor.from("tensor(y[2],z[2]):{{y:0,z:0}:5.0,{y:0,z:1}:6.0,{y:1,z:0}:7.0,{y:1,z:1}:8.0}");
+        Tensor expected = Tensor.from("tensor(x[2],z[2]):{{x:0,z:0}:19.0,{x:0,z:1}:22.0,{x:1,z:0}:43.0,{x:1,z:1}:50.0}");
+        for (int i = 0; i < 2; i++) // evaluate twice to use the plan resolved on the first evaluation
+            assertEquals(expected, matmul.evaluate(context(a, b)));
+
+        Tensor v = Tensor.from("tensor(y[2]):{{y:0}:1.0,{y:1}:2.0}");
+        assertEquals(Tensor.from("tensor(x[2]):{{x:0}:5.0,{x:1}:11.0}"), matmul.evaluate(context(a, v)));
+        assertEquals(Tensor.from("tensor(x[2]):{{x:0}:5.0,{x:1}:11.0}"), matmul.evaluate(context(v, a)));
+    }
+
+    private void assertEvaluation(String expected, String a, String b) {
+        MapEvaluationContext context = context(Tensor.from(a), Tensor.from(b));
+        for (int i = 0; i < 2; i++) { // evaluate twice to use the plan resolved on the first evaluation
+            assertEquals(Tensor.from(expected), dotProduct.evaluate(context));
+            assertEquals(Tensor.from(expected), reduce.evaluate(context));
+        }
+    }
+
+    private MapEvaluationContext context(Tensor a, Tensor b) {
+        MapEvaluationContext context = new MapEvaluationContext();
+        context.put("a", a);
+        context.put("b", b);
+        return context;
+    }
+
+}
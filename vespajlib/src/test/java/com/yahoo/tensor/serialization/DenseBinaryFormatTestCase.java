@@ -6,6 +6,7 @@ import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorType;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Optional;
 
@@ -40,6 +41,79 @@ public class DenseBinaryFormatTestCase {
         }
     }
 
+    @Test
+    public void testSerializationOfValueTypes() {
+        assertSerialization("tensor<float>(x[2]):{{x:0}:2.5,{x:1}:-3.0}");
+        assertSerialization("tensor<bfloat16>(x[2]):{{x:0}:2.5,{x:1}:-3.0}");
+        assertSerialization("tensor<int8>(x[2]):{{x:0}:2.0,{x:1}:-3.0}");
+
+        // Values are converted to the type decoded to
+        Tensor floats = Tensor.from("tensor<float>(x[2]):{{x:0}:2.5,{x:1}:-3.0}");
+        Tensor decoded = TypedBinaryFormat.decode(Optional.of(TensorType.fromSpec("tensor(x[2])")),
+                                                  GrowableByteBuffer.wrap(TypedBinaryFormat.encode(floats)));
+        assertEquals(TensorType.fromSpec("tensor(x[2])"), decoded.type());
+        assertEquals(floats, decoded);
+
+        // The value type is kept when no type is given
+        assertEquals(floats.type(),
+                     TypedBinaryFormat.decode(Optional.empty(), GrowableByteBuffer.wrap(TypedBinaryFormat.encode(floats))).type());
+    }
+
+    @Test
+    public void testDecodingWithoutCopying() {
+        assertDecodingWithoutCopying("tensor(x[2],y[2]):{{x:0,y:0}:1.0,{x:0,y:1}:2.0,{x:1,y:0}:3.0,{x:1,y:1}:4.0}");
+        assertDecodingWithoutCopying("tensor<float>(x[2]):{{x:0}:2.5,{x:1}:-3.0}");
+        assertDecodingWithoutCopying("tensor<bfloat16>(x[2]):{{x:0}:2.5,{x:1}:-3.0}");
+        assertDecodingWithoutCopying("tensor(x{}):{{x:a}:1.0,{x:b}:2.0}");
+
+        // The tensor reads its values from the buffer
+        Tensor tensor = Tensor.from("tensor(x[2]):{{x:0}:1.0,{x:1}:2.0}");
+        byte[] encoded = TypedBinaryFormat.encode(tensor);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(encoded.length);
+        buffer.put(encoded).flip();
+        Tensor decoded = TypedBinaryFormat.decodeWithoutCopying(Optional.empty(), buffer);
+        assertEquals(tensor, decoded);
+        buffer.putDouble(encoded.length - Double.BYTES, 7.0);
+        assertEquals(Tensor.from("tensor(x[2]):{{x:0}:1.0,{x:1}:7.0}"), decoded);
+        assertEquals("The position of the buffer is unchanged", 0, buffer.position());
+
+        try {
+            TypedBinaryFormat.decodeWithoutCopying(Optional.of(TensorType.fromSpec("tensor(x[1])")), buffer);
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException expected) {
+            assertEquals("Type/instance mismatch: A tensor of type tensor(x[2]) cannot be assigned to type tensor(x[1])",
+                         expected.getMessage());
+        }
+    }
+
+    @Test
+    public void testDecodingTypeOnly() {
+        assertDecodedType("tensor(x[2],y[2]):{{x:0,y:0}:1.0,{x:0,y:1}:2.0,{x:1,y:0}:3.0,{x:1,y:1}:4.0}");
+        assertDecodedType("tensor<float>(x[2]):{{x:0}:2.5,{x:1}:-3.0}");
+        assertDecodedType("tensor(x{}):{{x:a}:2.5}");
+        assertDecodedType("tensor<float>(x{},y[1]):{{x:a,y:0}:2.5}");
+    }
+
+    private void assertDecodedType(String tensorString) {
+        Tensor tensor = Tensor.from(tensorString);
+        GrowableByteBuffer buffer = GrowableByteBuffer.wrap(TypedBinaryFormat.encode(tensor));
+        assertEquals(tensor.type(), TypedBinaryFormat.decodeType(buffer));
+    }
+
+    @Test
+    public void requireThatFloatSerializationFormatDoNotChange() {
+        byte[] encodedTensor = new byte[]{6, // binary format type with cell type
+                                          1, // float cell type
+                                          1, // dimension count
+                                          1, (byte) 'x', 2, // dimension x with size
+                                          64, 0, 0, 0, // value 1
+                                          64, 64, 0, 0 // value 2
+        };
+        assertEquals(Arrays.toString(encodedTensor),
+                     Arrays.toString(TypedBinaryFormat.encode(Tensor.from("tensor<float>(x[2]):{{x:0}:2.0,{x:1}:3.0}"))));
+    }
+
     @Test
     public void requireThatSerializationFormatDoNotChange() {
         byte[] encodedTensor = new byte[]{2, // binary format type
@@ -53,6 +127,13 @@ public class DenseBinaryFormatTestCase {
                      Arrays.toString(TypedBinaryFormat.encode(Tensor.from("tensor(xy[],z[]):{{xy:0,z:0}:2.0,{xy:1,z:0}:3.0}"))));
     }
 
+    private void assertDecodingWithoutCopying(String tensorString) {
+        Tensor tensor = Tensor.from(tensorString);
+        ByteBuffer buffer = ByteBuffer.wrap(TypedBinaryFormat.encode(tensor));
+        assertEquals(tensor, TypedBinaryFormat.decodeWithoutCopying(Optional.empty(), buffer));
+        assertEquals(tensor, TypedBinaryFormat.decodeWithoutCopying(Optional.of(tensor.type()), buffer));
+    }
+
     private void assertSerialization(String tensorString) {
         assertSerialization(Tensor.from(tensorString));
     }
@@ -8,6 +8,7 @@ import org.junit.Test;
 import java.nio.charset.StandardCharsets;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 /**
  * @author bratseth
@@ -46,4 +47,46 @@ public class JsonFormatTestCase {
                      new String(json, StandardCharsets.UTF_8));
     }
 
+    @Test
+    public void testJsonDecodingOfCells() {
+        Tensor expected = Tensor.from("tensor(x{},y{}):{{x:a,y:b}:2.0,{x:c,y:d}:3.0}");
+        assertEquals(expected, JsonFormat.decode(expected.type(), JsonFormat.encode(expected)));
+
+        Tensor dense = Tensor.from("tensor(x[2],y[2]):{{x:0,y:0}:2.0,{x:0,y:1}:3.0,{x:1,y:0}:5.0,{x:1,y:1}:7.0}");
+        assertEquals(dense, JsonFormat.decode(dense.type(), JsonFormat.encode(dense)));
+    }
+
+    @Test
+    public void testJsonDecodingOfDenseValues() {
+        Tensor expected = Tensor.from("tensor(x[2],y[3]):{{x:0,y:0}:1.0,{x:0,y:1}:2.0,{x:0,y:2}:3.0," +
+                                                         "{x:1,y:0}:4.0,{x:1,y:1}:5.0,{x:1,y:2}:6.0}");
+        assertEquals(expected, JsonFormat.decode(expected.type(), json("{\"values\":[1, 2.0, 3, 4, 5, 6]}")));
+        assertEquals(expected, JsonFormat.decode(expected.type(), json("{\"values\":[[1, 2, 3], [4, 5, 6]]}")));
+
+        Tensor floats = Tensor.from("tensor<float>(x[2]):{{x:0}:2.5,{x:1}:-3.0}");
+        assertEquals(floats, JsonFormat.decode(floats.type(), json("{\"values\":[2.5, -3]}")));
+
+        assertDecodingFails("A tensor of type tensor(x[2],y[3]) has 6 values, but 'values' contains 5",
+                            expected.type(), "{\"values\":[1, 2, 3, 4, 5]}");
+        assertDecodingFails("A tensor of type tensor(x[2],y[3]) has 6 values, but 'values' contains more",
+                            expected.type(), "{\"values\":[1, 2, 3, 4, 5, 6, 7]}");
+        assertDecodingFails("The 'values' field is only supported for dense tensors with bound dimensions, " +
+                            "not tensor(x{})",
+                            TensorType.fromSpec("tensor(x{})"), "{\"values\":[1, 2]}");
+    }
+
+    private void assertDecodingFails(String expectedMessage, TensorType type, String json) {
+        try {
+            JsonFormat.decode(type, json(json));
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException expected) {
+            assertEquals(expectedMessage, expected.getMessage());
+        }
+    }
+
+    private byte[] json(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
 }
@@ -31,6 +31,13 @@ public class MixedBinaryFormatTestCase {
         assertSerialization("tensor(i{},j[],k{},l[]):{{i:a,j:0,k:c,l:0}:1.0,{i:a,j:0,k:c,l:1}:2.0,{i:a,j:0,k:d,l:0}:5.0,{i:a,j:0,k:d,l:1}:6.0,{i:a,j:1,k:c,l:0}:3.0,{i:a,j:1,k:c,l:1}:4.0,{i:a,j:1,k:d,l:0}:7.0,{i:a,j:1,k:d,l:1}:8.0,{i:b,j:0,k:c,l:0}:9.0,{i:b,j:0,k:c,l:1}:10.0,{i:b,j:0,k:d,l:0}:13.0,{i:b,j:0,k:d,l:1}:14.0,{i:b,j:1,k:c,l:0}:11.0,{i:b,j:1,k:c,l:1}:12.0,{i:b,j:1,k:d,l:0}:15.0,{i:b,j:1,k:d,l:1}:16.0}");
     }
 
+    @Test
+    public void testSerializationOfValueTypes() {
+        assertSerialization("tensor<float>(x{},y[2]):{{x:a,y:0}:2.5,{x:a,y:1}:-3.0,{x:b,y:0}:4.0,{x:b,y:1}:5.0}");
+        assertSerialization("tensor<bfloat16>(x{},y[2]):{{x:a,y:0}:2.5,{x:a,y:1}:-3.0,{x:b,y:0}:4.0,{x:b,y:1}:5.0}");
+        assertSerialization("tensor<int8>(x{},y[2]):{{x:a,y:0}:2.0,{x:a,y:1}:-3.0,{x:b,y:0}:4.0,{x:b,y:1}:5.0}");
+    }
+
     @Test
     public void testOneIndexedSerialization() {
         TensorType type = new TensorType.Builder().indexed("y", 3).build();